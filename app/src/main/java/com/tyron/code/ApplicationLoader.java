@@ -12,6 +12,7 @@ import androidx.preference.PreferenceManager;
 import com.developer.crashx.config.CrashConfig;
 import com.tyron.actions.ActionManager;
 import com.tyron.builder.BuildModule;
+import com.tyron.builder.project.util.JarClassIndex;
 import com.tyron.code.event.EventManager;
 import com.tyron.code.ui.editor.action.CloseAllEditorAction;
 import com.tyron.code.ui.editor.action.CloseFileEditorAction;
@@ -50,6 +51,7 @@ import com.tyron.language.xml.XmlFileType;
 import com.tyron.language.xml.XmlLanguage;
 import com.tyron.selection.java.JavaExpandSelectionProvider;
 import com.tyron.selection.xml.XmlExpandSelectionProvider;
+import java.io.File;
 
 public class ApplicationLoader extends Application {
 
@@ -80,6 +82,7 @@ public class ApplicationLoader extends Application {
     CompletionModule.initialize(applicationContext);
     XmlCompletionModule.initialize(applicationContext);
     BuildModule.initialize(applicationContext);
+    JarClassIndex.setCacheDirectory(new File(getCacheDir(), "jar-index"));
 
     CrashConfig.Builder.create()
         .backgroundMode(CrashConfig.BACKGROUND_MODE_SHOW_CUSTOM)
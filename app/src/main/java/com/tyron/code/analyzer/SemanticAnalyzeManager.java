@@ -1,23 +1,38 @@
 package com.tyron.code.analyzer;
 
+import android.os.Bundle;
+import androidx.annotation.NonNull;
 import com.tyron.code.analyzer.semantic.SemanticToken;
+import com.tyron.code.analyzer.semantic.SemanticTokenCache;
 import com.tyron.code.language.HighlightUtil;
+import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
+import com.tyron.completion.progress.ProgressManager;
 import com.tyron.editor.CharPosition;
 import com.tyron.editor.Content;
 import com.tyron.editor.Editor;
 import io.github.rosemoe.sora.lang.styling.Span;
 import io.github.rosemoe.sora.lang.styling.Styles;
 import io.github.rosemoe.sora.lang.styling.TextStyle;
+import io.github.rosemoe.sora.text.ContentReference;
 import io.github.rosemoe.sora.textmate.core.theme.FontStyle;
 import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
 import io.github.rosemoe.sora.textmate.core.theme.ThemeTrieElementRule;
+import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.List;
 
+/**
+ * An analyzer that shows semantic tokens on top of the text mate highlighting.
+ *
+ * <p>The tokens are kept in a {@link SemanticTokenCache} that follows the edits made to the file,
+ * so the tokens that are not affected by an edit stay in place until the next analysis. Subclasses
+ * only compute the tokens of the regions that could not be reused and store them with {@link
+ * #updateSemanticTokens(int, List, List)}.
+ */
 public abstract class SemanticAnalyzeManager extends DiagnosticTextmateAnalyzer {
 
-  private List<SemanticToken> mSemanticTokens;
+  private final SemanticTokenCache mSemanticTokens = new SemanticTokenCache();
 
   public SemanticAnalyzeManager(
       Editor editor,
@@ -29,36 +44,106 @@ public abstract class SemanticAnalyzeManager extends DiagnosticTextmateAnalyzer
     super(editor, grammarName, grammarIns, languageConfiguration, theme);
   }
 
-  public abstract List<SemanticToken> analyzeSpansAsync(CharSequence contents);
+  protected SemanticTokenCache getSemanticTokens() {
+    return mSemanticTokens;
+  }
+
+  /**
+   * Stores the result of an analysis in the cache and applies the tokens that changed to the styles
+   * of the editor. The ranges of the tokens that were removed are reset to the default text style.
+   *
+   * @see SemanticTokenCache#update(int, List, List)
+   */
+  protected void updateSemanticTokens(
+      int version, List<SemanticTokenCache.Region> regions, List<SemanticToken> tokens) {
+    SemanticTokenCache.Changes changes = mSemanticTokens.update(version, regions, tokens);
+    if (changes == null || changes.isEmpty()) {
+      return;
+    }
+    ProgressManager.getInstance()
+        .runLater(
+            () -> {
+              Editor editor = mEditor;
+              if (!(editor instanceof CodeEditorView)) {
+                return;
+              }
+              CodeEditorView view = (CodeEditorView) editor;
+              Styles styles = view.getStyles();
+              if (styles == null || mSemanticTokens.getVersion() != version) {
+                // the next styles sent by the text mate analyzer will include the tokens
+                return;
+              }
+              Content content = editor.getContent();
+              for (SemanticToken token : changes.getRemoved()) {
+                // the style the text mate analyzer gives to text without a scope
+                applySpan(
+                    editor,
+                    content,
+                    styles,
+                    token.getOffset(),
+                    token.getLength(),
+                    EditorColorScheme.TEXT_NORMAL);
+              }
+              for (SemanticToken token : changes.getAdded()) {
+                applyToken(editor, content, styles, token.getOffset(), token);
+              }
+              view.setStyles(this, styles);
+            });
+  }
 
   @Override
   public void insert(
       io.github.rosemoe.sora.text.CharPosition start,
       io.github.rosemoe.sora.text.CharPosition end,
       CharSequence insertedText) {
+    mSemanticTokens.insert(start.index, end.index - start.index);
     super.insert(start, end, insertedText);
   }
 
+  @Override
+  public void delete(
+      io.github.rosemoe.sora.text.CharPosition start,
+      io.github.rosemoe.sora.text.CharPosition end,
+      CharSequence deletedText) {
+    mSemanticTokens.delete(start.index, end.index - start.index);
+    super.delete(start, end, deletedText);
+  }
+
+  @Override
+  public void reset(@NonNull ContentReference content, @NonNull Bundle extraArguments) {
+    mSemanticTokens.clear();
+    super.reset(content, extraArguments);
+  }
+
   @Override
   protected void modifyStyles(Styles styles) {
     super.modifyStyles(styles);
 
-    Content content = mEditor.getContent();
+    Editor editor = mEditor;
+    if (styles == null || editor == null) {
+      return;
+    }
+    Content content = editor.getContent();
+    mSemanticTokens.visitTokens(
+        (offset, token) -> applyToken(editor, content, styles, offset, token));
+  }
 
-    if (mSemanticTokens != null) {
-      for (int i = mSemanticTokens.size() - 1; i >= 0; i--) {
-        SemanticToken token = mSemanticTokens.get(i);
-        if (token.getOffset() > content.length()) {
-          continue;
-        }
-        CharPosition start = mEditor.getCharPosition(token.getOffset());
-        CharPosition end = mEditor.getCharPosition(token.getOffset() + token.getLength());
+  private void applyToken(
+      Editor editor, Content content, Styles styles, int offset, SemanticToken token) {
+    applySpan(editor, content, styles, offset, token.getLength(), getStyle(token));
+  }
 
-        Span span = Span.obtain(0, getStyle(token));
-        HighlightUtil.replaceSpan(
-            styles, span, start.getLine(), start.getColumn(), end.getLine(), end.getColumn());
-      }
+  private static void applySpan(
+      Editor editor, Content content, Styles styles, int offset, int length, long style) {
+    if (offset + length > content.length()) {
+      return;
     }
+    CharPosition start = editor.getCharPosition(offset);
+    CharPosition end = editor.getCharPosition(offset + length);
+
+    Span span = Span.obtain(0, style);
+    HighlightUtil.replaceSpan(
+        styles, span, start.getLine(), start.getColumn(), end.getLine(), end.getColumn());
   }
 
   private long getStyle(SemanticToken token) {
@@ -1,6 +1,7 @@
 package com.tyron.code.analyzer.semantic;
 
 import androidx.annotation.NonNull;
+import java.util.Objects;
 
 public class SemanticToken {
   private final TokenType tokenType;
@@ -31,6 +32,26 @@ public class SemanticToken {
     return length;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    SemanticToken that = (SemanticToken) o;
+    return tokenModifiers == that.tokenModifiers
+        && offset == that.offset
+        && length == that.length
+        && Objects.equals(tokenType, that.tokenType);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(tokenType, tokenModifiers, offset, length);
+  }
+
   @NonNull
   @Override
   public String toString() {
@@ -0,0 +1,267 @@
+package com.tyron.code.analyzer.semantic;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The semantic tokens of a file, grouped by the regions they were computed for, such as the top
+ * level members of a class.
+ *
+ * <p>The cache follows the edits made to the file: the regions after an edit are moved and keep
+ * their tokens, while the regions that contain the edit are marked as dirty. The next analysis only
+ * needs to compute the tokens of the regions that could not be reused with {@link #getTokens(int,
+ * int, int)}.
+ *
+ * <p>Every edit increases the version of the cache, an analysis that started before an edit cannot
+ * be stored since its offsets no longer match the file.
+ */
+public class SemanticTokenCache {
+
+  public interface TokenVisitor {
+    void visit(int offset, @NonNull SemanticToken token);
+  }
+
+  /** The tokens added and removed by an {@link #update(int, List, List)}, with absolute offsets */
+  public static class Changes {
+    private final List<SemanticToken> mAdded;
+    private final List<SemanticToken> mRemoved;
+
+    Changes(List<SemanticToken> added, List<SemanticToken> removed) {
+      mAdded = added;
+      mRemoved = removed;
+    }
+
+    /** The tokens that were not in the cache before */
+    public List<SemanticToken> getAdded() {
+      return mAdded;
+    }
+
+    /** The tokens that were in the regions computed again but are not part of the result */
+    public List<SemanticToken> getRemoved() {
+      return mRemoved;
+    }
+
+    public boolean isEmpty() {
+      return mAdded.isEmpty() && mRemoved.isEmpty();
+    }
+  }
+
+  public static class Region {
+    private int mStart;
+    private int mEnd;
+    private boolean mDirty;
+
+    /** The tokens of this region, their offsets are relative to the start of the region */
+    private List<SemanticToken> mTokens;
+
+    /**
+     * @param tokens the tokens returned by {@link #getTokens(int, int, int)} for this region, or
+     *     null if the tokens of the region were computed again
+     */
+    public Region(int start, int end, @Nullable List<SemanticToken> tokens) {
+      mStart = start;
+      mEnd = end;
+      mTokens = tokens;
+    }
+
+    public int getStart() {
+      return mStart;
+    }
+
+    public int getEnd() {
+      return mEnd;
+    }
+  }
+
+  private final List<Region> mRegions = new ArrayList<>();
+
+  /** The tokens that are not inside any region, with absolute offsets */
+  private List<SemanticToken> mOutside = new ArrayList<>();
+
+  private int mVersion;
+
+  public synchronized int getVersion() {
+    return mVersion;
+  }
+
+  public synchronized void clear() {
+    mRegions.clear();
+    mOutside = new ArrayList<>();
+    mVersion++;
+  }
+
+  /** Called when text is inserted at the given index */
+  public void insert(int index, int length) {
+    edit(index, 0, length);
+  }
+
+  /** Called when the text between the given index and {@code index + length} is deleted */
+  public void delete(int index, int length) {
+    edit(index, length, 0);
+  }
+
+  private synchronized void edit(int index, int removed, int inserted) {
+    mVersion++;
+
+    int delta = inserted - removed;
+    for (Region region : mRegions) {
+      if (region.mEnd <= index) {
+        continue;
+      }
+      if (region.mStart >= index + removed) {
+        region.mStart += delta;
+        region.mEnd += delta;
+        continue;
+      }
+
+      int start = Math.min(region.mStart, index);
+      int end = region.mEnd >= index + removed ? region.mEnd + delta : index + inserted;
+      region.mTokens = shift(region.mTokens, region.mStart, start, index, removed, inserted);
+      region.mStart = start;
+      region.mEnd = end;
+      region.mDirty = true;
+    }
+    mOutside = shift(mOutside, 0, 0, index, removed, inserted);
+  }
+
+  /**
+   * Moves the tokens after the edit and removes the tokens that touch it.
+   *
+   * @param base the offset the tokens are currently relative to
+   * @param newBase the offset the returned tokens are relative to
+   */
+  private static List<SemanticToken> shift(
+      List<SemanticToken> tokens, int base, int newBase, int index, int removed, int inserted) {
+    List<SemanticToken> shifted = new ArrayList<>(tokens.size());
+    for (SemanticToken token : tokens) {
+      int start = base + token.getOffset();
+      int end = start + token.getLength();
+      if (end < index) {
+        shifted.add(withOffset(token, start - newBase));
+      } else if (start > index + removed) {
+        shifted.add(withOffset(token, start + inserted - removed - newBase));
+      }
+    }
+    return shifted;
+  }
+
+  private static SemanticToken withOffset(SemanticToken token, int offset) {
+    if (token.getOffset() == offset) {
+      return token;
+    }
+    return new SemanticToken(
+        offset, token.getLength(), token.getTokenType(), token.getTokenModifiers());
+  }
+
+  /**
+   * @return the tokens of the region with the given bounds, relative to its start, or null if there
+   *     is no such region, it has been edited or the cache changed since the given version
+   */
+  @Nullable
+  public synchronized List<SemanticToken> getTokens(int version, int start, int end) {
+    if (version != mVersion) {
+      return null;
+    }
+    for (Region region : mRegions) {
+      if (region.mStart == start && region.mEnd == end) {
+        return region.mDirty ? null : region.mTokens;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Replaces the contents of the cache with the result of an analysis.
+   *
+   * @param version the version of the cache when the analyzed contents were read
+   * @param regions the regions of the analyzed contents, sorted by their offsets
+   * @param tokens the tokens computed by the analysis, sorted by their offsets. The tokens of the
+   *     regions that were reused are not included.
+   * @return the tokens that were added and removed, or null if the file has been edited since the
+   *     given version and the result has been discarded
+   */
+  @Nullable
+  public synchronized Changes update(
+      int version, @NonNull List<Region> regions, @NonNull List<SemanticToken> tokens) {
+    if (version != mVersion) {
+      return null;
+    }
+
+    Map<List<SemanticToken>, Boolean> reused = new IdentityHashMap<>();
+    for (Region region : regions) {
+      if (region.mTokens != null) {
+        reused.put(region.mTokens, Boolean.TRUE);
+      }
+    }
+    Set<SemanticToken> previous = new HashSet<>(mOutside);
+    for (Region region : mRegions) {
+      if (!reused.containsKey(region.mTokens)) {
+        for (SemanticToken token : region.mTokens) {
+          previous.add(withOffset(token, region.mStart + token.getOffset()));
+        }
+      }
+    }
+
+    for (Region region : regions) {
+      if (region.mTokens == null) {
+        region.mTokens = new ArrayList<>();
+      }
+    }
+
+    List<SemanticToken> outside = new ArrayList<>();
+    List<SemanticToken> added = new ArrayList<>();
+    Set<SemanticToken> current = new HashSet<>(tokens);
+    int regionIndex = 0;
+    for (SemanticToken token : tokens) {
+      int offset = token.getOffset();
+      while (regionIndex < regions.size() && regions.get(regionIndex).mEnd <= offset) {
+        regionIndex++;
+      }
+      Region region = regionIndex < regions.size() ? regions.get(regionIndex) : null;
+      if (region != null && region.mStart <= offset && !reused.containsKey(region.mTokens)) {
+        region.mTokens.add(withOffset(token, offset - region.mStart));
+      } else {
+        outside.add(token);
+      }
+      if (!previous.contains(token)) {
+        added.add(token);
+      }
+    }
+    List<SemanticToken> removed = new ArrayList<>();
+    for (SemanticToken token : previous) {
+      if (!current.contains(token)) {
+        removed.add(token);
+      }
+    }
+
+    mRegions.clear();
+    mRegions.addAll(regions);
+    mOutside = outside;
+    return new Changes(added, removed);
+  }
+
+  /** Visits all the tokens in the cache in the order of their offsets */
+  public synchronized void visitTokens(@NonNull TokenVisitor visitor) {
+    int outsideIndex = 0;
+    for (Region region : mRegions) {
+      while (outsideIndex < mOutside.size()
+          && mOutside.get(outsideIndex).getOffset() < region.mStart) {
+        SemanticToken token = mOutside.get(outsideIndex++);
+        visitor.visit(token.getOffset(), token);
+      }
+      for (SemanticToken token : region.mTokens) {
+        visitor.visit(region.mStart + token.getOffset(), token);
+      }
+    }
+    for (; outsideIndex < mOutside.size(); outsideIndex++) {
+      SemanticToken token = mOutside.get(outsideIndex);
+      visitor.visit(token.getOffset(), token);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.tyron.code.language;
 import com.tyron.completion.model.CompletionList;
 import io.github.rosemoe.sora.lang.completion.CompletionItem;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /** An auto complete provider that supports cancellation as the user types */
@@ -18,4 +19,17 @@ public abstract class AbstractAutoCompleteProvider {
   }
 
   public abstract CompletionList getCompletionList(String prefix, int line, int column);
+
+  /**
+   * Same as {@link #getCompletionList(String, int, int)} but passes the items to the consumer as
+   * they are computed, providers that can complete in parts should override this.
+   */
+  public CompletionList getCompletionList(
+      String prefix, int line, int column, Consumer<CompletionList> partialResultConsumer) {
+    CompletionList list = getCompletionList(prefix, line, column);
+    if (list != null) {
+      partialResultConsumer.accept(list);
+    }
+    return list;
+  }
 }
@@ -5,6 +5,7 @@ import android.content.res.AssetManager;
 import android.os.Looper;
 import android.util.Log;
 import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
@@ -23,6 +24,7 @@ import com.tyron.code.ApplicationLoader;
 import com.tyron.code.BuildConfig;
 import com.tyron.code.analyzer.SemanticAnalyzeManager;
 import com.tyron.code.analyzer.semantic.SemanticToken;
+import com.tyron.code.analyzer.semantic.SemanticTokenCache;
 import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
 import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.common.SharedPreferenceKeys;
@@ -46,7 +48,9 @@ import java.io.Reader;
 import java.lang.ref.WeakReference;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -109,28 +113,6 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
     mPreferences = ApplicationLoader.getDefaultPreferences();
   }
 
-  @Override
-  public List<SemanticToken> analyzeSpansAsync(CharSequence contents) {
-    Editor editor = mEditorReference.get();
-    JavaCompilerService compiler = getCompiler(editor);
-    if (compiler == null) {
-      return null;
-    }
-
-    File currentFile = editor.getCurrentFile();
-    SourceFileObject object =
-        new SourceFileObject(currentFile.toPath(), contents.toString(), Instant.now());
-    CompilerContainer container = compiler.compile(Collections.singletonList(object));
-
-    return container.get(
-        task -> {
-          JavaSemanticHighlighter highlighter = new JavaSemanticHighlighter(task.task);
-          CompilationUnitTree root = task.root(currentFile);
-          highlighter.scan(root, true);
-          return highlighter.getTokens();
-        });
-  }
-
   @Override
   public void analyzeInBackground(CharSequence contents) {
     sDebouncer.cancel();
@@ -170,54 +152,101 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
       return;
     }
 
+    JavaCompilerService service = getCompiler(editor);
+    if (service == null) {
+      return;
+    }
+    File currentFile = editor.getCurrentFile();
+    if (currentFile == null) {
+      return;
+    }
     // do not compile the file if it not yet closed as it will cause issues when
     // compiling multiple files at the same time
-    if (mPreferences.getBoolean(SharedPreferenceKeys.JAVA_ERROR_HIGHLIGHTING, true)) {
-      JavaCompilerService service = getCompiler(editor);
-      if (service != null) {
-        File currentFile = editor.getCurrentFile();
-        if (currentFile == null) {
-          return;
-        }
-        Module module = ProjectManager.getInstance().getCurrentProject().getModule(currentFile);
-        if (!module.getFileManager().isOpened(currentFile)) {
-          return;
-        }
-        try {
-          if (service.getCachedContainer().isWriting()) {
-            return;
-          }
-          ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(true));
-          SourceFileObject sourceFileObject =
-              new SourceFileObject(currentFile.toPath(), contents.toString(), Instant.now());
-          CompilerContainer container =
-              service.compile(Collections.singletonList(sourceFileObject));
-          container.run(
-              task -> {
-                if (!cancel.invoke()) {
-                  List<DiagnosticWrapper> collect =
-                      task.diagnostics.stream()
-                          .map(d -> modifyDiagnostic(task, d))
-                          .peek(it -> ProgressManager.checkCanceled())
-                          .filter(d -> currentFile.equals(d.getSource()))
-                          .collect(Collectors.toList());
-                  editor.setDiagnostics(collect);
+    Module module = ProjectManager.getInstance().getCurrentProject().getModule(currentFile);
+    if (!module.getFileManager().isOpened(currentFile)) {
+      return;
+    }
+    // the semantic tokens need the attributed tree even when the errors are not shown
+    boolean showDiagnostics =
+        mPreferences.getBoolean(SharedPreferenceKeys.JAVA_ERROR_HIGHLIGHTING, true);
+    CompilerContainer container = null;
+    try {
+      if (service.getCachedContainer(currentFile).isWriting()) {
+        return;
+      }
+      ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(true));
+      int version = getSemanticTokens().getVersion();
+      SourceFileObject sourceFileObject =
+          new SourceFileObject(currentFile.toPath(), contents.toString(), Instant.now());
+      container = service.compile(Collections.singletonList(sourceFileObject));
+      container.run(
+          task -> {
+            if (!cancel.invoke()) {
+              if (showDiagnostics) {
+                List<DiagnosticWrapper> collect =
+                    task.diagnostics.stream()
+                        .map(d -> modifyDiagnostic(task, d))
+                        .peek(it -> ProgressManager.checkCanceled())
+                        .filter(d -> currentFile.equals(d.getSource()))
+                        .collect(Collectors.toList());
+                editor.setDiagnostics(collect);
+              }
+              analyzeSemanticTokens(task, currentFile, version);
 
-                  ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(false), 300);
-                }
-              });
-        } catch (Throwable e) {
-          if (e instanceof ProcessCanceledException) {
-            throw e;
-          }
-          if (BuildConfig.DEBUG) {
-            Log.e(TAG, "Unable to get diagnostics", e);
-          }
-          service.destroy();
-          ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(false));
+              ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(false), 300);
+            }
+          });
+    } catch (Throwable e) {
+      if (e instanceof ProcessCanceledException) {
+        throw e;
+      }
+      if (BuildConfig.DEBUG) {
+        Log.e(TAG, "Unable to analyze the file", e);
+      }
+      if (container != null) {
+        // a failed compilation has already closed its compiler
+        service.destroy(container);
+      }
+      ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(false));
+    }
+  }
+
+  /**
+   * Computes the semantic tokens of the file. The top level members that have not been edited since
+   * the last analysis keep their tokens and are not scanned again. The whole file is still
+   * attributed by the compiler, javac cannot attribute a single member of a class.
+   *
+   * @param version the version of the semantic token cache when the compiled contents were read
+   */
+  private void analyzeSemanticTokens(CompileTask task, File file, int version) {
+    CompilationUnitTree root = task.root(file);
+    SourcePositions positions = Trees.instance(task.task).getSourcePositions();
+    SemanticTokenCache cache = getSemanticTokens();
+    JavaSemanticHighlighter highlighter = new JavaSemanticHighlighter(task.task);
+
+    List<SemanticTokenCache.Region> regions = new ArrayList<>();
+    for (Tree declaration : root.getTypeDecls()) {
+      if (!(declaration instanceof ClassTree)) {
+        continue;
+      }
+      for (Tree member : ((ClassTree) declaration).getMembers()) {
+        int start = (int) positions.getStartPosition(root, member);
+        int end = (int) positions.getEndPosition(root, member);
+        if (start == Diagnostic.NOPOS || end == Diagnostic.NOPOS) {
+          // generated by the compiler
+          continue;
         }
+        List<SemanticToken> tokens = cache.getTokens(version, start, end);
+        if (tokens != null) {
+          highlighter.skip(member);
+        }
+        regions.add(new SemanticTokenCache.Region(start, end, tokens));
       }
     }
+    regions.sort(Comparator.comparingInt(SemanticTokenCache.Region::getStart));
+
+    highlighter.scan(root, true);
+    updateSemanticTokens(version, regions, highlighter.getTokens());
   }
 
   private DiagnosticWrapper modifyDiagnostic(
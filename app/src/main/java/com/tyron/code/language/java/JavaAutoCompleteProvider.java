@@ -13,6 +13,7 @@ import com.tyron.completion.main.CompletionEngine;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class JavaAutoCompleteProvider extends AbstractAutoCompleteProvider {
 
@@ -27,6 +28,16 @@ public class JavaAutoCompleteProvider extends AbstractAutoCompleteProvider {
   @Nullable
   @Override
   public CompletionList getCompletionList(String prefix, int line, int column) {
+    return getCompletionList(prefix, line, column, null);
+  }
+
+  @Nullable
+  @Override
+  public CompletionList getCompletionList(
+      String prefix,
+      int line,
+      int column,
+      @Nullable Consumer<CompletionList> partialResultConsumer) {
     if (!mPreferences.getBoolean(SharedPreferenceKeys.JAVA_CODE_COMPLETION, true)) {
       return null;
     }
@@ -53,7 +64,8 @@ public class JavaAutoCompleteProvider extends AbstractAutoCompleteProvider {
                 prefix,
                 line,
                 column,
-                mEditor.getCaret().getStart());
+                mEditor.getCaret().getStart(),
+                partialResultConsumer);
       }
     }
     return null;
@@ -7,7 +7,6 @@ import com.tyron.code.analyzer.BaseTextmateAnalyzer;
 import com.tyron.code.language.CompletionItemWrapper;
 import com.tyron.code.language.EditorFormatter;
 import com.tyron.completion.model.CompletionItem;
-import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
 import io.github.rosemoe.editor.langs.java.JavaTextTokenizer;
 import io.github.rosemoe.editor.langs.java.Tokens;
@@ -93,15 +92,16 @@ public class JavaLanguage implements Language, EditorFormatter {
     }
     String prefix = CompletionHelper.computePrefix(content, position, this::isAutoCompleteChar);
     JavaAutoCompleteProvider provider = new JavaAutoCompleteProvider(mEditor);
-    CompletionList list =
-        provider.getCompletionList(prefix, position.getLine(), position.getColumn());
-    if (list == null) {
-      return;
-    }
-    for (CompletionItem item : list.getItems()) {
-      CompletionItemWrapper wrapper = new CompletionItemWrapper(item);
-      publisher.addItem(wrapper);
-    }
+    provider.getCompletionList(
+        prefix,
+        position.getLine(),
+        position.getColumn(),
+        list -> {
+          for (CompletionItem item : list.getItems()) {
+            publisher.addItem(new CompletionItemWrapper(item));
+          }
+          publisher.updateList();
+        });
   }
 
   @Override
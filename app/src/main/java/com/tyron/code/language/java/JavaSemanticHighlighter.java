@@ -20,7 +20,9 @@ import com.tyron.code.analyzer.semantic.SemanticToken;
 import com.tyron.code.analyzer.semantic.TokenType;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import javax.lang.model.element.Element;
@@ -40,6 +42,10 @@ public class JavaSemanticHighlighter extends TreePathScanner<Void, Boolean> {
   private final Trees trees;
   private final Elements elements;
   private List<SemanticToken> tokens;
+  private String contents;
+
+  /** The trees whose tokens are already known and should not be scanned */
+  private final Set<Tree> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
 
   public JavaSemanticHighlighter(JavacTask task) {
     this.trees = Trees.instance(task);
@@ -129,6 +135,19 @@ public class JavaSemanticHighlighter extends TreePathScanner<Void, Boolean> {
     }
   }
 
+  /** Do not scan the given tree and its children, e.g. a member that has not been edited */
+  public void skip(Tree tree) {
+    skipped.add(tree);
+  }
+
+  @Override
+  public Void scan(Tree tree, Boolean b) {
+    if (tree != null && skipped.contains(tree)) {
+      return null;
+    }
+    return super.scan(tree, b);
+  }
+
   public List<SemanticToken> getTokens() {
     return INCREASING.immutableSortedCopy(tokens);
   }
@@ -144,6 +163,7 @@ public class JavaSemanticHighlighter extends TreePathScanner<Void, Boolean> {
   @Override
   public Void visitCompilationUnit(CompilationUnitTree t, Boolean b) {
     cu = (JCTree.JCCompilationUnit) t;
+    contents = null;
     return super.visitCompilationUnit(t, b);
   }
 
@@ -323,10 +343,13 @@ public class JavaSemanticHighlighter extends TreePathScanner<Void, Boolean> {
   }
 
   private String getContents() {
-    try {
-      return String.valueOf(cu.getSourceFile().getCharContent(false));
-    } catch (IOException e) {
-      return "";
+    if (contents == null) {
+      try {
+        contents = String.valueOf(cu.getSourceFile().getCharContent(false));
+      } catch (IOException e) {
+        contents = "";
+      }
     }
+    return contents;
   }
 }
@@ -8,15 +8,16 @@ import com.tyron.builder.compiler.manifest.xml.XmlFormatStyle;
 import com.tyron.builder.compiler.manifest.xml.XmlPrettyPrinter;
 import com.tyron.code.ApplicationLoader;
 import com.tyron.code.analyzer.BaseTextmateAnalyzer;
+import com.tyron.code.language.CompletionItemWrapper;
 import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
 import com.tyron.code.util.ProjectUtils;
+import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.xml.lexer.XMLLexer;
 import com.tyron.editor.Editor;
 import io.github.rosemoe.sora.lang.Language;
 import io.github.rosemoe.sora.lang.analysis.AnalyzeManager;
 import io.github.rosemoe.sora.lang.completion.CompletionCancelledException;
 import io.github.rosemoe.sora.lang.completion.CompletionHelper;
-import io.github.rosemoe.sora.lang.completion.CompletionItem;
 import io.github.rosemoe.sora.lang.completion.CompletionPublisher;
 import io.github.rosemoe.sora.lang.smartEnter.NewlineHandleResult;
 import io.github.rosemoe.sora.lang.smartEnter.NewlineHandler;
@@ -28,7 +29,6 @@ import io.github.rosemoe.sora.util.MyCharacter;
 import io.github.rosemoe.sora.widget.SymbolPairMatch;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.util.List;
 
 public class LanguageXML implements Language {
 
@@ -122,15 +122,17 @@ public class LanguageXML implements Language {
       @NonNull Bundle extraArguments)
       throws CompletionCancelledException {
     String prefix = CompletionHelper.computePrefix(content, position, this::isAutoCompleteChar);
-    List<CompletionItem> items =
-        new XMLAutoCompleteProvider(mEditor)
-            .getAutoCompleteItems(prefix, position.getLine(), position.getColumn());
-    if (items == null) {
-      return;
-    }
-    for (CompletionItem item : items) {
-      publisher.addItem(item);
-    }
+    new XMLAutoCompleteProvider(mEditor)
+        .getCompletionList(
+            prefix,
+            position.getLine(),
+            position.getColumn(),
+            list -> {
+              for (CompletionItem item : list.getItems()) {
+                publisher.addItem(new CompletionItemWrapper(item));
+              }
+              publisher.updateList();
+            });
   }
 
   @Override
@@ -219,7 +219,7 @@ public class XMLAnalyzer extends DiagnosticTextmateAnalyzer {
       JavaCompilerService service = provider.getCompiler(project, module);
 
       CompilerContainer container = service.compile(resourceClass.toPath());
-      container.run(__ -> {});
+      container.runShared(__ -> {});
     }
   }
 }
@@ -9,6 +9,7 @@ import com.tyron.completion.main.CompletionEngine;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
 import java.io.File;
+import java.util.function.Consumer;
 
 public class XMLAutoCompleteProvider extends AbstractAutoCompleteProvider {
 
@@ -20,6 +21,12 @@ public class XMLAutoCompleteProvider extends AbstractAutoCompleteProvider {
 
   @Override
   public CompletionList getCompletionList(String prefix, int line, int column) {
+    return getCompletionList(prefix, line, column, null);
+  }
+
+  @Override
+  public CompletionList getCompletionList(
+      String prefix, int line, int column, Consumer<CompletionList> partialResultConsumer) {
     Project currentProject = ProjectManager.getInstance().getCurrentProject();
     if (currentProject == null) {
       return null;
@@ -43,6 +50,7 @@ public class XMLAutoCompleteProvider extends AbstractAutoCompleteProvider {
             prefix,
             line,
             column,
-            mEditor.getCaret().getStart());
+            mEditor.getCaret().getStart(),
+            partialResultConsumer);
   }
 }
@@ -29,6 +29,7 @@ import com.tyron.code.R;
 import com.tyron.code.util.ApkInstaller;
 import com.tyron.completion.progress.ProgressIndicator;
 import com.tyron.completion.progress.ProgressManager;
+import com.tyron.completion.progress.TaskPool;
 import java.io.File;
 import java.lang.ref.WeakReference;
 
@@ -186,6 +187,7 @@ public class CompilerService extends Service {
     ProgressIndicator indicator = new ProgressIndicator();
     ProgressManager.getInstance()
         .runAsync(
+            TaskPool.BUILD,
             () -> {
               try {
                 if (true) {
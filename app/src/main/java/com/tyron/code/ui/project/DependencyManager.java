@@ -39,6 +39,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
 
@@ -524,18 +526,29 @@ public class DependencyManager {
   }
 
   public List<Library> getFiles(List<Pom> resolvedPoms, ILogger logger) {
-    List<Library> files = new ArrayList<>();
+    // download all the libraries at the same time
+    List<Future<File>> downloads = new ArrayList<>();
     for (Pom resolvedPom : resolvedPoms) {
+      downloads.add(mRepository.getLibraryAsync(resolvedPom));
+    }
+
+    List<Library> files = new ArrayList<>();
+    for (int i = 0; i < resolvedPoms.size(); i++) {
+      Pom resolvedPom = resolvedPoms.get(i);
       try {
-        File file = mRepository.getLibrary(resolvedPom);
+        File file = downloads.get(i).get();
         if (file != null) {
           Library library = new Library();
           library.setSourceFile(file);
           library.setDeclaration(resolvedPom.getDeclarationString());
           files.add(library);
         }
-      } catch (IOException e) {
-        logger.error("Unable to download " + resolvedPom + ": " + e.getMessage());
+      } catch (ExecutionException e) {
+        logger.error("Unable to download " + resolvedPom + ": " + e.getCause().getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        downloads.forEach(it -> it.cancel(true));
+        break;
       }
     }
     return files;
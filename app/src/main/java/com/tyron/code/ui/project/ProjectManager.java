@@ -21,7 +21,9 @@ import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.java.JavaCompilerProvider;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.provider.CompletionEngine;
+import com.tyron.completion.progress.PoolMetrics;
 import com.tyron.completion.progress.ProgressManager;
+import com.tyron.completion.progress.TaskPool;
 import com.tyron.completion.xml.XmlIndexProvider;
 import com.tyron.completion.xml.XmlRepository;
 import com.tyron.completion.xml.task.InjectResourcesTask;
@@ -82,7 +84,8 @@ public class ProjectManager {
   public void openProject(
       Project project, boolean downloadLibs, TaskListener listener, ILogger logger) {
     ProgressManager.getInstance()
-        .runNonCancelableAsync(() -> doOpenProject(project, downloadLibs, listener, logger));
+        .runNonCancelableAsync(
+            TaskPool.INDEXING, () -> doOpenProject(project, downloadLibs, listener, logger));
   }
 
   private void doOpenProject(
@@ -255,6 +258,10 @@ public class ProjectManager {
     } else {
       logger.debug("TIME TOOK " + seconds + "s");
     }
+    // shows whether opening the project had to wait for threads and delayed the other work
+    for (PoolMetrics metrics : ProgressManager.getInstance().getMetrics()) {
+      logger.debug(metrics.toString());
+    }
   }
 
   private void downloadLibraries(JavaModule project, TaskListener listener, ILogger logger)
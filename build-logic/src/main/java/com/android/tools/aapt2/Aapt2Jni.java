@@ -31,7 +31,17 @@ public class Aapt2Jni {
 
   private String mFailureString;
 
-  private final List<DiagnosticWrapper> mDiagnostics = new ArrayList<>();
+  /**
+   * The logs of the last call made by each thread. Every call runs its own aapt2 process, so calls
+   * made from different threads can run at the same time.
+   */
+  private final ThreadLocal<List<DiagnosticWrapper>> mDiagnostics =
+      new ThreadLocal<List<DiagnosticWrapper>>() {
+        @Override
+        protected List<DiagnosticWrapper> initialValue() {
+          return new ArrayList<>();
+        }
+      };
 
   private Aapt2Jni() {}
 
@@ -92,11 +102,12 @@ public class Aapt2Jni {
       wrapper.setStartLine((int) line);
     }
     wrapper.setMessage(message);
-    mDiagnostics.add(wrapper);
+    mDiagnostics.get().add(wrapper);
   }
 
   private void clearLogs() {
-    mDiagnostics.clear();
+    // the logs of the previous call may still be in use by the caller
+    mDiagnostics.set(new ArrayList<>());
   }
 
   /**
@@ -193,12 +204,12 @@ public class Aapt2Jni {
 
       logger.log(getLogLevel(level), path, getLineNumber(lineNumber), message);
     }
-    return logger.mDiagnostics.stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.ERROR)
+    return logger.mDiagnostics.get().stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.ERROR)
         ? 1
         : 0;
   }
 
   public static List<DiagnosticWrapper> getLogs() {
-    return getInstance().mDiagnostics;
+    return getInstance().mDiagnostics.get();
   }
 }
@@ -7,6 +7,7 @@ import com.tyron.builder.compiler.buildconfig.GenerateDebugBuildConfigTask;
 import com.tyron.builder.compiler.buildconfig.GenerateReleaseBuildConfigTask;
 import com.tyron.builder.compiler.dex.R8Task;
 import com.tyron.builder.compiler.firebase.GenerateFirebaseConfigTask;
+import com.tyron.builder.compiler.incremental.dex.DexLibrariesTask;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
 import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
@@ -40,6 +41,10 @@ public class AndroidAppBuilder extends BuilderImpl<AndroidModule> {
     tasks.add(new CleanTask(getProject(), module, logger));
     tasks.add(new CheckLibrariesTask(getProject(), module, logger));
     tasks.add(new IncrementalAssembleLibraryTask(getProject(), module, logger));
+    boolean minify = module.getMinifyEnabled() && type == BuildType.RELEASE;
+    if (!minify) {
+      tasks.add(new DexLibrariesTask(getProject(), module, logger));
+    }
     tasks.add(new ManifestMergeTask(getProject(), module, logger));
     if (type == BuildType.DEBUG) {
       tasks.add(new GenerateDebugBuildConfigTask(getProject(), module, logger));
@@ -57,7 +62,7 @@ public class AndroidAppBuilder extends BuilderImpl<AndroidModule> {
     tasks.add(new MergeSymbolsTask(getProject(), module, logger));
     tasks.add(new IncrementalKotlinCompiler(getProject(), module, logger));
     tasks.add(new IncrementalJavaTask(getProject(), module, logger));
-    if (module.getMinifyEnabled() && type == BuildType.RELEASE) {
+    if (minify) {
       tasks.add(new R8Task(getProject(), module, logger));
     } else {
       tasks.add(new IncrementalD8Task(getProject(), module, logger));
@@ -4,6 +4,7 @@ import com.tyron.builder.compiler.aab.AabTask;
 import com.tyron.builder.compiler.buildconfig.GenerateReleaseBuildConfigTask;
 import com.tyron.builder.compiler.dex.R8Task;
 import com.tyron.builder.compiler.firebase.GenerateFirebaseConfigTask;
+import com.tyron.builder.compiler.incremental.dex.DexLibrariesTask;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
 import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
@@ -32,6 +33,9 @@ public class AndroidAppBundleBuilder extends BuilderImpl<AndroidModule> {
     tasks.add(new CleanTask(getProject(), getModule(), getLogger()));
     tasks.add(new CheckLibrariesTask(getProject(), getModule(), getLogger()));
     tasks.add(new IncrementalAssembleLibraryTask(getProject(), getModule(), getLogger()));
+    if (!getModule().getMinifyEnabled()) {
+      tasks.add(new DexLibrariesTask(getProject(), getModule(), getLogger()));
+    }
     tasks.add(new ManifestMergeTask(getProject(), getModule(), getLogger()));
     tasks.add(new GenerateReleaseBuildConfigTask(getProject(), getModule(), getLogger()));
     tasks.add(new GenerateFirebaseConfigTask(getProject(), getModule(), getLogger()));
@@ -0,0 +1,239 @@
+package com.tyron.builder.compiler;
+
+import android.os.Debug;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Records the wall time, CPU time and peak heap of every phase ({@code prepare}, {@code run} and
+ * {@code clean}) of the tasks ran by {@link BuilderImpl}. The result can be written as a Chrome
+ * trace (open it in chrome://tracing or Perfetto) and summarized in the build log.
+ *
+ * <p>CPU time is measured on the thread that runs the phase, work a task hands off to other threads
+ * is not included.
+ */
+public class BuildProfiler {
+
+  /** The number of traces to keep in the reports directory */
+  private static final int MAX_TRACES = 10;
+
+  private static final long SAMPLE_INTERVAL_MS = 50;
+
+  public static class Span {
+    private final String mTask;
+    private final String mPhase;
+    private final long mThreadId;
+    private final String mThreadName;
+    private final long mStartNanos;
+    private final long mStartCpuNanos;
+    private long mWallNanos;
+    private long mCpuNanos;
+    private volatile long mPeakHeap;
+
+    private Span(String task, String phase) {
+      mTask = task;
+      mPhase = phase;
+      mThreadId = Thread.currentThread().getId();
+      mThreadName = Thread.currentThread().getName();
+      mStartNanos = System.nanoTime();
+      mStartCpuNanos = Debug.threadCpuTimeNanos();
+      mPeakHeap = usedHeap();
+    }
+
+    public String getTask() {
+      return mTask;
+    }
+
+    public String getPhase() {
+      return mPhase;
+    }
+
+    public long getWallNanos() {
+      return mWallNanos;
+    }
+
+    public long getCpuNanos() {
+      return mCpuNanos;
+    }
+
+    public long getPeakHeap() {
+      return mPeakHeap;
+    }
+  }
+
+  private final List<Span> mSpans = new CopyOnWriteArrayList<>();
+  private final List<Span> mActiveSpans = new CopyOnWriteArrayList<>();
+  private ScheduledExecutorService mSampler;
+  private long mBuildStartNanos;
+  private long mBuildWallNanos;
+
+  /** Starts a new build, clearing the spans of the previous one */
+  public void start() {
+    mSpans.clear();
+    mActiveSpans.clear();
+    mBuildStartNanos = System.nanoTime();
+
+    mSampler =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "BuildProfiler");
+              thread.setDaemon(true);
+              return thread;
+            });
+    mSampler.scheduleAtFixedRate(
+        this::sampleHeap, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    mBuildWallNanos = System.nanoTime() - mBuildStartNanos;
+    if (mSampler != null) {
+      mSampler.shutdownNow();
+      mSampler = null;
+    }
+  }
+
+  /** Starts measuring a phase of a task on the calling thread */
+  public Span begin(String task, String phase) {
+    Span span = new Span(task, phase);
+    mActiveSpans.add(span);
+    return span;
+  }
+
+  /** Stops measuring the given span, must be called on the thread that called {@link #begin} */
+  public void end(Span span) {
+    span.mWallNanos = System.nanoTime() - span.mStartNanos;
+    long cpu = Debug.threadCpuTimeNanos();
+    span.mCpuNanos = cpu == -1 || span.mStartCpuNanos == -1 ? -1 : cpu - span.mStartCpuNanos;
+    span.mPeakHeap = Math.max(span.mPeakHeap, usedHeap());
+    mActiveSpans.remove(span);
+    mSpans.add(span);
+  }
+
+  public List<Span> getSpans() {
+    return Collections.unmodifiableList(mSpans);
+  }
+
+  private void sampleHeap() {
+    long used = usedHeap();
+    for (Span span : mActiveSpans) {
+      if (used > span.mPeakHeap) {
+        span.mPeakHeap = used;
+      }
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * @return a table of the tasks sorted by the time they took, with the phases of each task added
+   *     together
+   */
+  public String getSummary() {
+    Map<String, long[]> totals = new LinkedHashMap<>();
+    for (Span span : mSpans) {
+      long[] total = totals.get(span.mTask);
+      if (total == null) {
+        total = new long[3];
+        totals.put(span.mTask, total);
+      }
+      total[0] += span.mWallNanos;
+      total[1] += Math.max(0, span.mCpuNanos);
+      total[2] = Math.max(total[2], span.mPeakHeap);
+    }
+
+    List<Map.Entry<String, long[]>> entries = new ArrayList<>(totals.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+    StringBuilder builder = new StringBuilder();
+    builder.append(
+        String.format(Locale.US, "%-32s %10s %10s %12s%n", "Task", "Wall", "CPU", "Peak"));
+    for (Map.Entry<String, long[]> entry : entries) {
+      long[] total = entry.getValue();
+      builder.append(
+          String.format(
+              Locale.US,
+              "%-32s %9dms %9dms %12s%n",
+              entry.getKey(),
+              TimeUnit.NANOSECONDS.toMillis(total[0]),
+              TimeUnit.NANOSECONDS.toMillis(total[1]),
+              FileUtils.byteCountToDisplaySize(total[2])));
+    }
+    builder.append(
+        String.format(Locale.US, "Total: %dms", TimeUnit.NANOSECONDS.toMillis(mBuildWallNanos)));
+    return builder.toString();
+  }
+
+  /**
+   * Writes the recorded spans in the Chrome trace event format to a new file in the given
+   * directory, deleting the oldest traces so only the most recent ones are kept.
+   *
+   * @return the written file
+   */
+  public File writeChromeTrace(File directory, String name) throws IOException {
+    JSONArray events = new JSONArray();
+    String contents;
+    try {
+      for (Span span : mSpans) {
+        JSONObject args = new JSONObject();
+        args.put("cpuMs", span.mCpuNanos == -1 ? -1 : span.mCpuNanos / 1_000_000.0);
+        args.put("peakHeapBytes", span.mPeakHeap);
+
+        JSONObject event = new JSONObject();
+        event.put("name", span.mTask + ":" + span.mPhase);
+        event.put("cat", span.mPhase);
+        event.put("ph", "X");
+        event.put("ts", (span.mStartNanos - mBuildStartNanos) / 1000);
+        event.put("dur", span.mWallNanos / 1000);
+        event.put("pid", 1);
+        event.put("tid", span.mThreadId);
+        event.put("args", args);
+        events.put(event);
+
+        JSONObject threadName = new JSONObject();
+        threadName.put("name", "thread_name");
+        threadName.put("ph", "M");
+        threadName.put("pid", 1);
+        threadName.put("tid", span.mThreadId);
+        threadName.put("args", new JSONObject().put("name", span.mThreadName));
+        events.put(threadName);
+      }
+      contents = new JSONObject().put("traceEvents", events).toString();
+    } catch (JSONException e) {
+      throw new IOException(e);
+    }
+
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+    File file = new File(directory, name + ".json");
+    FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+
+    File[] traces = directory.listFiles(c -> c.getName().endsWith(".json"));
+    if (traces != null && traces.length > MAX_TRACES) {
+      Arrays.sort(traces, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+      for (int i = 0; i < traces.length - MAX_TRACES; i++) {
+        FileUtils.deleteQuietly(traces[i]);
+      }
+    }
+    return file;
+  }
+}
@@ -8,21 +8,59 @@ import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.Module;
+import java.io.File;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class BuilderImpl<T extends Module> implements Builder<T> {
 
+  /**
+   * Runs the tasks of every build. The builds only wait for their tasks on the calling thread, so
+   * sharing one bounded pool between them can't deadlock.
+   */
+  private static final ExecutorService sTaskExecutor = createTaskExecutor();
+
+  private static ExecutorService createTaskExecutor() {
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "Build task #" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   private final Handler mMainHandler;
   private final Project mProject;
   private final T mModule;
   private final ILogger mLogger;
   private final List<Task<? super T>> mTasksRan;
   private TaskListener mTaskListener;
+  private TaskHistory mTaskHistory;
+  private final BuildProfiler mProfiler = new BuildProfiler();
   private Instant now;
 
   public BuilderImpl(Project project, T module, ILogger logger) {
@@ -59,36 +97,217 @@ public abstract class BuilderImpl<T extends Module> implements Builder<T> {
   public final void build(BuildType type) throws CompilationFailedException, IOException {
     now = Instant.now();
     mTasksRan.clear();
+    mTaskHistory = TaskHistory.read(getTaskHistoryFile());
+    mProfiler.start();
     List<Task<? super T>> tasks = getTasks(type);
-    for (int i = 0, tasksSize = tasks.size(); i < tasksSize; i++) {
-      Task<? super T> task = tasks.get(i);
-      final float current = i;
-      getLogger().info("> Task :" + getModule().getRootFile().getName() + ":" + task.getName());
-      try {
-        mMainHandler.post(
-            () ->
-                updateProgress(
-                    task.getName(),
-                    "Task started",
-                    (int) ((current / (float) tasks.size()) * 100f)));
-        task.prepare(type);
-        task.run();
-      } catch (Throwable e) {
-        if (e instanceof OutOfMemoryError) {
-          tasks.clear();
-          mTasksRan.clear();
-          throw new CompilationFailedException("Builder ran out of memory", e);
+    List<Set<Integer>> dependencies = getDependencies(tasks);
+
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(sTaskExecutor);
+    List<Future<Integer>> futures = new ArrayList<>();
+
+    boolean[] started = new boolean[tasks.size()];
+    Set<Integer> finished = new HashSet<>();
+    int running = 0;
+    TaskFailure failure = null;
+    try {
+      while (true) {
+        if (failure == null) {
+          // submit every task whose dependencies have all finished
+          for (int i = 0; i < tasks.size(); i++) {
+            if (started[i] || !finished.containsAll(dependencies.get(i))) {
+              continue;
+            }
+            started[i] = true;
+            running++;
+            final int index = i;
+            final float current = finished.size();
+            futures.add(
+                completionService.submit(
+                    () -> {
+                      runTask(tasks.get(index), type, (int) ((current / tasks.size()) * 100f));
+                      return index;
+                    }));
+          }
         }
-        task.clean();
-        mTasksRan.forEach(Task::clean);
-        throw e;
+        if (running == 0) {
+          break;
+        }
+
+        Future<Integer> future = completionService.take();
+        running--;
+        try {
+          int index = future.get();
+          finished.add(index);
+          mTasksRan.add(tasks.get(index));
+        } catch (ExecutionException e) {
+          // wait for the tasks that are still running but don't start new ones
+          TaskFailure taskFailure = (TaskFailure) e.getCause();
+          if (failure == null) {
+            failure = taskFailure;
+          } else {
+            failure.getCause().addSuppressed(taskFailure.getCause());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      mProfiler.stop();
+      throw new CompilationFailedException("Build was interrupted", e);
+    }
+
+    if (failure != null) {
+      mProfiler.stop();
+      Throwable e = failure.getCause();
+      if (e instanceof OutOfMemoryError) {
+        tasks.clear();
+        mTasksRan.clear();
+        throw new CompilationFailedException("Builder ran out of memory", e);
+      }
+      cleanTask(failure.task);
+      mTasksRan.forEach(this::cleanTask);
+      if (e instanceof CompilationFailedException) {
+        throw (CompilationFailedException) e;
       }
-      mTasksRan.add(task);
+      if (e instanceof IOException) {
+        throw (IOException) e;
+      }
+      if (e instanceof RuntimeException) {
+        throw (RuntimeException) e;
+      }
+      if (e instanceof Error) {
+        throw (Error) e;
+      }
+      throw new CompilationFailedException(e.getMessage(), e);
+    }
+    mTasksRan.forEach(this::cleanTask);
+    mProfiler.stop();
+
+    try {
+      getModule().saveCaches();
+    } catch (IOException e) {
+      getLogger().warning("Unable to save build caches: " + e.getMessage());
+    }
+    try {
+      mTaskHistory.write(getTaskHistoryFile());
+    } catch (IOException e) {
+      getLogger().warning("Unable to save task history: " + e.getMessage());
     }
-    mTasksRan.forEach(Task::clean);
 
     long seconds = TimeUnit.MILLISECONDS.toSeconds(Duration.between(now, Instant.now()).toMillis());
     getLogger().info("TIME TOOK " + seconds + "s");
+    getLogger().info(mProfiler.getSummary());
+    try {
+      File trace =
+          mProfiler.writeChromeTrace(
+              new File(getModule().getBuildDirectory(), "reports/profile"),
+              "build-" + now.toEpochMilli());
+      getLogger().debug("Build trace written to " + trace.getAbsolutePath());
+    } catch (IOException e) {
+      getLogger().warning("Unable to write build trace: " + e.getMessage());
+    }
+  }
+
+  /**
+   * @return the profiling information of the last build
+   */
+  public BuildProfiler getProfiler() {
+    return mProfiler;
+  }
+
+  private void cleanTask(Task<?> task) {
+    BuildProfiler.Span span = mProfiler.begin(task.getName(), "clean");
+    try {
+      task.clean();
+    } finally {
+      mProfiler.end(span);
+    }
+  }
+
+  private void runTask(Task<? super T> task, BuildType type, int progress) throws TaskFailure {
+    String path = ":" + getModule().getRootFile().getName() + ":" + task.getName();
+    getLogger().info("> Task " + path);
+    try {
+      mMainHandler.post(() -> updateProgress(task.getName(), "Task started", progress));
+      BuildProfiler.Span prepare = mProfiler.begin(task.getName(), "prepare");
+      try {
+        task.prepare(type);
+      } finally {
+        mProfiler.end(prepare);
+      }
+
+      List<File> inputs = task.getInputFiles();
+      List<File> outputs = task.getOutputFiles();
+      if (inputs == null || outputs == null) {
+        runProfiled(task);
+        return;
+      }
+
+      // the outputs are only written by the task, their timestamps are enough
+      String inputFingerprint = type + ":" + mTaskHistory.fingerprintContents(inputs);
+      if (mTaskHistory.isUpToDate(
+          task.getName(), inputFingerprint + ":" + TaskHistory.fingerprint(outputs))) {
+        getLogger().info("> Task " + path + " UP-TO-DATE");
+        return;
+      }
+      runProfiled(task);
+      mTaskHistory.record(
+          task.getName(), inputFingerprint + ":" + TaskHistory.fingerprint(outputs));
+    } catch (Throwable e) {
+      throw new TaskFailure(task, e);
+    }
+  }
+
+  private void runProfiled(Task<?> task) throws IOException, CompilationFailedException {
+    BuildProfiler.Span span = mProfiler.begin(task.getName(), "run");
+    try {
+      task.run();
+    } finally {
+      mProfiler.end(span);
+    }
+  }
+
+  private File getTaskHistoryFile() {
+    return new File(getModule().getBuildDirectory(), "caches/taskHistory.bin");
+  }
+
+  /**
+   * Resolves the dependencies declared by {@link Task#getDependencies()} to the indices of the
+   * tasks in the given list. A task can only depend on tasks that come before it.
+   */
+  private List<Set<Integer>> getDependencies(List<Task<? super T>> tasks) {
+    List<Set<Integer>> dependencies = new ArrayList<>(tasks.size());
+    for (int i = 0; i < tasks.size(); i++) {
+      Set<Class<?>> declared = tasks.get(i).getDependencies();
+      Set<Integer> indices = new HashSet<>();
+      for (int j = 0; j < i; j++) {
+        if (declared == null || isInstance(declared, tasks.get(j))) {
+          indices.add(j);
+        }
+      }
+      dependencies.add(indices);
+    }
+    return dependencies;
+  }
+
+  private static boolean isInstance(Set<Class<?>> classes, Task<?> task) {
+    for (Class<?> clazz : classes) {
+      if (clazz.isInstance(task)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Wraps the exception thrown by a task so the builder knows which task failed */
+  private static class TaskFailure extends Exception {
+
+    private final Task<?> task;
+
+    TaskFailure(Task<?> task, Throwable cause) {
+      super(cause);
+      this.task = task;
+    }
   }
 
   public abstract List<Task<? super T>> getTasks(BuildType type);
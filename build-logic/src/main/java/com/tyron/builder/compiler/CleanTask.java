@@ -4,7 +4,6 @@ import android.util.Log;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
 import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
-import com.tyron.builder.compiler.symbol.MergeSymbolsTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.parser.FileManager;
@@ -66,7 +65,6 @@ public class CleanTask extends Task<AndroidModule> {
 
     getModule().getCache(IncrementalJavaTask.CACHE_KEY, new Cache<>()).clear();
     getModule().getCache(IncrementalD8Task.CACHE_KEY, new Cache<>()).clear();
-    getModule().getCache(MergeSymbolsTask.CACHE_KEY, new Cache<>()).clear();
     getModule().getCache(IncrementalAssembleLibraryTask.CACHE_KEY, new Cache<>()).clear();
   }
 
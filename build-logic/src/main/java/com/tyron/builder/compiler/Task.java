@@ -1,10 +1,14 @@
 package com.tyron.builder.compiler;
 
+import androidx.annotation.Nullable;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.Module;
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 /** */
 public abstract class Task<T extends Module> {
@@ -54,6 +58,50 @@ public abstract class Task<T extends Module> {
    */
   public abstract void run() throws IOException, CompilationFailedException;
 
+  /**
+   * Returns the types of the tasks that have to finish before this task can start. Only the tasks
+   * that come before this task in {@link Builder#getTasks(BuildType)} are taken into account, so
+   * tasks that are not part of the current build are ignored.
+   *
+   * <p>Tasks that do not depend on each other may be run concurrently by {@link BuilderImpl}, so a
+   * task should only override this if it does not read anything written by, or write anything read
+   * by, the tasks it leaves out.
+   *
+   * @return the task types this task depends on, or {@code null} if this task depends on every task
+   *     before it
+   */
+  @Nullable
+  public Set<Class<?>> getDependencies() {
+    return null;
+  }
+
+  /**
+   * Returns the files and directories this task reads. Called after {@link #prepare(BuildType)}. If
+   * both this and {@link #getOutputFiles()} return a non-null list, {@link BuilderImpl} skips
+   * {@link #run()} when none of the inputs and outputs have changed since the last successful run.
+   *
+   * <p>Only tasks whose result depends solely on these files and which have no other side effects
+   * should override this.
+   *
+   * @return the inputs of this task, or {@code null} if this task should always run
+   */
+  @Nullable
+  public List<File> getInputFiles() {
+    return null;
+  }
+
+  /**
+   * Returns the files and directories this task writes. Called after {@link #run()} or, if the task
+   * is up to date, instead of it.
+   *
+   * @return the outputs of this task, or {@code null} if this task should always run
+   * @see #getInputFiles()
+   */
+  @Nullable
+  public List<File> getOutputFiles() {
+    return null;
+  }
+
   /** Called after the compilation has finished successfully on every tasks */
   protected void clean() {}
 }
@@ -0,0 +1,190 @@
+package com.tyron.builder.compiler;
+
+import com.tyron.common.util.Digests;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the fingerprint of the inputs and outputs of every task after its last successful run,
+ * so {@link BuilderImpl} can skip tasks whose inputs and outputs have not changed since.
+ *
+ * <p>The history also keeps the content digest of the input files along with their length and
+ * modification time, an input whose timestamp changed but whose contents did not keeps its
+ * fingerprint.
+ */
+public class TaskHistory {
+
+  private static final int VERSION = 2;
+
+  /** The length, last modified time and content digest of a file */
+  private static class FileState {
+    final long length;
+    final long modified;
+    final String digest;
+
+    FileState(long length, long modified, String digest) {
+      this.length = length;
+      this.modified = modified;
+      this.digest = digest;
+    }
+  }
+
+  private final Map<String, String> mFingerprints = new ConcurrentHashMap<>();
+
+  /** absolute path -> state of the file when its contents were last hashed */
+  private final Map<String, FileState> mFiles = new ConcurrentHashMap<>();
+
+  /** The files fingerprinted since the history was read, only their state is written back */
+  private final Set<String> mUsedFiles = ConcurrentHashMap.newKeySet();
+
+  public boolean isUpToDate(String task, String fingerprint) {
+    return fingerprint.equals(mFingerprints.get(task));
+  }
+
+  public void record(String task, String fingerprint) {
+    mFingerprints.put(task, fingerprint);
+  }
+
+  /**
+   * Computes a fingerprint of the given files. Directories are walked recursively, and every file
+   * contributes its path, length and last modified time. Files that do not exist are part of the
+   * fingerprint too, so a deleted output makes the task out of date.
+   */
+  public static String fingerprint(Collection<File> files) {
+    return fingerprint(files, file -> file.length() + ":" + file.lastModified());
+  }
+
+  /**
+   * Like {@link #fingerprint(Collection)}, but every file contributes the digest of its contents. A
+   * file is only hashed again when its length or last modified time differ from the last time it
+   * was hashed.
+   */
+  public String fingerprintContents(Collection<File> files) {
+    return fingerprint(files, this::getContentDigest);
+  }
+
+  private String getContentDigest(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    mUsedFiles.add(path);
+    long length = file.length();
+    long modified = file.lastModified();
+    FileState state = mFiles.get(path);
+    if (state != null && state.length == length && state.modified == modified) {
+      return state.digest;
+    }
+    MessageDigest digest = Digests.newDigest(Digests.SHA1);
+    Digests.update(digest, file);
+    state = new FileState(length, modified, Digests.toHex(digest.digest()));
+    mFiles.put(path, state);
+    return state.digest;
+  }
+
+  private interface FileMetadata {
+    String get(File file) throws IOException;
+  }
+
+  private static String fingerprint(Collection<File> files, FileMetadata metadata) {
+    MessageDigest digest = Digests.newDigest(Digests.SHA1);
+    for (File file : files) {
+      update(digest, file, metadata);
+    }
+    return Digests.toHex(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, File file, FileMetadata metadata) {
+    digest.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        Arrays.sort(children);
+        for (File child : children) {
+          update(digest, child, metadata);
+        }
+      }
+      return;
+    }
+    String value;
+    try {
+      value = file.exists() ? metadata.get(file) : null;
+    } catch (IOException e) {
+      value = null;
+    }
+    if (value != null) {
+      digest.update((":" + value + ";").getBytes(StandardCharsets.UTF_8));
+    } else {
+      digest.update((byte) 0);
+    }
+  }
+
+  /**
+   * Reads the history previously written with {@link #write(File)}, returns an empty history if the
+   * file does not exist or cannot be read.
+   */
+  public static TaskHistory read(File file) {
+    TaskHistory history = new TaskHistory();
+    if (!file.isFile()) {
+      return history;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return history;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        history.mFingerprints.put(in.readUTF(), in.readUTF());
+      }
+      int files = in.readInt();
+      for (int i = 0; i < files; i++) {
+        String path = in.readUTF();
+        history.mFiles.put(path, new FileState(in.readLong(), in.readLong(), in.readUTF()));
+      }
+      return history;
+    } catch (IOException e) {
+      return new TaskHistory();
+    }
+  }
+
+  /** Writes this history to the given file, replacing it atomically. */
+  public void write(File file) throws IOException {
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          out.writeInt(mFingerprints.size());
+          for (Map.Entry<String, String> entry : mFingerprints.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+          }
+          // the files that no task reads anymore are dropped
+          Map<String, FileState> files = new HashMap<>();
+          for (String path : mUsedFiles) {
+            FileState state = mFiles.get(path);
+            if (state != null) {
+              files.put(path, state);
+            }
+          }
+          out.writeInt(files.size());
+          for (Map.Entry<String, FileState> entry : files.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().length);
+            out.writeLong(entry.getValue().modified);
+            out.writeUTF(entry.getValue().digest);
+          }
+        });
+  }
+}
@@ -15,6 +15,8 @@ import com.tyron.builder.project.api.AndroidModule;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class PackageTask extends Task<AndroidModule> {
@@ -67,6 +69,33 @@ public class PackageTask extends Task<AndroidModule> {
     Log.d(getName().toString(), "Packaging APK.");
   }
 
+  @Override
+  public List<File> getInputFiles() {
+    List<File> inputs = new ArrayList<>();
+    inputs.add(mDexFile);
+    inputs.add(mGeneratedRes);
+    inputs.addAll(mDexFiles);
+    for (File library : mLibraries) {
+      inputs.add(library);
+      File parent = library.getParentFile();
+      if (parent != null) {
+        inputs.add(new File(parent, "jni"));
+        File[] dexFiles = parent.listFiles(c -> c.getName().endsWith(".dex"));
+        if (dexFiles != null) {
+          inputs.addAll(Arrays.asList(dexFiles));
+        }
+      }
+    }
+    inputs.add(getModule().getNativeLibrariesDirectory());
+    inputs.add(getModule().getResourcesDir());
+    return inputs;
+  }
+
+  @Override
+  public List<File> getOutputFiles() {
+    return Collections.singletonList(mApk);
+  }
+
   @Override
   public void run() throws IOException, CompilationFailedException {
 
@@ -9,6 +9,8 @@ import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class SignTask extends Task<AndroidModule> {
 
@@ -40,6 +42,16 @@ public class SignTask extends Task<AndroidModule> {
     Log.d(getName().toString(), "Signing APK.");
   }
 
+  @Override
+  public List<File> getInputFiles() {
+    return Collections.singletonList(mInputApk);
+  }
+
+  @Override
+  public List<File> getOutputFiles() {
+    return Collections.singletonList(mOutputApk);
+  }
+
   @Override
   public void run() throws IOException, CompilationFailedException {
     /* ApkSigner signer =
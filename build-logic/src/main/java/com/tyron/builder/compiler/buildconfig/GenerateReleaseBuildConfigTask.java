@@ -2,6 +2,7 @@ package com.tyron.builder.compiler.buildconfig;
 
 import android.util.Log;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
@@ -10,6 +11,9 @@ import com.tyron.builder.project.api.AndroidModule;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 
 public class GenerateReleaseBuildConfigTask extends Task<AndroidModule> {
@@ -25,6 +29,12 @@ public class GenerateReleaseBuildConfigTask extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // only reads the build.gradle file and writes to build/gen
+    return new HashSet<>(Arrays.asList(CleanTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     getModule().getJavaFiles();
@@ -6,7 +6,13 @@ import com.android.tools.r8.R8;
 import com.android.tools.r8.R8Command;
 import com.android.tools.r8.origin.Origin;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
+import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
@@ -17,7 +23,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class R8Task extends Task<AndroidModule> {
@@ -33,6 +41,19 @@ public class R8Task extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // needs the compiled classes and the proguard rules generated by aapt2
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class,
+            CheckLibrariesTask.class,
+            IncrementalAssembleLibraryTask.class,
+            IncrementalAapt2Task.class,
+            IncrementalKotlinCompiler.class,
+            IncrementalJavaTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {}
 
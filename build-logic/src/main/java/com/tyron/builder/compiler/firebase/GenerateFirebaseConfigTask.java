@@ -3,6 +3,7 @@ package com.tyron.builder.compiler.firebase;
 import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
@@ -13,9 +14,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -55,6 +59,12 @@ public class GenerateFirebaseConfigTask extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // only reads google-services.json and writes its own values resource
+    return new HashSet<>(Arrays.asList(CleanTask.class));
+  }
+
   private File mConfigFile;
 
   @Override
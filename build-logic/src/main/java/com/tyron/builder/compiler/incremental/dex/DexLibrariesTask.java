@@ -0,0 +1,130 @@
+package com.tyron.builder.compiler.incremental.dex;
+
+import android.util.Log;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.OutputMode;
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
+import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.dex.DexDiagnosticHandler;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
+import com.tyron.builder.exception.CompilationFailedException;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.model.Library;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.AndroidModule;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Dexes the libraries of the project that have not been dexed yet, the dex file of a library is
+ * written next to its jar. It only needs the libraries, so it runs while the resources and the
+ * sources of the project are compiled and {@link IncrementalD8Task} only dexes the classes of the
+ * project.
+ */
+public class DexLibrariesTask extends Task<AndroidModule> {
+
+  private static final String TAG = "dexLibraries";
+
+  private DiagnosticsHandler mDiagnosticsHandler;
+
+  public DexLibrariesTask(Project project, AndroidModule module, ILogger logger) {
+    super(project, module, logger);
+  }
+
+  @Override
+  public String getName() {
+    return TAG;
+  }
+
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // only reads the jars of the libraries
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class, CheckLibrariesTask.class, IncrementalAssembleLibraryTask.class));
+  }
+
+  @Override
+  public void prepare(BuildType type) throws IOException {
+    mDiagnosticsHandler = new DexDiagnosticHandler(getLogger(), getModule());
+  }
+
+  @Override
+  public void run() throws IOException, CompilationFailedException {
+    try {
+      ensureDexedLibraries();
+    } catch (com.android.tools.r8.CompilationFailedException e) {
+      throw new CompilationFailedException(e);
+    }
+  }
+
+  /**
+   * Ensures that all libraries of the project has been dex-ed
+   *
+   * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
+   */
+  private void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
+    List<File> libraries = getModule().getLibraries();
+
+    for (File lib : libraries) {
+      File parentFile = lib.getParentFile();
+      if (parentFile == null) {
+        continue;
+      }
+      File[] libFiles = lib.getParentFile().listFiles();
+      if (libFiles == null) {
+        if (!lib.delete()) {
+          Log.w(TAG, "Failed to delete " + lib.getAbsolutePath());
+        }
+      } else {
+        File dex = new File(lib.getParentFile(), "classes.dex");
+        if (dex.exists()) {
+          continue;
+        }
+        if (lib.exists()) {
+          String message;
+          Library library = getModule().getLibrary(parentFile.getName());
+          if (library != null) {
+            boolean declared = library.getDeclaration() != null;
+            message =
+                "> DexingWithClasspathTransform "
+                    + (declared ? library.getDeclaration() : library.getSourceFile().getName());
+          } else {
+            message = "> DexingWithClasspathTransform " + parentFile.getName();
+          }
+          getLogger().debug(message);
+          D8Command command =
+              D8Command.builder(mDiagnosticsHandler)
+                  .addLibraryFiles(getLibraryFiles())
+                  .addClasspathFiles(
+                      libraries.stream().map(File::toPath).collect(Collectors.toList()))
+                  .addProgramFiles(lib.toPath())
+                  .setMode(CompilationMode.RELEASE)
+                  .setMinApiLevel(getModule().getMinSdk())
+                  .setOutput(lib.getParentFile().toPath(), OutputMode.DexIndexed)
+                  .build();
+          D8.run(command);
+        }
+      }
+    }
+  }
+
+  private List<Path> getLibraryFiles() {
+    List<Path> path = new ArrayList<>();
+    path.add(getModule().getLambdaStubsJarFile().toPath());
+    path.add(getModule().getBootstrapJarFile().toPath());
+    return path;
+  }
+}
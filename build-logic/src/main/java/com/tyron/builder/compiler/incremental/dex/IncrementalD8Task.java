@@ -1,18 +1,21 @@
 package com.tyron.builder.compiler.incremental.dex;
 
-import android.util.Log;
 import com.android.tools.r8.CompilationMode;
 import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
 import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.OutputMode;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.dex.D8Task;
 import com.tyron.builder.compiler.dex.DexDiagnosticHandler;
+import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
+import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
-import com.tyron.builder.model.Library;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.cache.CacheHolder;
@@ -25,9 +28,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.io.FileUtils;
 
+/**
+ * Dexes the classes of the project and merges them with the dex files of the libraries written by
+ * {@link DexLibrariesTask}.
+ */
 public class IncrementalD8Task extends Task<AndroidModule> {
 
   private static final String TAG = "mergeDexWithD8";
@@ -53,6 +61,18 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class,
+            CheckLibrariesTask.class,
+            IncrementalAssembleLibraryTask.class,
+            IncrementalKotlinCompiler.class,
+            IncrementalJavaTask.class,
+            DexLibrariesTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     mBuildType = type;
@@ -102,7 +122,6 @@ public class IncrementalD8Task extends Task<AndroidModule> {
 
   private void doRelease() throws CompilationFailedException {
     try {
-      ensureDexedLibraries();
       D8Command command =
           D8Command.builder(diagnosticsHandler)
               .addClasspathFiles(
@@ -129,8 +148,6 @@ public class IncrementalD8Task extends Task<AndroidModule> {
 
   private void doDebug() throws CompilationFailedException {
     try {
-      ensureDexedLibraries();
-
       D8Command command =
           D8Command.builder(diagnosticsHandler)
               .addClasspathFiles(
@@ -213,57 +230,6 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     return file1;
   }
 
-  /**
-   * Ensures that all libraries of the project has been dex-ed
-   *
-   * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
-   */
-  protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
-    List<File> libraries = getModule().getLibraries();
-
-    for (File lib : libraries) {
-      File parentFile = lib.getParentFile();
-      if (parentFile == null) {
-        continue;
-      }
-      File[] libFiles = lib.getParentFile().listFiles();
-      if (libFiles == null) {
-        if (!lib.delete()) {
-          Log.w(TAG, "Failed to delete " + lib.getAbsolutePath());
-        }
-      } else {
-        File dex = new File(lib.getParentFile(), "classes.dex");
-        if (dex.exists()) {
-          continue;
-        }
-        if (lib.exists()) {
-          String message;
-          Library library = getModule().getLibrary(parentFile.getName());
-          if (library != null) {
-            boolean declared = library.getDeclaration() != null;
-            message =
-                "> DexingWithClasspathTransform "
-                    + (declared ? library.getDeclaration() : library.getSourceFile().getName());
-          } else {
-            message = "> DexingWithClasspathTransform " + parentFile.getName();
-          }
-          getLogger().debug(message);
-          D8Command command =
-              D8Command.builder(diagnosticsHandler)
-                  .addLibraryFiles(getLibraryFiles())
-                  .addClasspathFiles(
-                      libraries.stream().map(File::toPath).collect(Collectors.toList()))
-                  .addProgramFiles(lib.toPath())
-                  .setMode(CompilationMode.RELEASE)
-                  .setMinApiLevel(getModule().getMinSdk())
-                  .setOutput(lib.getParentFile().toPath(), OutputMode.DexIndexed)
-                  .build();
-          D8.run(command);
-        }
-      }
-    }
-  }
-
   private List<Path> getLibraryFiles() {
     List<Path> path = new ArrayList<>();
     path.add(getModule().getLambdaStubsJarFile().toPath());
@@ -0,0 +1,183 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.tyron.common.util.Digests;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+/**
+ * Scans an attributed compilation unit and collects the classes it references and an ABI
+ * fingerprint for each class it declares.
+ */
+class DependencyScanner extends TreePathScanner<Void, Void> {
+
+  private final Trees mTrees;
+  private final Elements mElements;
+
+  private final Set<String> mReferences = new HashSet<>();
+  private final Set<String> mVisitedSupertypes = new HashSet<>();
+  private final Map<String, String> mAbi = new HashMap<>();
+
+  DependencyScanner(Trees trees, Elements elements) {
+    mTrees = trees;
+    mElements = elements;
+  }
+
+  public Set<String> getReferences() {
+    return mReferences;
+  }
+
+  public Map<String, String> getAbi() {
+    return mAbi;
+  }
+
+  @Override
+  public Void visitClass(ClassTree node, Void unused) {
+    Element element = mTrees.getElement(getCurrentPath());
+    if (element instanceof TypeElement) {
+      TypeElement type = (TypeElement) element;
+      NestingKind nesting = type.getNestingKind();
+      if (nesting == NestingKind.TOP_LEVEL || nesting == NestingKind.MEMBER) {
+        mAbi.put(mElements.getBinaryName(type).toString(), fingerprint(type));
+      }
+      // members inherited from any of the supertypes are visible through this class,
+      // so a change to any of them may affect this compilation unit
+      addSupertypes(type.getSuperclass());
+      for (TypeMirror mirror : type.getInterfaces()) {
+        addSupertypes(mirror);
+      }
+    }
+    return super.visitClass(node, unused);
+  }
+
+  @Override
+  public Void visitIdentifier(IdentifierTree node, Void unused) {
+    addReference(getCurrentPath());
+    return super.visitIdentifier(node, unused);
+  }
+
+  @Override
+  public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+    addReference(getCurrentPath());
+    return super.visitMemberSelect(node, unused);
+  }
+
+  @Override
+  public Void visitLambdaExpression(LambdaExpressionTree node, Void unused) {
+    // the functional interface a lambda implements is usually not named in the source
+    addSupertypes(mTrees.getTypeMirror(getCurrentPath()));
+    return super.visitLambdaExpression(node, unused);
+  }
+
+  @Override
+  public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+    addSupertypes(mTrees.getTypeMirror(getCurrentPath()));
+    // the class of the referenced method, which may not be named either, e.g. in getFoo()::bar
+    addReference(getCurrentPath());
+    return super.visitMemberReference(node, unused);
+  }
+
+  private void addReference(TreePath path) {
+    Element element = mTrees.getElement(path);
+    while (element != null && !(element instanceof TypeElement)) {
+      if (element.getKind() == ElementKind.PACKAGE) {
+        return;
+      }
+      element = element.getEnclosingElement();
+    }
+    if (element != null) {
+      mReferences.add(mElements.getBinaryName((TypeElement) element).toString());
+    }
+  }
+
+  private void addSupertypes(TypeMirror mirror) {
+    if (mirror == null || mirror.getKind() != TypeKind.DECLARED) {
+      return;
+    }
+    TypeElement type = (TypeElement) ((DeclaredType) mirror).asElement();
+    String name = mElements.getBinaryName(type).toString();
+    mReferences.add(name);
+    // the class may already be referenced by name, but its supertypes not yet
+    if (!mVisitedSupertypes.add(name)) {
+      return;
+    }
+    addSupertypes(type.getSuperclass());
+    for (TypeMirror superInterface : type.getInterfaces()) {
+      addSupertypes(superInterface);
+    }
+  }
+
+  /**
+   * Computes a digest of everything about the given class that other compilation units can observe:
+   * its modifiers, type parameters, supertypes and the signatures and constant values of its
+   * non-private members. Nested classes get their own fingerprint.
+   */
+  static String fingerprint(TypeElement type) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(type.getKind()).append(' ').append(type.getModifiers()).append(' ');
+    for (TypeParameterElement parameter : type.getTypeParameters()) {
+      builder.append(parameter.getSimpleName()).append(parameter.getBounds()).append(',');
+    }
+    builder.append(" extends ").append(type.getSuperclass());
+    builder.append(" implements ").append(type.getInterfaces());
+    builder.append(' ').append(type.getAnnotationMirrors()).append('\n');
+
+    List<String> members = new ArrayList<>();
+    for (Element member : type.getEnclosedElements()) {
+      if (member.getModifiers().contains(Modifier.PRIVATE)) {
+        continue;
+      }
+      StringBuilder signature = new StringBuilder();
+      signature
+          .append(member.getKind())
+          .append(' ')
+          .append(member.getModifiers())
+          .append(' ')
+          .append(member.getSimpleName());
+      if (member instanceof VariableElement) {
+        signature.append(' ').append(member.asType());
+        Object constant = ((VariableElement) member).getConstantValue();
+        if (constant != null) {
+          signature.append(" = ").append(constant);
+        }
+      } else if (member instanceof ExecutableElement) {
+        ExecutableElement method = (ExecutableElement) member;
+        signature.append(' ').append(method.asType());
+        signature.append(" throws ").append(method.getThrownTypes());
+        if (method.getDefaultValue() != null) {
+          signature.append(" default ").append(method.getDefaultValue());
+        }
+      }
+      members.add(signature.toString());
+    }
+    Collections.sort(members);
+    for (String member : members) {
+      builder.append(member).append('\n');
+    }
+    return Digests.digest(builder.toString(), Digests.SHA1);
+  }
+}
@@ -2,11 +2,23 @@ package com.tyron.builder.compiler.incremental.java;
 
 import android.util.Log;
 import androidx.annotation.VisibleForTesting;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.JavacTask;
+import com.sun.source.util.Trees;
 import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.buildconfig.GenerateDebugBuildConfigTask;
+import com.tyron.builder.compiler.buildconfig.GenerateReleaseBuildConfigTask;
+import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
+import com.tyron.builder.compiler.log.InjectLoggerTask;
+import com.tyron.builder.compiler.symbol.MergeSymbolsTask;
+import com.tyron.builder.compiler.viewbinding.GenerateViewBindingTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
@@ -20,6 +32,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,6 +58,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
   private List<File> mJavaFiles;
   private List<File> mFilesToCompile;
   private Cache<String, List<File>> mClassCache;
+  private JavaDependencyGraph mDependencyGraph;
 
   public IncrementalJavaTask(Project project, JavaModule module, ILogger logger) {
     super(project, module, logger);
@@ -55,6 +69,23 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // needs every generated source and the classes compiled by kotlin
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class,
+            CheckLibrariesTask.class,
+            IncrementalAssembleLibraryTask.class,
+            GenerateDebugBuildConfigTask.class,
+            GenerateReleaseBuildConfigTask.class,
+            InjectLoggerTask.class,
+            IncrementalAapt2Task.class,
+            GenerateViewBindingTask.class,
+            MergeSymbolsTask.class,
+            IncrementalKotlinCompiler.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     mOutputDir = new File(getModule().getBuildDirectory(), "bin/java/classes");
@@ -72,6 +103,13 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     mJavaFiles.addAll(getJavaFiles(new File(getModule().getBuildDirectory(), "gen")));
     mJavaFiles.addAll(getJavaFiles(new File(getModule().getBuildDirectory(), "view_binding")));
 
+    mDependencyGraph = JavaDependencyGraph.read(getDependencyGraphFile());
+    // without the graph the dependents of a changed class are not known
+    boolean compileAll = mDependencyGraph == null;
+    if (compileAll) {
+      mDependencyGraph = new JavaDependencyGraph();
+    }
+
     for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
       if (!mJavaFiles.contains(key.file.toFile())) {
         File file = mClassCache.get(key.file, "class").iterator().next();
@@ -80,15 +118,36 @@ public class IncrementalJavaTask extends Task<JavaModule> {
       }
     }
 
+    Set<String> removedClasses = new HashSet<>();
+    for (File file : mDependencyGraph.getSourceFiles()) {
+      if (!mJavaFiles.contains(file)) {
+        removedClasses.addAll(mDependencyGraph.remove(file));
+      }
+    }
+
     for (File file : mJavaFiles) {
       Path filePath = file.toPath();
-      if (mClassCache.needs(filePath, "class")) {
+      if (compileAll || mClassCache.needs(filePath, "class")) {
+        mFilesToCompile.add(file);
+      }
+    }
+
+    // files that used a class from a deleted source file have to be recompiled as well
+    for (File file : mDependencyGraph.getDependents(removedClasses)) {
+      if (mJavaFiles.contains(file) && !mFilesToCompile.contains(file)) {
         mFilesToCompile.add(file);
       }
     }
   }
 
+  private File getDependencyGraphFile() {
+    return new File(getModule().getBuildDirectory(), "caches/javaDependencies.bin");
+  }
+
   private boolean mHasErrors = false;
+  private DiagnosticListener<JavaFileObject> mDiagnosticListener;
+  private List<File> mCompileClassPath;
+  private List<File> mRuntimeClassPath;
 
   @Override
   public void run() throws IOException, CompilationFailedException {
@@ -98,7 +157,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
 
     Log.d(TAG, "Compiling java files");
 
-    DiagnosticListener<JavaFileObject> diagnosticCollector =
+    mDiagnosticListener =
         diagnostic -> {
           switch (diagnostic.getKind()) {
             case ERROR:
@@ -110,12 +169,6 @@ public class IncrementalJavaTask extends Task<JavaModule> {
           }
         };
 
-    JavacTool tool = JavacTool.create();
-
-    JavacFileManager standardJavaFileManager =
-        tool.getStandardFileManager(
-            diagnosticCollector, Locale.getDefault(), Charset.defaultCharset());
-    standardJavaFileManager.setSymbolFileEnabled(false);
     File javaDir = new File(getModule().getRootFile() + "/src/main/java");
     File buildGenDir = new File(getModule().getRootFile() + "/build/gen");
     File viewBindingDir = new File(getModule().getRootFile() + "/build/view_binding");
@@ -167,18 +220,73 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     runtimeClassPath.addAll(getParentJavaFiles(buildGenDir));
     runtimeClassPath.addAll(getParentJavaFiles(viewBindingDir));
 
+    mCompileClassPath = compileClassPath;
+    mRuntimeClassPath = runtimeClassPath;
+
+    // Compile the modified files first, then keep recompiling the files that depend on a class
+    // whose ABI has changed until nothing changes anymore.
+    Set<File> compiled = new HashSet<>();
+    boolean success = false;
+    try {
+      List<File> filesToCompile = mFilesToCompile;
+      while (!filesToCompile.isEmpty() && !mHasErrors) {
+        compiled.addAll(filesToCompile);
+        Set<String> changedClasses = compile(filesToCompile);
+
+        filesToCompile = new ArrayList<>();
+        for (File dependent : mDependencyGraph.getDependents(changedClasses)) {
+          if (mJavaFiles.contains(dependent) && !compiled.contains(dependent)) {
+            filesToCompile.add(dependent);
+          }
+        }
+        if (!filesToCompile.isEmpty()) {
+          Log.d(TAG, "Recompiling " + filesToCompile.size() + " dependent files");
+        }
+      }
+      success = !mHasErrors;
+    } finally {
+      mFilesToCompile = new ArrayList<>(compiled);
+      if (!success) {
+        // The dependents of the files compiled so far may not have been compiled against their
+        // new classes, forget all of them so the next build compiles them again.
+        for (File file : compiled) {
+          mClassCache.remove(file.toPath(), "class", "dex");
+        }
+      }
+    }
+
+    if (mHasErrors) {
+      throw new CompilationFailedException("Compilation failed, check logs for more details");
+    }
+
+    // only persist the graph once the recorded ABI matches the class files on disk
+    mDependencyGraph.write(getDependencyGraphFile());
+  }
+
+  /**
+   * Compiles the given files and records their dependencies in the dependency graph.
+   *
+   * @return the binary names of the classes whose ABI has changed
+   */
+  private Set<String> compile(List<File> files) throws CompilationFailedException {
+    JavacTool tool = JavacTool.create();
+
+    JavacFileManager standardJavaFileManager =
+        tool.getStandardFileManager(
+            mDiagnosticListener, Locale.getDefault(), Charset.defaultCharset());
+    standardJavaFileManager.setSymbolFileEnabled(false);
     try {
       standardJavaFileManager.setLocation(
           StandardLocation.CLASS_OUTPUT, Collections.singletonList(mOutputDir));
-      standardJavaFileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, runtimeClassPath);
-      standardJavaFileManager.setLocation(StandardLocation.CLASS_PATH, compileClassPath);
+      standardJavaFileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, mRuntimeClassPath);
+      standardJavaFileManager.setLocation(StandardLocation.CLASS_PATH, mCompileClassPath);
       standardJavaFileManager.setLocation(StandardLocation.SOURCE_PATH, mJavaFiles);
     } catch (IOException e) {
       throw new CompilationFailedException(e);
     }
 
     List<JavaFileObject> javaFileObjects = new ArrayList<>();
-    for (File file : mFilesToCompile) {
+    for (File file : files) {
       javaFileObjects.add(
           new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
             @Override
@@ -205,13 +313,23 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     options.add("-Xlint:static");
     JavacTask task =
         tool.getTask(
-            null, standardJavaFileManager, diagnosticCollector, options, null, javaFileObjects);
+            null, standardJavaFileManager, mDiagnosticListener, options, null, javaFileObjects);
 
     HashMap<String, List<File>> compiledFiles = new HashMap<>();
+    Set<String> changedClasses = new HashSet<>();
     try {
 
-      task.parse();
+      Iterable<? extends CompilationUnitTree> units = task.parse();
       task.analyze();
+
+      Trees trees = Trees.instance(task);
+      for (CompilationUnitTree unit : units) {
+        DependencyScanner scanner = new DependencyScanner(trees, task.getElements());
+        scanner.scan(unit, null);
+        File sourceFile = new File(unit.getSourceFile().toUri());
+        changedClasses.addAll(
+            mDependencyGraph.update(sourceFile, scanner.getAbi(), scanner.getReferences()));
+      }
       Iterable<? extends JavaFileObject> generate = task.generate();
       for (JavaFileObject fileObject : generate) {
         String path = fileObject.getName();
@@ -271,10 +389,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     } catch (Exception e) {
       throw new CompilationFailedException(e);
     }
-
-    if (mHasErrors) {
-      throw new CompilationFailedException("Compilation failed, check logs for more details");
-    }
+    return changedClasses;
   }
 
   @VisibleForTesting
@@ -0,0 +1,185 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import androidx.annotation.Nullable;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of which classes each source file declares and references, along with an ABI
+ * fingerprint of every declared class. Used by {@link IncrementalJavaTask} to recompile the
+ * dependents of a source file only when the public signature of one of its classes has changed.
+ */
+public class JavaDependencyGraph {
+
+  private static final int VERSION = 1;
+
+  /** source file path -> binary names of the classes it references */
+  private final Map<String, Set<String>> mReferences = new HashMap<>();
+
+  /** source file path -> binary names of the classes it declares */
+  private final Map<String, Set<String>> mDeclarations = new HashMap<>();
+
+  /** binary class name -> ABI fingerprint */
+  private final Map<String, String> mAbi = new HashMap<>();
+
+  /**
+   * Replaces the information recorded for the given source file.
+   *
+   * @param abi the declared classes of the source file mapped to their ABI fingerprint
+   * @return the binary names of the classes whose ABI has changed, including classes that the
+   *     source file no longer declares
+   */
+  public Set<String> update(File source, Map<String, String> abi, Set<String> references) {
+    String path = source.getAbsolutePath();
+    Set<String> changed = new HashSet<>();
+
+    Set<String> oldDeclarations = mDeclarations.get(path);
+    if (oldDeclarations != null) {
+      for (String className : oldDeclarations) {
+        if (!abi.containsKey(className)) {
+          mAbi.remove(className);
+          changed.add(className);
+        }
+      }
+    }
+    for (Map.Entry<String, String> entry : abi.entrySet()) {
+      String old = mAbi.put(entry.getKey(), entry.getValue());
+      if (!entry.getValue().equals(old)) {
+        changed.add(entry.getKey());
+      }
+    }
+
+    mDeclarations.put(path, new HashSet<>(abi.keySet()));
+    mReferences.put(path, new HashSet<>(references));
+    return changed;
+  }
+
+  /**
+   * Removes the given source file from the graph.
+   *
+   * @return the binary names of the classes that were declared by the source file
+   */
+  public Set<String> remove(File source) {
+    String path = source.getAbsolutePath();
+    mReferences.remove(path);
+    Set<String> declarations = mDeclarations.remove(path);
+    if (declarations == null) {
+      return Collections.emptySet();
+    }
+    for (String className : declarations) {
+      mAbi.remove(className);
+    }
+    return declarations;
+  }
+
+  /**
+   * @return the source files that reference any of the given classes
+   */
+  public Set<File> getDependents(Collection<String> classNames) {
+    if (classNames.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<File> dependents = new HashSet<>();
+    for (Map.Entry<String, Set<String>> entry : mReferences.entrySet()) {
+      for (String className : classNames) {
+        if (entry.getValue().contains(className)) {
+          dependents.add(new File(entry.getKey()));
+          break;
+        }
+      }
+    }
+    return dependents;
+  }
+
+  public Set<File> getSourceFiles() {
+    Set<File> files = new HashSet<>();
+    for (String path : mDeclarations.keySet()) {
+      files.add(new File(path));
+    }
+    return files;
+  }
+
+  /**
+   * Reads a graph previously written with {@link #write(File)}.
+   *
+   * @return the graph, or null if the file does not exist, cannot be read or was written by another
+   *     version. The classes compiled without it are not known, so everything has to be compiled
+   *     again.
+   */
+  @Nullable
+  public static JavaDependencyGraph read(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    JavaDependencyGraph graph = new JavaDependencyGraph();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return null;
+      }
+      readSetMap(in, graph.mReferences);
+      readSetMap(in, graph.mDeclarations);
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        graph.mAbi.put(in.readUTF(), in.readUTF());
+      }
+      return graph;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Writes this graph to the given file, replacing it atomically. */
+  public void write(File file) throws IOException {
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          writeSetMap(out, mReferences);
+          writeSetMap(out, mDeclarations);
+          out.writeInt(mAbi.size());
+          for (Map.Entry<String, String> entry : mAbi.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+          }
+        });
+  }
+
+  private static void readSetMap(DataInputStream in, Map<String, Set<String>> map)
+      throws IOException {
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      String key = in.readUTF();
+      int count = in.readInt();
+      Set<String> values = new HashSet<>(count);
+      for (int j = 0; j < count; j++) {
+        values.add(in.readUTF());
+      }
+      map.put(key, values);
+    }
+  }
+
+  private static void writeSetMap(DataOutputStream out, Map<String, Set<String>> map)
+      throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (String value : entry.getValue()) {
+        out.writeUTF(value);
+      }
+    }
+  }
+}
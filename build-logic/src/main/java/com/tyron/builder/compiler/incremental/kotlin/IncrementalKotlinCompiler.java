@@ -5,7 +5,16 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import com.google.common.base.Throwables;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.buildconfig.GenerateDebugBuildConfigTask;
+import com.tyron.builder.compiler.buildconfig.GenerateReleaseBuildConfigTask;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
+import com.tyron.builder.compiler.log.InjectLoggerTask;
+import com.tyron.builder.compiler.symbol.MergeSymbolsTask;
+import com.tyron.builder.compiler.viewbinding.GenerateViewBindingTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
@@ -56,6 +65,22 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // needs every generated source, the R classes included
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class,
+            CheckLibrariesTask.class,
+            IncrementalAssembleLibraryTask.class,
+            GenerateDebugBuildConfigTask.class,
+            GenerateReleaseBuildConfigTask.class,
+            InjectLoggerTask.class,
+            IncrementalAapt2Task.class,
+            GenerateViewBindingTask.class,
+            MergeSymbolsTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     mFilesToCompile = new ArrayList<>();
@@ -3,7 +3,14 @@ package com.tyron.builder.compiler.incremental.resource;
 import android.util.Log;
 import com.android.tools.aapt2.Aapt2Jni;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.TaskHistory;
+import com.tyron.builder.compiler.firebase.GenerateFirebaseConfigTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
+import com.tyron.builder.compiler.log.InjectLoggerTask;
+import com.tyron.builder.compiler.manifest.ManifestMergeTask;
+import com.tyron.builder.crashlytics.CrashlyticsTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.log.LogUtils;
@@ -18,8 +25,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -31,6 +45,9 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
 
   private final boolean mGenerateProtoFormat;
 
+  private LibraryResourceCache mLibraryCache;
+  private ResourceDigests mDigests;
+
   public IncrementalAapt2Task(
       Project project, AndroidModule module, ILogger logger, boolean generateProtoFormat) {
     super(project, module, logger);
@@ -42,19 +59,107 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // links against the merged manifest and the resources of every library,
+    // including the values generated by the firebase and crashlytics tasks
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class,
+            CheckLibrariesTask.class,
+            IncrementalAssembleLibraryTask.class,
+            ManifestMergeTask.class,
+            InjectLoggerTask.class,
+            GenerateFirebaseConfigTask.class,
+            CrashlyticsTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {}
 
   public void run() throws IOException, CompilationFailedException {
-    Map<String, List<File>> filesToCompile = getFiles(getModule(), getOutputDirectory(getModule()));
-    List<File> librariesToCompile = getLibraries();
+    File cacheFile = new File(getModule().getBuildDirectory(), "caches/aapt2-libraries.bin");
+    mLibraryCache = LibraryResourceCache.read(cacheFile);
+
+    File digestsFile = ResourceDigests.getFile(getModule());
+    mDigests = ResourceDigests.read(digestsFile);
+    try {
+      Map<String, List<File>> filesToCompile =
+          getFiles(getModule(), getOutputDirectory(getModule()), mDigests);
+      List<File> librariesToCompile = getLibraries();
+
+      compileProject(filesToCompile);
+      try {
+        compileLibraries(librariesToCompile);
+      } finally {
+        // keep the libraries that did compile even if another one failed
+        mLibraryCache.write(cacheFile);
+      }
 
-    compileProject(filesToCompile);
-    compileLibraries(librariesToCompile);
-    link();
+      String linkFingerprint = getLinkFingerprint();
+      if (linkFingerprint.equals(mDigests.getLinkFingerprint())
+          && getLinkOutputs().stream().allMatch(File::exists)) {
+        Log.d(TAG, "Resources are up to date, skipping link");
+      } else {
+        // forget the last link in case this one fails midway
+        mDigests.setLinkFingerprint("");
+        link();
+        mDigests.setLinkFingerprint(linkFingerprint);
+      }
+    } finally {
+      mDigests.write(digestsFile);
+    }
     updateJavaFiles();
   }
 
+  /**
+   * Returns a fingerprint of everything the link depends on. The compiled files are compared by
+   * their size and modification time since they are only written when their sources change, the
+   * merged manifest is compared by its contents since it is written on every merge.
+   */
+  private String getLinkFingerprint() throws IOException {
+    List<File> inputs = new ArrayList<>();
+    inputs.add(getModule().getBootstrapJarFile());
+    inputs.add(new File(getOutputPath(), "compiled"));
+    File[] libraryResources = getOutputPath().listFiles(c -> c.getName().endsWith(".zip"));
+    if (libraryResources != null) {
+      Arrays.sort(libraryResources);
+      inputs.addAll(Arrays.asList(libraryResources));
+    }
+    for (File library : getModule().getLibraries()) {
+      File parent = library.getParentFile();
+      if (parent != null) {
+        inputs.add(new File(parent, "assets"));
+      }
+    }
+    inputs.add(getModule().getAssetsDirectory());
+
+    File mergedManifest = new File(getModule().getBuildDirectory(), "bin/AndroidManifest.xml");
+    String manifestDigest = mergedManifest.exists() ? ResourceDigests.digest(mergedManifest) : "";
+    return TaskHistory.fingerprint(inputs)
+        + ":"
+        + manifestDigest
+        + ":"
+        + getModule().getMinSdk()
+        + ":"
+        + getModule().getTargetSdk()
+        + ":"
+        + mGenerateProtoFormat;
+  }
+
+  private List<File> getLinkOutputs() throws IOException {
+    List<File> outputs = new ArrayList<>();
+    if (mGenerateProtoFormat) {
+      outputs.add(new File(getOutputPath().getParent(), "proto-format.zip"));
+    } else {
+      outputs.add(new File(getOutputPath().getParent(), "generated.apk.res"));
+    }
+    outputs.add(new File(getOutputPath(), "R.txt"));
+    outputs.add(new File(getOutputPath(), "generated-rules.txt"));
+    outputs.add(new File(getModule().getBuildDirectory(), "gen"));
+    return outputs;
+  }
+
   private void updateJavaFiles() {
     File genFolder = new File(getModule().getBuildDirectory(), "gen");
     if (genFolder.exists()) {
@@ -76,6 +181,10 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
       }
     }
+    if (args.isEmpty()) {
+      // no resource has changed since it was last compiled
+      return;
+    }
     args.add("-o");
 
     File outputCompiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
@@ -95,6 +204,10 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
     copyMapToDir(files);
   }
 
+  /**
+   * Compiles the res directories of the libraries at the same time, each call to aapt2 runs in its
+   * own process.
+   */
   private void compileLibraries(List<File> libraries)
       throws IOException, CompilationFailedException {
     Log.d(TAG, "Compiling libraries.");
@@ -106,35 +219,68 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
       }
     }
 
+    List<Callable<Void>> compilations = new ArrayList<>();
     for (File file : libraries) {
       File parent = file.getParentFile();
       if (parent == null) {
         throw new IOException("Library folder doesn't exist");
       }
-      File[] files = parent.listFiles();
-      if (files == null) {
-        continue;
+      File res = new File(parent, "res");
+      if (res.isDirectory()) {
+        String name = parent.getName();
+        compilations.add(
+            () -> {
+              compileLibrary(res, createNewFile(output, name + ".zip"), name);
+              return null;
+            });
       }
-
-      for (File inside : files) {
-        if (inside.isDirectory() && inside.getName().equals("res")) {
-          List<String> args = new ArrayList<>();
-          args.add("--dir");
-          args.add(inside.getAbsolutePath());
-          args.add("-o");
-          args.add(createNewFile(output, parent.getName() + ".zip").getAbsolutePath());
-
-          int compile = Aapt2Jni.compile(args);
-          List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
-          LogUtils.log(logs, getLogger());
-
-          if (compile != 0) {
-            throw new CompilationFailedException(
-                "Compilation failed, check logs for more details.");
+    }
+    if (compilations.isEmpty()) {
+      return;
+    }
+
+    int threads =
+        Math.max(1, Math.min(compilations.size(), Runtime.getRuntime().availableProcessors()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<Void> future : executor.invokeAll(compilations)) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof CompilationFailedException) {
+            throw (CompilationFailedException) cause;
+          }
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
           }
+          throw new CompilationFailedException("Unable to compile library resources", cause);
         }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompilationFailedException("Compiling library resources was interrupted", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void compileLibrary(File res, File output, String name)
+      throws IOException, CompilationFailedException {
+    List<String> args = new ArrayList<>();
+    args.add("--dir");
+    args.add(res.getAbsolutePath());
+    args.add("-o");
+    args.add(output.getAbsolutePath());
+
+    int compile = Aapt2Jni.compile(args);
+    List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
+    LogUtils.log(logs, getLogger());
+
+    if (compile != 0) {
+      throw new CompilationFailedException("Compilation failed, check logs for more details.");
     }
+    mLibraryCache.update(name, res);
   }
 
   private void link() throws IOException, CompilationFailedException {
@@ -249,12 +395,25 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
   }
 
   /**
-   * Utility function to get all the files that needs to be recompiled
+   * Utility function to get all the files that needs to be recompiled, the contents of the files
+   * are compared with the copies made when they were last compiled.
    *
    * @return resource files to compile
    */
   public static Map<String, List<File>> getFiles(AndroidModule module, File cachedDirectory)
       throws IOException {
+    return getFiles(module, cachedDirectory, new ResourceDigests());
+  }
+
+  /**
+   * Utility function to get all the files that needs to be recompiled
+   *
+   * @param digests the digests of the files as they were last compiled, the files whose compiled
+   *     copies are deleted are removed from it
+   * @return resource files to compile
+   */
+  public static Map<String, List<File>> getFiles(
+      AndroidModule module, File cachedDirectory, ResourceDigests digests) throws IOException {
     Map<String, List<ResourceFile>> newFiles = findFiles(module.getAndroidResourcesDirectory());
     Map<String, List<ResourceFile>> oldFiles = findFiles(cachedDirectory);
     Map<String, List<File>> filesToCompile = new HashMap<>();
@@ -283,7 +442,9 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
 
         addToMapList(
-            filesToCompile, resourceType, getModifiedFiles(newFilesResource, oldFilesResource));
+            filesToCompile,
+            resourceType,
+            getModifiedFiles(newFilesResource, oldFilesResource, digests));
       }
     }
 
@@ -296,6 +457,7 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
             if (!file.delete()) {
               throw new IOException("Failed to delete file " + file);
             }
+            digests.remove(file);
           }
         }
       }
@@ -346,50 +508,58 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
             FileUtils.deleteQuietly(copy);
           }
           FileUtils.copyFileToDirectory(file, outputDir, false);
+          mDigests.record(file);
         }
       }
     }
   }
 
-  /** Utility method to compare to list of files */
+  /**
+   * Compares the resource files of a resource type with the copies made when they were last
+   * compiled. The copies of the modified and deleted files are deleted.
+   *
+   * @return the files that are new or whose contents changed
+   */
   public static List<ResourceFile> getModifiedFiles(
-      List<ResourceFile> newFiles, List<ResourceFile> oldFiles) throws IOException {
+      List<ResourceFile> newFiles, List<ResourceFile> oldFiles, ResourceDigests digests)
+      throws IOException {
     List<ResourceFile> resourceFiles = new ArrayList<>();
 
+    Map<String, ResourceFile> oldFilesByName = new HashMap<>();
+    for (ResourceFile oldFile : oldFiles) {
+      oldFilesByName.put(oldFile.getName(), oldFile);
+    }
+
     for (ResourceFile newFile : newFiles) {
-      if (!oldFiles.contains(newFile)) {
+      ResourceFile oldFile = oldFilesByName.remove(newFile.getName());
+      if (oldFile == null) {
         resourceFiles.add(newFile);
-      } else {
-        File oldFile = oldFiles.get(oldFiles.indexOf(newFile));
-        if (contentModified(newFile, oldFile)) {
-          resourceFiles.add(newFile);
-          if (!oldFile.delete()) {
-            throw new IOException("Failed to delete file " + oldFile.getName());
-          }
+      } else if (contentModified(newFile, oldFile, digests)) {
+        resourceFiles.add(newFile);
+        if (!oldFile.delete()) {
+          throw new IOException("Failed to delete file " + oldFile.getName());
         }
-        oldFiles.remove(oldFile);
+        digests.remove(oldFile);
       }
     }
 
-    for (ResourceFile removedFile : oldFiles) {
+    for (ResourceFile removedFile : oldFilesByName.values()) {
       if (!removedFile.delete()) {
         throw new IOException("Failed to delete old file " + removedFile);
       }
+      digests.remove(removedFile);
     }
 
     return resourceFiles;
   }
 
-  private static boolean contentModified(File newFile, File oldFile) {
+  private static boolean contentModified(File newFile, File oldFile, ResourceDigests digests)
+      throws IOException {
     if (!oldFile.exists() || !newFile.exists()) {
       return true;
     }
 
-    if (newFile.length() != oldFile.length()) {
-      return true;
-    }
-
-    return newFile.lastModified() > oldFile.lastModified();
+    return !digests.isUnchanged(newFile, oldFile);
   }
 
   /**
@@ -427,9 +597,9 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
   }
 
   /**
-   * Returns the list of resource directories of libraries that needs to be compiled It determines
-   * whether the library should be compiled by checking the build/bin/res folder, if it contains a
-   * zip file with its name, then its most likely the same library
+   * Returns the libraries whose resources need to be compiled, the ones whose res directory changed
+   * since it was compiled to the zip of the same name in the build/bin/res folder. The zips of the
+   * libraries that are no longer used are deleted so they are not linked.
    */
   private List<File> getLibraries() throws IOException {
     File resDir = new File(getModule().getBuildDirectory(), "bin/res");
@@ -440,23 +610,33 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
     }
 
     List<File> libraries = new ArrayList<>();
+    Set<String> names = new HashSet<>();
 
     for (File library : getModule().getLibraries()) {
       File parent = library.getParentFile();
       if (parent != null) {
 
-        if (!new File(parent, "res").exists()) {
+        File res = new File(parent, "res");
+        if (!res.exists()) {
           // we don't need to check it if it has no resource directory
           continue;
         }
 
+        names.add(parent.getName());
         File check = new File(resDir, parent.getName() + ".zip");
-        if (!check.exists()) {
+        if (!mLibraryCache.isUpToDate(parent.getName(), res, check)) {
           libraries.add(library);
         }
       }
     }
 
+    for (String name : new ArrayList<>(mLibraryCache.getNames())) {
+      if (!names.contains(name)) {
+        Files.deleteIfExists(new File(resDir, name + ".zip").toPath());
+        mLibraryCache.remove(name);
+      }
+    }
+
     return libraries;
   }
 
@@ -6,13 +6,17 @@ import androidx.annotation.NonNull;
 import com.android.tools.aapt2.Aapt2Jni;
 import com.google.common.base.Throwables;
 import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.buildconfig.GenerateDebugBuildConfigTask;
 import com.tyron.builder.compiler.buildconfig.GenerateReleaseBuildConfigTask;
 import com.tyron.builder.compiler.jar.BuildJarTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
 import com.tyron.builder.compiler.manifest.ManifestMergeTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.internal.jar.AssembleJar;
@@ -36,16 +40,28 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
@@ -70,14 +86,17 @@ import org.jetbrains.kotlin.incremental.IncrementalJvmCompilerRunnerKt;
 public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
 
   public static final CacheHolder.CacheKey<String, List<File>> CACHE_KEY =
-      new CacheHolder.CacheKey<>("javaCache");
+      new CacheHolder.CacheKey<>("libraryJavaCache");
   private static final String TAG = "assembleLibraries";
-  private Cache<String, List<File>> mClassCache;
-  private List<File> subCompileClassPath = new ArrayList<>();
-  private List<File> subRuntimeClassPath = new ArrayList<>();
-  private final MessageCollector mCollector = new Collector();
+
+  /** Each project being built holds its own compilers in memory, don't build too many at once */
+  private static final int MAX_PARALLEL_PROJECTS = 4;
+
+  /** The kotlin compiler is not safe to run more than once at a time in the same process */
+  private static final Object KOTLIN_LOCK = new Object();
+
   private BuildType mBuildType;
-  private Set<String> builtProjects = new HashSet<>();
+  private final Set<String> builtProjects = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
   public IncrementalAssembleLibraryTask(Project project, AndroidModule module, ILogger logger) {
     super(project, module, logger);
@@ -88,151 +107,207 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // needs the libraries resolved by CheckLibrariesTask
+    return new HashSet<>(Arrays.asList(CleanTask.class, CheckLibrariesTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     mBuildType = type;
   }
 
   public void run() throws IOException, CompilationFailedException {
-    List<String> projects = new ArrayList<>();
-    projects.addAll(getModule().getAllProjects(getModule().getGradleFile()));
-    initializeProjects(getModule().getProjectDir(), projects);
+    File projectDir = getModule().getProjectDir();
+    Map<String, List<String>> graph =
+        readProjectGraph(projectDir, getModule().getAllProjects(getModule().getGradleFile()));
+    buildProjects(projectDir, graph);
   }
 
-  private void initializeProjects(File directory, List<String> rootProjects)
-      throws IOException, CompilationFailedException {
-    Map<Integer, List<String>> projectsByInclusion = new HashMap<>();
-    int maxInclusion = 0;
-    for (String projectName : rootProjects) {
-      List<String> subProjects =
-          getModule().getAllProjects(new File(directory, projectName + "/build.gradle"));
-      int numSubProjects = subProjects.size();
-      if (numSubProjects == 0) {
-        projectsByInclusion
-            .computeIfAbsent(numSubProjects, k -> new ArrayList<>())
-            .add(projectName);
-      }
-    }
-    for (String projectName : rootProjects) {
-      List<String> subProjects =
-          getModule().getAllProjects(new File(directory, projectName + "/build.gradle"));
-      int numSubProjects = subProjects.size();
-      if (numSubProjects > 0) {
-        maxInclusion = Math.max(maxInclusion, numSubProjects);
-        projectsByInclusion
-            .computeIfAbsent(numSubProjects, k -> new ArrayList<>())
-            .add(projectName);
-      }
-    }
-    for (int i = 0; i <= maxInclusion; i++) {
-      if (projectsByInclusion.containsKey(i)) {
-        List<String> projects = projectsByInclusion.get(i);
-        processProjects(directory, projects);
-      }
-    }
+  private static String toProjectName(String project) {
+    return project.replaceFirst("/", "").replaceAll("/", ":");
   }
 
-  private void processProjects(File projectDir, List<String> projects)
-      throws IOException, CompilationFailedException {
-
-    for (String projectName : projects) {
-      String name = projectName.replaceFirst("/", "").replaceAll("/", ":");
-      // getLogger().debug("Project: " + name);
-
-      Set<String> processedSubProjects = new HashSet<>();
-      subCompileClassPath.clear();
-      subRuntimeClassPath.clear();
-      prepairSubProjects(projectDir, name, processedSubProjects);
-    }
-  }
-
-  private void prepairSubProjects(File projectDir, String name, Set<String> processedSubProjects)
-      throws IOException, CompilationFailedException {
-
-    File gradleFile = new File(projectDir, name + "/build.gradle");
-
-    List<String> subProjects = getModule().getAllProjects(gradleFile);
-
-    while (!subProjects.isEmpty()) {
-      String subProject = subProjects.remove(0);
-      String subName = subProject.replaceFirst("/", "").replaceAll("/", ":");
-
-      if (processedSubProjects.contains(subName)) {
-        // getLogger().debug("Skipping duplicate sub-project: " + subName);
+  /**
+   * Reads the build.gradle file of every project included from the given ones, each of them only
+   * once.
+   *
+   * @return the name of every project mapped to the names of the projects it includes
+   */
+  private Map<String, List<String>> readProjectGraph(File projectDir, List<String> rootProjects)
+      throws CompilationFailedException {
+    Map<String, List<String>> graph = new LinkedHashMap<>();
+    Deque<String> queue = new ArrayDeque<>();
+    if (rootProjects != null) {
+      for (String project : rootProjects) {
+        queue.add(toProjectName(project));
+      }
+    }
+    while (!queue.isEmpty()) {
+      String name = queue.remove();
+      if (graph.containsKey(name)) {
         continue;
-      } else {
-        processedSubProjects.add(subName);
       }
-
-      File sub_libraries = new File(projectDir, subName + "/build/libraries");
-
-      List<String> sub =
-          getModule().getAllProjects(new File(projectDir, subName + "/build.gradle"));
-
-      for (String projectName : sub) {
-        String n = projectName.replaceFirst("/", "").replaceAll("/", ":");
-        File l = new File(projectDir, n + "/build/libraries");
-        prepairSubProjects(projectDir, n, processedSubProjects);
-        subCompileClassPath.addAll(getCompileClassPath(l));
-        subRuntimeClassPath.addAll(getRuntimeClassPath(l));
-        subCompileClassPath.addAll(addToClassPath(l));
-        subRuntimeClassPath.addAll(addToClassPath(l));
+      List<String> included =
+          getModule().getAllProjects(new File(projectDir, name + "/build.gradle"));
+      Set<String> dependencies = new LinkedHashSet<>();
+      if (included != null) {
+        for (String project : included) {
+          dependencies.add(toProjectName(project));
+        }
       }
-
-      // getLogger().debug("Building sub project: " + subName);
-
-      subCompileClassPath.addAll(getCompileClassPath(sub_libraries));
-      subRuntimeClassPath.addAll(getRuntimeClassPath(sub_libraries));
-      buildSubProject(projectDir, subName, subCompileClassPath, subRuntimeClassPath);
+      dependencies.remove(name);
+      graph.put(name, new ArrayList<>(dependencies));
+      queue.addAll(dependencies);
     }
 
-    if (!name.isEmpty()) {
-      if (processedSubProjects.contains(name)) {
-        // getLogger().debug("Skipping duplicate project: " + name);
-        return;
+    // every project must be buildable after the ones it includes
+    Set<String> sorted = new HashSet<>();
+    boolean progress = true;
+    while (progress && sorted.size() < graph.size()) {
+      progress = false;
+      for (Map.Entry<String, List<String>> entry : graph.entrySet()) {
+        if (!sorted.contains(entry.getKey()) && sorted.containsAll(entry.getValue())) {
+          sorted.add(entry.getKey());
+          progress = true;
+        }
       }
+    }
+    if (sorted.size() < graph.size()) {
+      Set<String> cycle = new LinkedHashSet<>(graph.keySet());
+      cycle.removeAll(sorted);
+      throw new CompilationFailedException("Circular dependency between projects " + cycle);
+    }
+    return graph;
+  }
 
-      processedSubProjects.add(name);
-
-      File libraries = new File(projectDir, name + "/build/libraries");
+  /**
+   * @return the projects included by the given one directly or through other projects, the projects
+   *     being listed after the ones they include
+   */
+  private static List<String> getTransitiveDependencies(
+      String name, Map<String, List<String>> graph) {
+    Set<String> dependencies = new LinkedHashSet<>();
+    addTransitiveDependencies(name, graph, dependencies);
+    dependencies.remove(name);
+    return new ArrayList<>(dependencies);
+  }
 
-      // getLogger().debug("Building project: " + name);
-      subCompileClassPath.addAll(addToClassPath(libraries));
-      subRuntimeClassPath.addAll(addToClassPath(libraries));
-      subCompileClassPath.addAll(getCompileClassPath(libraries));
-      subRuntimeClassPath.addAll(getRuntimeClassPath(libraries));
-      buildProject(projectDir, name, subCompileClassPath, subRuntimeClassPath);
+  private static void addTransitiveDependencies(
+      String name, Map<String, List<String>> graph, Set<String> dependencies) {
+    for (String dependency : graph.get(name)) {
+      if (!dependencies.contains(dependency)) {
+        addTransitiveDependencies(dependency, graph, dependencies);
+        dependencies.add(dependency);
+      }
     }
   }
 
-  private void buildSubProject(
-      File projectDir, String subName, List<File> compileClassPath, List<File> runtimeClassPath)
-      throws CompilationFailedException, IOException {
-    File subGradleFile = new File(projectDir, subName + "/build.gradle");
-    List<String> pluginTypes = new ArrayList<>();
-    if (builtProjects.contains(subName)) {
-      // getLogger().debug("Already built project: " + subName);
-      pluginTypes = getPlugins(subName, subGradleFile);
-    } else {
-      pluginTypes = checkPlugins(subName, subGradleFile);
+  /**
+   * Builds every project of the graph, a project is started once all the projects it includes are
+   * built so the projects that do not depend on each other are built at the same time.
+   */
+  private void buildProjects(File projectDir, Map<String, List<String>> graph)
+      throws IOException, CompilationFailedException {
+    if (graph.isEmpty()) {
+      return;
     }
-    if (pluginTypes.isEmpty()) {
-      getLogger().error("No plugins applied");
-      throw new CompilationFailedException(
-          "Unable to find any plugins in "
-              + subName
-              + "/build.gradle, check project's gradle plugins and build again.");
+    int threads =
+        Math.max(
+            1,
+            Math.min(
+                MAX_PARALLEL_PROJECTS,
+                Math.min(graph.size(), Runtime.getRuntime().availableProcessors())));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+
+    Set<String> started = new HashSet<>();
+    Set<String> finished = new HashSet<>();
+    int running = 0;
+    Exception failure = null;
+    try {
+      while (true) {
+        if (failure == null) {
+          for (Map.Entry<String, List<String>> entry : graph.entrySet()) {
+            String name = entry.getKey();
+            if (started.contains(name) || !finished.containsAll(entry.getValue())) {
+              continue;
+            }
+            started.add(name);
+            running++;
+            completionService.submit(
+                () -> {
+                  buildProject(projectDir, name, graph);
+                  return name;
+                });
+          }
+        }
+        if (running == 0) {
+          break;
+        }
+
+        Future<String> future = completionService.take();
+        running--;
+        try {
+          finished.add(future.get());
+        } catch (ExecutionException e) {
+          // wait for the projects that are still building but don't start new ones
+          Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompilationFailedException("Build was interrupted", e);
+    } finally {
+      executor.shutdownNow();
     }
 
-    String pluginType = pluginTypes.toString();
-    compileProject(pluginType, projectDir, subName, compileClassPath, runtimeClassPath);
+    if (failure instanceof CompilationFailedException) {
+      throw (CompilationFailedException) failure;
+    }
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    if (failure != null) {
+      throw new CompilationFailedException(Throwables.getStackTraceAsString(failure));
+    }
   }
 
-  private void buildProject(
-      File projectDir, String name, List<File> compileClassPath, List<File> runtimeClassPath)
+  private void buildProject(File projectDir, String name, Map<String, List<String>> graph)
       throws CompilationFailedException, IOException {
+    List<File> compileClassPath = new ArrayList<>();
+    List<File> runtimeClassPath = new ArrayList<>();
+    for (String dependency : getTransitiveDependencies(name, graph)) {
+      File libraries = new File(projectDir, dependency + "/build/libraries");
+      List<File> apiClassPath = addToClassPath(libraries);
+      compileClassPath.addAll(getCompileClassPath(libraries));
+      runtimeClassPath.addAll(getRuntimeClassPath(libraries));
+      compileClassPath.addAll(apiClassPath);
+      runtimeClassPath.addAll(apiClassPath);
+
+      File classesJar =
+          new File(
+              projectDir,
+              dependency + "/build/.transforms/transformed/" + dependency + "/classes.jar");
+      compileClassPath.add(classesJar);
+      runtimeClassPath.add(classesJar);
+    }
+
+    File libraries = new File(projectDir, name + "/build/libraries");
+    List<File> apiClassPath = addToClassPath(libraries);
+    compileClassPath.addAll(apiClassPath);
+    runtimeClassPath.addAll(apiClassPath);
+    compileClassPath.addAll(getCompileClassPath(libraries));
+    runtimeClassPath.addAll(getRuntimeClassPath(libraries));
+
     File gradleFile = new File(projectDir, name + "/build.gradle");
-    List<String> pluginTypes = new ArrayList<>();
+    List<String> pluginTypes;
     if (builtProjects.contains(name)) {
       // getLogger().debug("Already built project: " + name);
       pluginTypes = getPlugins(name, gradleFile);
@@ -366,9 +441,7 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
     if (pluginType.equals("[java-library]")) {
       if (builtProjects.contains(projectName)) {
         // getLogger().debug("Already built project: " + projectName);
-        subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-        subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-        getModule().addLibrary(new File(transformsDir, "classes.jar"));
+        addLibrary(new File(transformsDir, "classes.jar"));
         return;
       }
       javaFiles.addAll(getFiles(javaDir, ".java"));
@@ -391,17 +464,13 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
         getLogger().debug("> Task :" + projectName + ":" + "jar SKIPPED");
       }
       builtProjects.add(projectName);
-      subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-      subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-      getModule().addLibrary(new File(transformsDir, "classes.jar"));
+      addLibrary(new File(transformsDir, "classes.jar"));
 
     } else if (pluginType.equals("[java-library, kotlin]")
         || pluginType.equals("[kotlin, java-library]")) {
       if (builtProjects.contains(projectName)) {
         // getLogger().debug("Already built project: " + projectName);
-        subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-        subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-        getModule().addLibrary(new File(transformsDir, "classes.jar"));
+        addLibrary(new File(transformsDir, "classes.jar"));
         return;
       }
       kotlinFiles.addAll(getFiles(kotlinDir, ".kt"));
@@ -436,15 +505,11 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
         getLogger().debug("> Task :" + projectName + ":" + "jar SKIPPED");
       }
       builtProjects.add(projectName);
-      subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-      subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-      getModule().addLibrary(new File(transformsDir, "classes.jar"));
+      addLibrary(new File(transformsDir, "classes.jar"));
     } else if (pluginType.equals("[com.android.library]")) {
       if (builtProjects.contains(projectName)) {
         // getLogger().debug("Already built project: " + projectName);
-        subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-        subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-        getModule().addLibrary(new File(transformsDir, "classes.jar"));
+        addLibrary(new File(transformsDir, "classes.jar"));
         return;
       }
       javaFiles.addAll(getFiles(javaDir, ".java"));
@@ -493,18 +558,14 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
         throw new CompilationFailedException("Manifest file does not exist.");
       }
       builtProjects.add(projectName);
-      subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-      subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-      getModule().addLibrary(new File(transformsDir, "classes.jar"));
+      addLibrary(new File(transformsDir, "classes.jar"));
     } else if (pluginType.equals("[com.android.library, kotlin]")
         || pluginType.equals("[kotlin, com.android.library]")
         || pluginType.equals("[com.android.library, kotlin-android]")
         || pluginType.equals("[kotlin-android, com.android.library]")) {
       if (builtProjects.contains(projectName)) {
         // getLogger().debug("Already built project: " + projectName);
-        subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-        subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-        getModule().addLibrary(new File(transformsDir, "classes.jar"));
+        addLibrary(new File(transformsDir, "classes.jar"));
         return;
       }
       kotlinFiles.addAll(getFiles(kotlinDir, ".kt"));
@@ -561,9 +622,7 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
         throw new CompilationFailedException("Manifest file does not exist.");
       }
       builtProjects.add(projectName);
-      subCompileClassPath.add(new File(transformsDir, "classes.jar"));
-      subRuntimeClassPath.add(new File(transformsDir, "classes.jar"));
-      getModule().addLibrary(new File(transformsDir, "classes.jar"));
+      addLibrary(new File(transformsDir, "classes.jar"));
     }
   }
 
@@ -583,11 +642,18 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
     classPath.addAll(getJarFiles(new File(libraries, "api_files/libs")));
     classPath.addAll(getJarFiles(new File(libraries, "api_libs")));
     for (File jar : classPath) {
-      getModule().addLibrary(jar);
+      addLibrary(jar);
     }
     return classPath;
   }
 
+  /** The libraries of the module are shared by the projects being built at the same time */
+  private void addLibrary(File jar) {
+    synchronized (getModule()) {
+      getModule().addLibrary(jar);
+    }
+  }
+
   private List<File> getRuntimeClassPath(File libraries) {
     List<File> runtimeClassPath = new ArrayList<>();
     runtimeClassPath.addAll(getJarFiles(new File(libraries, "runtimeOnly_files/libs")));
@@ -893,16 +959,6 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
     }
 
     List<File> mFilesToCompile = new ArrayList<>();
-
-    mClassCache = getModule().getCache(CACHE_KEY, new Cache<>());
-    for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
-      if (!mFilesToCompile.contains(key.file.toFile())) {
-        File file = mClassCache.get(key.file, "class").iterator().next();
-        deleteAllFiles(file, ".class");
-        mClassCache.remove(key.file, "class", "dex");
-      }
-    }
-
     mFilesToCompile.addAll(kotlinFiles);
     if (mFilesToCompile.isEmpty()) {
       getLogger().debug("> Task :" + name + ":" + "compileKotlin SKIPPED");
@@ -911,6 +967,7 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
       getLogger().debug("> Task :" + name + ":" + "compileKotlin");
     }
 
+    Collector collector = new Collector();
     List<File> classpath = new ArrayList<>();
     classpath.add(getModule().getBootstrapJarFile());
     classpath.add(getModule().getLambdaStubsJarFile());
@@ -981,42 +1038,76 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
         fileList.add(kotlinDir);
       }
 
-      IncrementalJvmCompilerRunnerKt.makeIncrementally(
-          cacheDir,
-          Arrays.asList(fileList.toArray(new File[0])),
-          args,
-          mCollector,
-          new ICReporterBase() {
-            @Override
-            public void report(@NonNull Function0<String> function0) {
-              // getLogger().info()
-              function0.invoke();
-            }
+      synchronized (KOTLIN_LOCK) {
+        IncrementalJvmCompilerRunnerKt.makeIncrementally(
+            cacheDir,
+            Arrays.asList(fileList.toArray(new File[0])),
+            args,
+            collector,
+            new ICReporterBase() {
+              @Override
+              public void report(@NonNull Function0<String> function0) {
+                // getLogger().info()
+                function0.invoke();
+              }
 
-            @Override
-            public void reportVerbose(@NonNull Function0<String> function0) {
-              // getLogger().verbose()
-              function0.invoke();
-            }
+              @Override
+              public void reportVerbose(@NonNull Function0<String> function0) {
+                // getLogger().verbose()
+                function0.invoke();
+              }
 
-            @Override
-            public void reportCompileIteration(
-                boolean incremental,
-                @NonNull Collection<? extends File> sources,
-                @NonNull ExitCode exitCode) {}
-          });
+              @Override
+              public void reportCompileIteration(
+                  boolean incremental,
+                  @NonNull Collection<? extends File> sources,
+                  @NonNull ExitCode exitCode) {}
+            });
+      }
     } catch (Exception e) {
       throw new CompilationFailedException(Throwables.getStackTraceAsString(e));
     }
 
-    if (mCollector.hasErrors()) {
+    if (collector.hasErrors()) {
       throw new CompilationFailedException("Compilation failed, see logs for more details");
     } else {
       getLogger().debug("> Task :" + name + ":" + "classes");
     }
   }
 
-  private boolean mHasErrors = false;
+  /**
+   * Deletes the classes compiled into the given directory from the files that are not compiled
+   * anymore. The cache is shared by all the projects, so only the entries of the classes in this
+   * output directory are removed.
+   */
+  private void clearClassCache(Collection<File> filesToCompile, File out) throws IOException {
+    Path outPath = out.toPath();
+    synchronized (CACHE_KEY) {
+      Cache<String, List<File>> classCache = getModule().getCache(CACHE_KEY, new Cache<>());
+      for (Cache.Key<String> key : new HashSet<>(classCache.getKeys())) {
+        if (!"class".equals(key.key) || filesToCompile.contains(key.file.toFile())) {
+          continue;
+        }
+        List<File> classFiles = classCache.get(key.file, "class");
+        if (classFiles.isEmpty() || !classFiles.get(0).toPath().startsWith(outPath)) {
+          continue;
+        }
+        for (File classFile : classFiles) {
+          deleteAllFiles(classFile, ".class");
+        }
+        classCache.remove(key.file, "class", "dex");
+      }
+    }
+  }
+
+  /** Remembers the classes compiled from each file so they can be deleted with the file */
+  private void updateClassCache(Map<File, List<File>> compiledFiles) {
+    synchronized (CACHE_KEY) {
+      Cache<String, List<File>> classCache = getModule().getCache(CACHE_KEY, new Cache<>());
+      compiledFiles.forEach(
+          (file, classFiles) -> classCache.load(file.toPath(), "class", classFiles));
+    }
+  }
 
   public void compileJava(
       Set<File> javaFiles,
@@ -1034,19 +1125,11 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
 
     List<File> mFilesToCompile = new ArrayList<>();
 
-    mClassCache = getModule().getCache(CACHE_KEY, new Cache<>());
-    for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
-      if (!mFilesToCompile.contains(key.file.toFile())) {
-        File file = mClassCache.get(key.file, "class").iterator().next();
-        deleteAllFiles(file, ".class");
-        mClassCache.remove(key.file, "class", "dex");
-      }
-    }
-
     runtimeClassPath.add(getModule().getBootstrapJarFile());
     runtimeClassPath.add(getModule().getLambdaStubsJarFile());
 
     mFilesToCompile.addAll(javaFiles);
+    clearClassCache(mFilesToCompile, out);
     List<JavaFileObject> javaFileObjects = new ArrayList<>();
 
     if (mFilesToCompile.isEmpty()) {
@@ -1081,11 +1164,12 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
           });
     }
 
+    AtomicBoolean hasErrors = new AtomicBoolean();
     DiagnosticListener<JavaFileObject> diagnosticCollector =
         diagnostic -> {
           switch (diagnostic.getKind()) {
             case ERROR:
-              mHasErrors = true;
+              hasErrors.set(true);
               getLogger().error(new DiagnosticWrapper(diagnostic));
               break;
             case WARNING:
@@ -1107,13 +1191,28 @@ public class IncrementalAssembleLibraryTask extends Task<AndroidModule> {
     JavacTask task =
         tool.getTask(
             null, standardJavaFileManager, diagnosticCollector, options, null, javaFileObjects);
+    Map<File, List<File>> compiledFiles = new HashMap<>();
+    task.addTaskListener(
+        new TaskListener() {
+          @Override
+          public void finished(TaskEvent e) {
+            if (e.getKind() != TaskEvent.Kind.GENERATE || e.getTypeElement() == null) {
+              return;
+            }
+            String className = task.getElements().getBinaryName(e.getTypeElement()).toString();
+            File classFile = new File(out, className.replace('.', '/') + ".class");
+            File sourceFile = new File(e.getCompilationUnit().getSourceFile().toUri());
+            compiledFiles.computeIfAbsent(sourceFile, k -> new ArrayList<>()).add(classFile);
+          }
+        });
     task.parse();
     task.analyze();
     task.generate();
 
-    if (mHasErrors) {
+    if (hasErrors.get()) {
       throw new CompilationFailedException("Compilation failed, check logs for more details");
     } else {
+      updateClassCache(compiledFiles);
       getLogger().debug("> Task :" + name + ":" + "classes");
     }
   }
@@ -0,0 +1,167 @@
+package com.tyron.builder.compiler.incremental.resource;
+
+import com.tyron.builder.compiler.TaskHistory;
+import com.tyron.common.util.Digests;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the contents of the library res directories that were compiled by aapt2, by the name of
+ * the zip they were compiled to. A library is compiled again only when the contents of its res
+ * directory change, so a new version of a library extracted to the same directory is compiled again
+ * while a library extracted again with the same contents is not.
+ *
+ * <p>The contents are only read when the paths, sizes or modification times of the files changed
+ * since the last check.
+ */
+class LibraryResourceCache {
+
+  private static final int VERSION = 1;
+
+  private static class Entry {
+    /** The paths, sizes and modification times of the files */
+    final String fingerprint;
+
+    /** The relative paths and contents of the files */
+    final String digest;
+
+    Entry(String fingerprint, String digest) {
+      this.fingerprint = fingerprint;
+      this.digest = digest;
+    }
+  }
+
+  private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+  private volatile boolean mChanged;
+
+  /**
+   * @param name the name of the compiled zip
+   * @param resDir the res directory of the library
+   * @param compiled the zip the library was compiled to
+   * @return whether the zip was compiled from the current contents of the res directory
+   */
+  boolean isUpToDate(String name, File resDir, File compiled) throws IOException {
+    Entry entry = mEntries.get(name);
+    if (entry == null || !compiled.exists()) {
+      return false;
+    }
+    String fingerprint = TaskHistory.fingerprint(Collections.singletonList(resDir));
+    if (fingerprint.equals(entry.fingerprint)) {
+      return true;
+    }
+    String digest = digest(resDir);
+    if (!digest.equals(entry.digest)) {
+      return false;
+    }
+    mEntries.put(name, new Entry(fingerprint, digest));
+    mChanged = true;
+    return true;
+  }
+
+  /** Records that the library has been compiled from the current contents of its res directory */
+  void update(String name, File resDir) throws IOException {
+    // fingerprint first so a file modified while being read is read again next time
+    String fingerprint = TaskHistory.fingerprint(Collections.singletonList(resDir));
+    mEntries.put(name, new Entry(fingerprint, digest(resDir)));
+    mChanged = true;
+  }
+
+  /**
+   * @return the names of the compiled zips of every library recorded
+   */
+  Set<String> getNames() {
+    return Collections.unmodifiableSet(mEntries.keySet());
+  }
+
+  void remove(String name) {
+    if (mEntries.remove(name) != null) {
+      mChanged = true;
+    }
+  }
+
+  private static String digest(File resDir) throws IOException {
+    MessageDigest digest = Digests.newDigest(Digests.SHA1);
+    update(digest, resDir, "");
+    return Digests.toHex(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, File file, String path) throws IOException {
+    digest.update(path.getBytes(StandardCharsets.UTF_8));
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        Arrays.sort(children);
+        for (File child : children) {
+          update(digest, child, path + "/" + child.getName());
+        }
+      }
+    } else if (file.exists()) {
+      digest.update((byte) 1);
+      Digests.update(digest, file);
+    }
+    digest.update((byte) 0);
+  }
+
+  /**
+   * Reads the cache previously written with {@link #write(File)}, returns an empty cache if the
+   * file does not exist or cannot be read.
+   */
+  static LibraryResourceCache read(File file) {
+    LibraryResourceCache cache = new LibraryResourceCache();
+    if (!file.isFile()) {
+      return cache;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return cache;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String name = in.readUTF();
+        String fingerprint = in.readUTF();
+        String digest = in.readUTF();
+        cache.mEntries.put(name, new Entry(fingerprint, digest));
+      }
+      return cache;
+    } catch (IOException e) {
+      return new LibraryResourceCache();
+    }
+  }
+
+  /** Writes this cache to the given file if it changed, replacing it atomically. */
+  void write(File file) throws IOException {
+    if (!mChanged) {
+      return;
+    }
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          List<Map.Entry<String, Entry>> entries = new ArrayList<>(mEntries.entrySet());
+          out.writeInt(entries.size());
+          for (Map.Entry<String, Entry> entry : entries) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue().fingerprint);
+            out.writeUTF(entry.getValue().digest);
+          }
+        });
+    mChanged = false;
+  }
+}
@@ -0,0 +1,163 @@
+package com.tyron.builder.compiler.incremental.resource;
+
+import com.tyron.builder.project.api.Module;
+import com.tyron.common.util.Digests;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The digests of the contents of the resource files as they were last compiled by {@link
+ * IncrementalAapt2Task}, along with the size and modification time of the files at that time.
+ *
+ * <p>A resource file whose size and modification time did not change is considered unchanged
+ * without reading it. Otherwise its contents are compared, so a file that was touched without being
+ * modified, such as after a git checkout, is not compiled again.
+ */
+public class ResourceDigests {
+
+  private static final int VERSION = 1;
+
+  private static class Entry {
+    final long length;
+    final long lastModified;
+    final String digest;
+
+    Entry(long length, long lastModified, String digest) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+  }
+
+  /** The resource type and name of the file, e.g. {@code layout/activity_main.xml} -> entry */
+  private final Map<String, Entry> mEntries = new HashMap<>();
+
+  /** The fingerprint of the inputs of the last successful link */
+  private String mLinkFingerprint = "";
+
+  private boolean mChanged;
+
+  public static File getFile(Module module) {
+    return new File(module.getBuildDirectory(), "caches/resource-digests.bin");
+  }
+
+  private static String getKey(File file) {
+    File parent = file.getParentFile();
+    return (parent == null ? "" : parent.getName()) + "/" + file.getName();
+  }
+
+  /**
+   * @param file the resource file
+   * @param compiled the copy of the resource file made when it was last compiled
+   * @return whether the resource file has the same contents as when it was last compiled
+   */
+  public boolean isUnchanged(File file, File compiled) throws IOException {
+    String key = getKey(file);
+    long length = file.length();
+    long lastModified = file.lastModified();
+    Entry entry = mEntries.get(key);
+    if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+      return true;
+    }
+    if (length != compiled.length()) {
+      return false;
+    }
+    String digest = digest(file);
+    // the copies made before the digests were recorded are read once
+    String compiledDigest = entry != null ? entry.digest : digest(compiled);
+    if (!digest.equals(compiledDigest)) {
+      return false;
+    }
+    mEntries.put(key, new Entry(length, lastModified, digest));
+    mChanged = true;
+    return true;
+  }
+
+  /** Records the current contents of a resource file that has just been compiled */
+  public void record(File file) throws IOException {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    mEntries.put(getKey(file), new Entry(length, lastModified, digest(file)));
+    mChanged = true;
+  }
+
+  /** Forgets a resource file whose compiled copy has been deleted */
+  public void remove(File file) {
+    if (mEntries.remove(getKey(file)) != null) {
+      mChanged = true;
+    }
+  }
+
+  public String getLinkFingerprint() {
+    return mLinkFingerprint;
+  }
+
+  public void setLinkFingerprint(String fingerprint) {
+    if (!fingerprint.equals(mLinkFingerprint)) {
+      mLinkFingerprint = fingerprint;
+      mChanged = true;
+    }
+  }
+
+  public static String digest(File file) throws IOException {
+    return Digests.digest(file, Digests.SHA1);
+  }
+
+  /**
+   * Reads the digests previously written with {@link #write(File)}, returns empty digests if the
+   * file does not exist or cannot be read.
+   */
+  public static ResourceDigests read(File file) {
+    ResourceDigests digests = new ResourceDigests();
+    if (!file.isFile()) {
+      return digests;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return digests;
+      }
+      digests.mLinkFingerprint = in.readUTF();
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String key = in.readUTF();
+        long length = in.readLong();
+        long lastModified = in.readLong();
+        String digest = in.readUTF();
+        digests.mEntries.put(key, new Entry(length, lastModified, digest));
+      }
+      return digests;
+    } catch (IOException e) {
+      return new ResourceDigests();
+    }
+  }
+
+  /** Writes these digests to the given file if they changed, replacing it atomically. */
+  public void write(File file) throws IOException {
+    if (!mChanged) {
+      return;
+    }
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          out.writeUTF(mLinkFingerprint);
+          out.writeInt(mEntries.size());
+          for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().length);
+            out.writeLong(entry.getValue().lastModified);
+            out.writeUTF(entry.getValue().digest);
+          }
+        });
+    mChanged = false;
+  }
+}
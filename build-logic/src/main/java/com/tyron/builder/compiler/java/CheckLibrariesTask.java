@@ -4,6 +4,7 @@ import android.util.Log;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.ScopeType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
@@ -24,18 +25,26 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
 
 /** Task responsible for copying aars/jars from libraries to build/libs */
 public class CheckLibrariesTask extends Task<JavaModule> {
 
+  private LibraryDigestCache mDigests = new LibraryDigestCache();
+
   public CheckLibrariesTask(Project project, JavaModule module, ILogger logger) {
     super(project, module, logger);
   }
@@ -45,18 +54,21 @@ public class CheckLibrariesTask extends Task<JavaModule> {
     return "checkLibraries";
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    return new HashSet<>(Arrays.asList(CleanTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {}
 
   @Override
   public void run() throws IOException, CompilationFailedException {
+    File cacheFile = new File(getModule().getBuildDirectory(), "caches/library-digests.bin");
+    mDigests = LibraryDigestCache.read(cacheFile);
 
-    checkLibraries(
-        getModule(),
-        getModule().getRootFile(),
-        getLogger(),
-        getModule().getGradleFile(),
-        getModule().getRootFile().getName());
+    List<Callable<Void>> checks = new ArrayList<>();
+    addChecks(checks, getModule(), getModule().getRootFile(), getModule().getGradleFile(), true);
 
     List<String> projects = new ArrayList<>();
     projects.addAll(getModule().getAllProjects(getModule().getGradleFile()));
@@ -76,35 +88,62 @@ public class CheckLibrariesTask extends Task<JavaModule> {
         File includeName = new File(getModule().getProjectDir(), include);
         String root = include.replaceFirst("/", "").replaceAll("/", ":");
         getLogger().debug("> Task :" + root + ":" + "checkingLibraries");
+        addChecks(checks, getModule(), includeName, gradleFile, false);
+      }
+    }
+
+    // every scope of every project has its own libraries directory and json file
+    int threads = Math.max(1, Math.min(checks.size(), Runtime.getRuntime().availableProcessors()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<Void> future : executor.invokeAll(checks)) {
         try {
-          checkLibraries(getModule(), includeName, getLogger(), gradleFile, root);
-        } catch (IOException e) {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          throw new CompilationFailedException("Unable to check libraries", cause);
         }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompilationFailedException("Checking libraries was interrupted", e);
+    } finally {
+      executor.shutdownNow();
     }
-  }
 
-  private void checkLibraries(
-      JavaModule project, File root, ILogger logger, File gradleFile, String name)
-      throws IOException {
+    mDigests.write(cacheFile);
+  }
 
+  /**
+   * Adds the checks of the four scopes of a project. The errors of the included projects are
+   * ignored, only the ones of the module itself fail the task.
+   */
+  private void addChecks(
+      List<Callable<Void>> checks,
+      JavaModule project,
+      File root,
+      File gradleFile,
+      boolean required) {
     File idea = new File(project.getProjectDir(), ".idea");
-
-    ScopeType api = ScopeType.API;
-    String scopeTypeApi = api.getStringValue();
-    checkLibraries(project, root, idea, logger, gradleFile, scopeTypeApi);
-
-    ScopeType implementation = ScopeType.IMPLEMENTATION;
-    String scopeTypeImplementation = implementation.getStringValue();
-    checkLibraries(project, root, idea, logger, gradleFile, scopeTypeImplementation);
-
-    ScopeType compileOnly = ScopeType.COMPILE_ONLY;
-    String scopeTypeCompileOnly = compileOnly.getStringValue();
-    checkLibraries(project, root, idea, logger, gradleFile, scopeTypeCompileOnly);
-
-    ScopeType runtimeOnly = ScopeType.RUNTIME_ONLY;
-    String scopeTypeRuntimeOnly = runtimeOnly.getStringValue();
-    checkLibraries(project, root, idea, logger, gradleFile, scopeTypeRuntimeOnly);
+    ScopeType[] scopes = {
+      ScopeType.API, ScopeType.IMPLEMENTATION, ScopeType.COMPILE_ONLY, ScopeType.RUNTIME_ONLY
+    };
+    for (ScopeType scope : scopes) {
+      checks.add(
+          () -> {
+            try {
+              checkLibraries(project, root, idea, getLogger(), gradleFile, scope.getStringValue());
+            } catch (IOException e) {
+              if (required) {
+                throw e;
+              }
+            }
+            return null;
+          });
+    }
   }
 
   // checkLibraries
@@ -177,10 +216,11 @@ public class CheckLibrariesTask extends Task<JavaModule> {
   public Map<String, Library> checkDirLibraries(
       Map<String, Library> fileLibsHashes, ILogger logger, File dir, String include, String scope) {
     try {
-      ZipFile zipFile = new ZipFile(new File(dir, include));
+      File file = new File(dir, include);
+      String digest = getLibraryDigest(file);
       Library library = new Library();
-      library.setSourceFile(new File(dir, include));
-      fileLibsHashes.put(calculateMD5(new File(dir, include)), library);
+      library.setSourceFile(file);
+      fileLibsHashes.put(digest, library);
     } catch (IOException e) {
       String message = "File " + include + " is corrupt! Ignoring.";
       logger.warning(message);
@@ -199,10 +239,10 @@ public class CheckLibrariesTask extends Task<JavaModule> {
       if (fileLibraries != null) {
         for (File fileLibrary : fileLibraries) {
           try {
-            ZipFile zipFile = new ZipFile(fileLibrary);
+            String digest = getLibraryDigest(fileLibrary);
             Library library = new Library();
             library.setSourceFile(fileLibrary);
-            fileLibsHashes.put(calculateMD5(fileLibrary), library);
+            fileLibsHashes.put(digest, library);
           } catch (IOException e) {
             String message = "File " + fileLibrary + " is corrupt! Ignoring.";
             logger.warning(message);
@@ -213,6 +253,27 @@ public class CheckLibrariesTask extends Task<JavaModule> {
     return fileLibsHashes;
   }
 
+  /**
+   * Returns the digest of a library, checking that it is a valid zip file only when its digest is
+   * not cached already.
+   *
+   * @throws IOException if the library is not a valid zip file or cannot be read
+   */
+  private String getLibraryDigest(File file) throws IOException {
+    String digest = mDigests.getCachedDigest(file);
+    if (digest != null) {
+      return digest;
+    }
+    try (ZipFile ignored = new ZipFile(file)) {
+      // only opened to check that the library is not corrupt
+    }
+    digest = mDigests.getDigest(file);
+    if (digest == null) {
+      throw new IOException("Unable to read " + file);
+    }
+    return digest;
+  }
+
   public Set<Library> parseLibraries(Set<Library> libraries, File file, String scope) {
     ModuleSettings myModuleSettings = new ModuleSettings(file);
     String librariesString = myModuleSettings.getString(scope + "_libraries", "[]");
@@ -240,7 +301,7 @@ public class CheckLibrariesTask extends Task<JavaModule> {
       Map<String, Library> fileLibsHashes,
       File libs)
       throws IOException {
-    libraries.forEach(it -> md5Map.put(calculateMD5(it.getSourceFile()), it));
+    libraries.forEach(it -> md5Map.put(mDigests.getDigest(it.getSourceFile()), it));
 
     if (!libs.exists()) {
       if (!libs.mkdirs()) {}
@@ -270,7 +331,9 @@ public class CheckLibrariesTask extends Task<JavaModule> {
     combined.putAll(libraries);
     combined.putAll(fileLibraries);
 
-    getModule().putLibraryHashes(combined);
+    synchronized (getModule()) {
+      getModule().putLibraryHashes(combined);
+    }
 
     for (Map.Entry<String, Library> entry : combined.entrySet()) {
       String hash = entry.getKey();
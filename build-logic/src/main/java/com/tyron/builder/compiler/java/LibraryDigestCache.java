@@ -0,0 +1,149 @@
+package com.tyron.builder.compiler.java;
+
+import androidx.annotation.Nullable;
+import com.tyron.common.util.Digests;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the MD5 digest of the library files along with their size and modification time, so a
+ * library is only read again when it changes. The digest names the directory the library is
+ * extracted to, so it has to stay the same as {@link CheckLibrariesTask#calculateMD5(File)}.
+ */
+public class LibraryDigestCache {
+
+  private static final int VERSION = 1;
+
+  private static class Entry {
+    final long length;
+    final long lastModified;
+    final String digest;
+
+    Entry(long length, long lastModified, String digest) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+  }
+
+  private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+  /** The files looked up since the cache was read, the others are not written back */
+  private final Set<String> mUsed = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean mChanged;
+
+  /**
+   * @return the cached digest of the file if it has not changed since it was computed, null
+   *     otherwise
+   */
+  @Nullable
+  public String getCachedDigest(File file) {
+    String path = file.getAbsolutePath();
+    mUsed.add(path);
+    Entry entry = mEntries.get(path);
+    if (entry != null
+        && entry.length == file.length()
+        && entry.lastModified == file.lastModified()) {
+      return entry.digest;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the digest of the file, reading it only if it changed since its digest was computed.
+   *
+   * @return the digest or null if the file cannot be read
+   */
+  @Nullable
+  public String getDigest(File file) {
+    String digest = getCachedDigest(file);
+    if (digest != null) {
+      return digest;
+    }
+    // read the size and time before the contents so a file modified meanwhile is read again
+    long length = file.length();
+    long lastModified = file.lastModified();
+    try {
+      digest = computeDigest(file);
+    } catch (IOException e) {
+      return null;
+    }
+    mEntries.put(file.getAbsolutePath(), new Entry(length, lastModified, digest));
+    mChanged = true;
+    return digest;
+  }
+
+  /** Computes the MD5 digest of the file in the same format as {@code calculateMD5} */
+  public static String computeDigest(File file) throws IOException {
+    return Digests.digest(file, Digests.MD5);
+  }
+
+  /**
+   * Reads the cache previously written with {@link #write(File)}, returns an empty cache if the
+   * file does not exist or cannot be read.
+   */
+  public static LibraryDigestCache read(File file) {
+    LibraryDigestCache cache = new LibraryDigestCache();
+    if (!file.isFile()) {
+      return cache;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return cache;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String path = in.readUTF();
+        long length = in.readLong();
+        long lastModified = in.readLong();
+        String digest = in.readUTF();
+        cache.mEntries.put(path, new Entry(length, lastModified, digest));
+      }
+      return cache;
+    } catch (IOException e) {
+      return new LibraryDigestCache();
+    }
+  }
+
+  /**
+   * Writes the entries of the files looked up since the cache was read to the given file, replacing
+   * it atomically. Nothing is written if no entry changed or was dropped.
+   */
+  public void write(File file) throws IOException {
+    if (!mChanged && mUsed.containsAll(mEntries.keySet())) {
+      return;
+    }
+    List<Map.Entry<String, Entry>> used = new ArrayList<>();
+    for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+      if (mUsed.contains(entry.getKey())) {
+        used.add(entry);
+      }
+    }
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          out.writeInt(used.size());
+          for (Map.Entry<String, Entry> entry : used) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().length);
+            out.writeLong(entry.getValue().lastModified);
+            out.writeUTF(entry.getValue().digest);
+          }
+        });
+    mChanged = false;
+  }
+}
@@ -3,7 +3,9 @@ package com.tyron.builder.compiler.log;
 import android.util.Log;
 import android.util.Pair;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.manifest.ManifestMergeTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
@@ -14,7 +16,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.openjdk.javax.xml.parsers.DocumentBuilder;
 import org.openjdk.javax.xml.parsers.DocumentBuilderFactory;
@@ -58,7 +63,8 @@ public class InjectLoggerTask extends Task<AndroidModule> {
           + "    private static final String WARNING = \"WARNING\";\n"
           + "    private static final String ERROR = \"ERROR\";\n"
           + "    private static final String INFO = \"INFO\";\n"
-          + "    private static final Pattern TYPE_PATTERN = Pattern.compile(\"^(.*\\\\d) ([ADEIW]) (.*): (.*)\");\n"
+          + "    private static final Pattern TYPE_PATTERN = Pattern.compile(\"^(.*\\\\d) ([ADEIW])"
+          + " (.*): (.*)\");\n"
           + "\n"
           + "    private static volatile boolean mInitialized;\n"
           + "    private static Context mContext;\n"
@@ -144,6 +150,12 @@ public class InjectLoggerTask extends Task<AndroidModule> {
     return TAG;
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // rewrites the merged manifest
+    return new HashSet<>(Arrays.asList(CleanTask.class, ManifestMergeTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     getModule().getJavaFiles();
@@ -1,7 +1,10 @@
 package com.tyron.builder.compiler.manifest;
 
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
 import com.tyron.builder.compiler.manifest.ManifestMerger2.SystemProperty;
 import com.tyron.builder.compiler.manifest.xml.XmlFormatPreferences;
 import com.tyron.builder.compiler.manifest.xml.XmlFormatStyle;
@@ -14,7 +17,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.w3c.dom.Document;
 
@@ -34,6 +41,14 @@ public class ManifestMergeTask extends Task<AndroidModule> {
     return "mergeManifest";
   }
 
+  @Override
+  public Set<Class<?>> getDependencies() {
+    // needs the manifests of every library
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class, CheckLibrariesTask.class, IncrementalAssembleLibraryTask.class));
+  }
+
   @Override
   public void prepare(BuildType type) throws IOException {
     mPackageName = getApplicationId();
@@ -78,6 +93,21 @@ public class ManifestMergeTask extends Task<AndroidModule> {
     mLibraryManifestFiles = manifests.toArray(new File[0]);
   }
 
+  @Override
+  public List<File> getInputFiles() {
+    List<File> inputs = new ArrayList<>();
+    // the sdk versions, version code and version name are read from build.gradle
+    inputs.add(getModule().getGradleFile());
+    inputs.add(mMainManifest);
+    inputs.addAll(Arrays.asList(mLibraryManifestFiles));
+    return inputs;
+  }
+
+  @Override
+  public List<File> getOutputFiles() {
+    return Collections.singletonList(mOutputFile);
+  }
+
   @Override
   public void run() throws IOException, CompilationFailedException {
 
@@ -1,34 +1,37 @@
 package com.tyron.builder.compiler.symbol;
 
-import android.util.Log;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.CleanTask;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
+import com.tyron.builder.compiler.incremental.resource.IncrementalAssembleLibraryTask;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
 import com.tyron.builder.compiler.resource.AAPT2Compiler;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
-import com.tyron.builder.project.cache.CacheHolder;
-import com.tyron.common.util.Cache;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import org.apache.commons.io.FileUtils;
+import java.util.Set;
 
 /** Class that loads R.txt files generated by AAPT/AAPT2 and converts them to R.java class files */
 public class MergeSymbolsTask extends Task<AndroidModule> {
 
-  public static final CacheHolder.CacheKey<Void, Void> CACHE_KEY =
-      new CacheHolder.CacheKey<>("mergeSymbolsCache");
-
   private File mSymbolOutputDir;
   private File mFullResourceFile;
 
+  /** package name -> R.txt files of the libraries with that package */
+  private Multimap<String, File> mLibraries;
+
+  private List<File> mLibraryManifests;
+
   public MergeSymbolsTask(Project project, AndroidModule module, ILogger logger) {
     super(project, module, logger);
   }
@@ -39,18 +42,23 @@ public class MergeSymbolsTask extends Task<AndroidModule> {
   }
 
   @Override
-  public void prepare(BuildType type) throws IOException {
-    mSymbolOutputDir = new File(getModule().getBuildDirectory(), "gen");
-    mFullResourceFile = new File(getModule().getBuildDirectory(), "bin/res/R.txt");
+  public Set<Class<?>> getDependencies() {
+    // reads the R.txt files written by aapt2
+    return new HashSet<>(
+        Arrays.asList(
+            CleanTask.class,
+            CheckLibrariesTask.class,
+            IncrementalAssembleLibraryTask.class,
+            IncrementalAapt2Task.class));
   }
 
   @Override
-  public void run() throws IOException, CompilationFailedException {
-    Cache<Void, Void> cache = getModule().getCache(CACHE_KEY, new Cache<>());
-    SymbolLoader fullSymbolValues = null;
-    Multimap<String, SymbolLoader> libMap = ArrayListMultimap.create();
+  public void prepare(BuildType type) throws IOException {
+    mSymbolOutputDir = new File(getModule().getBuildDirectory(), "gen");
+    mFullResourceFile = new File(getModule().getBuildDirectory(), "bin/res/R.txt");
 
-    List<File> RFiles = new ArrayList<>();
+    mLibraries = ArrayListMultimap.create();
+    mLibraryManifests = new ArrayList<>();
     for (File library : getModule().getLibraries()) {
       File parent = library.getParentFile();
       if (parent == null) {
@@ -58,78 +66,86 @@ public class MergeSymbolsTask extends Task<AndroidModule> {
         continue;
       }
 
-      String packageName = AAPT2Compiler.getPackageName(new File(parent, "AndroidManifest.xml"));
-      if (packageName == null) {
+      File rFile = new File(parent, "R.txt");
+      if (!rFile.exists()) {
         continue;
       }
 
-      if (packageName.equals(getModule().getNameSpace())) {
-        // only generate libraries
+      File manifest = new File(parent, "AndroidManifest.xml");
+      mLibraryManifests.add(manifest);
+      String packageName = AAPT2Compiler.getPackageName(manifest);
+      if (packageName == null) {
         continue;
       }
 
-      File rFile = new File(parent, "R.txt");
-      if (!rFile.exists()) {
+      if (packageName.equals(getModule().getNameSpace())) {
+        // only generate libraries
         continue;
       }
 
-      RFiles.add(rFile);
+      mLibraries.put(packageName, rFile);
     }
 
-    for (Cache.Key<Void> key : new HashSet<>(cache.getKeys())) {
-      if (!RFiles.contains(key.file.toFile())) {
-        Log.d(
-            "MergeSymbolsTask",
-            "Found deleted resource file, removing "
-                + key.file.toFile().getName()
-                + " on the cache.");
-        cache.remove(key.file, (Void) null);
-        FileUtils.delete(key.file.toFile());
+    // run is skipped when the R classes are up to date, they still need to be registered
+    for (File output : getOutputFiles()) {
+      if (output.exists()) {
+        getModule().addResourceClass(output);
       }
     }
+  }
+
+  @Override
+  public List<File> getInputFiles() {
+    List<File> inputs = new ArrayList<>();
+    inputs.add(mFullResourceFile);
+    inputs.addAll(mLibraryManifests);
+    inputs.addAll(mLibraries.values());
+    return inputs;
+  }
+
+  @Override
+  public List<File> getOutputFiles() {
+    List<File> outputs = new ArrayList<>();
+    for (String packageName : mLibraries.keySet()) {
+      outputs.add(SymbolWriter.getOutputFile(mSymbolOutputDir.getAbsolutePath(), packageName));
+    }
+    return outputs;
+  }
 
-    for (File rFile : RFiles) {
+  @Override
+  public void run() throws IOException, CompilationFailedException {
+    File cacheFile = new File(getModule().getBuildDirectory(), "caches/symbols.bin");
+    SymbolCache cache = SymbolCache.read(cacheFile);
 
-      if (!cache.needs(rFile.toPath(), null)) {
-        continue;
-      }
+    // the ids of the library symbols are taken from the full R.txt
+    boolean valuesModified = cache.isModified(mFullResourceFile);
+    SymbolLoader fullSymbolValues = null;
 
-      File parent = rFile.getParentFile();
-      if (parent == null) {
-        getLogger().error("Unable to access parent directory for " + rFile);
-        continue;
-      }
+    for (String packageName : mLibraries.keySet()) {
+      List<File> rFiles = new ArrayList<>(mLibraries.get(packageName));
+      File output = SymbolWriter.getOutputFile(mSymbolOutputDir.getAbsolutePath(), packageName);
 
-      String packageName = AAPT2Compiler.getPackageName(new File(parent, "AndroidManifest.xml"));
-      if (packageName == null) {
+      boolean modified = cache.setFiles(packageName, rFiles) | valuesModified | !output.exists();
+      for (File rFile : rFiles) {
+        modified |= cache.isModified(rFile);
+      }
+      if (!modified) {
         continue;
       }
 
       if (fullSymbolValues == null) {
-        fullSymbolValues = new SymbolLoader(mFullResourceFile, getLogger());
-        fullSymbolValues.load();
+        fullSymbolValues = cache.load(mFullResourceFile, getLogger());
       }
-      SymbolLoader libSymbols = new SymbolLoader(rFile, getLogger());
-      libSymbols.load();
-
-      libMap.put(packageName, libSymbols);
-    }
-
-    // now loop on all the package name, merge all the symbols to write, and write them
-    for (String packageName : libMap.keySet()) {
-      Collection<SymbolLoader> symbols = libMap.get(packageName);
-
       SymbolWriter writer =
           new SymbolWriter(
               mSymbolOutputDir.getAbsolutePath(), packageName, fullSymbolValues, getModule());
-      for (SymbolLoader loader : symbols) {
-        writer.addSymbolsToWrite(loader);
+      for (File rFile : rFiles) {
+        writer.addSymbolsToWrite(cache.load(rFile, getLogger()));
       }
       writer.write();
     }
 
-    for (File file : RFiles) {
-      cache.load(file.toPath(), null, null);
-    }
+    // written only once every R class is up to date with the cached symbols
+    cache.write(cacheFile);
   }
 }
@@ -0,0 +1,213 @@
+package com.tyron.builder.compiler.symbol;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.tyron.builder.log.ILogger;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The symbols of the R.txt files read by {@link MergeSymbolsTask}, stored in a binary form along
+ * with the size and modification time of the files, so a file is only parsed again when it changes.
+ * It also remembers the R.txt files each R class was last generated from.
+ */
+class SymbolCache {
+
+  private static final int VERSION = 1;
+
+  private static class Entry {
+    final long length;
+    final long lastModified;
+    final Table<String, String, SymbolLoader.SymbolEntry> symbols;
+
+    Entry(long length, long lastModified, Table<String, String, SymbolLoader.SymbolEntry> symbols) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.symbols = symbols;
+    }
+  }
+
+  /** path of the R.txt file -> its symbols */
+  private final Map<String, Entry> mEntries = new HashMap<>();
+
+  /** package name -> paths of the R.txt files its R class was generated from */
+  private final Map<String, List<String>> mPackages = new HashMap<>();
+
+  /** The files looked up since the cache was read, the others are not written back */
+  private final Set<String> mUsed = new HashSet<>();
+
+  /** The packages whose files were recorded since the cache was read, the others are dropped */
+  private final Set<String> mSeenPackages = new HashSet<>();
+
+  private boolean mChanged;
+
+  /**
+   * @return whether the file changed since its symbols were cached
+   */
+  boolean isModified(File file) {
+    String path = file.getAbsolutePath();
+    mUsed.add(path);
+    Entry entry = mEntries.get(path);
+    return entry == null
+        || entry.length != file.length()
+        || entry.lastModified != file.lastModified();
+  }
+
+  /** Returns the symbols of the given R.txt file, parsing it only if it changed. */
+  SymbolLoader load(File file, ILogger logger) throws IOException {
+    if (!isModified(file)) {
+      return new SymbolLoader(mEntries.get(file.getAbsolutePath()).symbols);
+    }
+    // read the size and time before the contents so a file modified meanwhile is read again
+    long length = file.length();
+    long lastModified = file.lastModified();
+    SymbolLoader loader = new SymbolLoader(file, logger);
+    loader.load();
+    mEntries.put(file.getAbsolutePath(), new Entry(length, lastModified, loader.getSymbols()));
+    mChanged = true;
+    return loader;
+  }
+
+  /**
+   * Records the R.txt files the R class of the given package is generated from.
+   *
+   * @return whether they differ from the files it was last generated from
+   */
+  boolean setFiles(String packageName, List<File> files) {
+    List<String> paths = new ArrayList<>(files.size());
+    for (File file : files) {
+      paths.add(file.getAbsolutePath());
+    }
+    mSeenPackages.add(packageName);
+    if (paths.equals(mPackages.put(packageName, paths))) {
+      return false;
+    }
+    mChanged = true;
+    return true;
+  }
+
+  /**
+   * Reads the cache previously written with {@link #write(File)}, returns an empty cache if the
+   * file does not exist or cannot be read.
+   */
+  static SymbolCache read(File file) {
+    SymbolCache cache = new SymbolCache();
+    if (!file.isFile()) {
+      return cache;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return cache;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String path = in.readUTF();
+        long length = in.readLong();
+        long lastModified = in.readLong();
+        cache.mEntries.put(path, new Entry(length, lastModified, readSymbols(in)));
+      }
+      int packages = in.readInt();
+      for (int i = 0; i < packages; i++) {
+        String packageName = in.readUTF();
+        int count = in.readInt();
+        List<String> paths = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+          paths.add(in.readUTF());
+        }
+        cache.mPackages.put(packageName, paths);
+      }
+      return cache;
+    } catch (IOException e) {
+      return new SymbolCache();
+    }
+  }
+
+  private static Table<String, String, SymbolLoader.SymbolEntry> readSymbols(DataInputStream in)
+      throws IOException {
+    Table<String, String, SymbolLoader.SymbolEntry> symbols = HashBasedTable.create();
+    int rows = in.readInt();
+    for (int i = 0; i < rows; i++) {
+      String className = in.readUTF();
+      int count = in.readInt();
+      for (int j = 0; j < count; j++) {
+        String name = in.readUTF();
+        String type = in.readUTF();
+        String value = readString(in);
+        symbols.put(className, name, new SymbolLoader.SymbolEntry(name, type, value));
+      }
+    }
+    return symbols;
+  }
+
+  /** The values of the styleables can be longer than what writeUTF supports */
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the entries of the files and packages looked up since the cache was read if they
+   * changed, replacing it atomically.
+   */
+  void write(File file) throws IOException {
+    mChanged |= mEntries.keySet().retainAll(mUsed);
+    mChanged |= mPackages.keySet().retainAll(mSeenPackages);
+    if (!mChanged) {
+      return;
+    }
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          out.writeInt(mEntries.size());
+          for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().length);
+            out.writeLong(entry.getValue().lastModified);
+            writeSymbols(out, entry.getValue().symbols);
+          }
+          out.writeInt(mPackages.size());
+          for (Map.Entry<String, List<String>> entry : mPackages.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String path : entry.getValue()) {
+              out.writeUTF(path);
+            }
+          }
+        });
+    mChanged = false;
+  }
+
+  private static void writeSymbols(
+      DataOutputStream out, Table<String, String, SymbolLoader.SymbolEntry> symbols)
+      throws IOException {
+    Map<String, Map<String, SymbolLoader.SymbolEntry>> rows = symbols.rowMap();
+    out.writeInt(rows.size());
+    for (Map.Entry<String, Map<String, SymbolLoader.SymbolEntry>> row : rows.entrySet()) {
+      out.writeUTF(row.getKey());
+      out.writeInt(row.getValue().size());
+      for (SymbolLoader.SymbolEntry entry : row.getValue().values()) {
+        out.writeUTF(entry.getName());
+        out.writeUTF(entry.getType());
+        byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(value.length);
+        out.write(value);
+      }
+    }
+  }
+}
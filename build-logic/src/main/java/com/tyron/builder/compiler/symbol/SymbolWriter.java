@@ -9,12 +9,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.io.FileUtils;
 
 /**
  * A class to write R.java classes based on data read from text symbol files generated by AAPT/AAPT2
@@ -101,40 +102,43 @@ public class SymbolWriter {
     }
   }
 
-  public void write() throws IOException {
-    Splitter splitter = Splitter.on('.');
-    Iterable<String> folders = splitter.split(mPackageName);
-    File file = new File(mOutFolder);
-    for (String folder : folders) {
+  /**
+   * @return the R.java file of the given package in the given folder
+   */
+  public static File getOutputFile(String outFolder, String packageName) {
+    File file = new File(outFolder);
+    for (String folder : Splitter.on('.').split(packageName)) {
       file = new File(file, folder);
     }
-    boolean newFile = false;
-    if (!file.exists()) {
-      newFile = true;
-      if (!file.mkdirs()) {
-        throw new IOException("Unable to create resource directories for " + file);
-      }
-    }
-    file = new File(file, "R.java");
+    return new File(file, "R.java");
+  }
 
-    String contents = getString();
+  /**
+   * Writes the R class, the file is left untouched if it already has the same contents so the class
+   * is not compiled again.
+   */
+  public void write() throws IOException {
+    File file = getOutputFile(mOutFolder, mPackageName);
+    File parent = file.getParentFile();
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Unable to create resource directories for " + parent);
+    }
 
-    if (newFile || !file.exists()) {
-      if (!file.createNewFile()) {
-        throw new IOException("Unable to create R.txt file");
-      }
-      FileUtils.writeStringToFile(file, contents, Charset.defaultCharset());
-    } else {
-      String oldContents;
-      try {
-        oldContents = FileUtils.readFileToString(file, Charset.defaultCharset());
-      } catch (IOException e) {
-        oldContents = "";
-      }
-      if (!oldContents.equals(contents)) {
-        FileUtils.writeStringToFile(file, contents, Charset.defaultCharset());
-      }
+    byte[] contents = getString().getBytes(Charset.defaultCharset());
+    if (!hasContents(file, contents)) {
+      Files.write(file.toPath(), contents);
     }
     mProject.addResourceClass(file);
   }
+
+  private static boolean hasContents(File file, byte[] contents) {
+    if (!file.isFile() || file.length() != contents.length) {
+      return false;
+    }
+    try {
+      return Arrays.equals(Files.readAllBytes(file.toPath()), contents);
+    } catch (IOException e) {
+      return false;
+    }
+  }
 }
@@ -2,6 +2,7 @@ package com.tyron.builder.compiler.viewbinding
 
 import android.util.Log
 import com.tyron.builder.compiler.BuildType
+import com.tyron.builder.compiler.CleanTask
 import com.tyron.builder.compiler.Task
 import com.tyron.builder.exception.CompilationFailedException
 import com.tyron.builder.log.ILogger
@@ -38,6 +39,9 @@ class GenerateViewBindingTask(
 
     override fun getName() = TAG
 
+    // only reads the layouts and the build.gradle file
+    override fun getDependencies(): Set<Class<*>> = setOf(CleanTask::class.java)
+
     override fun prepare(type: BuildType?) {
         outputDirectory = File(module.buildDirectory, VIEW_BINDING_GEN_DIR)
         doPrepare()
@@ -0,0 +1,59 @@
+package com.tyron.builder.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TaskHistoryTest {
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File mInput;
+  private List<File> mInputs;
+
+  @Before
+  public void setup() throws IOException {
+    mInput = mFolder.newFile("input.txt");
+    write("contents");
+    mInputs = Collections.singletonList(mInput);
+  }
+
+  private void write(String contents) throws IOException {
+    Files.write(mInput.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testTouchedInputKeepsItsFingerprint() throws IOException {
+    File historyFile = new File(mFolder.getRoot(), "history.bin");
+    TaskHistory history = TaskHistory.read(historyFile);
+    String fingerprint = history.fingerprintContents(mInputs);
+    String metadata = TaskHistory.fingerprint(mInputs);
+    history.write(historyFile);
+
+    assertThat(mInput.setLastModified(mInput.lastModified() + 2000)).isTrue();
+    TaskHistory restored = TaskHistory.read(historyFile);
+    assertThat(restored.fingerprintContents(mInputs)).isEqualTo(fingerprint);
+    // the timestamp is still part of the metadata only fingerprint
+    assertThat(TaskHistory.fingerprint(mInputs)).isNotEqualTo(metadata);
+  }
+
+  @Test
+  public void testChangedInputChangesItsFingerprint() throws IOException {
+    TaskHistory history = new TaskHistory();
+    String fingerprint = history.fingerprintContents(mInputs);
+
+    write("changed!");
+    assertThat(mInput.setLastModified(mInput.lastModified() + 2000)).isTrue();
+
+    assertThat(history.fingerprintContents(mInputs)).isNotEqualTo(fingerprint);
+  }
+}
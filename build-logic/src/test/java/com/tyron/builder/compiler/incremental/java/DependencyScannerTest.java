@@ -0,0 +1,158 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Trees;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DependencyScannerTest {
+
+  private static final String CALLBACK =
+      "package test;\n"
+          + "\n"
+          + "public interface Callback {\n"
+          + "  void call(String s);\n"
+          + "}\n";
+
+  private static final String RUNNER =
+      "package test;\n"
+          + "\n"
+          + "public class Runner {\n"
+          + "  public static void run(Callback callback) {\n"
+          + "    callback.call(\"\");\n"
+          + "  }\n"
+          + "\n"
+          + "  public static int value() {\n"
+          + "    return 1;\n"
+          + "  }\n"
+          + "}\n";
+
+  private static final String LAMBDA_USER =
+      "package test;\n"
+          + "\n"
+          + "class LambdaUser {\n"
+          + "  void use() {\n"
+          + "    Runner.run(s -> {});\n"
+          + "  }\n"
+          + "}\n";
+
+  private static final String REFERENCE_USER =
+      "package test;\n"
+          + "\n"
+          + "class ReferenceUser {\n"
+          + "  void use() {\n"
+          + "    Runner.run(System.out::println);\n"
+          + "  }\n"
+          + "}\n";
+
+  private Map<String, String> mSources;
+  private JavaDependencyGraph mGraph;
+
+  @Before
+  public void setup() throws IOException {
+    mSources = new LinkedHashMap<>();
+    mSources.put("Callback", CALLBACK);
+    mSources.put("Runner", RUNNER);
+    mSources.put("LambdaUser", LAMBDA_USER);
+    mSources.put("ReferenceUser", REFERENCE_USER);
+    mGraph = new JavaDependencyGraph();
+    compile(mSources.keySet());
+  }
+
+  @Test
+  public void testFunctionalInterfaceChangeRecompilesLambdasAndReferences() throws IOException {
+    mSources.put("Callback", CALLBACK.replace("String s", "Object o"));
+
+    Set<String> changed = compile(setOf("Callback"));
+
+    assertThat(changed).containsExactly("test.Callback");
+    assertThat(mGraph.getDependents(changed))
+        .containsExactly(
+            new File("Runner.java").getAbsoluteFile(),
+            new File("LambdaUser.java").getAbsoluteFile(),
+            new File("ReferenceUser.java").getAbsoluteFile());
+  }
+
+  @Test
+  public void testMethodBodyChangeDoesNotRecompileDependents() throws IOException {
+    mSources.put("Runner", RUNNER.replace("return 1;", "return 2;"));
+
+    Set<String> changed = compile(setOf("Runner"));
+
+    assertThat(changed).isEmpty();
+    assertThat(mGraph.getDependents(changed)).isEmpty();
+  }
+
+  /**
+   * Compiles the given sources against the others like {@link IncrementalJavaTask} does and updates
+   * the graph with them.
+   *
+   * @return the classes whose ABI has changed
+   */
+  private Set<String> compile(Set<String> names) throws IOException {
+    List<JavaFileObject> files = new ArrayList<>();
+    for (Map.Entry<String, String> entry : mSources.entrySet()) {
+      files.add(new Source(entry.getKey(), entry.getValue()));
+    }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavacTask task = (JavacTask) compiler.getTask(null, null, null, null, null, files);
+    Iterable<? extends CompilationUnitTree> units = task.parse();
+    task.analyze();
+
+    Trees trees = Trees.instance(task);
+    Set<String> changed = new HashSet<>();
+    for (CompilationUnitTree unit : units) {
+      String name = unit.getSourceFile().getName();
+      if (!names.contains(name.substring(name.lastIndexOf('/') + 1).replace(".java", ""))) {
+        continue;
+      }
+      DependencyScanner scanner = new DependencyScanner(trees, task.getElements());
+      scanner.scan(unit, null);
+      changed.addAll(
+          mGraph.update(
+              new File(name.substring(name.lastIndexOf('/') + 1)),
+              scanner.getAbi(),
+              scanner.getReferences()));
+    }
+    return changed;
+  }
+
+  private static Set<String> setOf(String... names) {
+    Set<String> set = new HashSet<>();
+    for (String name : names) {
+      set.add(name);
+    }
+    return set;
+  }
+
+  private static class Source extends SimpleJavaFileObject {
+
+    private final String mContents;
+
+    Source(String name, String contents) {
+      super(URI.create("string:///test/" + name + ".java"), Kind.SOURCE);
+      mContents = contents;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return mContents;
+    }
+  }
+}
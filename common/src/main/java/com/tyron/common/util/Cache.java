@@ -1,10 +1,19 @@
 package com.tyron.common.util;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -12,8 +21,20 @@ import java.util.Set;
 
 /**
  * Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires.
+ *
+ * <p>The cache can be written to and read back from disk with {@link #writeTo(File)} and {@link
+ * #readFrom(File)} so that its state survives process restarts. A written mapping also remembers
+ * the content digest of its file, so a file whose timestamp changed but whose contents did not is
+ * still considered up to date. The digest is only computed when the cache is written, caches that
+ * are only kept in memory just compare timestamps.
  */
 public class Cache<K, V> {
+
+  /** Increment this whenever the on-disk format written by {@link #writeTo(File)} changes. */
+  private static final int VERSION = 1;
+
+  private static final int MAGIC = 0x43414348;
+
   public static class Key<K> {
     public final Path file;
     public final K key;
@@ -38,10 +59,13 @@ public class Cache<K, V> {
 
   private class Value {
     final V value;
-    final Instant created = Instant.now();
+    byte[] digest;
+    Instant created;
 
-    Value(V value) {
+    Value(V value, byte[] digest, Instant created) {
       this.value = value;
+      this.digest = digest;
+      this.created = created;
     }
   }
 
@@ -70,6 +94,12 @@ public class Cache<K, V> {
     }
     // TODO remove all keys associated with file when file changes
     boolean before = value.created.isBefore(modified.toInstant());
+    // only the mappings that have been written to disk have a digest
+    if (before && value.digest != null && Arrays.equals(value.digest, digest(file))) {
+      // the file was touched but its contents are the same
+      value.created = Instant.now();
+      return false;
+    }
     return before;
   }
 
@@ -88,7 +118,7 @@ public class Cache<K, V> {
   public void load(Path file, K k, V v) {
     // TODO limit total size of cache
     Key<K> key = new Key<>(file, k);
-    Value value = new Value(v);
+    Value value = new Value(v, null, Instant.now());
     map.put(key, value);
   }
 
@@ -99,4 +129,107 @@ public class Cache<K, V> {
     }
     return (V) map.get(key).value;
   }
+
+  /**
+   * Writes the contents of this cache to the given file. The file is first written to a temporary
+   * file next to it and then moved in place, so a crash while writing never leaves a corrupt cache
+   * behind.
+   *
+   * @throws IOException if the file cannot be written or if a key or value is not {@link
+   *     Serializable}
+   */
+  public void writeTo(File file) throws IOException {
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          ObjectOutputStream out = new ObjectOutputStream(stream);
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          out.writeInt(map.size());
+          for (Map.Entry<Key<K>, Value> entry : map.entrySet()) {
+            Key<K> key = entry.getKey();
+            Value value = entry.getValue();
+            if (value.digest == null && !isModifiedAfter(key.file, value.created)) {
+              value.digest = digest(key.file);
+            }
+            out.writeUTF(key.file.toString());
+            out.writeObject(key.key);
+            out.writeObject(value.value);
+            out.writeObject(value.digest);
+            out.writeLong(value.created.toEpochMilli());
+          }
+          out.flush();
+        });
+  }
+
+  /**
+   * Reads a cache previously written with {@link #writeTo(File)}. Entries whose output files no
+   * longer exist are dropped.
+   *
+   * @return the cache, or {@code null} if the file does not exist, was written by a different
+   *     version or cannot be read
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> Cache<K, V> readFrom(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      Cache<K, V> cache = new Cache<>();
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        Path path = Paths.get(in.readUTF());
+        K k = (K) in.readObject();
+        V v = (V) in.readObject();
+        byte[] digest = (byte[]) in.readObject();
+        Instant created = Instant.ofEpochMilli(in.readLong());
+        if (!outputsExist(v)) {
+          continue;
+        }
+        cache.map.put(new Key<>(path, k), cache.new Value(v, digest, created));
+      }
+      return cache;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      return null;
+    }
+  }
+
+  private static boolean outputsExist(Object value) {
+    if (value instanceof File) {
+      return ((File) value).exists();
+    }
+    if (value instanceof Collection) {
+      for (Object o : (Collection<?>) value) {
+        if (o instanceof File && !((File) o).exists()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isModifiedAfter(Path file, Instant instant) {
+    try {
+      return Files.getLastModifiedTime(file).toInstant().isAfter(instant);
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  private static byte[] digest(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try {
+      MessageDigest digest = Digests.newDigest(Digests.SHA1);
+      Digests.update(digest, file.toFile());
+      return digest.digest();
+    } catch (IOException e) {
+      return null;
+    }
+  }
 }
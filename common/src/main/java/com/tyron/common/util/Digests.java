@@ -0,0 +1,61 @@
+package com.tyron.common.util;
+
+import com.google.common.io.BaseEncoding;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Utility methods to compute the digests used to identify the contents of files */
+public class Digests {
+
+  public static final String MD5 = "MD5";
+  public static final String SHA1 = "SHA-1";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * @param algorithm a digest algorithm every platform supports, such as {@link #SHA1}
+   */
+  public static MessageDigest newDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Adds the contents of the file to the digest */
+  public static void update(MessageDigest digest, File file) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+  }
+
+  /**
+   * @return the lowercase hex digest of the contents of the file
+   */
+  public static String digest(File file, String algorithm) throws IOException {
+    MessageDigest digest = newDigest(algorithm);
+    update(digest, file);
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return the lowercase hex digest of the UTF-8 bytes of the string
+   */
+  public static String digest(String string, String algorithm) {
+    return toHex(newDigest(algorithm).digest(string.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static String toHex(byte[] bytes) {
+    return BaseEncoding.base16().lowerCase().encode(bytes);
+  }
+}
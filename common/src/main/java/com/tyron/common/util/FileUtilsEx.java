@@ -1,10 +1,20 @@
 package com.tyron.common.util;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 public class FileUtilsEx {
 
+  /** Writes the contents of a file to the given stream */
+  public interface ContentWriter {
+    void write(OutputStream out) throws IOException;
+  }
+
   /**
    * Creates the given file and throws {@link IOException} if it fails, also checks if the file
    * already exists before creating
@@ -14,4 +24,42 @@ public class FileUtilsEx {
       throw new IOException("Unable to create file: " + file);
     }
   }
+
+  /**
+   * Writes a file through a temporary file next to it that is then moved in place, so a reader
+   * never sees a partially written file and a crash never leaves a corrupt one behind. Each call
+   * uses its own temporary file, so concurrent writers of the same file do not interfere. The
+   * stream given to the writer is buffered and is closed by this method.
+   */
+  public static void writeAtomically(File file, ContentWriter writer) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory " + parent);
+    }
+    File temp = File.createTempFile(file.getName(), ".tmp", parent);
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp.toPath()))) {
+        writer.write(out);
+      }
+      moveAtomically(temp, file);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Moves a file to the given destination, replacing it atomically when the file system supports
+   * it.
+   */
+  public static void moveAtomically(File source, File destination) throws IOException {
+    try {
+      Files.move(
+          source.toPath(),
+          destination.toPath(),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package com.tyron.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileUtilsExTest {
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAtomically() throws IOException {
+    File file = new File(mFolder.getRoot(), "caches/file.bin");
+
+    FileUtilsEx.writeAtomically(file, out -> out.write(new byte[] {1, 2}));
+    FileUtilsEx.writeAtomically(file, out -> out.write(new byte[] {3}));
+
+    assertArrayEquals(new byte[] {3}, Files.readAllBytes(file.toPath()));
+    assertEquals(1, file.getParentFile().list().length);
+  }
+
+  @Test
+  public void testFailedWriteKeepsTheFile() throws IOException {
+    File file = new File(mFolder.getRoot(), "file.bin");
+    FileUtilsEx.writeAtomically(file, out -> out.write(new byte[] {1}));
+
+    try {
+      FileUtilsEx.writeAtomically(
+          file,
+          out -> {
+            out.write(new byte[] {2});
+            throw new IOException("failed");
+          });
+      fail();
+    } catch (IOException expected) {
+      // the previous contents are kept
+    }
+
+    assertArrayEquals(new byte[] {1}, Files.readAllBytes(file.toPath()));
+    assertEquals(1, mFolder.getRoot().list().length);
+  }
+
+  @Test
+  public void testDigests() throws IOException {
+    File file = mFolder.newFile("file.txt");
+    Files.write(file.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", Digests.digest(file, Digests.SHA1));
+    assertEquals("900150983cd24fb0d6963f7d28e17f72", Digests.digest(file, Digests.MD5));
+    assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", Digests.digest("abc", Digests.SHA1));
+  }
+}
@@ -17,6 +17,7 @@ public class CompletionParameters {
   private final int mColumn;
   private final long mIndex;
   private final Editor mEditor;
+  private final boolean mIndexing;
 
   public static Builder builder() {
     return new Builder();
@@ -31,7 +32,8 @@ public class CompletionParameters {
       String prefix,
       int line,
       int column,
-      long index) {
+      long index,
+      boolean indexing) {
     mProject = project;
     mModule = module;
     mEditor = editor;
@@ -41,6 +43,7 @@ public class CompletionParameters {
     mLine = line;
     mColumn = column;
     mIndex = index;
+    mIndexing = indexing;
   }
 
   public Project getProject() {
@@ -79,6 +82,14 @@ public class CompletionParameters {
     return mEditor;
   }
 
+  /**
+   * @return whether the project is being indexed or compiled, only the providers that are {@link
+   *     CompletionProvider#isAvailableDuringIndexing() available during indexing} are called then
+   */
+  public boolean isIndexing() {
+    return mIndexing;
+  }
+
   @Override
   public String toString() {
     return "CompletionParameters{"
@@ -100,6 +111,8 @@ public class CompletionParameters {
         + mIndex
         + ", mEditor="
         + mEditor
+        + ", mIndexing="
+        + mIndexing
         + '}';
   }
 
@@ -114,6 +127,7 @@ public class CompletionParameters {
     private int column;
     private long index;
     private Editor editor;
+    private boolean indexing;
 
     private Builder() {}
 
@@ -162,9 +176,14 @@ public class CompletionParameters {
       return this;
     }
 
+    public Builder setIndexing(boolean indexing) {
+      this.indexing = indexing;
+      return this;
+    }
+
     public CompletionParameters build() {
       return new CompletionParameters(
-          project, module, editor, file, contents, prefix, line, column, index);
+          project, module, editor, file, contents, prefix, line, column, index, indexing);
     }
   }
 }
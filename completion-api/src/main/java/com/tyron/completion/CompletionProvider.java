@@ -29,6 +29,16 @@ public abstract class CompletionProvider {
 
   public abstract CompletionList complete(CompletionParameters parameters);
 
+  /**
+   * Whether this provider can complete while the project is being indexed or compiled, when the
+   * compiler and indexes may not be available. Providers that return true are called with {@link
+   * CompletionParameters#isIndexing()} set and should only return the items they can compute
+   * without them, such as keywords, snippets or results cached from a previous completion.
+   */
+  public boolean isAvailableDuringIndexing() {
+    return false;
+  }
+
   @SuppressLint("NewApi")
   public static ImmutableList<CompletionProvider> forParameters(
       @NotNull CompletionParameters parameters) {
@@ -1,6 +1,8 @@
 package com.tyron.completion.main;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.Module;
 import com.tyron.common.logging.IdeLog;
@@ -8,15 +10,43 @@ import com.tyron.completion.CompletionParameters;
 import com.tyron.completion.CompletionProvider;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressIndicator;
+import com.tyron.completion.progress.ProgressManager;
+import com.tyron.completion.progress.TaskPool;
 import com.tyron.editor.Editor;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.Nullable;
 
-/** Main entry point for the completions api. */
+/**
+ * Main entry point for the completions api.
+ *
+ * <p>When more than one provider accepts the file, the providers are run at the same time and the
+ * results of each provider are passed to the caller as soon as it finishes. The providers share the
+ * progress indicator of the calling thread, so canceling the calling thread with {@link
+ * ProgressManager#cancelThread(Thread)} cancels all of them.
+ *
+ * <p>While the project is being indexed or compiled, only the providers that are {@link
+ * CompletionProvider#isAvailableDuringIndexing() available during indexing} are called.
+ *
+ * <p>The results of the last request are kept in a {@link CompletionSession}. While the user keeps
+ * typing the same identifier they are filtered again with the longer prefix instead of calling the
+ * providers.
+ */
 public class CompletionEngine {
 
+  /** How often the calling thread checks whether it has been canceled while waiting */
+  private static final long CANCELLATION_CHECK_MILLIS = 20;
+
   private static CompletionEngine sInstance = null;
 
   public static CompletionEngine getInstance() {
@@ -28,6 +58,9 @@ public class CompletionEngine {
 
   private final Logger logger = IdeLog.getCurrentLogger(this);
 
+  /** The results of the last request, reused while the user is typing the same identifier */
+  private volatile CompletionSession mSession;
+
   public CompletionEngine() {}
 
   public CompletionList complete(
@@ -40,12 +73,28 @@ public class CompletionEngine {
       int line,
       int column,
       long index) {
-    if (project.isCompiling() || project.isIndexing()) {
-      return CompletionList.EMPTY;
-    }
+    return complete(project, module, editor, file, contents, prefix, line, column, index, null);
+  }
 
-    CompletionList list = new CompletionList();
-    list.items = new ArrayList<>();
+  /**
+   * Complete the given file.
+   *
+   * @param partialResultConsumer called on the calling thread with the results of each provider as
+   *     soon as it finishes, so they can be shown before the slower providers are done
+   * @return the results of all the providers, in the order the providers are registered
+   */
+  public CompletionList complete(
+      Project project,
+      Module module,
+      Editor editor,
+      File file,
+      String contents,
+      String prefix,
+      int line,
+      int column,
+      long index,
+      @Nullable Consumer<CompletionList> partialResultConsumer) {
+    boolean indexing = project.isCompiling() || project.isIndexing();
 
     CompletionParameters parameters =
         CompletionParameters.builder()
@@ -58,35 +107,153 @@ public class CompletionEngine {
             .setLine(line)
             .setColumn(column)
             .setIndex(index)
+            .setIndexing(indexing)
             .build();
+
+    CompletionSession session = mSession;
+    if (session != null) {
+      List<CompletionList> results = session.refilter(parameters);
+      if (results != null) {
+        if (partialResultConsumer != null) {
+          results.forEach(partialResultConsumer);
+        }
+        return merge(results);
+      }
+      mSession = null;
+    }
+
     List<CompletionProvider> providers = CompletionProvider.forParameters(parameters);
-    for (CompletionProvider provider : providers) {
-      try {
-        CompletionList complete = provider.complete(parameters);
-        if (complete != null) {
-          list.items.addAll(complete.items);
+    if (indexing) {
+      providers =
+          providers.stream()
+              .filter(CompletionProvider::isAvailableDuringIndexing)
+              .collect(Collectors.toList());
+    }
+
+    List<CompletionList> results = complete(providers, parameters, partialResultConsumer);
+    CompletionList list = merge(results);
+    mSession = CompletionSession.create(parameters, results, list);
+    return list;
+  }
+
+  /**
+   * @return the results of the providers that did not fail, in the order of the providers
+   */
+  private List<CompletionList> complete(
+      List<CompletionProvider> providers,
+      CompletionParameters parameters,
+      @Nullable Consumer<CompletionList> partialResultConsumer) {
+    if (providers.size() == 1) {
+      // no need to switch threads
+      CompletionList complete = complete(providers.get(0), parameters);
+      if (complete == null) {
+        return Collections.emptyList();
+      }
+      if (partialResultConsumer != null) {
+        partialResultConsumer.accept(complete);
+      }
+      return Collections.singletonList(complete);
+    }
+
+    CompletionList[] results = new CompletionList[providers.size()];
+    ProgressManager progressManager = ProgressManager.getInstance();
+    ProgressIndicator indicator = progressManager.getIndicator(Thread.currentThread());
+    BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+    List<ListenableFuture<CompletionList>> futures = new ArrayList<>();
+    for (int i = 0; i < providers.size(); i++) {
+      CompletionProvider provider = providers.get(i);
+      ListenableFuture<CompletionList> future =
+          progressManager.computeAsync(
+              TaskPool.INTERACTIVE, () -> complete(provider, parameters), indicator);
+      int providerIndex = i;
+      future.addListener(() -> finished.add(providerIndex), MoreExecutors.directExecutor());
+      futures.add(future);
+    }
+
+    try {
+      for (int remaining = providers.size(); remaining > 0; remaining--) {
+        Integer providerIndex = null;
+        while (providerIndex == null) {
+          ProgressManager.checkCanceled();
+          try {
+            providerIndex = finished.poll(CANCELLATION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+          }
         }
-      } catch (Throwable e) {
-        if (e instanceof ProcessCanceledException) {
-          throw e;
+
+        CompletionList result = getResult(futures.get(providerIndex));
+        results[providerIndex] = result;
+        if (result != null && partialResultConsumer != null) {
+          partialResultConsumer.accept(result);
         }
+      }
+    } finally {
+      for (ListenableFuture<CompletionList> future : futures) {
+        future.cancel(false);
+      }
+    }
 
-        String message =
-            "Failed to complete: \n"
-                + "index: "
-                + index
-                + "\n"
-                + "prefix: "
-                + prefix
-                + "\n"
-                + "File: "
-                + file.getName()
-                + "\n"
-                + "Stack trace: "
-                + Throwables.getStackTraceAsString(e);
-        logger.severe(message);
+    List<CompletionList> completed = new ArrayList<>();
+    for (CompletionList result : results) {
+      if (result != null) {
+        completed.add(result);
       }
     }
+    return completed;
+  }
+
+  private static CompletionList merge(List<CompletionList> results) {
+    CompletionList list = new CompletionList();
+    list.items = new ArrayList<>();
+    for (CompletionList result : results) {
+      list.items.addAll(result.items);
+      list.isIncomplete |= result.isIncomplete;
+    }
     return list;
   }
+
+  @Nullable
+  private CompletionList getResult(ListenableFuture<CompletionList> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ProcessCanceledException) {
+        throw (ProcessCanceledException) e.getCause();
+      }
+      // the provider errors are logged by complete(CompletionProvider, CompletionParameters)
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException();
+    }
+  }
+
+  @Nullable
+  private CompletionList complete(CompletionProvider provider, CompletionParameters parameters) {
+    try {
+      return provider.complete(parameters);
+    } catch (Throwable e) {
+      if (e instanceof ProcessCanceledException) {
+        throw e;
+      }
+
+      String message =
+          "Failed to complete: \n"
+              + "index: "
+              + parameters.getIndex()
+              + "\n"
+              + "prefix: "
+              + parameters.getPrefix()
+              + "\n"
+              + "File: "
+              + parameters.getFile().getName()
+              + "\n"
+              + "Stack trace: "
+              + Throwables.getStackTraceAsString(e);
+      logger.severe(message);
+      return null;
+    }
+  }
 }
@@ -0,0 +1,136 @@
+package com.tyron.completion.main;
+
+import com.tyron.completion.CompletionParameters;
+import com.tyron.completion.model.CachedCompletion;
+import com.tyron.completion.model.CompletionList;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The results of the last completion request, reused while the user keeps typing the same
+ * identifier.
+ *
+ * <p>The results of each provider are kept as they were first returned. When the next request only
+ * adds identifier characters at the position of the previous one, the kept results are matched
+ * again against the longer prefix with {@link CompletionList#copy(CompletionList, String)} instead
+ * of calling the providers. Any other edit of the file ends the session.
+ *
+ * <p>The kept results were already matched against the first prefix, so they are only reused when a
+ * longer prefix can only remove items from them. That is not the case before the first character of
+ * the identifier is typed, the providers decide from it which kinds of items to suggest (class
+ * names for an uppercase character, keywords for a lowercase one), so no session is started for an
+ * empty prefix. The session also ends when none of the kept items match anymore, since the
+ * providers may still find items the first request did not return.
+ */
+class CompletionSession extends CachedCompletion {
+
+  private final List<CompletionList> mResults;
+
+  private String mLastContents;
+  private String mLastPrefix;
+  private long mLastIndex;
+
+  private CompletionSession(
+      CompletionParameters parameters, List<CompletionList> results, CompletionList merged) {
+    super(
+        parameters.getFile(),
+        parameters.getLine(),
+        parameters.getColumn(),
+        parameters.getPrefix(),
+        merged);
+    mResults = results;
+    mLastContents = parameters.getContents();
+    mLastPrefix = parameters.getPrefix();
+    mLastIndex = parameters.getIndex();
+  }
+
+  /**
+   * @param results the results of each provider for the given parameters
+   * @return the session, or null if the results cannot be filtered again because the prefix is
+   *     empty or a provider returned an incomplete list
+   */
+  @Nullable
+  static CompletionSession create(
+      @NotNull CompletionParameters parameters,
+      @NotNull List<CompletionList> results,
+      @NotNull CompletionList merged) {
+    if (parameters.getPrefix() == null
+        || parameters.getPrefix().isEmpty()
+        || parameters.getContents() == null) {
+      return null;
+    }
+    for (CompletionList result : results) {
+      if (result.isIncomplete()) {
+        return null;
+      }
+      if (result.getPrefix() == null && !result.items.isEmpty()) {
+        // the items cannot be matched again without knowing the prefix they were matched with
+        return null;
+      }
+    }
+    return new CompletionSession(parameters, new ArrayList<>(results), merged);
+  }
+
+  /**
+   * Returns the results of each provider matched against the prefix of the given request.
+   *
+   * @return null if the session cannot be used for the request or none of its items match the
+   *     prefix anymore, the providers should be called
+   */
+  @Nullable
+  synchronized List<CompletionList> refilter(@NotNull CompletionParameters parameters) {
+    if (!canContinue(parameters)) {
+      return null;
+    }
+    String typed = parameters.getPrefix().substring(getPrefix().length());
+    List<CompletionList> lists = new ArrayList<>(mResults.size());
+    for (CompletionList result : mResults) {
+      if (result.getPrefix() == null) {
+        lists.add(result);
+      } else {
+        lists.add(CompletionList.copy(result, result.getPrefix() + typed));
+      }
+    }
+    if (lists.stream().allMatch(list -> list.items.isEmpty())) {
+      return null;
+    }
+    mLastContents = parameters.getContents();
+    mLastPrefix = parameters.getPrefix();
+    mLastIndex = parameters.getIndex();
+    return lists;
+  }
+
+  private boolean canContinue(CompletionParameters parameters) {
+    String contents = parameters.getContents();
+    String prefix = parameters.getPrefix();
+    if (!getFile().equals(parameters.getFile()) || contents == null || prefix == null) {
+      return false;
+    }
+    if (!prefix.startsWith(mLastPrefix)) {
+      return false;
+    }
+
+    // only identifier characters may have been typed at the previous position
+    int typedLength = prefix.length() - mLastPrefix.length();
+    if (parameters.getIndex() - mLastIndex != typedLength) {
+      return false;
+    }
+    for (int i = mLastPrefix.length(); i < prefix.length(); i++) {
+      if (!Character.isJavaIdentifierPart(prefix.charAt(i))) {
+        return false;
+      }
+    }
+
+    // and the rest of the file has not changed
+    int last = (int) mLastIndex;
+    int current = (int) parameters.getIndex();
+    int tail = mLastContents.length() - last;
+    return current <= contents.length()
+        && contents.length() - current == tail
+        && contents.regionMatches(0, mLastContents, 0, last)
+        && contents.regionMatches(last, prefix, mLastPrefix.length(), typedLength)
+        && contents.regionMatches(current, mLastContents, last, tail);
+  }
+}
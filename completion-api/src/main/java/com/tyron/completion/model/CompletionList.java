@@ -27,6 +27,8 @@ public class CompletionList {
 
   public List<CompletionItem> items = new ArrayList<>();
 
+  private String prefix;
+
   /**
    * For performance reasons, the completion items are limited to a certain amount. A completion
    * provider may indicate that its results are incomplete so next as the user is typing the prefix
@@ -46,6 +48,14 @@ public class CompletionList {
     return items;
   }
 
+  /**
+   * @return the prefix the items were matched against, null if the list was not created with a
+   *     {@link Builder}
+   */
+  public String getPrefix() {
+    return prefix;
+  }
+
   public static CompletionList copy(CompletionList old, String newPrefix) {
     Builder builder = CompletionList.builder(newPrefix);
     if (old.isIncomplete) {
@@ -121,6 +131,7 @@ public class CompletionList {
     public CompletionList build() {
       CompletionList list = new CompletionList();
       list.isIncomplete = this.incomplete;
+      list.prefix = this.completionPrefix;
       list.items = ITEM_ORDERING.immutableSortedCopy(items);
       return list;
     }
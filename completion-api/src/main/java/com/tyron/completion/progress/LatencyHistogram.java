@@ -0,0 +1,113 @@
+package com.tyron.completion.progress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets whose bounds double from one millisecond, recording a duration does
+ * not lock so it can be done by every task of a pool.
+ */
+public class LatencyHistogram {
+
+  /** The first bucket holds the durations below one millisecond, the last one all the others */
+  private static final int BUCKETS = 18;
+
+  private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong mTotalNanos = new AtomicLong();
+  private final AtomicLong mMaxNanos = new AtomicLong();
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    mCounts.incrementAndGet(getBucket(nanos));
+    mTotalNanos.addAndGet(nanos);
+    long max = mMaxNanos.get();
+    while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+      max = mMaxNanos.get();
+    }
+  }
+
+  private static int getBucket(long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    if (millis == 0) {
+      return 0;
+    }
+    int bucket = 64 - Long.numberOfLeadingZeros(millis);
+    return Math.min(bucket, BUCKETS - 1);
+  }
+
+  /**
+   * @return the upper bound in milliseconds of the durations counted by the given bucket, or {@link
+   *     Long#MAX_VALUE} for the last bucket
+   */
+  public static long getUpperBoundMillis(int bucket) {
+    if (bucket >= BUCKETS - 1) {
+      return Long.MAX_VALUE;
+    }
+    return 1L << bucket;
+  }
+
+  public int getBucketCount() {
+    return BUCKETS;
+  }
+
+  public long getCount(int bucket) {
+    return mCounts.get(bucket);
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += mCounts.get(i);
+    }
+    return count;
+  }
+
+  public long getMeanMillis() {
+    long count = getCount();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(mTotalNanos.get() / count);
+  }
+
+  public long getMaxMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(mMaxNanos.get());
+  }
+
+  /**
+   * @param percentile a value between 0 and 100
+   * @return the upper bound of the bucket containing the given percentile, in milliseconds
+   */
+  public long getPercentileMillis(double percentile) {
+    long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += mCounts.get(i);
+      if (seen >= target && seen > 0) {
+        return Math.min(getUpperBoundMillis(i), getMaxMillis());
+      }
+    }
+    return getMaxMillis();
+  }
+
+  @Override
+  public String toString() {
+    return "count="
+        + getCount()
+        + ", mean="
+        + getMeanMillis()
+        + "ms, p50<="
+        + getPercentileMillis(50)
+        + "ms, p90<="
+        + getPercentileMillis(90)
+        + "ms, p99<="
+        + getPercentileMillis(99)
+        + "ms, max="
+        + getMaxMillis()
+        + "ms";
+  }
+}
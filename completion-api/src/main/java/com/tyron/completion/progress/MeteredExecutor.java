@@ -0,0 +1,91 @@
+package com.tyron.completion.progress;
+
+import android.os.Looper;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The executor of a {@link TaskPool}, with a bounded queue and the {@link PoolMetrics} of its
+ * tasks. When the queue is full the task is run by the thread submitting it, which slows down the
+ * code submitting too many tasks instead of failing. The main thread never runs a task, its tasks
+ * are handed to the fallback executor instead.
+ */
+class MeteredExecutor extends ThreadPoolExecutor {
+
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private final PoolMetrics mMetrics;
+
+  /**
+   * @param fallback the executor of the tasks submitted from the main thread while the queue is
+   *     full, it should not have a bounded queue. Without one those tasks run on the main thread.
+   */
+  MeteredExecutor(TaskPool pool, @Nullable Executor fallback) {
+    super(
+        pool.getThreads(),
+        pool.getThreads(),
+        KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(pool.getQueueCapacity()),
+        new PoolThreadFactory(pool));
+    allowCoreThreadTimeOut(true);
+    mMetrics = new PoolMetrics(pool, this);
+    setRejectedExecutionHandler(
+        (runnable, executor) -> {
+          if (executor.isShutdown()) {
+            return;
+          }
+          if (fallback != null && Looper.myLooper() == Looper.getMainLooper()) {
+            mMetrics.mHandedOff.incrementAndGet();
+            fallback.execute(runnable);
+            return;
+          }
+          mMetrics.mRunOnCaller.incrementAndGet();
+          runnable.run();
+        });
+  }
+
+  PoolMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    long submitted = System.nanoTime();
+    mMetrics.mSubmitted.incrementAndGet();
+    super.execute(
+        () -> {
+          long started = System.nanoTime();
+          mMetrics.mWaitTimes.record(started - submitted);
+          try {
+            command.run();
+          } finally {
+            mMetrics.mRunTimes.record(System.nanoTime() - started);
+            mMetrics.mCompleted.incrementAndGet();
+          }
+        });
+  }
+
+  private static class PoolThreadFactory implements ThreadFactory {
+
+    private final TaskPool mPool;
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    PoolThreadFactory(TaskPool pool) {
+      mPool = pool;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, mPool.getName() + "-" + mCount.incrementAndGet());
+      thread.setDaemon(true);
+      thread.setPriority(mPool.getThreadPriority());
+      return thread;
+    }
+  }
+}
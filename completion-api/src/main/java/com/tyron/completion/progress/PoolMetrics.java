@@ -0,0 +1,93 @@
+package com.tyron.completion.progress;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The state of one of the {@link TaskPool}s and how long its tasks have taken so far. */
+public class PoolMetrics {
+
+  private final TaskPool mPool;
+  private final ThreadPoolExecutor mExecutor;
+
+  final AtomicLong mSubmitted = new AtomicLong();
+  final AtomicLong mCompleted = new AtomicLong();
+  final AtomicLong mRunOnCaller = new AtomicLong();
+  final AtomicLong mHandedOff = new AtomicLong();
+  final LatencyHistogram mWaitTimes = new LatencyHistogram();
+  final LatencyHistogram mRunTimes = new LatencyHistogram();
+
+  PoolMetrics(TaskPool pool, ThreadPoolExecutor executor) {
+    mPool = pool;
+    mExecutor = executor;
+  }
+
+  public TaskPool getPool() {
+    return mPool;
+  }
+
+  /** The number of tasks waiting for a thread */
+  public int getQueueDepth() {
+    return mExecutor.getQueue().size();
+  }
+
+  /** The approximate number of threads running a task */
+  public int getActiveCount() {
+    return mExecutor.getActiveCount();
+  }
+
+  public int getPoolSize() {
+    return mExecutor.getPoolSize();
+  }
+
+  public long getSubmittedCount() {
+    return mSubmitted.get();
+  }
+
+  public long getCompletedCount() {
+    return mCompleted.get();
+  }
+
+  /** The number of tasks that were run by the submitting thread because the queue was full */
+  public long getRunOnCallerCount() {
+    return mRunOnCaller.get();
+  }
+
+  /**
+   * The number of tasks submitted from the main thread while the queue was full, they were run by
+   * the {@link TaskPool#DEFAULT} pool
+   */
+  public long getHandedOffCount() {
+    return mHandedOff.get();
+  }
+
+  /** The time the tasks have waited in the queue before they started running */
+  public LatencyHistogram getWaitTimes() {
+    return mWaitTimes;
+  }
+
+  /** The time the tasks have taken to run */
+  public LatencyHistogram getRunTimes() {
+    return mRunTimes;
+  }
+
+  @Override
+  public String toString() {
+    return mPool.getName()
+        + ": queued="
+        + getQueueDepth()
+        + ", active="
+        + getActiveCount()
+        + ", submitted="
+        + getSubmittedCount()
+        + ", completed="
+        + getCompletedCount()
+        + ", runOnCaller="
+        + getRunOnCallerCount()
+        + ", handedOff="
+        + getHandedOffCount()
+        + "\n  wait: "
+        + mWaitTimes
+        + "\n  run: "
+        + mRunTimes;
+  }
+}
@@ -4,37 +4,77 @@ import android.app.ProgressDialog;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import com.google.common.collect.MapMaker;
 import com.google.common.util.concurrent.AsyncCallable;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
+/**
+ * Runs background tasks and tracks the {@link ProgressIndicator} of the threads running them.
+ *
+ * <p>The tasks are run in one of the {@link TaskPool}s, the methods that do not take a pool use
+ * {@link TaskPool#DEFAULT}. The {@link PoolMetrics} of each pool show how busy it is and how long
+ * its tasks wait and run.
+ */
 public class ProgressManager {
 
-  private static ProgressManager sInstance = null;
+  private static volatile ProgressManager sInstance = null;
 
   public static ProgressManager getInstance() {
-    if (sInstance == null) {
-      sInstance = new ProgressManager();
+    ProgressManager instance = sInstance;
+    if (instance == null) {
+      synchronized (ProgressManager.class) {
+        instance = sInstance;
+        if (instance == null) {
+          instance = new ProgressManager();
+          sInstance = instance;
+        }
+      }
     }
-    return sInstance;
+    return instance;
   }
 
   public static void checkCanceled() {
     getInstance().doCheckCanceled();
   }
 
-  private final ExecutorService mPool = Executors.newFixedThreadPool(32);
+  private final Map<TaskPool, MeteredExecutor> mPools = new EnumMap<>(TaskPool.class);
   private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
-  private final Map<Thread, ProgressIndicator> mThreadToIndicator;
+  /** Read by every {@link #checkCanceled()}, so it is a concurrent map instead of a locked one */
+  private final Map<Thread, ProgressIndicator> mThreadToIndicator =
+      new MapMaker().weakKeys().makeMap();
 
   public ProgressManager() {
-    mThreadToIndicator = new WeakHashMap<>();
+    MeteredExecutor fallback = new MeteredExecutor(TaskPool.DEFAULT, null);
+    for (TaskPool pool : TaskPool.values()) {
+      mPools.put(pool, pool == TaskPool.DEFAULT ? fallback : new MeteredExecutor(pool, fallback));
+    }
+  }
+
+  /** The executor of the given pool, the tasks it runs are not cancelable */
+  public Executor getExecutor(TaskPool pool) {
+    return mPools.get(pool);
+  }
+
+  public PoolMetrics getMetrics(TaskPool pool) {
+    return mPools.get(pool).getMetrics();
+  }
+
+  public List<PoolMetrics> getMetrics() {
+    List<PoolMetrics> metrics = new ArrayList<>();
+    for (MeteredExecutor executor : mPools.values()) {
+      metrics.add(executor.getMetrics());
+    }
+    return metrics;
   }
 
   /**
@@ -47,20 +87,34 @@ public class ProgressManager {
    */
   public void runAsync(
       Runnable runnable, Consumer<ProgressIndicator> cancelConsumer, ProgressIndicator indicator) {
-    mPool.execute(
-        () -> {
-          Thread currentThread = Thread.currentThread();
-          try {
-            mThreadToIndicator.put(currentThread, indicator);
-            indicator.setRunning(true);
-            runnable.run();
-          } catch (ProcessCanceledException e) {
-            cancelConsumer.accept(indicator);
-          } finally {
-            indicator.setRunning(false);
-            mThreadToIndicator.remove(currentThread);
-          }
-        });
+    runAsync(TaskPool.DEFAULT, runnable, cancelConsumer, indicator);
+  }
+
+  /**
+   * Run a cancelable asynchronous task in the given pool.
+   *
+   * @see #runAsync(Runnable, Consumer, ProgressIndicator)
+   */
+  public void runAsync(
+      TaskPool pool,
+      Runnable runnable,
+      Consumer<ProgressIndicator> cancelConsumer,
+      ProgressIndicator indicator) {
+    getExecutor(pool)
+        .execute(
+            () -> {
+              Thread currentThread = Thread.currentThread();
+              ProgressIndicator previous = setIndicator(currentThread, indicator);
+              try {
+                indicator.setRunning(true);
+                runnable.run();
+              } catch (ProcessCanceledException e) {
+                cancelConsumer.accept(indicator);
+              } finally {
+                indicator.setRunning(false);
+                setIndicator(currentThread, previous);
+              }
+            });
   }
 
   public void runAsync(Context uiContext, Runnable runnable, ProgressIndicator indicator) {
@@ -101,11 +155,61 @@ public class ProgressManager {
    * @param runnable The code to run
    */
   public void runNonCancelableAsync(Runnable runnable) {
-    mPool.execute(runnable);
+    runNonCancelableAsync(TaskPool.DEFAULT, runnable);
+  }
+
+  /**
+   * Run an asynchronous operation that is not cancelable in the given pool.
+   *
+   * @param runnable The code to run
+   */
+  public void runNonCancelableAsync(TaskPool pool, Runnable runnable) {
+    getExecutor(pool).execute(runnable);
+  }
+
+  /**
+   * Run a cancelable task in the background that is canceled along with the given indicator, the
+   * task should call {@link #checkCanceled()} frequently.
+   *
+   * @param callable The code to run
+   * @param indicator The indicator shared with the task, usually the indicator of the thread
+   *     starting the task so both are canceled at once, see {@link #getIndicator(Thread)}
+   */
+  public <T> ListenableFuture<T> computeAsync(Callable<T> callable, ProgressIndicator indicator) {
+    return computeAsync(TaskPool.DEFAULT, callable, indicator);
+  }
+
+  /**
+   * Run a cancelable task in the given pool.
+   *
+   * @see #computeAsync(Callable, ProgressIndicator)
+   */
+  public <T> ListenableFuture<T> computeAsync(
+      TaskPool pool, Callable<T> callable, ProgressIndicator indicator) {
+    ListenableFutureTask<T> task =
+        ListenableFutureTask.create(
+            () -> {
+              Thread currentThread = Thread.currentThread();
+              // the task is run by the calling thread when the queue of the pool is full, unless
+              // it is the main thread
+              ProgressIndicator previous = setIndicator(currentThread, indicator);
+              try {
+                return callable.call();
+              } finally {
+                setIndicator(currentThread, previous);
+              }
+            });
+    getExecutor(pool).execute(task);
+    return task;
   }
 
   public <T> ListenableFuture<T> computeNonCancelableAsync(AsyncCallable<T> callable) {
-    return Futures.submitAsync(callable, mPool);
+    return computeNonCancelableAsync(TaskPool.DEFAULT, callable);
+  }
+
+  public <T> ListenableFuture<T> computeNonCancelableAsync(
+      TaskPool pool, AsyncCallable<T> callable) {
+    return Futures.submitAsync(callable, getExecutor(pool));
   }
 
   /**
@@ -131,21 +235,35 @@ public class ProgressManager {
   }
 
   public void cancelThread(Thread thread) {
-    ProgressIndicator indicator = mThreadToIndicator.get(thread);
+    getIndicator(thread).cancel();
+  }
+
+  /**
+   * Returns the indicator that is canceled by {@link #cancelThread(Thread)} for the given thread,
+   * creating one if the thread has none.
+   */
+  public ProgressIndicator getIndicator(Thread thread) {
+    return mThreadToIndicator.computeIfAbsent(thread, it -> new ProgressIndicator());
+  }
+
+  /**
+   * @param indicator the new indicator of the thread, or null to remove it
+   * @return the previous indicator of the thread
+   */
+  private ProgressIndicator setIndicator(Thread thread, ProgressIndicator indicator) {
     if (indicator == null) {
-      indicator = new ProgressIndicator();
+      return mThreadToIndicator.remove(thread);
     }
-    indicator.cancel();
-    mThreadToIndicator.put(thread, indicator);
+    return mThreadToIndicator.put(thread, indicator);
   }
 
   private void doCheckCanceled() {
-    ProgressIndicator indicator = mThreadToIndicator.get(Thread.currentThread());
-    if (indicator != null) {
-      if (indicator.isCanceled()) {
-        mThreadToIndicator.remove(Thread.currentThread());
-        throw new ProcessCanceledException();
-      }
+    Thread currentThread = Thread.currentThread();
+    ProgressIndicator indicator = mThreadToIndicator.get(currentThread);
+    if (indicator != null && indicator.isCanceled()) {
+      // only if another task has not set its own indicator meanwhile
+      mThreadToIndicator.remove(currentThread, indicator);
+      throw new ProcessCanceledException();
     }
   }
 }
@@ -0,0 +1,59 @@
+package com.tyron.completion.progress;
+
+/**
+ * The thread pools of the {@link ProgressManager}. Each kind of work has its own threads and queue
+ * so that a long running task of one kind cannot delay the others, for example indexing a project
+ * does not delay code completion.
+ */
+public enum TaskPool {
+
+  /** Work the user is waiting for while typing, such as completion and highlighting */
+  INTERACTIVE("interactive", 4, 64, Thread.NORM_PRIORITY),
+
+  /**
+   * Short tasks started from the user interface, such as saving or creating files. Its queue is not
+   * bounded so the user interface never has to run a task itself, the other pools hand the tasks
+   * submitted from the main thread to this pool when their queue is full.
+   */
+  DEFAULT("background", 32, Integer.MAX_VALUE, Thread.NORM_PRIORITY),
+
+  /** Opening and indexing projects and their libraries */
+  INDEXING("indexing", 2, 128, Thread.MIN_PRIORITY),
+
+  /** Building projects */
+  BUILD("build", 2, 16, Thread.MIN_PRIORITY + 1);
+
+  private final String mName;
+  private final int mThreads;
+  private final int mQueueCapacity;
+  private final int mThreadPriority;
+
+  TaskPool(String name, int threads, int queueCapacity, int threadPriority) {
+    mName = name;
+    mThreads = threads;
+    mQueueCapacity = queueCapacity;
+    mThreadPriority = threadPriority;
+  }
+
+  /** The name of the pool, used as the prefix of the names of its threads */
+  public String getName() {
+    return mName;
+  }
+
+  /** The maximum number of tasks of this pool that run at the same time */
+  public int getThreads() {
+    return mThreads;
+  }
+
+  /**
+   * The maximum number of tasks waiting for a thread, when the queue is full the task is run on the
+   * thread that submitted it, or by the {@link #DEFAULT} pool if that is the main thread
+   */
+  public int getQueueCapacity() {
+    return mQueueCapacity;
+  }
+
+  public int getThreadPriority() {
+    return mThreadPriority;
+  }
+}
@@ -1,21 +1,41 @@
 package com.tyron.resolver;
 
 import android.text.TextUtils;
+import androidx.annotation.Nullable;
 import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.repository.RepositoryManager;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Resolves the transitive dependencies of a list of POMs.
+ *
+ * <p>The dependency graph is walked depth first, but the POMs of every dependency declared by a POM
+ * are fetched in parallel as soon as it is visited, so they are usually downloaded by the time the
+ * walk reaches them. Each coordinate is only fetched once per resolution no matter how many POMs
+ * depend on it. Version conflicts are resolved on the calling thread in the order the POMs are
+ * visited, the higher version wins unless the POM was declared by the user.
+ */
 public class DependencyResolver {
 
+  public static final int DEFAULT_PARALLELISM = 4;
+
   private final RepositoryManager repository;
   private final Map<Pom, String> resolvedPoms;
 
   private ResolveListener mListener;
+  private int mParallelism = DEFAULT_PARALLELISM;
 
   public DependencyResolver(RepositoryManager repository) {
     this.repository = repository;
@@ -26,6 +46,14 @@ public class DependencyResolver {
     mListener = listener;
   }
 
+  /** Sets the maximum number of POMs fetched at the same time */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    mParallelism = parallelism;
+  }
+
   public interface ResolveListener {
     void onResolve(String message);
 
@@ -33,24 +61,33 @@ public class DependencyResolver {
   }
 
   public List<Pom> resolveDependencies(List<Dependency> declaredDependencies) {
-    List<Pom> poms = new ArrayList<>();
-    for (Dependency dependency : declaredDependencies) {
-      if (mListener != null) {
-        mListener.onResolve("Getting POM: " + dependency);
+    PomFetcher fetcher = new PomFetcher();
+    try {
+      for (Dependency dependency : declaredDependencies) {
+        fetcher.fetch(dependency.toString());
       }
 
-      Pom pom = repository.getPom(dependency.toString());
-      if (pom != null) {
-        pom.setExcludes(dependency.getExcludes());
-        pom.setUserDefined(true);
-        poms.add(pom);
-      } else {
+      List<Pom> poms = new ArrayList<>();
+      for (Dependency dependency : declaredDependencies) {
         if (mListener != null) {
-          mListener.onFailure("Unable to retrieve POM of " + dependency);
+          mListener.onResolve("Getting POM: " + dependency);
+        }
+
+        Pom pom = fetcher.get(dependency.toString());
+        if (pom != null) {
+          pom.setExcludes(dependency.getExcludes());
+          pom.setUserDefined(true);
+          poms.add(pom);
+        } else {
+          if (mListener != null) {
+            mListener.onFailure("Unable to retrieve POM of " + dependency);
+          }
         }
       }
+      return resolve(poms, fetcher);
+    } finally {
+      fetcher.shutdown();
     }
-    return resolve(poms);
   }
 
   /**
@@ -58,75 +95,58 @@ public class DependencyResolver {
    * libraries
    */
   public List<Pom> resolve(List<Pom> declaredDependencies) {
+    PomFetcher fetcher = new PomFetcher();
+    try {
+      return resolve(declaredDependencies, fetcher);
+    } finally {
+      fetcher.shutdown();
+    }
+  }
+
+  private List<Pom> resolve(List<Pom> declaredDependencies, PomFetcher fetcher) {
+    Set<String> resolving = new HashSet<>();
     for (Pom pom : declaredDependencies) {
-      resolve(pom);
+      resolve(pom, fetcher, resolving);
     }
     return new ArrayList<>(resolvedPoms.keySet());
   }
 
-  private void resolve(Pom pom) {
-    if (resolvedPoms.containsKey(pom)) {
-      if (pom.isUserDefined()) {
-        resolvedPoms.remove(pom);
-      } else {
-        String resolvedVersion = resolvedPoms.get(pom);
-        String thisVersion = pom.getVersionName();
-        int result = getHigherVersion(resolvedVersion, thisVersion);
-        if (result == 0) {
-          return;
-        }
-        if (result > 0) {
-          return;
-        } else {
-          resolvedPoms.remove(pom);
-        }
-      }
+  /**
+   * Resolves the given pom and its dependencies depth first, in the same order as they are declared
+   * so the version conflicts are resolved the same way no matter how fast each pom is fetched.
+   *
+   * @param resolving the poms being resolved by the callers of this method, a pom that ends up
+   *     depending on itself is not resolved again
+   */
+  private void resolve(Pom pom, PomFetcher fetcher, Set<String> resolving) {
+    if (Thread.currentThread().isInterrupted()) {
+      return;
+    }
+    String declaration = pom.getDeclarationString();
+    if (resolving.contains(declaration) || !shouldResolve(pom)) {
+      return;
     }
+    resolving.add(declaration);
 
     if (mListener != null) {
       mListener.onResolve("Resolving " + pom);
     }
 
-    List<Dependency> excludes = pom.getExcludes();
-
+    List<Dependency> dependencies = new ArrayList<>();
     for (Dependency dependency : pom.getDependencies()) {
       if ("test".equals(dependency.getScope())) {
         continue;
       }
-
-      boolean excluded =
-          excludes.stream()
-              .filter(Objects::nonNull)
-              .anyMatch(
-                  ex -> {
-                    if (ex == null) {
-                      return false;
-                    }
-                    if (ex.getGroupId() == null) {
-                      return false;
-                    }
-                    if (!ex.getGroupId().equals(dependency.getGroupId())) {
-                      return false;
-                    }
-
-                    if (ex.getArtifactId() == null) {
-                      return false;
-                    }
-
-                    if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
-                      return false;
-                    }
-                    if (TextUtils.isEmpty(ex.getVersionName())) {
-                      return true;
-                    }
-                    return ex.getVersionName().equals(dependency.getVersionName());
-                  });
-
-      if (excluded) {
+      if (isExcluded(pom.getExcludes(), dependency)) {
         continue;
       }
+      // the other dependencies are downloaded while the first ones are being resolved
+      fetcher.fetch(dependency.toString());
+      dependencies.add(dependency);
+    }
 
-      Pom resolvedPom = repository.getPom(dependency.toString());
+    for (Dependency dependency : dependencies) {
+      Pom resolvedPom = fetcher.get(dependency.toString());
       if (resolvedPom == null) {
         if (mListener != null) {
           mListener.onFailure("Failed to resolve " + dependency);
@@ -134,11 +154,59 @@ public class DependencyResolver {
         continue;
       }
       if (!resolvedPom.equals(pom)) {
-        resolvedPom.addExcludes(excludes);
-        resolve(resolvedPom);
+        resolvedPom.addExcludes(pom.getExcludes());
+        resolve(resolvedPom, fetcher, resolving);
       }
     }
     resolvedPoms.put(pom, pom.getVersionName());
+    resolving.remove(declaration);
+  }
+
+  /**
+   * @return whether the given pom should replace the version of the same library that has been
+   *     resolved before, if any. A pom declared by the user always does, otherwise the higher
+   *     version wins.
+   */
+  private boolean shouldResolve(Pom pom) {
+    if (!resolvedPoms.containsKey(pom)) {
+      return true;
+    }
+    if (!pom.isUserDefined()) {
+      String resolvedVersion = resolvedPoms.get(pom);
+      String thisVersion = pom.getVersionName();
+      int result = getHigherVersion(resolvedVersion, thisVersion);
+      if (result >= 0) {
+        return false;
+      }
+    }
+    resolvedPoms.remove(pom);
+    return true;
+  }
+
+  private boolean isExcluded(List<Dependency> excludes, Dependency dependency) {
+    return excludes.stream()
+        .filter(Objects::nonNull)
+        .anyMatch(
+            ex -> {
+              if (ex.getGroupId() == null) {
+                return false;
+              }
+              if (!ex.getGroupId().equals(dependency.getGroupId())) {
+                return false;
+              }
+
+              if (ex.getArtifactId() == null) {
+                return false;
+              }
+
+              if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
+                return false;
+              }
+              if (TextUtils.isEmpty(ex.getVersionName())) {
+                return true;
+              }
+              return ex.getVersionName().equals(dependency.getVersionName());
+            });
   }
 
   private int getHigherVersion(String firstVersion, String secondVersion) {
@@ -146,4 +214,55 @@ public class DependencyResolver {
     ComparableVersion secondComparableVersion = new ComparableVersion(secondVersion);
     return firstComparableVersion.compareTo(secondComparableVersion);
   }
+
+  /**
+   * Fetches POMs from the repository on a bounded pool of threads. Only accessed from the thread
+   * resolving the dependencies, the fetches are started by {@link #fetch(String)} so the repository
+   * can download all the dependencies of a POM at once.
+   */
+  private class PomFetcher {
+
+    private final Map<String, Future<Pom>> mFetches = new HashMap<>();
+    private ExecutorService mExecutor;
+
+    void fetch(String declaration) {
+      if (mFetches.containsKey(declaration)) {
+        return;
+      }
+      if (mExecutor == null) {
+        AtomicInteger count = new AtomicInteger();
+        mExecutor =
+            Executors.newFixedThreadPool(
+                mParallelism,
+                r -> {
+                  Thread thread = new Thread(r, "DependencyResolver #" + count.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                });
+      }
+      mFetches.put(declaration, mExecutor.submit(() -> repository.getPom(declaration)));
+    }
+
+    @Nullable
+    Pom get(String declaration) {
+      fetch(declaration);
+      try {
+        return mFetches.get(declaration).get();
+      } catch (ExecutionException e) {
+        if (mListener != null) {
+          mListener.onFailure("Failed to retrieve " + declaration + ": " + e.getCause());
+        }
+        return null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+
+    void shutdown() {
+      if (mExecutor != null) {
+        mExecutor.shutdownNow();
+      }
+    }
+  }
 }
@@ -154,6 +154,10 @@ public class Pom {
     return properties.get(key);
   }
 
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
   @Nullable
   public Pom getParent() {
     return parent;
@@ -97,6 +97,12 @@ public class PomParser {
         pom.setPackaging(getTextContent(child));
       }
     }
+
+    // store the inherited properties too so they are available to the poms using this as a parent
+    if (parent != null) {
+      parent.getProperties().forEach(pom::addProperty);
+    }
+    mProperties.forEach(pom::addProperty);
     return pom;
   }
 
@@ -106,6 +112,9 @@ public class PomParser {
     if (matcher.matches()) {
       String name = matcher.group(1);
       String property = mProperties.get(name);
+      if (property == null && parent != null) {
+        property = parent.getProperty(name);
+      }
       if (property != null) {
         value = property;
       }
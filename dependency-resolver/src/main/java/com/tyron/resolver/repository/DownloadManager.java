@@ -0,0 +1,273 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.tyron.common.util.Digests;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Downloads the files of remote repositories.
+ *
+ * <p>Files are downloaded into a {@code .part} file next to the destination, which is renamed to
+ * the destination once it is complete, so a file found in the cache is never partially written. If
+ * a download is interrupted the next one continues where it stopped using an HTTP range request.
+ * When the server publishes a {@code .sha1} file along with the downloaded file, the download is
+ * verified against it before it is moved into place.
+ *
+ * <p>Several files can be downloaded at the same time, the number of connections opened to the same
+ * host is limited so servers are not flooded with requests.
+ */
+public class DownloadManager {
+
+  public static final int DEFAULT_CONNECTIONS_PER_HOST = 4;
+  public static final int DEFAULT_THREADS = 8;
+
+  private static final String PART_SUFFIX = ".part";
+  private static final String SHA1_SUFFIX = ".sha1";
+  private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+  private static final int READ_TIMEOUT_MILLIS = 30_000;
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+  private static volatile DownloadManager sInstance;
+
+  public static DownloadManager getInstance() {
+    if (sInstance == null) {
+      synchronized (DownloadManager.class) {
+        if (sInstance == null) {
+          sInstance = new DownloadManager(DEFAULT_CONNECTIONS_PER_HOST, DEFAULT_THREADS);
+        }
+      }
+    }
+    return sInstance;
+  }
+
+  private final int mConnectionsPerHost;
+  private final Map<String, Semaphore> mHostLimits = new ConcurrentHashMap<>();
+  private final ExecutorService mExecutor;
+
+  /**
+   * Downloads of the same destination are serialized by these locks, a lock is removed once no
+   * download of its destination is running or waiting
+   */
+  private final Map<String, PathLock> mLocks = new HashMap<>();
+
+  private static class PathLock {
+    int users;
+  }
+
+  public DownloadManager(int connectionsPerHost, int threads) {
+    if (connectionsPerHost < 1 || threads < 1) {
+      throw new IllegalArgumentException("At least one connection and thread is required");
+    }
+    mConnectionsPerHost = connectionsPerHost;
+    AtomicInteger count = new AtomicInteger();
+    mExecutor =
+        Executors.newFixedThreadPool(
+            threads,
+            r -> {
+              Thread thread = new Thread(r, "DownloadManager #" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Runs the given download task on the threads of this download manager */
+  public <T> Future<T> submit(@NonNull Callable<T> task) {
+    return mExecutor.submit(task);
+  }
+
+  /** Downloads the given url in the background, see {@link #download(URL, File)} */
+  public Future<File> enqueue(@NonNull URL url, @NonNull File destination) {
+    return submit(() -> download(url, destination));
+  }
+
+  /**
+   * Downloads the given url into the destination file, if the destination already exists it is
+   * returned without downloading it again.
+   *
+   * @return the destination file, or null if the server does not have the file
+   * @throws IOException if the file cannot be downloaded or does not match its checksum
+   */
+  @Nullable
+  public File download(@NonNull URL url, @NonNull File destination) throws IOException {
+    String path = destination.getAbsolutePath();
+    PathLock lock = acquire(path);
+    try {
+      synchronized (lock) {
+        return downloadExclusively(url, destination);
+      }
+    } finally {
+      release(path, lock);
+    }
+  }
+
+  private PathLock acquire(String path) {
+    synchronized (mLocks) {
+      PathLock lock = mLocks.computeIfAbsent(path, it -> new PathLock());
+      lock.users++;
+      return lock;
+    }
+  }
+
+  private void release(String path, PathLock lock) {
+    synchronized (mLocks) {
+      if (--lock.users == 0) {
+        mLocks.remove(path);
+      }
+    }
+  }
+
+  private File downloadExclusively(URL url, File destination) throws IOException {
+    if (destination.exists()) {
+      return destination;
+    }
+
+    String host = url.getHost() + ":" + url.getPort();
+    Semaphore limit = mHostLimits.computeIfAbsent(host, it -> new Semaphore(mConnectionsPerHost));
+    try {
+      limit.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to download " + url);
+    }
+    try {
+      return downloadLocked(url, destination);
+    } finally {
+      limit.release();
+    }
+  }
+
+  private File downloadLocked(URL url, File destination) throws IOException {
+    FileUtils.forceMkdirParent(destination);
+    File part = new File(destination.getPath() + PART_SUFFIX);
+
+    boolean resumed = part.length() > 0;
+    if (!downloadPart(url, part)) {
+      return null;
+    }
+
+    String checksum = getChecksum(url);
+    if (checksum != null && !checksum.equals(sha1(part))) {
+      Files.deleteIfExists(part.toPath());
+      if (!resumed) {
+        throw new IOException("Checksum mismatch for " + url);
+      }
+      // the part may have been left by a different version of the file, download it again
+      if (!downloadPart(url, part) || !checksum.equals(sha1(part))) {
+        Files.deleteIfExists(part.toPath());
+        throw new IOException("Checksum mismatch for " + url);
+      }
+    }
+
+    FileUtilsEx.moveAtomically(part, destination);
+    return destination;
+  }
+
+  /**
+   * Downloads the url into the part file, continuing from the end of the part file if it exists.
+   *
+   * @return false if the server does not have the file
+   */
+  private boolean downloadPart(URL url, File part) throws IOException {
+    long existing = part.length();
+    URLConnection connection = openConnection(url);
+    if (existing > 0) {
+      connection.setRequestProperty("Range", "bytes=" + existing + "-");
+    }
+    try {
+      boolean append = false;
+      if (connection instanceof HttpURLConnection) {
+        int code = ((HttpURLConnection) connection).getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+          return false;
+        }
+        if (code == HTTP_RANGE_NOT_SATISFIABLE && existing > 0) {
+          // the part is not a prefix of the file anymore, start over
+          Files.deleteIfExists(part.toPath());
+          return downloadPart(url, part);
+        }
+        if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+          throw new IOException("Server returned " + code + " for " + url);
+        }
+        append = code == HttpURLConnection.HTTP_PARTIAL;
+      }
+
+      try (InputStream in = connection.getInputStream();
+          OutputStream out = new FileOutputStream(part, append)) {
+        IOUtils.copy(in, out);
+      } catch (FileNotFoundException e) {
+        return false;
+      }
+      return true;
+    } finally {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection) connection).disconnect();
+      }
+    }
+  }
+
+  /**
+   * @return the SHA-1 published along with the given url, null if there is none
+   */
+  @Nullable
+  private String getChecksum(URL url) throws IOException {
+    URLConnection connection = openConnection(new URL(url.toString() + SHA1_SUFFIX));
+    try {
+      if (connection instanceof HttpURLConnection
+          && ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_OK) {
+        return null;
+      }
+      String contents;
+      try (InputStream in = connection.getInputStream()) {
+        contents = IOUtils.toString(in, StandardCharsets.UTF_8).trim();
+      } catch (FileNotFoundException e) {
+        return null;
+      }
+      // some repositories append the name of the file after the checksum
+      int space = contents.indexOf(' ');
+      if (space != -1) {
+        contents = contents.substring(0, space);
+      }
+      return contents.isEmpty() ? null : contents.toLowerCase(Locale.ROOT);
+    } finally {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection) connection).disconnect();
+      }
+    }
+  }
+
+  private static URLConnection openConnection(URL url) throws IOException {
+    URLConnection connection = url.openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+    return connection;
+  }
+
+  private static String sha1(File file) throws IOException {
+    return Digests.digest(file, Digests.SHA1);
+  }
+}
@@ -1,10 +1,12 @@
 package com.tyron.resolver.repository;
 
 import androidx.annotation.Nullable;
+import com.tyron.common.util.FileUtilsEx;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 /** A local repository is a repository which stores files in the disk instead from a remote one */
 public class LocalRepository extends DefaultRepository {
@@ -80,11 +82,9 @@ public class LocalRepository extends DefaultRepository {
 
     File file = new File(rootDirectory, path);
     FileUtils.forceMkdirParent(file);
-    if (!file.exists() && !file.createNewFile()) {
-      throw new IOException("Failed to create file.");
-    }
 
-    FileUtils.copyInputStreamToFile(inputStream, file);
+    // other threads never read a partially saved file
+    FileUtilsEx.writeAtomically(file, out -> IOUtils.copy(inputStream, out));
     return file;
   }
 
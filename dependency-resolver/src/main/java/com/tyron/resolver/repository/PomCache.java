@@ -0,0 +1,259 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.tyron.common.util.FileUtilsEx;
+import com.tyron.resolver.model.Dependency;
+import com.tyron.resolver.model.Pom;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A file containing the poms parsed by {@link RepositoryManagerImpl}, so poms that have been
+ * downloaded before can be read without parsing their xml again.
+ *
+ * <p>Poms are stored after their parent and properties have been applied, each along with the size
+ * and last modified time of the pom file it was parsed from. Entries whose pom file has changed
+ * since are dropped when the cache is read. New poms are appended to the end of the file as they
+ * are parsed, the file is rewritten without the stale entries by {@link #load()}.
+ */
+class PomCache {
+
+  private static final int MAGIC = 0x504f4d43;
+  private static final int VERSION = 1;
+
+  private static class Entry {
+    final Pom pom;
+    final String parent;
+    final String source;
+    final long length;
+    final long lastModified;
+
+    Entry(Pom pom, String parent, String source, long length, long lastModified) {
+      this.pom = pom;
+      this.parent = parent;
+      this.source = source;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+
+    boolean isUpToDate() {
+      File file = new File(source);
+      return file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+  private final File mFile;
+
+  PomCache(File file) {
+    mFile = file;
+  }
+
+  /**
+   * Reads the poms whose files have not changed since they were stored and removes the other ones
+   * from the cache file.
+   *
+   * @return the cached poms keyed by their declaration string
+   */
+  @NonNull
+  synchronized Map<String, Pom> load() {
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    boolean stale = !mFile.exists();
+    if (!stale) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(mFile.toPath())))) {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+          throw new IOException("Unknown pom cache format");
+        }
+        while (true) {
+          int length;
+          try {
+            length = in.readInt();
+          } catch (EOFException e) {
+            break;
+          }
+          byte[] bytes = new byte[length];
+          in.readFully(bytes);
+          Entry entry = readEntry(new DataInputStream(new ByteArrayInputStream(bytes)));
+          if (entry.isUpToDate()) {
+            entries.put(entry.pom.getDeclarationString(), entry);
+          } else {
+            stale = true;
+          }
+        }
+      } catch (IOException e) {
+        // keep the entries read so far, the last one may have been written partially
+        stale = true;
+      }
+    }
+
+    // a pom can only be used if its parent is also cached
+    boolean removed;
+    do {
+      removed =
+          entries.values().removeIf(it -> it.parent != null && !entries.containsKey(it.parent));
+      stale |= removed;
+    } while (removed);
+
+    Map<String, Pom> poms = new LinkedHashMap<>();
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      poms.put(entry.getKey(), entry.getValue().pom);
+    }
+    for (Entry entry : entries.values()) {
+      if (entry.parent != null) {
+        entry.pom.setParent(poms.get(entry.parent));
+      }
+    }
+
+    if (stale) {
+      try {
+        write(new ArrayList<>(entries.values()));
+      } catch (IOException ignored) {
+        // the entries will be parsed again next time
+      }
+    }
+    return poms;
+  }
+
+  /**
+   * Appends the given pom to the cache.
+   *
+   * @param pom the pom as returned by the parser, before it is modified by the resolver
+   * @param source the pom file it was parsed from
+   */
+  synchronized void put(@NonNull Pom pom, @NonNull File source) throws IOException {
+    Pom parent = pom.getParent();
+    Entry entry =
+        new Entry(
+            pom,
+            parent == null ? null : parent.getDeclarationString(),
+            source.getAbsolutePath(),
+            source.length(),
+            source.lastModified());
+    if (!mFile.exists()) {
+      write(new ArrayList<>());
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFile, true)))) {
+      writeRecord(out, entry);
+    }
+  }
+
+  private void write(List<Entry> entries) throws IOException {
+    FileUtilsEx.writeAtomically(
+        mFile,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          for (Entry entry : entries) {
+            writeRecord(out, entry);
+          }
+        });
+  }
+
+  /** Records are prefixed with their length so a partially written one can be detected */
+  private static void writeRecord(DataOutputStream out, Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream record = new DataOutputStream(bytes);
+    writeString(record, entry.source);
+    record.writeLong(entry.length);
+    record.writeLong(entry.lastModified);
+    writeString(record, entry.parent);
+
+    Pom pom = entry.pom;
+    writeString(record, pom.getGroupId());
+    writeString(record, pom.getArtifactId());
+    writeString(record, pom.getVersionName());
+    writeString(record, pom.getPackaging());
+    Map<String, String> properties = pom.getProperties();
+    record.writeInt(properties.size());
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      writeString(record, property.getKey());
+      writeString(record, property.getValue());
+    }
+    writeDependencies(record, pom.getDependencies());
+    writeDependencies(record, pom.getManagedDependencies());
+    record.flush();
+
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+
+  private static Entry readEntry(DataInputStream in) throws IOException {
+    String source = readString(in);
+    long length = in.readLong();
+    long lastModified = in.readLong();
+    String parent = readString(in);
+
+    Pom pom = new Pom();
+    pom.setGroupId(readString(in));
+    pom.setArtifactId(readString(in));
+    pom.setVersionName(readString(in));
+    pom.setPackaging(readString(in));
+    int properties = in.readInt();
+    for (int i = 0; i < properties; i++) {
+      pom.addProperty(readString(in), readString(in));
+    }
+    pom.setDependencies(readDependencies(in));
+    pom.setManagedDependencies(readDependencies(in));
+    return new Entry(pom, parent, source, length, lastModified);
+  }
+
+  private static void writeDependencies(DataOutputStream out, List<Dependency> dependencies)
+      throws IOException {
+    out.writeInt(dependencies.size());
+    for (Dependency dependency : dependencies) {
+      writeString(out, dependency.getGroupId());
+      writeString(out, dependency.getArtifactId());
+      writeString(out, dependency.getVersionName());
+      writeString(out, dependency.getScope());
+      writeString(out, dependency.getType());
+      writeDependencies(out, dependency.getExcludes());
+    }
+  }
+
+  private static List<Dependency> readDependencies(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    List<Dependency> dependencies = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Dependency dependency = new Dependency();
+      dependency.setGroupId(readString(in));
+      dependency.setArtifactId(readString(in));
+      dependency.setVersionName(readString(in));
+      dependency.setScope(readString(in));
+      dependency.setType(readString(in));
+      for (Dependency exclude : readDependencies(in)) {
+        dependency.addExclude(exclude);
+      }
+      dependencies.add(dependency);
+    }
+    return dependencies;
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String string)
+      throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) {
+      out.writeUTF(string);
+    }
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
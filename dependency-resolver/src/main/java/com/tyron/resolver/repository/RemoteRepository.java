@@ -14,18 +14,29 @@ public class RemoteRepository extends DefaultRepository {
   private final String mUrl;
 
   private final LocalRepository mLocalRepository;
+  private final DownloadManager mDownloadManager;
 
   /**
    * @param name The name of the directory on which this repository will store caches into
    * @param url The url to search for files
    */
   public RemoteRepository(String name, String url) {
+    this(name, url, DownloadManager.getInstance());
+  }
+
+  /**
+   * @param name The name of the directory on which this repository will store caches into
+   * @param url The url to search for files
+   * @param downloadManager The download manager used to download the files of this repository
+   */
+  public RemoteRepository(String name, String url, DownloadManager downloadManager) {
     if (!url.endsWith("/")) {
       url = url + "/";
     }
     mName = name;
     mUrl = url;
     mLocalRepository = new LocalRepository(name);
+    mDownloadManager = downloadManager;
   }
 
   @Override
@@ -50,6 +61,13 @@ public class RemoteRepository extends DefaultRepository {
     return FileUtils.openInputStream(file);
   }
 
+  /**
+   * Returns the file from the cache, downloading it if it is not cached yet.
+   *
+   * @return the file, or null if the server does not have it
+   * @throws IOException if the server has the file but it cannot be downloaded, for example when
+   *     the server returns an error other than 404 or the download does not match its checksum
+   */
   @Nullable
   @Override
   public File getFile(String path) throws IOException {
@@ -67,17 +85,8 @@ public class RemoteRepository extends DefaultRepository {
   }
 
   private File getFileInternal(String path) throws IOException {
-    String downloadUrl = mUrl + path;
-    URL url = new URL(downloadUrl);
-    try {
-      InputStream inputStream = url.openStream();
-      if (inputStream != null) {
-        // save the file to cache, and then return the one from there
-        return mLocalRepository.save(path, inputStream);
-      }
-    } catch (IOException e) {
-      // ignored, return null
-    }
-    return null;
+    // save the file to cache, and then return the one from there
+    File destination = new File(mLocalRepository.getRootDirectory(), path);
+    return mDownloadManager.download(new URL(mUrl + path), destination);
   }
 }
@@ -5,6 +5,8 @@ import androidx.annotation.Nullable;
 import com.tyron.resolver.model.Pom;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public interface RepositoryManager {
 
@@ -23,6 +25,18 @@ public interface RepositoryManager {
   @Nullable
   File getLibrary(Pom pom) throws IOException;
 
+  /**
+   * Retrieves the library of the given pom without waiting for it to be downloaded, so the
+   * libraries of several poms can be downloaded at the same time.
+   *
+   * @see #getLibrary(Pom)
+   */
+  default Future<File> getLibraryAsync(Pom pom) {
+    FutureTask<File> task = new FutureTask<>(() -> getLibrary(pom));
+    task.run();
+    return task;
+  }
+
   void setCacheDirectory(File directory);
 
   /**
@@ -2,23 +2,19 @@ package com.tyron.resolver.repository;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import com.google.common.io.CharStreams;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.parser.PomParser;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.zip.ZipFile;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -28,11 +24,16 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
   private File cacheDir;
   private final List<Repository> repositories;
-  private final List<Pom> pomFiles;
+
+  /** The poms that have been parsed, keyed by their {@code groupId:artifactId:version} */
+  private final Map<String, Pom> pomFiles;
+
+  private PomCache pomCache;
 
   public RepositoryManagerImpl() {
     this.repositories = new ArrayList<>();
-    this.pomFiles = new ArrayList<>();
+    // poms may be requested from several threads by the dependency resolver
+    this.pomFiles = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -42,32 +43,33 @@ public class RepositoryManagerImpl implements RepositoryManager {
     if (pomNames == null) {
       return null;
     }
-    for (Pom pom : pomFiles) {
-      if (!pomNames[0].equals(pom.getGroupId())) {
-        continue;
-      }
-      if (!pomNames[1].equals(pom.getArtifactId())) {
-        continue;
-      }
-      if (!pomNames[2].equals(pom.getVersionName())) {
-        continue;
-      }
+    Pom pom = pomFiles.get(pomNames[0] + ":" + pomNames[1] + ":" + pomNames[2]);
+    if (pom != null) {
       return pom;
     }
     return getPomFromUrls(pomNames);
   }
 
   private Pom getPomFromUrls(String[] names) {
-    InputStream is = getFromUrls(getPathFromDeclaration(names) + ".pom");
-    if (is != null) {
-      String contents;
+    File file = getFromUrls(getPathFromDeclaration(names) + ".pom");
+    if (file != null) {
       try {
-        contents = CharStreams.toString(new InputStreamReader(is));
-        Pom parsed = new PomParser(this).parse(contents);
+        Pom parsed = new PomParser(this).parse(file);
+        if (parsed == null) {
+          return null;
+        }
         parsed.setGroupId(names[0]);
         parsed.setArtifactId(names[1]);
         parsed.setVersionName(names[2]);
-        pomFiles.add(parsed);
+
+        // another thread may have parsed the same pom in the meantime
+        Pom existing = pomFiles.putIfAbsent(parsed.getDeclarationString(), parsed);
+        if (existing != null) {
+          return existing;
+        }
+        if (pomCache != null) {
+          pomCache.put(parsed, file);
+        }
         return parsed;
       } catch (IOException | XmlPullParserException | SAXException e) {
         String message =
@@ -83,13 +85,13 @@ public class RepositoryManagerImpl implements RepositoryManager {
     return null;
   }
 
-  private InputStream getFromUrls(String appendUrl) {
+  private File getFromUrls(String appendUrl) {
     for (int i = 0; i < repositories.size(); i++) {
       Repository repository = repositories.get(i);
       try {
-        InputStream is = repository.getInputStream(appendUrl);
-        if (is != null) {
-          return is;
+        File file = repository.getFile(appendUrl);
+        if (file != null && file.exists()) {
+          return file;
         }
       } catch (IOException e) {
         if (i == repositories.size() - 1) {
@@ -145,15 +147,29 @@ public class RepositoryManagerImpl implements RepositoryManager {
     }
 
     // cannot find file from disk, try from network
+    IOException failure = null;
     for (Repository repository : repositories) {
-      File file = repository.getFile(sb.toString());
-      if (file != null && file.exists()) {
-        return file;
+      try {
+        File file = repository.getFile(sb.toString());
+        if (file != null && file.exists()) {
+          return file;
+        }
+      } catch (IOException e) {
+        // the next repository may have it
+        failure = e;
       }
     }
+    if (failure != null) {
+      throw failure;
+    }
     return null;
   }
 
+  @Override
+  public Future<File> getLibraryAsync(Pom pom) {
+    return DownloadManager.getInstance().submit(() -> getLibrary(pom));
+  }
+
   private boolean isValidZipFile(File file) {
     try {
       // noinspection unused
@@ -201,28 +217,11 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
     for (Repository repository : repositories) {
       repository.setCacheDirectory(cacheDir);
-
-      File rootDirectory = repository.getRootDirectory();
-      if (rootDirectory == null || !rootDirectory.exists()) {
-        continue;
-      }
-      Iterator<File> pomFiles =
-          FileUtils.iterateFiles(
-              rootDirectory, new SuffixFileFilter(".pom"), TrueFileFilter.INSTANCE);
-
-      // save pom files for later
-      while (pomFiles.hasNext()) {
-        File pom = pomFiles.next();
-        PomParser parser = new PomParser(this);
-        try {
-          Pom parsed = parser.parse(pom);
-          this.pomFiles.add(parsed);
-        } catch (XmlPullParserException | IOException | SAXException e) {
-          // ignored
-          // TODO: should the file be deleted if its corrupt?
-          sLogger.severe("Unable to parse file " + pom + "\n" + "Reason: " + e.getMessage());
-        }
-      }
     }
+
+    // poms that are not cached are parsed when they are first requested
+    pomFiles.clear();
+    pomCache = new PomCache(new File(cacheDir, "poms.bin"));
+    pomFiles.putAll(pomCache.load());
   }
 }
@@ -2,12 +2,19 @@ package com.tyron.resolver;
 
 import com.google.common.collect.ImmutableList;
 import com.tyron.common.TestUtil;
+import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.repository.Repository;
 import com.tyron.resolver.repository.RepositoryManager;
 import com.tyron.resolver.repository.RepositoryManagerImpl;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
@@ -58,4 +65,139 @@ public class DependencyResolverTest {
 
     FileUtils.forceDelete(cacheDir);
   }
+
+  @Test
+  public void testHigherTransitiveVersionWins() {
+    FakeRepositoryManager repository = new FakeRepositoryManager();
+    repository.add("test:app:1.0", "test:lib:1.0", "test:core:1.0");
+    repository.add("test:lib:1.0", "test:core:2.0");
+    repository.add("test:core:1.0");
+    repository.add("test:core:2.0");
+
+    DependencyResolver resolver = new DependencyResolver(repository);
+    List<Pom> resolved =
+        resolver.resolveDependencies(ImmutableList.of(Dependency.valueOf("test:app:1.0")));
+
+    assert resolved.size() == 3;
+    Pom core = resolved.get(resolved.indexOf(Pom.valueOf("test:core:0")));
+    assert core.getVersionName().equals("2.0");
+  }
+
+  @Test
+  public void testUserDefinedVersionWins() {
+    FakeRepositoryManager repository = new FakeRepositoryManager();
+    repository.add("test:app:1.0", "test:core:2.0");
+    repository.add("test:core:1.0");
+    repository.add("test:core:2.0");
+
+    DependencyResolver resolver = new DependencyResolver(repository);
+    List<Pom> resolved =
+        resolver.resolveDependencies(
+            ImmutableList.of(
+                Dependency.valueOf("test:app:1.0"), Dependency.valueOf("test:core:1.0")));
+
+    Pom core = resolved.get(resolved.indexOf(Pom.valueOf("test:core:0")));
+    assert core.getVersionName().equals("1.0");
+  }
+
+  @Test
+  public void testTransitiveDependencyNeedsHigherDeclaredVersion() {
+    FakeRepositoryManager repository = new FakeRepositoryManager();
+    repository.add("test:core:1.0");
+    repository.add("test:core:3.0");
+    repository.add("test:other:1.0");
+    repository.add("test:lib:3.0", "test:core:3.0");
+
+    DependencyResolver resolver = new DependencyResolver(repository);
+    List<Pom> resolved =
+        resolver.resolveDependencies(
+            ImmutableList.of(
+                Dependency.valueOf("test:core:1.0"),
+                Dependency.valueOf("test:other:1.0"),
+                Dependency.valueOf("test:lib:3.0")));
+
+    assert resolved.size() == 3;
+    Pom core = resolved.get(resolved.indexOf(Pom.valueOf("test:core:0")));
+    assert core.getVersionName().equals("3.0");
+  }
+
+  @Test
+  public void testSharedDependencyIsFetchedOnce() {
+    FakeRepositoryManager repository = new FakeRepositoryManager();
+    repository.add("test:app:1.0", "test:first:1.0", "test:second:1.0", "test:third:1.0");
+    repository.add("test:first:1.0", "test:core:1.0");
+    repository.add("test:second:1.0", "test:core:1.0");
+    repository.add("test:third:1.0", "test:core:1.0");
+    repository.add("test:core:1.0", "test:app:1.0");
+
+    DependencyResolver resolver = new DependencyResolver(repository);
+    List<Pom> resolved =
+        resolver.resolveDependencies(ImmutableList.of(Dependency.valueOf("test:app:1.0")));
+
+    assert resolved.size() == 5;
+    assert repository.getFetchCount("test:core:1.0") == 1;
+  }
+
+  @Test(timeout = 10000)
+  public void testCycleBetweenUserDefinedPoms() {
+    FakeRepositoryManager repository = new FakeRepositoryManager();
+    repository.add("test:first:1.0", "test:second:1.0");
+    repository.add("test:second:1.0", "test:first:1.0");
+
+    DependencyResolver resolver = new DependencyResolver(repository);
+    List<Pom> resolved =
+        resolver.resolveDependencies(
+            ImmutableList.of(
+                Dependency.valueOf("test:first:1.0"), Dependency.valueOf("test:second:1.0")));
+
+    assert resolved.size() == 2;
+  }
+
+  private static class FakeRepositoryManager implements RepositoryManager {
+
+    private final Map<String, List<String>> mDependencies = new HashMap<>();
+    private final Map<String, AtomicInteger> mFetchCounts = new ConcurrentHashMap<>();
+
+    void add(String declaration, String... dependencies) {
+      mDependencies.put(declaration, ImmutableList.copyOf(dependencies));
+    }
+
+    int getFetchCount(String declaration) {
+      AtomicInteger count = mFetchCounts.get(declaration);
+      return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public Pom getPom(String declaration) {
+      mFetchCounts.computeIfAbsent(declaration, it -> new AtomicInteger()).incrementAndGet();
+      List<String> declarations = mDependencies.get(declaration);
+      if (declarations == null) {
+        return null;
+      }
+      List<Dependency> dependencies = new ArrayList<>();
+      for (String dependency : declarations) {
+        dependencies.add(Dependency.valueOf(dependency));
+      }
+      Pom pom = Pom.valueOf(declaration);
+      pom.setDependencies(dependencies);
+      return pom;
+    }
+
+    @Override
+    public File getLibrary(Pom pom) {
+      return null;
+    }
+
+    @Override
+    public void setCacheDirectory(File directory) {}
+
+    @Override
+    public void addRepository(String name, String url) {}
+
+    @Override
+    public void addRepository(Repository repository) {}
+
+    @Override
+    public void initialize() {}
+  }
 }
@@ -0,0 +1,175 @@
+package com.tyron.resolver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tyron.common.util.Digests;
+import com.tyron.resolver.repository.DownloadManager;
+import com.tyron.resolver.repository.RemoteRepository;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DownloadManagerTest {
+
+  private static final String JAR = "test/library/1.0/library-1.0.jar";
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+  /** The files served by the fake maven repository, keyed by their path */
+  private final Map<String, byte[]> mFiles = new ConcurrentHashMap<>();
+
+  private final List<String> mRanges = new CopyOnWriteArrayList<>();
+  private final AtomicInteger mActive = new AtomicInteger();
+  private final AtomicInteger mMaxActive = new AtomicInteger();
+  private volatile long mDelayMillis;
+
+  private HttpServer mServer;
+
+  @Before
+  public void setup() throws IOException {
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    mServer.createContext("/", this::handle);
+    mServer.setExecutor(Executors.newCachedThreadPool());
+    mServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+  }
+
+  @Test
+  public void testDownloadIsVerified() throws Exception {
+    byte[] contents = "library contents".getBytes(StandardCharsets.UTF_8);
+    publish(JAR, contents);
+
+    RemoteRepository repository =
+        new RemoteRepository("remote", getUrl(), new DownloadManager(2, 2));
+    repository.setCacheDirectory(mFolder.newFolder("cache"));
+
+    File file = repository.getFile(JAR);
+    assert file != null;
+    assert Arrays.equals(Files.readAllBytes(file.toPath()), contents);
+    assert !new File(file.getPath() + ".part").exists();
+
+    // missing files are not errors
+    assert repository.getFile("test/missing/1.0/missing-1.0.jar") == null;
+  }
+
+  @Test
+  public void testChecksumMismatch() throws Exception {
+    publish(JAR, "library contents".getBytes(StandardCharsets.UTF_8));
+    mFiles.put(JAR + ".sha1", sha1("other contents".getBytes(StandardCharsets.UTF_8)));
+
+    File destination = new File(mFolder.newFolder("cache"), "library-1.0.jar");
+    try {
+      new DownloadManager(2, 2).download(new URL(getUrl() + JAR), destination);
+      assert false : "Expected a checksum mismatch";
+    } catch (IOException e) {
+      assert e.getMessage().contains("Checksum");
+    }
+    assert !destination.exists();
+  }
+
+  @Test
+  public void testDownloadIsResumed() throws Exception {
+    byte[] contents = new byte[10_000];
+    for (int i = 0; i < contents.length; i++) {
+      contents[i] = (byte) i;
+    }
+    publish(JAR, contents);
+
+    File destination = new File(mFolder.newFolder("cache"), "library-1.0.jar");
+    File part = new File(destination.getPath() + ".part");
+    Files.write(part.toPath(), Arrays.copyOf(contents, 4000));
+
+    new DownloadManager(2, 2).download(new URL(getUrl() + JAR), destination);
+    assert mRanges.contains("bytes=4000-");
+    assert Arrays.equals(Files.readAllBytes(destination.toPath()), contents);
+    assert !part.exists();
+  }
+
+  @Test
+  public void testConnectionsPerHostAreLimited() throws Exception {
+    for (int i = 0; i < 8; i++) {
+      mFiles.put("file" + i, new byte[] {(byte) i});
+    }
+    mDelayMillis = 50;
+
+    DownloadManager downloadManager = new DownloadManager(2, 8);
+    File cache = mFolder.newFolder("cache");
+    List<Future<File>> downloads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      downloads.add(
+          downloadManager.enqueue(new URL(getUrl() + "file" + i), new File(cache, "file" + i)));
+    }
+    for (Future<File> download : downloads) {
+      assert download.get() != null;
+    }
+    assert mMaxActive.get() <= 2;
+  }
+
+  private String getUrl() {
+    return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+  }
+
+  private void publish(String path, byte[] contents) {
+    mFiles.put(path, contents);
+    mFiles.put(path + ".sha1", sha1(contents));
+  }
+
+  private static byte[] sha1(byte[] contents) {
+    String hex = Digests.toHex(Digests.newDigest(Digests.SHA1).digest(contents));
+    return hex.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    mMaxActive.accumulateAndGet(mActive.incrementAndGet(), Math::max);
+    try {
+      if (mDelayMillis > 0) {
+        Thread.sleep(mDelayMillis);
+      }
+      byte[] contents = mFiles.get(exchange.getRequestURI().getPath().substring(1));
+      if (contents == null) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      int status = 200;
+      if (range != null) {
+        mRanges.add(range);
+        int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+        contents = Arrays.copyOfRange(contents, start, contents.length);
+        status = 206;
+      }
+      exchange.sendResponseHeaders(status, contents.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(contents);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      mActive.decrementAndGet();
+      exchange.close();
+    }
+  }
+}
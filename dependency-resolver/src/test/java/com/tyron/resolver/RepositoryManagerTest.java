@@ -3,14 +3,41 @@ package com.tyron.resolver;
 import com.tyron.common.TestUtil;
 import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.repository.LocalRepository;
 import com.tyron.resolver.repository.RepositoryManagerImpl;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class RepositoryManagerTest {
 
+  private static final String PARENT_POM =
+      "<project>"
+          + "<properties><otherVersion>3.0</otherVersion></properties>"
+          + "<dependencyManagement><dependencies>"
+          + "<dependency><groupId>test</groupId><artifactId>core</artifactId>"
+          + "<version>2.0</version></dependency>"
+          + "</dependencies></dependencyManagement>"
+          + "</project>";
+
+  private static final String CHILD_POM =
+      "<project>"
+          + "<parent><groupId>test</groupId><artifactId>parent</artifactId>"
+          + "<version>1.0</version></parent>"
+          + "<packaging>aar</packaging>"
+          + "<dependencies>"
+          + "<dependency><groupId>test</groupId><artifactId>core</artifactId></dependency>"
+          + "<dependency><groupId>test</groupId><artifactId>other</artifactId>"
+          + "<version>${otherVersion}</version></dependency>"
+          + "</dependencies>"
+          + "</project>";
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
   private final RepositoryManagerImpl repository = new RepositoryManagerImpl();
 
   @Test
@@ -58,6 +85,67 @@ public class RepositoryManagerTest {
     }
   }
 
+  @Test
+  public void testParsedPomsAreCached() throws IOException {
+    File cacheDir = mFolder.newFolder("cache");
+    writePom(cacheDir, "parent", PARENT_POM);
+    File childPom = writePom(cacheDir, "child", CHILD_POM);
+
+    assertChildPom(createRepository(cacheDir).getPom("test:child:1.0"));
+
+    // the cached pom should be used as long as the file has the same size and modification time
+    long lastModified = childPom.lastModified();
+    FileUtils.writeStringToFile(
+        childPom, CHILD_POM.replace('<', ' ').replace('>', ' '), StandardCharsets.UTF_8);
+    assert childPom.setLastModified(lastModified);
+
+    assertChildPom(createRepository(cacheDir).getPom("test:child:1.0"));
+  }
+
+  @Test
+  public void testModifiedPomIsParsedAgain() throws IOException {
+    File cacheDir = mFolder.newFolder("cache");
+    writePom(cacheDir, "parent", PARENT_POM);
+    File childPom = writePom(cacheDir, "child", CHILD_POM);
+    assertChildPom(createRepository(cacheDir).getPom("test:child:1.0"));
+
+    FileUtils.writeStringToFile(
+        childPom, CHILD_POM.replace("aar", "jar") + "\n", StandardCharsets.UTF_8);
+
+    Pom pom = createRepository(cacheDir).getPom("test:child:1.0");
+    assert pom != null;
+    assert "jar".equals(pom.getPackaging());
+  }
+
+  private static RepositoryManagerImpl createRepository(File cacheDir) {
+    RepositoryManagerImpl repository = new RepositoryManagerImpl();
+    repository.addRepository(new LocalRepository("local"));
+    repository.setCacheDirectory(cacheDir);
+    repository.initialize();
+    return repository;
+  }
+
+  private static File writePom(File cacheDir, String artifactId, String contents)
+      throws IOException {
+    File file = new File(cacheDir, "local/test/" + artifactId + "/1.0/" + artifactId + "-1.0.pom");
+    FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private static void assertChildPom(Pom pom) {
+    assert pom != null;
+    assert "aar".equals(pom.getPackaging());
+    assert pom.getDependencies().size() == 2;
+    assert pom.getDependencies().get(0).toString().equals("test:core:2.0");
+    assert pom.getDependencies().get(1).toString().equals("test:other:3.0");
+    assert "3.0".equals(pom.getProperty("otherVersion"));
+
+    Pom parent = pom.getParent();
+    assert parent != null;
+    assert parent.getDeclarationString().equals("test:parent:1.0");
+    assert parent.getManagedDependencies().size() == 1;
+  }
+
   private void recurse(Pom pom) {
     for (Dependency dependency : pom.getDependencies()) {
       if ("test".equals(dependency.getScope())) {
@@ -12,8 +12,6 @@ import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.provider.Completions;
 import com.tyron.completion.java.provider.JavaKotlincCompletionProvider;
-import com.tyron.completion.model.CachedCompletion;
-import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.completion.progress.ProgressManager;
@@ -21,7 +19,6 @@ import com.tyron.kotlin.completion.core.model.KotlinEnvironment;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import me.xdrop.fuzzywuzzy.FuzzySearch;
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
 import org.jetbrains.kotlin.com.intellij.openapi.editor.Document;
 import org.jetbrains.kotlin.com.intellij.openapi.editor.impl.event.DocumentEventImpl;
@@ -52,8 +49,6 @@ public class JavaCompletionProvider extends CompletionProvider {
     }
   }
 
-  private CachedCompletion mCachedCompletion;
-
   public JavaCompletionProvider() {}
 
   @Override
@@ -61,6 +56,11 @@ public class JavaCompletionProvider extends CompletionProvider {
     return file.isFile() && file.getName().endsWith(".java");
   }
 
+  @Override
+  public boolean isAvailableDuringIndexing() {
+    return true;
+  }
+
   @Override
   public CompletionList complete(CompletionParameters params) {
     if (!(params.getModule() instanceof JavaModule)) {
@@ -68,17 +68,14 @@ public class JavaCompletionProvider extends CompletionProvider {
     }
     checkCanceled();
 
-    if (isIncrementalCompletion(mCachedCompletion, params)) {
-      String partial = partialIdentifier(params.getPrefix(), params.getPrefix().length());
-      CompletionList cachedList = mCachedCompletion.getCompletionList();
-      CompletionList copy = CompletionList.copy(cachedList, partial);
-
-      // if the cached completion is incomplete,
-      // chances are there will be new items that are not in the cache
-      // so don't return the cached items
-      if (!copy.isIncomplete && !copy.items.isEmpty()) {
-        return copy;
-      }
+    if (params.isIndexing()) {
+      // the compiler may be replaced while indexing, the results are marked as incomplete so they
+      // are not reused since they are missing everything that needs the compiler
+      CompletionList.Builder builder =
+          Completions.completeWithoutCompiling(
+              params.getProject(), params.getFile(), params.getContents(), params.getIndex());
+      builder.incomplete();
+      return builder.build();
     }
 
     CompletionList.Builder complete =
@@ -91,17 +88,7 @@ public class JavaCompletionProvider extends CompletionProvider {
     if (complete == null) {
       return CompletionList.EMPTY;
     }
-    CompletionList list = complete.build();
-
-    String newPrefix = params.getPrefix();
-    if (params.getPrefix().contains(".")) {
-      newPrefix = partialIdentifier(params.getPrefix(), params.getPrefix().length());
-    }
-
-    mCachedCompletion =
-        new CachedCompletion(
-            params.getFile(), params.getLine(), params.getColumn(), newPrefix, list);
-    return list;
+    return complete.build();
   }
 
   public CompletionList.Builder completeWithKotlinc(
@@ -206,73 +193,8 @@ public class JavaCompletionProvider extends CompletionProvider {
       if (BuildConfig.DEBUG) {
         Log.e("JavaCompletionProvider", "Unable to get completions", e);
       }
-      service.destroy();
+      // the compiler that failed has already been closed, the others are kept warm
     }
     return null;
   }
-
-  private String partialIdentifier(String contents, int end) {
-    int start = end;
-    while (start > 0 && Character.isJavaIdentifierPart(contents.charAt(start - 1))) {
-      start--;
-    }
-    return contents.substring(start, end);
-  }
-
-  private int getRatio(CompletionItem item, String partialIdentifier) {
-    String label = getLabel(item);
-    return FuzzySearch.ratio(label, partialIdentifier);
-  }
-
-  private String getLabel(CompletionItem item) {
-    String label = item.label;
-    if (label.contains("(")) {
-      label = label.substring(0, label.indexOf('('));
-    }
-    return label;
-  }
-
-  private boolean isIncrementalCompletion(
-      CachedCompletion cachedCompletion, CompletionParameters params) {
-    String prefix = params.getPrefix();
-    File file = params.getFile();
-    int line = params.getLine();
-    int column = params.getColumn();
-    prefix = partialIdentifier(prefix, prefix.length());
-
-    if (line == -1) {
-      return false;
-    }
-
-    if (column == -1) {
-      return false;
-    }
-
-    if (cachedCompletion == null) {
-      return false;
-    }
-
-    if (!file.equals(cachedCompletion.getFile())) {
-      return false;
-    }
-
-    if (prefix.endsWith(".")) {
-      return false;
-    }
-
-    if (cachedCompletion.getLine() != line) {
-      return false;
-    }
-
-    if (cachedCompletion.getColumn() > column) {
-      return false;
-    }
-
-    if (!prefix.startsWith(cachedCompletion.getPrefix())) {
-      return false;
-    }
-
-    return prefix.length() - cachedCompletion.getPrefix().length()
-        == column - cachedCompletion.getColumn();
-  }
 }
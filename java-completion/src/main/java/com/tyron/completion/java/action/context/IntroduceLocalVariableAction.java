@@ -78,7 +78,7 @@ public class IntroduceLocalVariableAction extends AnAction {
     TreePath currentPath = e.getRequiredData(CommonJavaContextKeys.CURRENT_PATH);
     File file = e.getRequiredData(CommonDataKeys.FILE);
     JavaCompilerService compiler = e.getRequiredData(CommonJavaContextKeys.COMPILER);
-    CompilerContainer cachedContainer = compiler.getCachedContainer();
+    CompilerContainer cachedContainer = compiler.getCachedContainer(file);
 
     JavaRewrite rewrite =
         cachedContainer.get(
@@ -216,7 +216,7 @@ public class OverrideInheritedMethodsAction extends AnAction {
   private List<MethodPtr> performInternal(
       JavaCompilerService compiler, SourceFileObject file, TreePath currentPath) {
     CompilerContainer container = compiler.compile(Collections.singletonList(file));
-    return container.get(
+    return container.getWithLock(
         task -> {
           Trees trees = Trees.instance(task.task);
           Element classElement = trees.getElement(currentPath);
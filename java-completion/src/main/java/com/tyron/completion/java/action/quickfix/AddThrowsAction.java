@@ -79,7 +79,7 @@ public class AddThrowsAction extends ExceptionsQuickFix {
 
     ThreadUtil.runOnBackgroundThread(
         () -> {
-          CompilerContainer container = compiler.getCachedContainer();
+          CompilerContainer container = compiler.getCachedContainer(file);
           AtomicReference<JavaRewrite> rewrite = new AtomicReference<>();
           container.run(task -> rewrite.set(performInternal(task, exceptionName, diagnostic)));
           JavaRewrite r = rewrite.get();
@@ -44,9 +44,16 @@ public class CompileBatch implements AutoCloseable {
   public final Types types;
   public final List<CompilationUnitTree> roots;
 
-  public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+  /** The diagnostics reported while compiling this batch */
+  public final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+
+  public CompileBatch(
+      JavaCompilerService parent,
+      ReusableCompiler compiler,
+      SourceFileManager fileManager,
+      Collection<? extends JavaFileObject> files) {
     this.parent = parent;
-    this.borrow = batchTask(parent, files);
+    this.borrow = batchTask(compiler, fileManager, files);
     this.task = borrow.task;
     this.trees = Trees.instance(borrow.task);
     this.elements = borrow.task.getElements();
@@ -77,7 +84,7 @@ public class CompileBatch implements AutoCloseable {
     JavaModule module = parent.getCurrentModule();
     // Check for "class not found errors" that refer to package private classes
     Set<Path> addFiles = new HashSet<>();
-    for (Diagnostic<? extends JavaFileObject> err : parent.getDiagnostics()) {
+    for (Diagnostic<? extends JavaFileObject> err : diagnostics) {
       if (!err.getCode().equals("compiler.err.cant.resolve.location")) {
         continue;
       }
@@ -148,16 +155,17 @@ public class CompileBatch implements AutoCloseable {
     closed = true;
   }
 
-  private static ReusableCompiler.Borrow batchTask(
-      JavaCompilerService parent, Collection<? extends JavaFileObject> sources) {
-    parent.clearDiagnostics();
+  private ReusableCompiler.Borrow batchTask(
+      ReusableCompiler compiler,
+      SourceFileManager fileManager,
+      Collection<? extends JavaFileObject> sources) {
     List<String> options = options(parent.classPath, parent.addExports);
-    return parent.compiler.getTask(
-        parent.mSourceFileManager,
-        parent::addDiagnostic,
-        options,
-        Collections.emptyList(),
-        sources);
+    return compiler.getTask(fileManager, this::report, options, Collections.emptyList(), sources);
+  }
+
+  private void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+    diagnostics.add(diagnostic);
+    parent.addDiagnostic(diagnostic);
   }
 
   /**
@@ -1,6 +1,7 @@
 package com.tyron.completion.java.compiler;
 
 import android.annotation.SuppressLint;
+import com.google.common.collect.ImmutableList;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.Trees;
@@ -26,7 +27,7 @@ public class CompileTask implements AutoCloseable {
     this.trees = Trees.instance(task);
 
     this.roots = batch.roots;
-    this.diagnostics = batch.parent.getDiagnostics();
+    this.diagnostics = ImmutableList.copyOf(batch.diagnostics);
   }
 
   public Trees getTrees() {
@@ -1,6 +1,6 @@
 package com.tyron.completion.java.compiler;
 
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import kotlin.jvm.functions.Function1;
 
@@ -10,12 +10,23 @@ import kotlin.jvm.functions.Function1;
  * <p>A read is when the {@link CompileTask} is being accessed to get information about the parse
  * tree. A write is when the {@link CompileTask} is being changed from a compile call
  *
- * <p>Any threads are allowed to read only if there is no thread that is currently writing. If there
- * is a thread that is currently writing, all other threads that attempts to read will be blocked
- * until the write thread has finished.
+ * <p>javac completes symbols lazily, looking up an element, a type or the members of a class may
+ * fill in symbols of the shared compiler state, so one javac context cannot be read by several
+ * threads at the same time. Because of that {@link #run(Consumer)}, {@link #get(Function1)} and
+ * {@link #getWithLock(Function1)} give the caller exclusive access to the compile information, like
+ * a write.
  *
- * <p>Only one thread is allowed to write at a time, during a write operation all threads that
- * attempts to read will be blocked until the thread writing has finished.
+ * <p>Only {@link #runShared(Consumer)} lets several threads in at the same time. It is meant for
+ * code that only walks the trees and reads source positions and diagnostics, which never completes
+ * symbols: finding the path at the cursor for the editor actions and waiting for a compilation to
+ * finish. Anything that calls {@code Trees.getElement}, {@code Elements}, {@code Types} or the
+ * scanners of the completion and rewrite packages must not use it.
+ *
+ * <p>Readers do not wait for a recompilation. Every compiler of the {@link ReusableCompilerPool}
+ * has its own container, a file whose container is in use is compiled again by another compiler of
+ * the pool and the new compilation is only published once complete. The readers of the previous
+ * compilation keep using it until they are done. Only the updates of a container nobody uses, such
+ * as reparsing an edited method body, are done in place.
  */
 public class CompilerContainer {
 
@@ -23,7 +34,7 @@ public class CompilerContainer {
 
   private volatile boolean mIsWriting;
 
-  private final Semaphore semaphore = new Semaphore(1);
+  private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock(true);
 
   private CompileTask mCompileTask;
 
@@ -34,38 +45,72 @@ public class CompilerContainer {
    * accessing the compile information are synchronized
    */
   public void run(Consumer<CompileTask> consumer) {
-    semaphore.acquireUninterruptibly();
+    mLock.writeLock().lock();
     try {
       consumer.accept(mCompileTask);
     } finally {
-      semaphore.release();
+      mLock.writeLock().unlock();
     }
   }
 
-  public <T> T get(Function1<CompileTask, T> fun) {
-    semaphore.acquireUninterruptibly();
+  /**
+   * Like {@link #run(Consumer)} but other threads calling this method may read the compile
+   * information at the same time. The consumer must not complete symbols, see the class
+   * documentation.
+   */
+  public void runShared(Consumer<CompileTask> consumer) {
+    mLock.readLock().lock();
     try {
-      return fun.invoke(mCompileTask);
+      consumer.accept(mCompileTask);
     } finally {
-      semaphore.release();
+      mLock.readLock().unlock();
     }
   }
 
-  public <T> T getWithLock(Function1<CompileTask, T> fun) {
-    semaphore.acquireUninterruptibly();
+  /** Same as {@link #run(Consumer)} but returns a value */
+  public <T> T get(Function1<CompileTask, T> fun) {
+    mLock.writeLock().lock();
     try {
       return fun.invoke(mCompileTask);
     } finally {
-      semaphore.release();
+      mLock.writeLock().unlock();
     }
   }
 
-  public synchronized boolean isWriting() {
-    return mIsWriting || semaphore.hasQueuedThreads();
+  /** Same as {@link #get(Function1)} */
+  public <T> T getWithLock(Function1<CompileTask, T> fun) {
+    return get(fun);
+  }
+
+  public boolean isWriting() {
+    return mIsWriting || mLock.hasQueuedThreads();
+  }
+
+  /** Whether a thread holds or waits for the lock of this container */
+  boolean isInUse() {
+    return mLock.isWriteLocked() || mLock.getReadLockCount() > 0 || mLock.hasQueuedThreads();
   }
 
   void initialize(Runnable runnable) {
-    semaphore.acquireUninterruptibly();
+    mLock.writeLock().lock();
+    write(runnable);
+  }
+
+  /**
+   * Same as {@link #initialize(Runnable)} but only if no other thread holds the lock.
+   *
+   * @return false if the container is in use, the runnable is not run
+   */
+  boolean tryInitialize(Runnable runnable) {
+    if (!mLock.writeLock().tryLock()) {
+      return false;
+    }
+    write(runnable);
+    return true;
+  }
+
+  /** Must be called while holding the write lock, releases it once done */
+  private void write(Runnable runnable) {
     mIsWriting = true;
     try {
       // ensure that compile task is closed
@@ -75,7 +120,7 @@ public class CompilerContainer {
       runnable.run();
     } finally {
       mIsWriting = false;
-      semaphore.release();
+      mLock.writeLock().unlock();
     }
   }
 
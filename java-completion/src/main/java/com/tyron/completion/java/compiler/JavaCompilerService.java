@@ -3,19 +3,22 @@ package com.tyron.completion.java.compiler;
 import android.annotation.SuppressLint;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.google.common.collect.ImmutableList;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.tools.javac.file.PathFileObject;
+import com.sun.tools.javac.util.Context;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.util.JarClassIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.Cache;
-import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.Docs;
 import com.tyron.completion.java.FindTypeDeclarations;
+import com.tyron.completion.java.index.IdentifierIndex;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -25,7 +28,6 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -45,18 +47,15 @@ public class JavaCompilerService implements CompilerProvider {
   private DiagnosticListener<? super JavaFileObject> mDiagnosticListener;
   public final SourceFileManager mSourceFileManager;
 
-  private final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
-
   private final Project mProject;
   private JavaModule mCurrentModule;
   public final Set<File> classPath, docPath;
   public final Set<String> addExports;
-  public ReusableCompiler compiler = new ReusableCompiler();
   private final Docs docs;
 
-  private final CompilerContainer mContainer = new CompilerContainer();
-  private CompileBatch cachedCompile;
-  private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+  private final ReusableCompilerPool mCompilerPool;
+
+  private final CompilerContainer mEmptyContainer = new CompilerContainer();
 
   public final ReentrantLock mLock = new ReentrantLock();
 
@@ -68,6 +67,14 @@ public class JavaCompilerService implements CompilerProvider {
     this.addExports = Collections.unmodifiableSet(addExports);
     this.mSourceFileManager = new SourceFileManager(project);
     this.docs = new Docs(project, docPath);
+    this.mCompilerPool =
+        new ReusableCompilerPool(
+            () -> {
+              // javac's file manager is not thread safe, so every compiler gets its own
+              SourceFileManager fileManager = new SourceFileManager(project);
+              fileManager.setCurrentModule(mCurrentModule);
+              return fileManager;
+            });
   }
 
   public Project getProject() {
@@ -76,17 +83,40 @@ public class JavaCompilerService implements CompilerProvider {
 
   public void setCurrentModule(@NonNull JavaModule module) {
     mSourceFileManager.setCurrentModule(module);
+    for (ReusableCompilerPool.Entry entry : mCompilerPool.getEntries()) {
+      entry.fileManager.setCurrentModule(module);
+    }
     mCurrentModule = module;
   }
 
+  /** The pool of compilers used by this service, its size and idle timeout can be configured */
+  public ReusableCompilerPool getCompilerPool() {
+    return mCompilerPool;
+  }
+
+  /**
+   * @return the javac context of the compiler that was used most recently, null if nothing has been
+   *     compiled yet
+   */
+  @Nullable
+  public Context getCurrentContext() {
+    ReusableCompilerPool.Entry entry = mCompilerPool.getLastUsed();
+    if (entry == null) {
+      return null;
+    }
+    return entry.compiler.getCurrentContext();
+  }
+
   /**
    * Checks whether this list has been compiled before
    *
    * @param sources list of java files to compile
    * @return true if there's a valid cache for it, false otherwise
    */
-  private boolean needsCompile(Collection<? extends JavaFileObject> sources) {
-    if (cachedModified.size() != sources.size()) {
+  private boolean needsCompile(
+      ReusableCompilerPool.Entry entry, Collection<? extends JavaFileObject> sources) {
+    Map<JavaFileObject, Long> cachedModified = entry.modified;
+    if (entry.batch == null || cachedModified.size() != sources.size()) {
       return true;
     }
     for (JavaFileObject f : sources) {
@@ -104,23 +134,57 @@ public class JavaCompilerService implements CompilerProvider {
     return false;
   }
 
-  private synchronized void loadCompile(Collection<? extends JavaFileObject> sources) {
-    if (cachedCompile != null) {
-      if (!cachedCompile.closed) {
+  private void loadCompile(
+      ReusableCompilerPool.Entry entry, Collection<? extends JavaFileObject> sources) {
+    if (entry.batch != null) {
+      if (!entry.batch.closed) {
         throw new RuntimeException("Compiler is still in-use!");
       }
-      cachedCompile.borrow.close();
+      entry.batch.borrow.close();
+      entry.batch = null;
     }
-    cachedCompile = doCompile(sources);
-    cachedModified.clear();
+    entry.modified.clear();
+    entry.batch = doCompile(entry, sources);
     for (JavaFileObject f : sources) {
-      cachedModified.put(f, f.getLastModified());
+      entry.modified.put(f, f.getLastModified());
     }
   }
 
-  private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
+  /**
+   * Updates the previous compilation of a single file by parsing again only the method body that
+   * has been edited, see {@link PartialReparser}.
+   *
+   * @return false if the file needs to be compiled again
+   */
+  private boolean reparse(
+      ReusableCompilerPool.Entry entry, Collection<? extends JavaFileObject> sources) {
+    if (entry.batch == null || !entry.batch.closed || sources.size() != 1) {
+      return false;
+    }
+    JavaFileObject file = sources.iterator().next();
+    if (entry.modified.size() != 1 || !entry.modified.containsKey(file)) {
+      return false;
+    }
+
+    boolean reparsed = false;
+    try {
+      reparsed = PartialReparser.reparse(entry.batch, file);
+    } catch (Throwable e) {
+      Log.w("JavaCompilerService", "Failed to reparse " + file.getName(), e);
+    } finally {
+      // a failed attempt may have left the trees of the batch half updated
+      entry.modified.clear();
+    }
+    if (reparsed) {
+      entry.modified.put(file, file.getLastModified());
+    }
+    return reparsed;
+  }
+
+  private CompileBatch doCompile(
+      ReusableCompilerPool.Entry entry, Collection<? extends JavaFileObject> sources) {
     if (sources.isEmpty()) throw new RuntimeException("empty sources");
-    CompileBatch firstAttempt = new CompileBatch(this, sources);
+    CompileBatch firstAttempt = new CompileBatch(this, entry.compiler, entry.fileManager, sources);
     Set<Path> addFiles = firstAttempt.needsAdditionalSources();
     if (addFiles.isEmpty()) return firstAttempt;
     // If the compiler needs additional source files that contain package-private files
@@ -132,47 +196,84 @@ public class JavaCompilerService implements CompilerProvider {
     for (Path add : addFiles) {
       moreSources.add(new SourceFileObject(add, mCurrentModule));
     }
-    return new CompileBatch(this, moreSources);
+    return new CompileBatch(this, entry.compiler, entry.fileManager, moreSources);
   }
 
   /**
-   * Creates a compile batch only if it has not been compiled before
+   * Creates a compile batch only if it has not been compiled before. Sources that are compiled by
+   * different compilers of the pool do not block each other. When the compilation of the same
+   * sources is being read, they are compiled by another compiler and the readers keep the previous
+   * compilation, see {@link CompilerContainer}.
    *
    * @param sources Files to compile
    * @return CompileBatch for this compilation
    */
   private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources) {
-    mContainer.initialize(
-        () -> {
-          if (needsCompile(sources)) {
-            loadCompile(sources);
-          }
-          CompileTask task = new CompileTask(cachedCompile);
-          mContainer.setCompileTask(task);
-        });
-    return mContainer;
+    ReusableCompilerPool.Entry entry = mCompilerPool.acquire(sources);
+    boolean compiled;
+    try {
+      compiled = entry.container.tryInitialize(() -> updateCompile(entry, sources));
+    } catch (Throwable e) {
+      // the compiler may still be checked out by the compilation that failed
+      mCompilerPool.evict(entry.container);
+      throw e;
+    } finally {
+      mCompilerPool.release(entry);
+    }
+    if (compiled) {
+      return entry.container;
+    }
+
+    ReusableCompilerPool.Entry idle = mCompilerPool.acquireIdle(sources);
+    try {
+      idle.container.initialize(() -> updateCompile(idle, sources));
+    } catch (Throwable e) {
+      mCompilerPool.evict(idle.container);
+      throw e;
+    } finally {
+      mCompilerPool.release(idle);
+    }
+    return idle.container;
   }
 
-  public void clearDiagnostics() {
-    diagnostics.clear();
-    if (mDiagnosticListener != null) {
-      mDiagnosticListener.report(null);
+  /** Must be called while holding the write lock of the container of the entry */
+  private void updateCompile(
+      ReusableCompilerPool.Entry entry, Collection<? extends JavaFileObject> sources) {
+    if (needsCompile(entry, sources) && !reparse(entry, sources)) {
+      loadCompile(entry, sources);
     }
+    CompileTask task = new CompileTask(entry.batch);
+    entry.container.setCompileTask(task);
+    mCompilerPool.publish(entry, sources);
   }
 
-  public void addDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
-    diagnostics.add(diagnostic);
+  /** Forwards a diagnostic reported by one of the batches to the diagnostic listener */
+  public synchronized void addDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
     if (mDiagnosticListener != null) {
       mDiagnosticListener.report(diagnostic);
     }
   }
 
-  public void setDiagnosticListener(DiagnosticListener<? super JavaFileObject> listener) {
+  public synchronized void setDiagnosticListener(
+      DiagnosticListener<? super JavaFileObject> listener) {
     mDiagnosticListener = listener;
   }
 
+  /**
+   * @return the diagnostics of the compilations kept by the compiler pool, each compilation only
+   *     replaces its own diagnostics
+   */
   public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
-    return ImmutableList.copyOf(diagnostics);
+    ImmutableList.Builder<Diagnostic<? extends JavaFileObject>> builder = ImmutableList.builder();
+    for (ReusableCompilerPool.Entry entry : mCompilerPool.getEntries()) {
+      entry.container.runShared(
+          task -> {
+            if (entry.batch != null) {
+              builder.addAll(entry.batch.diagnostics);
+            }
+          });
+    }
+    return builder.build();
   }
 
   @Override
@@ -196,20 +297,93 @@ public class JavaCompilerService implements CompilerProvider {
     Set<String> classes = new HashSet<>();
     for (Module module : mProject.getDependencies(mCurrentModule)) {
       if (module instanceof JavaModule) {
-        PackageTrie classIndex = ((JavaModule) module).getClassIndex();
-        classes.addAll(classIndex.getMatchingPackages(packageName));
+        JavaModule javaModule = (JavaModule) module;
+        classes.addAll(javaModule.getClassIndex().getMatchingPackages(packageName));
+        for (JarClassIndex index : javaModule.getLibraryClassIndexes()) {
+          index.visitClasses(
+              packageName,
+              (qualifiedName, simpleName) -> {
+                classes.add(qualifiedName.toString());
+                return true;
+              });
+        }
       }
     }
     return classes;
   }
 
+  /**
+   * Visits the top level classes of the current module and its dependencies whose simple name
+   * starts with the given prefix, followed by the ones that match it by camel humps. A class may be
+   * visited more than once.
+   */
+  public void visitTopLevelTypes(
+      String prefix, boolean caseSensitive, PackageTrie.Visitor visitor) {
+    boolean[] stopped = new boolean[1];
+    PackageTrie.Visitor wrapped =
+        (qualifiedName, simpleName) -> {
+          if (!visitor.visit(qualifiedName, simpleName)) {
+            stopped[0] = true;
+          }
+          return !stopped[0];
+        };
+
+    List<JavaModule> modules = new ArrayList<>();
+    for (Module module : mProject.getDependencies(mCurrentModule)) {
+      if (module instanceof JavaModule) {
+        modules.add((JavaModule) module);
+      }
+    }
+    for (JavaModule module : modules) {
+      for (String className : module.getInjectedClasses().keySet()) {
+        String simpleName = simpleName(className);
+        boolean matches =
+            caseSensitive
+                ? simpleName.startsWith(prefix)
+                : simpleName.regionMatches(true, 0, prefix, 0, prefix.length());
+        if (matches && !wrapped.visit(className, simpleName)) {
+          return;
+        }
+      }
+      module.getClassIndex().visitClassesBySimpleName(prefix, caseSensitive, wrapped);
+      if (stopped[0]) {
+        return;
+      }
+      for (JarClassIndex index : module.getLibraryClassIndexes()) {
+        if (!index.visitClassesBySimpleName(prefix, caseSensitive, wrapped)) {
+          return;
+        }
+      }
+    }
+
+    // a lowercase prefix would only match the same classes again
+    if (prefix.equals(prefix.toLowerCase())) {
+      return;
+    }
+    for (JavaModule module : modules) {
+      module.getClassIndex().visitClassesByCamelHump(prefix, wrapped);
+      if (stopped[0]) {
+        return;
+      }
+      for (JarClassIndex index : module.getLibraryClassIndexes()) {
+        if (!index.visitClassesByCamelHump(prefix, wrapped)) {
+          return;
+        }
+      }
+    }
+  }
+
   /** For suggesting the first import typed where the package names are not yet correct */
   public Set<String> getTopLevelNonLeafPackages(Predicate<String> filter) {
     Set<String> packages = new HashSet<>();
     for (Module module : mProject.getDependencies(mCurrentModule)) {
       if (module instanceof JavaModule) {
-        PackageTrie classIndex = ((JavaModule) module).getClassIndex();
-        for (String node : classIndex.getTopLevelNonLeafNodes()) {
+        JavaModule javaModule = (JavaModule) module;
+        List<String> nodes = new ArrayList<>(javaModule.getClassIndex().getTopLevelNonLeafNodes());
+        for (JarClassIndex index : javaModule.getLibraryClassIndexes()) {
+          nodes.addAll(index.getTopLevelNonLeafNodes());
+        }
+        for (String node : nodes) {
           if (filter.test(node)) {
             packages.add(node);
           }
@@ -224,9 +398,46 @@ public class JavaCompilerService implements CompilerProvider {
     return Collections.emptyList();
   }
 
+  /**
+   * Returns the files of the visible modules declaring a class or a member whose name matches the
+   * query.
+   */
   @Override
   public Iterable<Path> search(String query) {
-    return null;
+    Set<Path> found = new HashSet<>();
+    for (IdentifierIndex index : getIndexes()) {
+      for (File file : index.search(query)) {
+        found.add(file.toPath());
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return the identifier indexes of the modules visible from the current module
+   */
+  private List<IdentifierIndex> getIndexes() {
+    List<IdentifierIndex> indexes = new ArrayList<>();
+    for (Module module : mProject.getDependencies(mCurrentModule)) {
+      IdentifierIndex index = getIndex(module);
+      if (index != null) {
+        indexes.add(index);
+      }
+    }
+    return indexes;
+  }
+
+  @Nullable
+  private IdentifierIndex getIndex(Module module) {
+    if (!(module instanceof JavaModule)) {
+      return null;
+    }
+    JavaModule javaModule = (JavaModule) module;
+    IdentifierIndex index = IdentifierIndex.getInstance(javaModule);
+    // only checks the files on disk again if the module has been indexed again or its files have
+    // been added or removed, the files being edited are updated through their snapshots
+    index.refresh(javaModule);
+    return index;
   }
 
   /**
@@ -268,17 +479,6 @@ public class JavaCompilerService implements CompilerProvider {
     }
   }
 
-  private static final Pattern PACKAGE_EXTRACTOR =
-      Pattern.compile("^([a-z][_a-zA-Z0-9]*\\.)*[a-z][_a-zA-Z0-9]*");
-
-  private String packageName(String className) {
-    Matcher m = PACKAGE_EXTRACTOR.matcher(className);
-    if (m.find()) {
-      return m.group();
-    }
-    return "";
-  }
-
   private static final Pattern SIMPLE_EXTRACTOR = Pattern.compile("[A-Z][_a-zA-Z0-9]*$");
 
   private String simpleName(String className) {
@@ -289,15 +489,6 @@ public class JavaCompilerService implements CompilerProvider {
     return "";
   }
 
-  private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
-
-  private boolean containsWord(Path file, String word) {
-    if (cacheContainsWord.needs(file, word)) {
-      cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
-    }
-    return cacheContainsWord.get(file, word);
-  }
-
   private static final Cache<Void, List<String>> cacheContainsType = new Cache<>();
 
   private boolean containsType(Path file, String className) {
@@ -318,11 +509,8 @@ public class JavaCompilerService implements CompilerProvider {
     }
 
     List<Module> dependencies = mProject.getDependencies(mCurrentModule);
-    String packageName = packageName(className);
-    String simpleName = simpleName(className);
-
     for (Module dependency : dependencies) {
-      Path path = findPublicTypeDeclarationInModule(dependency, packageName, simpleName, className);
+      Path path = findPublicTypeDeclarationInModule(dependency, className);
       if (path != NOT_FOUND) {
         return path;
       }
@@ -331,13 +519,14 @@ public class JavaCompilerService implements CompilerProvider {
     return NOT_FOUND;
   }
 
-  private Path findPublicTypeDeclarationInModule(
-      Module module, String packageName, String simpleName, String className) {
-    for (File file : SourceFileManager.list(module, packageName)) {
-      if (containsWord(file.toPath(), simpleName) && containsType(file.toPath(), className)) {
-        if (file.getName().endsWith(".java")) {
-          return file.toPath();
-        }
+  private Path findPublicTypeDeclarationInModule(Module module, String className) {
+    IdentifierIndex index = getIndex(module);
+    if (index == null) {
+      return NOT_FOUND;
+    }
+    for (File file : index.findTypeDeclaration(className)) {
+      if (file.getName().endsWith(".java") && containsType(file.toPath(), className)) {
+        return file.toPath();
       }
     }
     return NOT_FOUND;
@@ -371,14 +560,34 @@ public class JavaCompilerService implements CompilerProvider {
     return Optional.ofNullable(source);
   }
 
+  /**
+   * @return the files of the visible modules that may use the given class, they need to be compiled
+   *     to find the actual references
+   */
   @Override
   public Path[] findTypeReferences(String className) {
-    return null;
+    Set<Path> found = new HashSet<>();
+    for (IdentifierIndex index : getIndexes()) {
+      for (File file : index.findTypeReferences(className)) {
+        found.add(file.toPath());
+      }
+    }
+    return found.toArray(new Path[0]);
   }
 
+  /**
+   * @return the files of the visible modules that may use the given member, they need to be
+   *     compiled to find the actual references
+   */
   @Override
   public Path[] findMemberReferences(String className, String memberName) {
-    return null;
+    Set<Path> found = new HashSet<>();
+    for (IdentifierIndex index : getIndexes()) {
+      for (File file : index.findMemberReferences(className, memberName)) {
+        found.add(file.toPath());
+      }
+    }
+    return found.toArray(new Path[0]);
   }
 
   private final Cache<String, ParseTask> parseCache = new Cache<>();
@@ -470,8 +679,11 @@ public class JavaCompilerService implements CompilerProvider {
   }
 
   public synchronized void close() {
-    if (cachedCompile != null && !cachedCompile.closed) {
-      cachedCompile.close();
+    for (ReusableCompilerPool.Entry entry : mCompilerPool.getEntries()) {
+      CompileBatch batch = entry.batch;
+      if (batch != null && !batch.closed) {
+        batch.close();
+      }
     }
     if (mLock.isHeldByCurrentThread() && mLock.isLocked()) {
       mLock.unlock();
@@ -482,24 +694,29 @@ public class JavaCompilerService implements CompilerProvider {
     return mCurrentModule;
   }
 
+  /** Closes every compiler of the pool, the next compilation will start with a new context */
   public void destroy() {
-    mContainer.initialize(
-        () -> {
-          close();
-          if (cachedCompile != null) {
-            final ReusableCompiler.Borrow borrow = cachedCompile.borrow;
-            if (borrow != null) {
-              borrow.close();
-            }
-          }
-          cachedCompile = null;
-          cachedModified.clear();
-          compiler = new ReusableCompiler();
-        });
+    mCompilerPool.clear();
   }
 
+  /**
+   * Closes only the compiler holding the given compilation, called when a request failed with it so
+   * the compilers of the other files stay warm.
+   */
+  public void destroy(CompilerContainer container) {
+    mCompilerPool.evict(container);
+  }
+
+  /**
+   * @return the container of the most recent compilation of the given file, a container without a
+   *     compile task if the file is not compiled by any compiler of the pool
+   */
   @NonNull
-  public CompilerContainer getCachedContainer() {
-    return mContainer;
+  public CompilerContainer getCachedContainer(File file) {
+    ReusableCompilerPool.Entry entry = mCompilerPool.find(file.toPath().toUri());
+    if (entry == null) {
+      return mEmptyContainer;
+    }
+    return entry.container;
   }
 }
@@ -0,0 +1,388 @@
+package com.tyron.completion.java.compiler;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.tools.javac.api.ClientCodeWrapper;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.comp.Attr;
+import com.sun.tools.javac.comp.AttrContext;
+import com.sun.tools.javac.comp.Enter;
+import com.sun.tools.javac.comp.Env;
+import com.sun.tools.javac.comp.Flow;
+import com.sun.tools.javac.comp.MemberEnter;
+import com.sun.tools.javac.parser.JavacParser;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.parser.Tokens;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeMaker;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Position;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Updates a {@link CompileBatch} when the only change to a file is inside the body of one method.
+ *
+ * <p>Only the new body is parsed, it replaces the old body in the existing tree and is attributed
+ * again in the environment of its method. The trees after the method are moved by the difference in
+ * length, so the rest of the file keeps its attribution and diagnostics. Any change that could
+ * affect other members, such as a change to a signature, a class declared inside the body or a new
+ * syntax error, is left to a full compilation.
+ */
+final class PartialReparser {
+
+  private PartialReparser() {}
+
+  /**
+   * Updates the batch to the new contents of the given file.
+   *
+   * @param file the new version of a file compiled by the batch
+   * @return true if the batch has been updated, false if the file has to be compiled again. The
+   *     batch must not be used if this method returns false or throws.
+   */
+  static boolean reparse(CompileBatch batch, JavaFileObject file) {
+    JCTree.JCCompilationUnit root = null;
+    for (CompilationUnitTree tree : batch.roots) {
+      if (file.toUri().equals(tree.getSourceFile().toUri())) {
+        root = (JCTree.JCCompilationUnit) tree;
+      }
+    }
+    if (root == null || root.endPositions == null) {
+      return false;
+    }
+
+    Context context = ((JavacTaskImpl) batch.task).getContext();
+    Log log = Log.instance(context);
+    if (!(log instanceof ReusableCompiler.ReusableContext.ReusableLog)) {
+      return false;
+    }
+    JavaFileObject oldSource = root.getSourceFile();
+    // the compiler only works with wrapped file objects
+    JavaFileObject source = ClientCodeWrapper.instance(context).wrap(file);
+
+    String oldContents = getContents(oldSource);
+    String newContents = getContents(source);
+    if (oldContents == null || newContents == null) {
+      return false;
+    }
+    if (oldContents.equals(newContents)) {
+      root.sourcefile = source;
+      return true;
+    }
+
+    int changeStart = 0;
+    int maxLength = Math.min(oldContents.length(), newContents.length());
+    while (changeStart < maxLength
+        && oldContents.charAt(changeStart) == newContents.charAt(changeStart)) {
+      changeStart++;
+    }
+    int suffix = 0;
+    while (suffix < maxLength - changeStart
+        && oldContents.charAt(oldContents.length() - 1 - suffix)
+            == newContents.charAt(newContents.length() - 1 - suffix)) {
+      suffix++;
+    }
+    int oldChangeEnd = oldContents.length() - suffix;
+
+    EndPosTable endPositions = root.endPositions;
+    JCTree.JCMethodDecl method = findMethod(root, changeStart, oldChangeEnd);
+    if (method == null || containsClass(method.body)) {
+      return false;
+    }
+    Symbol.ClassSymbol owner = method.sym.enclClass();
+    if ((owner.flags_field & Flags.UNATTRIBUTED) != 0) {
+      // the class was not attributed because of errors in an earlier phase
+      return false;
+    }
+
+    int bodyStart = TreeInfo.getStartPos(method.body);
+    int oldBodyEnd = TreeInfo.getEndPos(method.body, endPositions);
+    int delta = newContents.length() - oldContents.length();
+    int newBodyEnd = oldBodyEnd + delta;
+    int lineDelta =
+        countLines(newContents, changeStart, oldChangeEnd + delta)
+            - countLines(oldContents, changeStart, oldChangeEnd);
+
+    List<Diagnostic<? extends JavaFileObject>> bodyDiagnostics = new ArrayList<>();
+    int previousErrors = 0;
+    for (Diagnostic<? extends JavaFileObject> diagnostic : batch.diagnostics) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        previousErrors++;
+      }
+      if (diagnostic.getSource() == null || !file.toUri().equals(diagnostic.getSource().toUri())) {
+        continue;
+      }
+      long start = diagnostic.getStartPosition();
+      if (start >= bodyStart && start < oldBodyEnd) {
+        bodyDiagnostics.add(diagnostic);
+        continue;
+      }
+      // the line and column are computed once from the old contents, before the trees are moved
+      diagnostic.getLineNumber();
+      if (start >= oldBodyEnd
+          && (lineDelta != 0
+              || oldContents.lastIndexOf('\n', (int) start) < oldBodyEnd
+              || !isTreePosition(diagnostic))) {
+        // the line and column of the diagnostic cannot be moved
+        return false;
+      }
+    }
+
+    ((ReusableCompiler.ReusableContext.ReusableLog) log).invalidate(oldSource);
+
+    JavaFileObject previousSource = log.useSource(source);
+    log.setEndPosTable(source, endPositions);
+    Log.DeferredDiagnosticHandler handler = new Log.DeferredDiagnosticHandler(log);
+    List<JCDiagnostic> attrDiagnostics;
+    List<JCDiagnostic> flowDiagnostics = Collections.emptyList();
+    try {
+      char[] chars = new char[newBodyEnd];
+      Arrays.fill(chars, 0, bodyStart, ' ');
+      newContents.getChars(bodyStart, newBodyEnd, chars, bodyStart);
+      // the body is parsed at its position in the file so the new trees have the right positions
+      JavacParser parser =
+          ParserFactory.instance(context).newParser(CharBuffer.wrap(chars), false, true, false);
+      JCTree.JCBlock body = parser.block();
+      if (parser.token().kind != Tokens.TokenKind.EOF
+          || body.pos != bodyStart
+          || parser.getEndPos(body) != newBodyEnd
+          || hasErrors(handler.getDiagnostics())
+          || containsClass(body)) {
+        return false;
+      }
+
+      // from here on the tree is modified, the batch cannot be used if this fails
+      new TreeScanner() {
+        @Override
+        public void scan(JCTree tree) {
+          if (tree != null) {
+            endPositions.replaceTree(tree, null);
+            super.scan(tree);
+          }
+        }
+      }.scan(method.body);
+      new PositionTranslator(endPositions, oldBodyEnd, delta, method.body).scan(root);
+      new TreeScanner() {
+        @Override
+        public void scan(JCTree tree) {
+          if (tree != null) {
+            int end = parser.getEndPos(tree);
+            if (end != Position.NOPOS) {
+              endPositions.storeEnd(tree, end);
+            }
+            super.scan(tree);
+          }
+        }
+      }.scan(body);
+      method.body = body;
+      root.sourcefile = source;
+      char[] contents = newContents.toCharArray();
+      root.lineMap = Position.makeLineMap(contents, contents.length, true);
+
+      Env<AttrContext> classEnv = Enter.instance(context).getClassEnv(owner);
+      Env<AttrContext> methodEnv = MemberEnter.instance(context).getMethodEnv(method, classEnv);
+      Attr.instance(context).attribStat(body, methodEnv);
+      attrDiagnostics = new ArrayList<>(handler.getDiagnostics());
+      handler.getDiagnostics().clear();
+
+      int errors = previousErrors;
+      for (Diagnostic<? extends JavaFileObject> diagnostic : bodyDiagnostics) {
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+          errors--;
+        }
+      }
+      for (JCDiagnostic diagnostic : attrDiagnostics) {
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+          errors++;
+        }
+      }
+      // like a full compilation, the flow analysis only runs when there are no errors
+      if (errors == 0) {
+        if (previousErrors != 0) {
+          // the flow analysis of the other members has never been done
+          return false;
+        }
+        Symbol.ClassSymbol topLevel = owner.outermostClass();
+        Flow.instance(context)
+            .analyzeTree(
+                Enter.instance(context).getClassEnv(topLevel),
+                TreeMaker.instance(context).forToplevel(root));
+        flowDiagnostics = new ArrayList<>();
+        for (JCDiagnostic diagnostic : handler.getDiagnostics()) {
+          long start = diagnostic.getStartPosition();
+          if (start >= bodyStart && start < newBodyEnd) {
+            flowDiagnostics.add(diagnostic);
+          }
+        }
+      }
+    } finally {
+      log.popDiagnosticHandler(handler);
+      log.useSource(previousSource);
+    }
+
+    // the diagnostics of the other members and files of the batch stay as they are
+    batch.diagnostics.removeAll(bodyDiagnostics);
+    // reported through the listener of the batch
+    for (JCDiagnostic diagnostic : attrDiagnostics) {
+      log.report(diagnostic);
+    }
+    for (JCDiagnostic diagnostic : flowDiagnostics) {
+      log.report(diagnostic);
+    }
+    return true;
+  }
+
+  /**
+   * @return the method declared in a class of the file whose body contains the changed region,
+   *     excluding its braces, null if there is none or it is a constructor
+   */
+  private static JCTree.JCMethodDecl findMethod(
+      JCTree.JCCompilationUnit root, int changeStart, int changeEnd) {
+    List<JCTree> trees = new ArrayList<>(root.getTypeDecls());
+    for (int i = 0; i < trees.size(); i++) {
+      JCTree tree = trees.get(i);
+      if (tree instanceof JCTree.JCClassDecl) {
+        trees.addAll(((JCTree.JCClassDecl) tree).defs);
+        continue;
+      }
+      if (!(tree instanceof JCTree.JCMethodDecl)) {
+        continue;
+      }
+      JCTree.JCMethodDecl method = (JCTree.JCMethodDecl) tree;
+      if (method.body == null || method.sym == null || TreeInfo.isConstructor(method)) {
+        continue;
+      }
+      int start = TreeInfo.getStartPos(method.body);
+      int end = TreeInfo.getEndPos(method.body, root.endPositions);
+      if (start < changeStart && changeEnd < end) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static boolean containsClass(JCTree tree) {
+    boolean[] found = new boolean[1];
+    new TreeScanner() {
+      @Override
+      public void visitClassDef(JCTree.JCClassDecl tree) {
+        found[0] = true;
+      }
+
+      @Override
+      public void visitNewClass(JCTree.JCNewClass tree) {
+        if (tree.def != null) {
+          found[0] = true;
+        }
+        super.visitNewClass(tree);
+      }
+    }.scan(tree);
+    return found[0];
+  }
+
+  private static boolean hasErrors(Iterable<JCDiagnostic> diagnostics) {
+    for (JCDiagnostic diagnostic : diagnostics) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Whether the position of the diagnostic follows the tree it is reported on */
+  private static boolean isTreePosition(Diagnostic<? extends JavaFileObject> diagnostic) {
+    if (!(diagnostic instanceof ClientCodeWrapper.DiagnosticSourceUnwrapper)) {
+      return false;
+    }
+    JCDiagnostic.DiagnosticPosition position =
+        ((ClientCodeWrapper.DiagnosticSourceUnwrapper) diagnostic).d.getDiagnosticPosition();
+    return position != null && position.getTree() != null;
+  }
+
+  private static int countLines(String contents, int start, int end) {
+    int lines = 0;
+    for (int i = start; i < end; i++) {
+      if (contents.charAt(i) == '\n') {
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  private static String getContents(JavaFileObject file) {
+    try {
+      CharSequence contents = file.getCharContent(true);
+      return contents == null ? null : contents.toString();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Moves the trees that start or end after the given position */
+  private static class PositionTranslator extends TreeScanner {
+
+    private final EndPosTable mEndPositions;
+    private final int mFrom;
+    private final int mDelta;
+    private final JCTree mSkipped;
+
+    /** Trees such as the type of {@code int a, b;} are shared by more than one parent */
+    private final Set<JCTree> mVisited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    PositionTranslator(EndPosTable endPositions, int from, int delta, JCTree skipped) {
+      mEndPositions = endPositions;
+      mFrom = from;
+      mDelta = delta;
+      mSkipped = skipped;
+    }
+
+    @Override
+    public void scan(JCTree tree) {
+      if (tree == null || tree == mSkipped || !mVisited.add(tree)) {
+        return;
+      }
+      int end = mEndPositions.getEndPos(tree);
+      if (end != Position.NOPOS && end >= mFrom) {
+        mEndPositions.storeEnd(tree, end + mDelta);
+      }
+      if (tree.pos >= mFrom) {
+        tree.pos += mDelta;
+      }
+      if (tree instanceof JCTree.JCBlock) {
+        JCTree.JCBlock block = (JCTree.JCBlock) tree;
+        block.endpos = translate(block.endpos);
+      } else if (tree instanceof JCTree.JCSwitch) {
+        JCTree.JCSwitch switchTree = (JCTree.JCSwitch) tree;
+        switchTree.endpos = translate(switchTree.endpos);
+      } else if (tree instanceof JCTree.JCSwitchExpression) {
+        JCTree.JCSwitchExpression switchExpression = (JCTree.JCSwitchExpression) tree;
+        switchExpression.endpos = translate(switchExpression.endpos);
+      } else if (tree instanceof JCTree.JCVariableDecl) {
+        JCTree.JCVariableDecl variable = (JCTree.JCVariableDecl) tree;
+        variable.startPos = translate(variable.startPos);
+        if (variable.sym != null) {
+          variable.sym.pos = translate(variable.sym.pos);
+        }
+      }
+      super.scan(tree);
+    }
+
+    private int translate(int position) {
+      return position != Position.NOPOS && position >= mFrom ? position + mDelta : position;
+    }
+  }
+}
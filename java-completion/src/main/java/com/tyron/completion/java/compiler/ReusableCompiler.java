@@ -270,6 +270,15 @@ public class ReusableCompiler {
               }
             };
       }
+
+      /**
+       * Forgets the contents of the given file and the positions already reported in it, used when
+       * a part of the file is parsed again within the same compilation.
+       */
+      void invalidate(JavaFileObject file) {
+        sourceMap.remove(file);
+        recorded.removeIf(pair -> file.equals(pair.fst));
+      }
     }
   }
 }
@@ -0,0 +1,338 @@
+package com.tyron.completion.java.compiler;
+
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.tools.JavaFileObject;
+
+/**
+ * A bounded pool of warm {@link ReusableCompiler} instances used by {@link JavaCompilerService}.
+ *
+ * <p>Each entry owns a compiler along with its own file manager, {@link CompilerContainer} and the
+ * last {@link CompileBatch} compiled with it, so requests for different files (e.g. completion on
+ * one file while diagnostics run on another) can be compiled and read at the same time without
+ * discarding each other's results. Entries are looked up by the files they last compiled, when the
+ * pool is full the least recently used idle entry is reused and its javac context is kept warm.
+ *
+ * <p>An entry is in use from {@link #acquire(Collection)} until {@link #release(Entry)}, and while
+ * a thread reads or waits for its container. Entries in use are never given to other sources, when
+ * none is idle the pool grows past its maximum size and shrinks back once entries are released. An
+ * entry is only found by its files once {@link #publish(Entry, Collection)} is called after its
+ * compilation has been stored in its container.
+ *
+ * <p>Entries that have not been used for longer than the idle timeout are closed the next time the
+ * pool is accessed so the memory held by their javac context can be reclaimed.
+ */
+public class ReusableCompilerPool {
+
+  public static final int DEFAULT_MAX_SIZE = 2;
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  static class Entry {
+    final ReusableCompiler compiler = new ReusableCompiler();
+    final SourceFileManager fileManager;
+    final CompilerContainer container = new CompilerContainer();
+
+    /** Only accessed while holding the write lock of the container */
+    final Map<JavaFileObject, Long> modified = new HashMap<>();
+
+    CompileBatch batch;
+
+    private Set<URI> mSources = Collections.emptySet();
+    private long mLastUsed;
+
+    /** The number of compilations that acquired this entry and did not release it yet */
+    private int mUsers;
+
+    /** Whether the entry was evicted while in use, it is closed once released */
+    private boolean mEvicted;
+
+    Entry(SourceFileManager fileManager) {
+      this.fileManager = fileManager;
+    }
+
+    private boolean isIdle() {
+      return mUsers == 0 && !container.isInUse();
+    }
+
+    /** Closes the cached compilation along with the jars opened by the file manager */
+    void close() {
+      container.initialize(
+          () -> {
+            if (batch != null) {
+              batch.borrow.close();
+              batch = null;
+            }
+            modified.clear();
+          });
+      if (fileManager != null) {
+        try {
+          fileManager.close();
+        } catch (IOException ignored) {
+          // the jars held by the file manager will be closed once it is garbage collected
+        }
+      }
+    }
+  }
+
+  private final Supplier<SourceFileManager> mFileManagerFactory;
+  private final LongSupplier mClock;
+  private final List<Entry> mEntries = new ArrayList<>();
+
+  private int mMaxSize = DEFAULT_MAX_SIZE;
+  private long mIdleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+  private volatile Entry mLastUsed;
+
+  ReusableCompilerPool(Supplier<SourceFileManager> fileManagerFactory) {
+    this(fileManagerFactory, System::currentTimeMillis);
+  }
+
+  /**
+   * @param clock returns the current time in milliseconds, used to find the least recently used and
+   *     the idle entries
+   */
+  ReusableCompilerPool(Supplier<SourceFileManager> fileManagerFactory, LongSupplier clock) {
+    mFileManagerFactory = fileManagerFactory;
+    mClock = clock;
+  }
+
+  /**
+   * Sets the maximum number of compilers kept by this pool. Each compiler holds its own javac
+   * context which can take a lot of memory on large projects.
+   */
+  public void setMaxSize(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("The pool must hold at least one compiler");
+    }
+    List<Entry> evicted = new ArrayList<>();
+    synchronized (this) {
+      mMaxSize = maxSize;
+      // the entries in use are closed once released
+      while (mEntries.size() > mMaxSize) {
+        int index = leastRecentlyUsedIdle();
+        if (index == -1) {
+          break;
+        }
+        evicted.add(mEntries.remove(index));
+      }
+    }
+    closeAll(evicted);
+  }
+
+  public synchronized int getMaxSize() {
+    return mMaxSize;
+  }
+
+  /** Sets how long a compiler may stay unused before it is closed */
+  public synchronized void setIdleTimeout(long timeout, TimeUnit unit) {
+    mIdleTimeoutMillis = unit.toMillis(timeout);
+  }
+
+  public synchronized int size() {
+    return mEntries.size();
+  }
+
+  /**
+   * Returns the entry that should compile the given sources. This is the entry that compiled the
+   * same files before if there is one, a new entry if the pool is not full or else the least
+   * recently used idle one. The entry must be given back with {@link #release(Entry)}.
+   */
+  Entry acquire(Collection<? extends JavaFileObject> sources) {
+    return acquire(sources, true);
+  }
+
+  /**
+   * Returns an entry that is not in use to compile the given sources again, while the entry that
+   * compiled them before is still being read. The entry must be given back with {@link
+   * #release(Entry)}.
+   */
+  Entry acquireIdle(Collection<? extends JavaFileObject> sources) {
+    return acquire(sources, false);
+  }
+
+  private Entry acquire(Collection<? extends JavaFileObject> sources, boolean reusePublished) {
+    Set<URI> uris = toUris(sources);
+
+    Entry entry = null;
+    List<Entry> evicted = new ArrayList<>();
+    synchronized (this) {
+      long now = mClock.getAsLong();
+      for (Entry existing : mEntries) {
+        if (reusePublished && existing.mSources.equals(uris)) {
+          entry = existing;
+          break;
+        }
+      }
+
+      for (int i = mEntries.size() - 1; i >= 0; i--) {
+        Entry existing = mEntries.get(i);
+        if (existing != entry
+            && existing.isIdle()
+            && now - existing.mLastUsed > mIdleTimeoutMillis) {
+          evicted.add(mEntries.remove(i));
+        }
+      }
+
+      if (entry == null && mEntries.size() >= mMaxSize) {
+        int index = leastRecentlyUsedIdle();
+        if (index != -1) {
+          entry = mEntries.get(index);
+          // the previous compilation is about to be replaced
+          entry.mSources = Collections.emptySet();
+        }
+      }
+      if (entry == null) {
+        entry = new Entry(mFileManagerFactory.get());
+        mEntries.add(entry);
+      }
+      entry.mUsers++;
+      entry.mLastUsed = now;
+      mLastUsed = entry;
+    }
+    closeAll(evicted);
+    return entry;
+  }
+
+  /**
+   * Makes the entry found by the given sources, called once their compilation has been stored in
+   * the container of the entry. An entry that compiled the same sources before is not found
+   * anymore, its readers keep their compilation until they are done.
+   */
+  synchronized void publish(Entry entry, Collection<? extends JavaFileObject> sources) {
+    Set<URI> uris = toUris(sources);
+    for (Entry existing : mEntries) {
+      if (existing != entry && existing.mSources.equals(uris)) {
+        existing.mSources = Collections.emptySet();
+      }
+    }
+    entry.mSources = uris;
+  }
+
+  /**
+   * Gives back an entry returned by {@link #acquire(Collection)}. The entries created while every
+   * entry was in use are closed once idle.
+   */
+  void release(Entry entry) {
+    List<Entry> closed = new ArrayList<>();
+    synchronized (this) {
+      entry.mUsers--;
+      if (entry.mUsers == 0 && entry.mEvicted) {
+        closed.add(entry);
+      }
+      while (mEntries.size() > mMaxSize) {
+        int index = leastRecentlyUsedIdle();
+        if (index == -1) {
+          break;
+        }
+        closed.add(mEntries.remove(index));
+      }
+    }
+    closeAll(closed);
+  }
+
+  /**
+   * Closes the entry holding the given container, e.g. after a request failed with it, the other
+   * entries are kept warm. An entry still acquired by a compilation is closed once released.
+   */
+  void evict(CompilerContainer container) {
+    Entry evicted = null;
+    synchronized (this) {
+      for (Entry entry : mEntries) {
+        if (entry.container == container) {
+          evicted = entry;
+          break;
+        }
+      }
+      if (evicted == null) {
+        return;
+      }
+      mEntries.remove(evicted);
+      if (mLastUsed == evicted) {
+        mLastUsed = null;
+      }
+      if (evicted.mUsers > 0) {
+        evicted.mEvicted = true;
+        return;
+      }
+    }
+    evicted.close();
+  }
+
+  /**
+   * @return the entry that was acquired most recently, null if the pool is empty
+   */
+  @Nullable
+  Entry getLastUsed() {
+    return mLastUsed;
+  }
+
+  /**
+   * @return the most recently used entry that last compiled the given file, null if no entry did
+   */
+  @Nullable
+  synchronized Entry find(URI file) {
+    Entry found = null;
+    for (Entry entry : mEntries) {
+      if (entry.mSources.contains(file) && (found == null || entry.mLastUsed > found.mLastUsed)) {
+        found = entry;
+      }
+    }
+    return found;
+  }
+
+  synchronized List<Entry> getEntries() {
+    return new ArrayList<>(mEntries);
+  }
+
+  /** Closes all the compilers of this pool */
+  public void clear() {
+    List<Entry> entries;
+    synchronized (this) {
+      entries = new ArrayList<>(mEntries);
+      mEntries.clear();
+      mLastUsed = null;
+    }
+    closeAll(entries);
+  }
+
+  /**
+   * @return the index of the least recently used entry that is not in use, -1 if every entry is
+   */
+  private int leastRecentlyUsedIdle() {
+    int index = -1;
+    for (int i = 0; i < mEntries.size(); i++) {
+      Entry entry = mEntries.get(i);
+      if (entry.isIdle() && (index == -1 || entry.mLastUsed < mEntries.get(index).mLastUsed)) {
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  private static Set<URI> toUris(Collection<? extends JavaFileObject> sources) {
+    Set<URI> uris = new HashSet<>();
+    for (JavaFileObject source : sources) {
+      uris.add(source.toUri());
+    }
+    return uris;
+  }
+
+  /** Must not be called while holding the lock of this pool as it waits for readers to finish */
+  private static void closeAll(List<Entry> entries) {
+    for (Entry entry : entries) {
+      entry.close();
+    }
+  }
+}
@@ -35,7 +35,7 @@ public class HoverProvider {
 
   public List<String> hover(Path file, int offset) {
     CompilerContainer container = compiler.compile(file);
-    return container.get(
+    return container.getWithLock(
         task -> {
           Element element = new FindHoverElement(task.task).scan(task.root(), (long) offset);
           if (element == null) {
@@ -0,0 +1,409 @@
+package com.tyron.completion.java.index;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.listener.FileListener;
+import com.tyron.common.util.FileUtilsEx;
+import com.tyron.common.util.StringSearch;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
+
+/**
+ * An inverted index of the identifiers of the java files of a module, used to find the files that
+ * may declare or use a name without reading every file.
+ *
+ * <p>Each file is scanned by the {@link SourceScanner} and its names are kept along with the size
+ * and modification time of the file. The index is stored in the build directory of the module, on
+ * the next {@link #refresh(Collection)} only the files that changed on disk are scanned again.
+ *
+ * <p>The index listens to the snapshots of the {@link FileManager} of the module, the contents of
+ * the files being edited are scanned again the next time the index is queried. The files on disk
+ * are only checked again by {@link #refresh(JavaModule)} once the files of the module have been
+ * added, removed or indexed again, so a query doesn't read the attributes of every file.
+ */
+public class IdentifierIndex implements FileListener {
+
+  private static final String TAG = IdentifierIndex.class.getSimpleName();
+
+  private static final Key<IdentifierIndex> KEY = Key.create("identifierIndex");
+
+  private static final int VERSION = 1;
+
+  /** The modification time of the files whose contents were taken from a snapshot */
+  private static final long SNAPSHOT = -1;
+
+  /**
+   * Returns the index of the given module, creating it if needed. The index must be refreshed with
+   * the files of the module before it is used.
+   */
+  @NonNull
+  public static IdentifierIndex getInstance(@NonNull JavaModule module) {
+    IdentifierIndex index = module.getUserData(KEY);
+    if (index == null) {
+      File file = new File(module.getBuildDirectory(), "caches/java-index/identifiers.bin");
+      IdentifierIndex created = new IdentifierIndex(file, module.getFileManager());
+      index = module.putUserDataIfAbsent(KEY, created);
+      if (index == created) {
+        module.getFileManager().addSnapshotListener(index);
+      }
+    }
+    return index;
+  }
+
+  /** The names of a file and the size and modification time of the file they were read from */
+  private static class IndexedFile {
+    final long modified;
+    final long length;
+    final SourceSymbols symbols;
+
+    IndexedFile(long modified, long length, SourceSymbols symbols) {
+      this.modified = modified;
+      this.length = length;
+      this.symbols = symbols;
+    }
+  }
+
+  private final File mIndexFile;
+  @Nullable private final FileManager mFileManager;
+
+  private final Map<File, IndexedFile> mEntries = new HashMap<>();
+
+  /** identifier -> files containing it */
+  private final Map<String, Set<File>> mIdentifiers = new HashMap<>();
+
+  /** qualified class name -> files declaring it */
+  private final Map<String, Set<File>> mTypes = new HashMap<>();
+
+  /** simple name of a class or member -> files declaring it */
+  private final Map<String, Set<File>> mDeclarations = new HashMap<>();
+
+  /** The snapshots that have not been scanned yet */
+  private final Map<File, CharSequence> mPending = new LinkedHashMap<>();
+
+  private boolean mLoaded;
+  private boolean mDirty;
+
+  /** The source modification count of the module when the index was last refreshed */
+  private long mRefreshedCount = -1;
+
+  public IdentifierIndex(@NonNull File indexFile, @Nullable FileManager fileManager) {
+    mIndexFile = indexFile;
+    mFileManager = fileManager;
+  }
+
+  @Override
+  public void onSnapshotChanged(File file, CharSequence contents) {
+    if (!file.getName().endsWith(".java")) {
+      return;
+    }
+    synchronized (this) {
+      if (mEntries.containsKey(file)) {
+        mPending.put(file, contents.toString());
+      }
+    }
+  }
+
+  /**
+   * Refreshes the index with the java files and the injected classes of the module if they have
+   * changed since the last refresh, which happens when the project is opened or built and when
+   * files are created or deleted.
+   *
+   * @see JavaModule#getSourceModificationCount()
+   */
+  public void refresh(@NonNull JavaModule module) {
+    long count = module.getSourceModificationCount();
+    synchronized (this) {
+      if (count == mRefreshedCount) {
+        return;
+      }
+    }
+    List<File> files = new ArrayList<>(module.getJavaFiles().values());
+    Map<String, File> injected = module.getInjectedClasses();
+    if (injected != null) {
+      files.addAll(injected.values());
+    }
+    synchronized (this) {
+      refresh(files);
+      // files added while they were collected change the count again
+      mRefreshedCount = count;
+    }
+  }
+
+  /**
+   * Makes the index contain exactly the given files, scanning the ones that are new or have been
+   * modified since they were indexed, and stores the index if it changed. Only the size and
+   * modification time of the unchanged files are read.
+   */
+  public synchronized void refresh(@NonNull Collection<File> files) {
+    load();
+
+    Set<File> current = new HashSet<>(files);
+    for (File file : new ArrayList<>(mEntries.keySet())) {
+      if (!current.contains(file)) {
+        remove(file);
+        mPending.remove(file);
+      }
+    }
+
+    for (File file : current) {
+      if (!file.getName().endsWith(".java")) {
+        continue;
+      }
+      IndexedFile entry = mEntries.get(file);
+      Optional<CharSequence> snapshot =
+          mFileManager == null ? Optional.empty() : mFileManager.getFileContent(file);
+      if (snapshot.isPresent()) {
+        // once indexed from its snapshot, the file is kept up to date by onSnapshotChanged
+        if (entry == null || entry.modified != SNAPSHOT) {
+          mPending.put(file, snapshot.get());
+        }
+        continue;
+      }
+
+      if (entry != null && entry.modified == file.lastModified() && entry.length == file.length()) {
+        continue;
+      }
+      long modified = file.lastModified();
+      long length = file.length();
+      try {
+        String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        put(file, new IndexedFile(modified, length, SourceScanner.scan(contents)));
+      } catch (IOException e) {
+        remove(file);
+      }
+    }
+    applyPending();
+
+    if (mDirty) {
+      save();
+    }
+  }
+
+  /**
+   * @return the files containing the given identifier
+   */
+  @NonNull
+  public synchronized Set<File> findIdentifier(@NonNull String identifier) {
+    applyPending();
+    return copy(mIdentifiers.get(identifier));
+  }
+
+  /**
+   * @param className the qualified name of a class, with the names of the nested classes separated
+   *     by dots
+   * @return the files declaring the class
+   */
+  @NonNull
+  public synchronized Set<File> findTypeDeclaration(@NonNull String className) {
+    applyPending();
+    return copy(mTypes.get(className));
+  }
+
+  /**
+   * Returns the files that may use the given class: the files containing its simple name that are
+   * in the same package, import it or its package, or may refer to it by its qualified name.
+   */
+  @NonNull
+  public synchronized Set<File> findTypeReferences(@NonNull String className) {
+    applyPending();
+    int lastDot = className.lastIndexOf('.');
+    String simpleName = className.substring(lastDot + 1);
+    Set<File> candidates = mIdentifiers.get(simpleName);
+    if (candidates == null) {
+      return Collections.emptySet();
+    }
+
+    Set<File> declaring = mTypes.get(className);
+    if (declaring == null) {
+      // a class declared elsewhere, its package is not known
+      return copy(candidates);
+    }
+    String packageName = mEntries.get(declaring.iterator().next()).symbols.packageName;
+    if (lastDot != (packageName.isEmpty() ? -1 : packageName.length())) {
+      // a nested class can be used by its simple name in the subclasses of its outer class
+      return copy(candidates);
+    }
+    String firstName = packageName.isEmpty() ? simpleName : packageName.split("\\.")[0];
+
+    Set<File> found = new HashSet<>();
+    for (File file : candidates) {
+      SourceSymbols symbols = mEntries.get(file).symbols;
+      if (symbols.packageName.equals(packageName)
+          || symbols.identifiers.contains(firstName)
+          || imports(symbols, className, packageName)) {
+        found.add(file);
+      }
+    }
+    return found;
+  }
+
+  private static boolean imports(SourceSymbols symbols, String className, String packageName) {
+    for (String imported : symbols.imports) {
+      if (imported.equals(className)
+          || imported.equals(packageName + ".*")
+          || imported.startsWith(className + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the files that may use the given member of a class. A member can be used without naming
+   * its class, so these are all the files containing the name of the member.
+   */
+  @NonNull
+  public synchronized Set<File> findMemberReferences(
+      @NonNull String className, @NonNull String memberName) {
+    return findIdentifier(memberName);
+  }
+
+  /**
+   * @return the files declaring a class or a member whose name starts with the query, ignoring case
+   */
+  @NonNull
+  public synchronized Set<File> search(@NonNull String query) {
+    applyPending();
+    Set<File> found = new HashSet<>();
+    for (Map.Entry<String, Set<File>> entry : mDeclarations.entrySet()) {
+      if (StringSearch.matchesPartialNameLowercase(entry.getKey(), query)) {
+        found.addAll(entry.getValue());
+      }
+    }
+    return found;
+  }
+
+  private void applyPending() {
+    if (mPending.isEmpty()) {
+      return;
+    }
+    // the snapshots are scanned again when the index is read, there is no need to store them
+    boolean dirty = mDirty;
+    for (Map.Entry<File, CharSequence> pending : mPending.entrySet()) {
+      put(
+          pending.getKey(),
+          new IndexedFile(SNAPSHOT, SNAPSHOT, SourceScanner.scan(pending.getValue())));
+    }
+    mPending.clear();
+    mDirty = dirty;
+  }
+
+  private void put(File file, IndexedFile entry) {
+    remove(file);
+    mEntries.put(file, entry);
+    for (String identifier : entry.symbols.identifiers) {
+      add(mIdentifiers, identifier, file);
+    }
+    for (String type : entry.symbols.types) {
+      add(mTypes, type, file);
+      add(mDeclarations, type.substring(type.lastIndexOf('.') + 1), file);
+    }
+    for (String member : entry.symbols.members) {
+      add(mDeclarations, member, file);
+    }
+    mDirty = true;
+  }
+
+  private void remove(File file) {
+    IndexedFile entry = mEntries.remove(file);
+    if (entry == null) {
+      return;
+    }
+    for (String identifier : entry.symbols.identifiers) {
+      remove(mIdentifiers, identifier, file);
+    }
+    for (String type : entry.symbols.types) {
+      remove(mTypes, type, file);
+      remove(mDeclarations, type.substring(type.lastIndexOf('.') + 1), file);
+    }
+    for (String member : entry.symbols.members) {
+      remove(mDeclarations, member, file);
+    }
+    mDirty = true;
+  }
+
+  private static void add(Map<String, Set<File>> map, String key, File file) {
+    map.computeIfAbsent(key, k -> new HashSet<>()).add(file);
+  }
+
+  private static void remove(Map<String, Set<File>> map, String key, File file) {
+    Set<File> files = map.get(key);
+    if (files != null && files.remove(file) && files.isEmpty()) {
+      map.remove(key);
+    }
+  }
+
+  private static Set<File> copy(@Nullable Set<File> files) {
+    return files == null ? Collections.emptySet() : new HashSet<>(files);
+  }
+
+  private void load() {
+    if (mLoaded) {
+      return;
+    }
+    mLoaded = true;
+    if (!mIndexFile.exists()) {
+      return;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(mIndexFile.toPath())))) {
+      if (in.readInt() != VERSION) {
+        return;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        File file = new File(in.readUTF());
+        long modified = in.readLong();
+        long length = in.readLong();
+        put(file, new IndexedFile(modified, length, SourceSymbols.read(in)));
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to read " + mIndexFile, e);
+      mEntries.clear();
+      mIdentifiers.clear();
+      mTypes.clear();
+      mDeclarations.clear();
+    }
+    mDirty = false;
+  }
+
+  private void save() {
+    try {
+      FileUtilsEx.writeAtomically(
+          mIndexFile,
+          stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<File, IndexedFile> entry : mEntries.entrySet()) {
+              out.writeUTF(entry.getKey().getPath());
+              out.writeLong(entry.getValue().modified);
+              out.writeLong(entry.getValue().length);
+              entry.getValue().symbols.write(out);
+            }
+          });
+      mDirty = false;
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write " + mIndexFile, e);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package com.tyron.completion.java.index;
+
+import androidx.annotation.NonNull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the package, imports, declarations and identifiers of a java file from its tokens alone,
+ * without parsing it. It is much faster than javac and does not fail on incomplete code, at the
+ * cost of some precision: the results are used to find the files that may contain a name, which are
+ * then compiled to know for sure.
+ */
+class SourceScanner {
+
+  private static final String[] KEYWORD_NAMES = {
+    "abstract",
+    "assert",
+    "boolean",
+    "break",
+    "byte",
+    "case",
+    "catch",
+    "char",
+    "class",
+    "const",
+    "continue",
+    "default",
+    "do",
+    "double",
+    "else",
+    "enum",
+    "extends",
+    "final",
+    "finally",
+    "float",
+    "for",
+    "goto",
+    "if",
+    "implements",
+    "import",
+    "instanceof",
+    "int",
+    "interface",
+    "long",
+    "native",
+    "new",
+    "package",
+    "private",
+    "protected",
+    "public",
+    "return",
+    "short",
+    "static",
+    "strictfp",
+    "super",
+    "switch",
+    "synchronized",
+    "this",
+    "throw",
+    "throws",
+    "transient",
+    "try",
+    "void",
+    "volatile",
+    "while",
+    "true",
+    "false",
+    "null"
+  };
+
+  private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(KEYWORD_NAMES));
+
+  /** A pair of braces, either the body of a class or any other block */
+  private static class Frame {
+    /** The qualified name of the class, null if this is not the body of a class */
+    final String className;
+
+    /** The depth of parentheses at the opening brace */
+    final int parens;
+
+    /** Whether the enum constants at the start of an enum body are being read */
+    boolean enumConstants;
+
+    /** Whether the initializer of a field is being read */
+    boolean initializer;
+
+    Frame(String className, int parens, boolean enumConstants) {
+      this.className = className;
+      this.parens = parens;
+      this.enumConstants = enumConstants;
+    }
+  }
+
+  private SourceScanner() {}
+
+  @NonNull
+  static SourceSymbols scan(@NonNull CharSequence contents) {
+    List<String> tokens = tokenize(contents);
+    SourceSymbols symbols = new SourceSymbols();
+    Deque<Frame> frames = new ArrayDeque<>();
+    String pendingType = null;
+    boolean pendingEnum = false;
+    int parens = 0;
+    int angles = 0;
+
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      String previous = i > 0 ? tokens.get(i - 1) : "";
+      String next = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+      Frame frame = frames.peek();
+      boolean classLevel =
+          frame != null && frame.className != null && parens == frame.parens && !frame.initializer;
+
+      if (isIdentifier(token)) {
+        if (KEYWORDS.contains(token)) {
+          switch (token) {
+            case "package":
+              if (frames.isEmpty()) {
+                StringBuilder name = new StringBuilder();
+                i = readQualifiedName(tokens, i + 1, name);
+                symbols.packageName = name.toString();
+              }
+              break;
+            case "import":
+              if (frames.isEmpty()) {
+                int start = i + 1;
+                if (start < tokens.size() && tokens.get(start).equals("static")) {
+                  start++;
+                }
+                StringBuilder name = new StringBuilder();
+                i = readQualifiedName(tokens, start, name);
+                symbols.imports.add(name.toString());
+              }
+              break;
+            case "class":
+            case "interface":
+            case "enum":
+              if (!previous.equals(".") && isIdentifier(next) && !KEYWORDS.contains(next)) {
+                pendingType = next;
+                pendingEnum = token.equals("enum");
+              }
+              break;
+          }
+          continue;
+        }
+
+        symbols.identifiers.add(token);
+        if (token.equals("record")
+            && !previous.equals(".")
+            && isIdentifier(next)
+            && i + 2 < tokens.size()
+            && (tokens.get(i + 2).equals("(") || tokens.get(i + 2).equals("<"))) {
+          pendingType = next;
+          pendingEnum = false;
+          continue;
+        }
+        if (!classLevel
+            || angles != 0
+            || pendingType != null
+            || previous.equals(".")
+            || previous.equals("@")) {
+          continue;
+        }
+        if (next.equals("(")) {
+          // a method, a constructor or an enum constant with arguments
+          symbols.members.add(token);
+        } else if (next.equals("=") || next.equals(";") || next.equals(",")) {
+          symbols.members.add(token);
+        } else if (next.equals("{")
+            && frame.enumConstants
+            && (previous.equals("{") || previous.equals(","))) {
+          symbols.members.add(token);
+        }
+        continue;
+      }
+
+      switch (token) {
+        case "(":
+          parens++;
+          break;
+        case ")":
+          parens = Math.max(0, parens - 1);
+          break;
+        case "<":
+          if (classLevel) {
+            angles++;
+          }
+          break;
+        case ">":
+          if (classLevel) {
+            angles = Math.max(0, angles - 1);
+          }
+          break;
+        case "=":
+          if (classLevel && angles == 0) {
+            frame.initializer = true;
+          }
+          break;
+        case ",":
+          if (frame != null && frame.className != null && parens == frame.parens) {
+            frame.initializer = false;
+          }
+          break;
+        case ";":
+          if (frame != null && frame.className != null && parens == frame.parens) {
+            frame.initializer = false;
+            frame.enumConstants = false;
+            angles = 0;
+          }
+          break;
+        case "{":
+          if (pendingType != null) {
+            String name = qualify(symbols, frames, pendingType);
+            symbols.types.add(name);
+            frames.push(new Frame(name, parens, pendingEnum));
+            pendingType = null;
+          } else {
+            frames.push(new Frame(null, parens, false));
+          }
+          angles = 0;
+          break;
+        case "}":
+          if (!frames.isEmpty()) {
+            frames.pop();
+          }
+          angles = 0;
+          break;
+      }
+    }
+    return symbols;
+  }
+
+  /**
+   * Reads a name such as {@code java.util.*} up to the next semicolon
+   *
+   * @return the index of the last token read
+   */
+  private static int readQualifiedName(List<String> tokens, int start, StringBuilder name) {
+    int i = start;
+    for (; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if (token.equals(";")) {
+        break;
+      }
+      if (isIdentifier(token) || token.equals(".") || token.equals("*")) {
+        name.append(token);
+      } else {
+        // an incomplete statement, the token belongs to the next one
+        return i - 1;
+      }
+    }
+    return i;
+  }
+
+  private static String qualify(SourceSymbols symbols, Deque<Frame> frames, String name) {
+    for (Frame frame : frames) {
+      if (frame.className != null) {
+        return frame.className + "." + name;
+      }
+    }
+    if (symbols.packageName.isEmpty()) {
+      return name;
+    }
+    return symbols.packageName + "." + name;
+  }
+
+  private static boolean isIdentifier(String token) {
+    return !token.isEmpty() && Character.isJavaIdentifierStart(token.charAt(0));
+  }
+
+  /**
+   * Splits the contents into identifiers and single characters, comments, literals and whitespace
+   * are dropped.
+   */
+  static List<String> tokenize(CharSequence contents) {
+    List<String> tokens = new ArrayList<>();
+    int length = contents.length();
+    int i = 0;
+    while (i < length) {
+      char c = contents.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '/') {
+        while (i < length && contents.charAt(i) != '\n') {
+          i++;
+        }
+      } else if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '*') {
+        i = indexOf(contents, "*/", i + 2);
+        i = i == -1 ? length : i + 2;
+      } else if (c == '"'
+          && i + 2 < length
+          && contents.charAt(i + 1) == '"'
+          && contents.charAt(i + 2) == '"') {
+        i = indexOf(contents, "\"\"\"", i + 3);
+        i = i == -1 ? length : i + 3;
+      } else if (c == '"' || c == '\'') {
+        i = skipQuoted(contents, i);
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int start = i++;
+        while (i < length && Character.isJavaIdentifierPart(contents.charAt(i))) {
+          i++;
+        }
+        tokens.add(contents.subSequence(start, i).toString());
+      } else if (Character.isDigit(c)
+          || (c == '.' && i + 1 < length && Character.isDigit(contents.charAt(i + 1)))) {
+        i++;
+        while (i < length
+            && (Character.isJavaIdentifierPart(contents.charAt(i)) || contents.charAt(i) == '.')) {
+          i++;
+        }
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * @return the index after the closing quote, or the end of the line if there is none
+   */
+  private static int skipQuoted(CharSequence contents, int start) {
+    char quote = contents.charAt(start);
+    int i = start + 1;
+    while (i < contents.length()) {
+      char c = contents.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else if (c == '\n') {
+        return i;
+      } else {
+        i++;
+      }
+    }
+    return contents.length();
+  }
+
+  private static int indexOf(CharSequence contents, String string, int from) {
+    int last = contents.length() - string.length();
+    for (int i = from; i <= last; i++) {
+      boolean matches = true;
+      for (int j = 0; j < string.length(); j++) {
+        if (contents.charAt(i + j) != string.charAt(j)) {
+          matches = false;
+          break;
+        }
+      }
+      if (matches) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,64 @@
+package com.tyron.completion.java.index;
+
+import androidx.annotation.NonNull;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** The names found in one source file by the {@link SourceScanner} */
+class SourceSymbols {
+
+  /** The package of the file, empty for the default package */
+  @NonNull String packageName = "";
+
+  /** The imported names as written, without the {@code static} keyword */
+  final List<String> imports = new ArrayList<>();
+
+  /** The qualified names of the classes declared in the file, nested classes included */
+  final Set<String> types = new LinkedHashSet<>();
+
+  /** The names of the methods, fields and enum constants declared directly in the classes */
+  final Set<String> members = new LinkedHashSet<>();
+
+  /** Every identifier of the file outside comments and literals, keywords excluded */
+  final Set<String> identifiers = new LinkedHashSet<>();
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeUTF(packageName);
+    writeStrings(out, imports);
+    writeStrings(out, types);
+    writeStrings(out, members);
+    writeStrings(out, identifiers);
+  }
+
+  static SourceSymbols read(DataInputStream in) throws IOException {
+    SourceSymbols symbols = new SourceSymbols();
+    symbols.packageName = in.readUTF();
+    readStrings(in, symbols.imports);
+    readStrings(in, symbols.types);
+    readStrings(in, symbols.members);
+    readStrings(in, symbols.identifiers);
+    return symbols;
+  }
+
+  private static void writeStrings(DataOutputStream out, Collection<String> strings)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static void readStrings(DataInputStream in, Collection<String> strings)
+      throws IOException {
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      strings.add(in.readUTF());
+    }
+  }
+}
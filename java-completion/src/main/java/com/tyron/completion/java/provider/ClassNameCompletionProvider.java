@@ -13,7 +13,6 @@ import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.insert.ClassImportInsertHandler;
-import com.tyron.completion.java.util.ActionUtil;
 import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.CompletionList;
 import java.io.File;
@@ -67,26 +66,28 @@ public class ClassNameCompletionProvider extends BaseCompletionProvider {
       uniques.add(className);
     }
 
-    for (String className : compiler.publicTopLevelTypes()) {
-      // more strict on matching class names
-      String simpleName = ActionUtil.getSimpleName(className);
-      if (!predicate.test(simpleName)) {
-        continue;
-      }
-      if (uniques.contains(className)) {
-        continue;
-      }
-      if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
-        list.incomplete();
-        break;
-      }
-      CompletionItem item = classItem(className);
-      item.data = className;
-      item.setInsertHandler(
-          new ClassImportInsertHandler(compiler, new File(root.getSourceFile().toUri()), item));
-      item.setSortText(JavaSortCategory.TO_IMPORT.toString());
-      list.addItem(item);
-      uniques.add(className);
-    }
+    // the class index is looked up by simple name instead of going through all the classes
+    String prefix = ".".equals(partial) ? "" : partial;
+    compiler.visitTopLevelTypes(
+        prefix,
+        caseSensitive,
+        (qualifiedName, simpleName) -> {
+          String className = qualifiedName.toString();
+          if (uniques.contains(className)) {
+            return true;
+          }
+          if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
+            list.incomplete();
+            return false;
+          }
+          CompletionItem item = classItem(className);
+          item.data = className;
+          item.setInsertHandler(
+              new ClassImportInsertHandler(compiler, new File(root.getSourceFile().toUri()), item));
+          item.setSortText(JavaSortCategory.TO_IMPORT.toString());
+          list.addItem(item);
+          uniques.add(className);
+          return true;
+        });
   }
 }
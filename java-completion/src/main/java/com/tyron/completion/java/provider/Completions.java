@@ -18,13 +18,16 @@ import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
 import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.Project;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.action.FindCurrentPath;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.compiler.ParseTask;
+import com.tyron.completion.java.compiler.Parser;
 import com.tyron.completion.java.patterns.JavacTreePattern;
 import com.tyron.completion.java.util.FileContentFixer;
 import com.tyron.completion.model.CompletionList;
@@ -67,9 +70,9 @@ public class Completions {
       StringBuilder pruned = new PruneMethodBodies(task.task).scan(task.root, index);
       int end = StringSearch.endOfLine(pruned, (int) index);
       pruned.insert(end, ';');
-      if (compiler.compiler.getCurrentContext() != null) {
-        contents =
-            new FileContentFixer(compiler.compiler.getCurrentContext()).fixFileContent(pruned);
+      Context context = compiler.getCurrentContext();
+      if (context != null) {
+        contents = new FileContentFixer(context).fixFileContent(pruned);
       } else {
         contents = pruned.toString();
       }
@@ -82,18 +85,46 @@ public class Completions {
     return compileAndComplete(file, contents.toString(), partial, index);
   }
 
+  /**
+   * Completes keywords and top level snippets from the parsed file only, used while the project is
+   * being indexed or compiled and the file cannot be compiled.
+   */
+  public static CompletionList.Builder completeWithoutCompiling(
+      Project project, File file, String fileContents, long index) {
+    checkCanceled();
+
+    SourceFileObject source = new SourceFileObject(file.toPath(), fileContents, Instant.now());
+    Parser parser = Parser.parseJavaFileObject(project, source);
+    String partial = partialIdentifier(fileContents, (int) index);
+    CompletionList.Builder builder = CompletionList.builder(partial);
+
+    if (!hasTypeDeclaration(parser.root)) {
+      builder.addItem(classSnippet(file.toPath()));
+      if (parser.root.getPackageName() == null) {
+        builder.addItem(packageSnippet(file.toPath()));
+      }
+    }
+
+    TreePath path = new FindCurrentPath(parser.task).scan(parser.root, index);
+    if (path == null) {
+      path = new TreePath(parser.root);
+    }
+    KeywordCompletionProvider.addKeywords(null, path, partial, builder);
+    return builder;
+  }
+
   private CompletionList.Builder compileAndComplete(
       File file, String contents, final String partial, long cursor) {
     SourceFileObject source = new SourceFileObject(file.toPath(), contents, Instant.now());
     boolean endsWithParen = endsWithParen(contents, (int) cursor);
 
     checkCanceled();
-    if (compiler.getCachedContainer().isWriting()) {
+    if (compiler.getCachedContainer(file).isWriting()) {
       return null;
     }
     CompilerContainer container = compiler.compile(Collections.singletonList(source));
     try {
-      return container.get(
+      return container.getWithLock(
           task -> {
             TreePath path = new FindCurrentPath(task.task).scan(task.root(), cursor);
             String modifiedPartial = partial;
@@ -112,7 +143,7 @@ public class Completions {
         throw e;
       }
 
-      compiler.destroy();
+      compiler.destroy(container);
       throw e;
     }
   }
@@ -171,7 +202,7 @@ public class Completions {
     }
   }
 
-  private boolean hasTypeDeclaration(CompilationUnitTree root) {
+  private static boolean hasTypeDeclaration(CompilationUnitTree root) {
     for (Tree tree : root.getTypeDecls()) {
       if (tree.getKind() != Tree.Kind.ERRONEOUS) {
         return true;
@@ -84,7 +84,7 @@ public class ImplementAbstractMethods implements JavaRewrite {
     }
 
     CompilerContainer container = compiler.compile(file);
-    return container.get(
+    return container.getWithLock(
         task -> {
           return rewriteInternal(compiler, task, file);
         });
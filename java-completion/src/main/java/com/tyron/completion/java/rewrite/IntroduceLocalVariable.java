@@ -35,7 +35,7 @@ public class IntroduceLocalVariable implements JavaRewrite {
   @Override
   public Map<Path, TextEdit[]> rewrite(CompilerProvider compiler) {
     CompilerContainer container = compiler.compile(file);
-    return container.get(
+    return container.getWithLock(
         task -> {
           List<TextEdit> edits = new ArrayList<>();
           Range range = new Range(position, position);
@@ -29,10 +29,10 @@ public class JavaDataContextUtil {
             CompilerService.getInstance().getIndex(JavaCompilerProvider.KEY);
         JavaCompilerService compiler = service.getCompiler(project, (JavaModule) currentModule);
 
-        CompilerContainer cachedContainer = compiler.getCachedContainer();
+        CompilerContainer cachedContainer = compiler.getCachedContainer(file);
         // don't block the ui thread
         if (!cachedContainer.isWriting()) {
-          cachedContainer.run(
+          cachedContainer.runShared(
               task -> {
                 if (task != null) {
                   CompilationUnitTree root = task.root(file);
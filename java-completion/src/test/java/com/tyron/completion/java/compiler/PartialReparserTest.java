@@ -0,0 +1,140 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.tyron.completion.TestUtil.resolveBasePath;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.sun.source.tree.CompilationUnitTree;
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.TestUtil;
+import com.tyron.completion.index.CompilerService;
+import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.JavaCompilerProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, resourceDir = Config.NONE)
+public class PartialReparserTest {
+
+  private File mFile;
+  private String mContents;
+  private MockAndroidModule mModule;
+  private JavaCompilerService mService;
+  private long mModified;
+
+  @Before
+  public void setup() throws IOException {
+    CompletionModule.initialize(ApplicationProvider.getApplicationContext());
+    CompletionModule.setAndroidJar(new File(resolveBasePath(), "classpath/rt.jar"));
+    CompletionModule.setLambdaStubs(new File(resolveBasePath(), "classpath/core-lambda-stubs.jar"));
+
+    JavaCompilerProvider provider = new JavaCompilerProvider();
+    CompilerService.getInstance().registerIndexProvider(JavaCompilerProvider.KEY, provider);
+
+    File root = new File(TestUtil.resolveBasePath(), "EmptyProject");
+    MockFileManager fileManager = new MockFileManager(root);
+    Project project = new Project(root);
+    mModule = new MockAndroidModule(root, fileManager);
+    mModule.open();
+
+    mFile = new File(root, "compiler/Reparse.java");
+    mModule.addJavaFile(mFile);
+    mContents = new String(Files.readAllBytes(mFile.toPath()), StandardCharsets.UTF_8);
+
+    mService = provider.get(project, mModule);
+  }
+
+  @Test
+  public void testEditInsideBodyKeepsTheTree() {
+    CompilationUnitTree before = compile(mContents).get(task -> task.root());
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = getDiagnostics(mContents);
+    assertThat(diagnostics).hasSize(1);
+    long start = diagnostics.get(0).getStartPosition();
+
+    String contents = mContents.replace("int a = 1;", "int a = 12345;");
+    CompilationUnitTree after = compile(contents).get(task -> task.root());
+
+    assertThat(after).isSameInstanceAs(before);
+    diagnostics = getDiagnostics(contents);
+    assertThat(diagnostics).hasSize(1);
+    // the diagnostic of the other method is moved by the length of the edit
+    assertThat(diagnostics.get(0).getStartPosition()).isEqualTo(start + 4);
+    assertThat(diagnostics.get(0).getLineNumber()).isEqualTo(9);
+  }
+
+  @Test
+  public void testEditInsideBodyReportsItsErrors() {
+    CompilationUnitTree before = compile(mContents).get(task -> task.root());
+
+    String contents = mContents.replace("int a = 1;", "int a = \"\";");
+    CompilationUnitTree after = compile(contents).get(task -> task.root());
+
+    assertThat(after).isSameInstanceAs(before);
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = getDiagnostics(contents);
+    assertThat(diagnostics).hasSize(2);
+    assertThat(startPositions(diagnostics)).contains((long) contents.indexOf("\"\""));
+
+    // fixing the error removes only the diagnostic of the edited body
+    diagnostics = getDiagnostics(mContents);
+    assertThat(diagnostics).hasSize(1);
+    assertThat(diagnostics.get(0).getStartPosition())
+        .isEqualTo(mContents.indexOf("1;", mContents.indexOf("String b")));
+  }
+
+  @Test
+  public void testSignatureChangeCompilesTheFile() {
+    CompilationUnitTree before = compile(mContents).get(task -> task.root());
+
+    String contents = mContents.replace("public void first()", "public void first(int c)");
+    CompilationUnitTree after = compile(contents).get(task -> task.root());
+
+    assertThat(after).isNotSameInstanceAs(before);
+    assertThat(getDiagnostics(contents)).hasSize(1);
+  }
+
+  @Test
+  public void testNewLinesBeforeDiagnosticsCompileTheFile() {
+    CompilationUnitTree before = compile(mContents).get(task -> task.root());
+
+    String contents = mContents.replace("int a = 1;", "int a = 1;\n    int c = 2;");
+    CompilationUnitTree after = compile(contents).get(task -> task.root());
+
+    // the line of the diagnostic in the other method cannot be moved
+    assertThat(after).isNotSameInstanceAs(before);
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = getDiagnostics(contents);
+    assertThat(diagnostics).hasSize(1);
+    assertThat(diagnostics.get(0).getLineNumber()).isEqualTo(10);
+  }
+
+  private CompilerContainer compile(String contents) {
+    // every version has to look modified to the compiler service
+    Instant modified = Instant.ofEpochMilli(++mModified);
+    SourceFileObject file = new SourceFileObject(mFile.toPath(), contents, modified, mModule);
+    return mService.compile(Collections.singletonList(file));
+  }
+
+  private List<Diagnostic<? extends JavaFileObject>> getDiagnostics(String contents) {
+    return compile(contents).get(task -> task.diagnostics);
+  }
+
+  private static List<Long> startPositions(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    return diagnostics.stream().map(Diagnostic::getStartPosition).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,200 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReusableCompilerPoolTest {
+
+  private ReusableCompilerPool mPool;
+  private long mTime;
+
+  @Before
+  public void setup() {
+    mPool = new ReusableCompilerPool(() -> null, () -> mTime);
+    mPool.setMaxSize(2);
+  }
+
+  @Test
+  public void testSameSourcesReuseEntry() {
+    ReusableCompilerPool.Entry first = compile("Main");
+    ReusableCompilerPool.Entry second = compile("Main");
+
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(mPool.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDifferentSourcesUseSeparateEntries() {
+    ReusableCompilerPool.Entry main = compile("Main");
+    ReusableCompilerPool.Entry other = compile("Other");
+
+    assertThat(other).isNotSameInstanceAs(main);
+    assertThat(other.container).isNotSameInstanceAs(main.container);
+    assertThat(mPool.getLastUsed()).isSameInstanceAs(other);
+  }
+
+  @Test
+  public void testFindReturnsTheEntryOfTheFile() {
+    ReusableCompilerPool.Entry main = compile("Main");
+    mTime++;
+    ReusableCompilerPool.Entry other = compile("Other");
+
+    assertThat(mPool.find(uri("Main"))).isSameInstanceAs(main);
+    assertThat(mPool.find(uri("Other"))).isSameInstanceAs(other);
+    assertThat(mPool.find(uri("Third"))).isNull();
+  }
+
+  @Test
+  public void testEntryIsFoundOnlyOncePublished() {
+    ReusableCompilerPool.Entry main = mPool.acquire(sources("Main"));
+    assertThat(mPool.find(uri("Main"))).isNull();
+
+    mPool.publish(main, sources("Main"));
+    mPool.release(main);
+    assertThat(mPool.find(uri("Main"))).isSameInstanceAs(main);
+  }
+
+  @Test
+  public void testFullPoolReusesLeastRecentlyUsed() {
+    ReusableCompilerPool.Entry main = compile("Main");
+    mTime++;
+    ReusableCompilerPool.Entry other = compile("Other");
+    mTime++;
+    compile("Main");
+    mTime++;
+
+    ReusableCompilerPool.Entry third = compile("Third");
+    assertThat(third).isSameInstanceAs(other);
+    assertThat(mPool.size()).isEqualTo(2);
+    assertThat(mPool.find(uri("Other"))).isNull();
+    assertThat(compile("Main")).isSameInstanceAs(main);
+  }
+
+  @Test
+  public void testEntriesInUseAreNotReused() {
+    ReusableCompilerPool.Entry main = mPool.acquire(sources("Main"));
+    mTime++;
+    ReusableCompilerPool.Entry other = mPool.acquire(sources("Other"));
+    mTime++;
+
+    // every entry is in use, the pool grows
+    ReusableCompilerPool.Entry third = mPool.acquire(sources("Third"));
+    assertThat(third).isNotSameInstanceAs(main);
+    assertThat(third).isNotSameInstanceAs(other);
+    assertThat(mPool.size()).isEqualTo(3);
+
+    // and shrinks back once an entry is idle
+    mPool.release(main);
+    assertThat(mPool.size()).isEqualTo(2);
+    mPool.release(other);
+    mPool.release(third);
+    assertThat(mPool.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEntryReadByAnotherThreadIsNotReused() throws Exception {
+    ReusableCompilerPool.Entry main = compile("Main");
+    mTime++;
+    compile("Other");
+    mTime++;
+
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    Thread reader =
+        new Thread(
+            () ->
+                main.container.run(
+                    task -> {
+                      reading.countDown();
+                      try {
+                        done.await();
+                      } catch (InterruptedException ignored) {
+                        // the test is over
+                      }
+                    }));
+    reader.start();
+    reading.await();
+
+    ReusableCompilerPool.Entry third = compile("Third");
+    assertThat(third).isNotSameInstanceAs(main);
+    assertThat(mPool.find(uri("Main"))).isSameInstanceAs(main);
+
+    done.countDown();
+    reader.join();
+  }
+
+  @Test
+  public void testRecompileWhileReadingIsPublishedByAnotherEntry() {
+    ReusableCompilerPool.Entry main = compile("Main");
+
+    ReusableCompilerPool.Entry next = mPool.acquireIdle(sources("Main"));
+    assertThat(next).isNotSameInstanceAs(main);
+    // the previous compilation is found until the new one is published
+    assertThat(mPool.find(uri("Main"))).isSameInstanceAs(main);
+
+    mPool.publish(next, sources("Main"));
+    mPool.release(next);
+    assertThat(mPool.find(uri("Main"))).isSameInstanceAs(next);
+    assertThat(compile("Other")).isSameInstanceAs(main);
+  }
+
+  @Test
+  public void testEvictClosesOnlyThatEntry() {
+    ReusableCompilerPool.Entry main = compile("Main");
+    ReusableCompilerPool.Entry other = compile("Other");
+
+    mPool.evict(main.container);
+    assertThat(mPool.size()).isEqualTo(1);
+    assertThat(mPool.find(uri("Main"))).isNull();
+    assertThat(mPool.find(uri("Other"))).isSameInstanceAs(other);
+  }
+
+  @Test
+  public void testIdleEntriesAreEvicted() {
+    compile("Main");
+    mPool.setIdleTimeout(1, TimeUnit.MILLISECONDS);
+    mTime += 10;
+
+    compile("Other");
+    assertThat(mPool.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testShrinkingPoolClosesEntries() {
+    compile("Main");
+    compile("Other");
+
+    mPool.setMaxSize(1);
+    assertThat(mPool.size()).isEqualTo(1);
+
+    mPool.clear();
+    assertThat(mPool.size()).isEqualTo(0);
+    assertThat(mPool.getLastUsed()).isNull();
+  }
+
+  /** Acquires an entry for the file, publishes it and releases it like a compilation does */
+  private ReusableCompilerPool.Entry compile(String name) {
+    ReusableCompilerPool.Entry entry = mPool.acquire(sources(name));
+    mPool.publish(entry, sources(name));
+    mPool.release(entry);
+    return entry;
+  }
+
+  private static List<JavaFileObject> sources(String name) {
+    return Collections.singletonList(
+        new SimpleJavaFileObject(uri(name), JavaFileObject.Kind.SOURCE) {});
+  }
+
+  private static URI uri(String name) {
+    return URI.create("file:///src/" + name + ".java");
+  }
+}
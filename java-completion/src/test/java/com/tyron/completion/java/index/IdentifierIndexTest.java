@@ -0,0 +1,199 @@
+package com.tyron.completion.java.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.builder.project.mock.MockJavaModule;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IdentifierIndexTest {
+
+  private static final String MAIN =
+      "package com.example;\n"
+          + "\n"
+          + "import java.util.List;\n"
+          + "import static java.util.Collections.emptyList;\n"
+          + "\n"
+          + "/** Uses Unused in a comment */\n"
+          + "public class Main<T extends Comparable<T>> {\n"
+          + "  private final Map<String, List<T>> mItems = new HashMap<>(), mOther;\n"
+          + "  private String mName = \"Helper\";\n"
+          + "\n"
+          + "  public Main() {}\n"
+          + "\n"
+          + "  public <R> R run(Helper helper) {\n"
+          + "    Runnable r = new Runnable() { public void inner() {} };\n"
+          + "    return helper.help(emptyList());\n"
+          + "  }\n"
+          + "\n"
+          + "  enum State { IDLE, RUNNING(1) { }, DONE; State() {} State(int i) {} }\n"
+          + "\n"
+          + "  static class Nested { int value; }\n"
+          + "}\n";
+
+  private static final String HELPER =
+      "package com.example;\n"
+          + "\n"
+          + "class Helper {\n"
+          + "  Object help(Object o) { return o; }\n"
+          + "}\n";
+
+  private static final String OTHER =
+      "package com.other;\n"
+          + "\n"
+          + "import com.example.Main;\n"
+          + "\n"
+          + "class Other {\n"
+          + "  Helper helper;\n"
+          + "  Main main;\n"
+          + "}\n";
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File mIndexFile;
+  private List<File> mFiles;
+  private File mMain;
+  private File mHelper;
+  private File mOther;
+
+  @Before
+  public void setup() throws IOException {
+    mIndexFile = new File(mFolder.getRoot(), "build/identifiers.bin");
+    mMain = write("com/example/Main.java", MAIN);
+    mHelper = write("com/example/Helper.java", HELPER);
+    mOther = write("com/other/Other.java", OTHER);
+    mFiles = new ArrayList<>();
+    mFiles.add(mMain);
+    mFiles.add(mHelper);
+    mFiles.add(mOther);
+  }
+
+  private File write(String path, String contents) throws IOException {
+    File file = new File(mFolder.getRoot(), "src/" + path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  @Test
+  public void testScanDeclarations() {
+    SourceSymbols symbols = SourceScanner.scan(MAIN);
+
+    assertThat(symbols.packageName).isEqualTo("com.example");
+    assertThat(symbols.imports)
+        .containsExactly("java.util.List", "java.util.Collections.emptyList");
+    assertThat(symbols.types)
+        .containsExactly("com.example.Main", "com.example.Main.State", "com.example.Main.Nested");
+    assertThat(symbols.members)
+        .containsExactly(
+            "mItems", "mOther", "mName", "Main", "run", "IDLE", "RUNNING", "DONE", "State",
+            "value");
+  }
+
+  @Test
+  public void testScanSkipsCommentsAndLiterals() {
+    SourceSymbols symbols = SourceScanner.scan(MAIN);
+
+    assertThat(symbols.identifiers).contains("emptyList");
+    assertThat(symbols.identifiers).contains("Helper");
+    assertThat(symbols.identifiers).doesNotContain("Unused");
+    assertThat(symbols.identifiers).doesNotContain("class");
+  }
+
+  @Test
+  public void testFindDeclarations() {
+    IdentifierIndex index = new IdentifierIndex(mIndexFile, null);
+    index.refresh(mFiles);
+
+    assertThat(index.findTypeDeclaration("com.example.Main.Nested")).containsExactly(mMain);
+    assertThat(index.findTypeDeclaration("com.example.Missing")).isEmpty();
+    assertThat(index.search("hel")).containsExactly(mHelper, mOther);
+    assertThat(index.search("run")).containsExactly(mMain);
+  }
+
+  @Test
+  public void testFindReferences() {
+    IdentifierIndex index = new IdentifierIndex(mIndexFile, null);
+    index.refresh(mFiles);
+
+    // Other uses the name Helper but cannot see the class of the same name in com.example
+    assertThat(index.findTypeReferences("com.example.Helper")).containsExactly(mMain, mHelper);
+    assertThat(index.findTypeReferences("com.example.Main")).containsExactly(mMain, mOther);
+    assertThat(index.findMemberReferences("com.example.Helper", "help"))
+        .containsExactly(mMain, mHelper);
+  }
+
+  @Test
+  public void testRefreshUpdatesChangedFiles() throws IOException {
+    IdentifierIndex index = new IdentifierIndex(mIndexFile, null);
+    index.refresh(mFiles);
+    assertThat(mIndexFile.exists()).isTrue();
+
+    write("com/example/Helper.java", HELPER.replace("help(", "assist("));
+    assertThat(mHelper.setLastModified(mHelper.lastModified() + 2000)).isTrue();
+    mFiles.remove(mOther);
+
+    IdentifierIndex restored = new IdentifierIndex(mIndexFile, null);
+    restored.refresh(mFiles);
+
+    assertThat(restored.findIdentifier("assist")).containsExactly(mHelper);
+    assertThat(restored.findIdentifier("help")).containsExactly(mMain);
+    assertThat(restored.findTypeDeclaration("com.other.Other")).isEmpty();
+    assertThat(restored.findTypeDeclaration("com.example.Main")).containsExactly(mMain);
+  }
+
+  @Test
+  public void testRefreshAgainFindsChanges() throws IOException {
+    IdentifierIndex index = new IdentifierIndex(mIndexFile, null);
+    index.refresh(mFiles);
+
+    write("com/example/Helper.java", HELPER.replace("help(", "assist("));
+    assertThat(mHelper.setLastModified(mHelper.lastModified() + 2000)).isTrue();
+    File added = write("com/other/Added.java", "package com.other;\n\nclass Added {}\n");
+    mFiles.add(added);
+    index.refresh(mFiles);
+
+    assertThat(index.findIdentifier("assist")).containsExactly(mHelper);
+    assertThat(index.findTypeDeclaration("com.other.Added")).containsExactly(added);
+  }
+
+  @Test
+  public void testRefreshModuleOnlyWhenItsFilesChanged() throws IOException {
+    MockJavaModule module = new MockJavaModule(mFolder.getRoot(), null);
+    mFiles.forEach(module::addJavaFile);
+    IdentifierIndex index = new IdentifierIndex(mIndexFile, null);
+    index.refresh(module);
+
+    // a query doesn't check the files on disk again
+    write("com/example/Helper.java", HELPER.replace("help(", "assist("));
+    assertThat(mHelper.setLastModified(mHelper.lastModified() + 2000)).isTrue();
+    index.refresh(module);
+    assertThat(index.findIdentifier("assist")).isEmpty();
+
+    File added = write("com/other/Added.java", "package com.other;\n\nclass Added {}\n");
+    module.addJavaFile(added);
+    index.refresh(module);
+
+    assertThat(index.findIdentifier("assist")).containsExactly(mHelper);
+    assertThat(index.findTypeDeclaration("com.other.Added")).containsExactly(added);
+  }
+
+  @Test
+  public void testSnapshotChanges() {
+    IdentifierIndex index = new IdentifierIndex(mIndexFile, null);
+    index.refresh(mFiles);
+
+    index.onSnapshotChanged(mHelper, HELPER.replace("class Helper", "class Renamed"));
+
+    assertThat(index.findTypeDeclaration("com.example.Helper")).isEmpty();
+    assertThat(index.findTypeDeclaration("com.example.Renamed")).containsExactly(mHelper);
+  }
+}
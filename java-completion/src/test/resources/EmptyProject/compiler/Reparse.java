@@ -0,0 +1,11 @@
+package com.tyron.test;
+
+public class Reparse {
+  public void first() {
+    int a = 1;
+  }
+
+  public void second() {
+    String b = 1;
+  }
+}
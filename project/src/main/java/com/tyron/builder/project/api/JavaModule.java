@@ -3,8 +3,10 @@ package com.tyron.builder.project.api;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.tyron.builder.model.Library;
+import com.tyron.builder.project.util.JarClassIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,9 +48,20 @@ public interface JavaModule extends Module {
   @Deprecated
   Set<String> getAllClasses();
 
+  /**
+   * @return the index of the classes declared by the sources of this module, the classes of its
+   *     libraries are in {@link #getLibraryClassIndexes()}
+   */
   @NonNull
   PackageTrie getClassIndex();
 
+  /**
+   * @return the indexes of the classes inside the libraries of this module, they are read from disk
+   *     when queried
+   */
+  @NonNull
+  Collection<JarClassIndex> getLibraryClassIndexes();
+
   /**
    * @return The resources directory of the project. Note that this is different from android's res
    *     directory
@@ -80,4 +93,10 @@ public interface JavaModule extends Module {
   Map<String, File> getInjectedClasses();
 
   void addInjectedClass(@NonNull File file);
+
+  /**
+   * @return a number that changes whenever a java file or an injected class is added to or removed
+   *     from this module, or the module is indexed again
+   */
+  long getSourceModificationCount();
 }
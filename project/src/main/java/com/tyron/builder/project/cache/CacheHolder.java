@@ -1,9 +1,14 @@
 package com.tyron.builder.project.cache;
 
 import com.tyron.common.util.Cache;
+import java.io.IOException;
 
 public interface CacheHolder {
 
+  /**
+   * Identifies a cache of a holder. The name of the key is also the name of the file the cache is
+   * persisted to, so it must be unique among the keys of a holder.
+   */
   class CacheKey<K, V> {
 
     private final String name;
@@ -20,4 +25,10 @@ public interface CacheHolder {
   <K, V> Cache<K, V> getCache(CacheKey<K, V> key, Cache<K, V> defaultValue);
 
   <K, V> void put(CacheKey<K, V> key, Cache<K, V> value);
+
+  /**
+   * Writes the caches held by this holder to disk so they can be restored by {@link #getCache}
+   * after a restart.
+   */
+  void saveCaches() throws IOException;
 }
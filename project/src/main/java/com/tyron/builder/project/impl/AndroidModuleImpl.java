@@ -4,23 +4,21 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.project.api.AndroidModule;
-import com.tyron.builder.project.cache.CacheHolder.CacheKey;
 import com.tyron.common.util.StringSearch;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
-import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 
 public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
 
@@ -30,8 +28,8 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
   public AndroidModuleImpl(File root) {
     super(root);
 
-    mKotlinFiles = new HashMap<>();
-    mResourceClasses = new HashMap<>(1);
+    mKotlinFiles = new ConcurrentHashMap<>();
+    mResourceClasses = new ConcurrentHashMap<>(1);
   }
 
   @Override
@@ -651,16 +649,4 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
     String fqn = packageName + "." + file.getName().replace(".kt", "");
     mKotlinFiles.put(fqn, file);
   }
-
-  @Override
-  public void clear() {
-    super.clear();
-
-    try {
-      Class<?> clazz = Class.forName("com.tyron.builder.compiler.symbol.MergeSymbolsTask");
-      removeCache(ReflectionUtil.getStaticFieldValue(clazz, CacheKey.class, "CACHE_KEY"));
-    } catch (Throwable e) {
-      throw new Error(e);
-    }
-  }
 }
@@ -6,20 +6,20 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.util.JarClassIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
@@ -27,23 +27,25 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-  // Map of fully qualified names and the jar they are contained in
-  private final Map<String, File> mClassFiles;
+  // Map of library jars and the index of the classes they contain
+  private final Map<File, JarClassIndex> mJarIndexes;
   private final Map<String, File> mJavaFiles;
   private final Map<String, Library> mLibraryHashMap;
   private final Map<String, File> mInjectedClassesMap;
   private final Set<File> mLibraries;
 
-  // the index of all the class files in this module
+  // the index of the source files of this module
   private final PackageTrie mClassIndex = new PackageTrie();
 
+  private final AtomicLong mSourceModificationCount = new AtomicLong();
+
   public JavaModuleImpl(File root) {
     super(root);
-    mJavaFiles = new HashMap<>();
-    mClassFiles = new HashMap<>();
+    mJavaFiles = new ConcurrentHashMap<>();
+    mJarIndexes = new ConcurrentHashMap<>();
     mLibraries = new HashSet<>();
-    mInjectedClassesMap = new HashMap<>();
-    mLibraryHashMap = new HashMap<>();
+    mInjectedClassesMap = new ConcurrentHashMap<>();
+    mLibraryHashMap = new ConcurrentHashMap<>();
   }
 
   @NonNull
@@ -52,6 +54,12 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     return mClassIndex;
   }
 
+  @NonNull
+  @Override
+  public Collection<JarClassIndex> getLibraryClassIndexes() {
+    return ImmutableList.copyOf(mJarIndexes.values());
+  }
+
   @NonNull
   @Override
   public Map<String, File> getJavaFiles() {
@@ -68,6 +76,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
   public void removeJavaFile(@NonNull String packageName) {
     mJavaFiles.remove(packageName);
     mClassIndex.remove(packageName);
+    mSourceModificationCount.incrementAndGet();
   }
 
   @Override
@@ -78,6 +87,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     String className = getFullyQualifiedName(javaFile);
     mJavaFiles.put(className, javaFile);
     mClassIndex.add(className);
+    mSourceModificationCount.incrementAndGet();
   }
 
   @Override
@@ -95,7 +105,9 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
   public Set<String> getAllClasses() {
     Set<String> classes = new HashSet<>();
     classes.addAll(mJavaFiles.keySet());
-    classes.addAll(mClassFiles.keySet());
+    for (JarClassIndex index : mJarIndexes.values()) {
+      index.forEach(classes::add);
+    }
     classes.addAll(mInjectedClassesMap.keySet());
     return classes;
   }
@@ -126,8 +138,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
       return;
     }
     try {
-      // noinspection unused, used to check if jar is valid.
-      JarFile jarFile = new JarFile(jar);
+      // throws if the jar is not valid
       putJar(jar);
       mLibraries.add(jar);
     } catch (IOException e) {
@@ -139,31 +150,15 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     if (file == null) {
       return;
     }
-    try (JarFile jar = new JarFile(file)) {
-      Enumeration<JarEntry> entries = jar.entries();
-      while (entries.hasMoreElements()) {
-        JarEntry entry = entries.nextElement();
-
-        if (!entry.getName().endsWith(".class")) {
-          continue;
-        }
-
-        // We only want top level classes, if it contains $ then
-        // its an inner class, we ignore it
-        if (entry.getName().contains("$")) {
-          continue;
-        }
-
-        String packageName =
-            entry
-                .getName()
-                .replace("/", ".")
-                .substring(0, entry.getName().length() - ".class".length());
+    mJarIndexes.put(file, JarClassIndex.get(file, getJarIndexDirectory()));
+  }
 
-        mClassFiles.put(packageName, file);
-        mClassIndex.add(packageName);
-      }
+  private File getJarIndexDirectory() {
+    File shared = JarClassIndex.getCacheDirectory();
+    if (shared != null) {
+      return shared;
     }
+    return new File(getBuildDirectory(), "caches/jars");
   }
 
   @NonNull
@@ -232,6 +227,12 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
     String className = getFullyQualifiedName(javaFile);
     mInjectedClassesMap.put(className, javaFile);
+    mSourceModificationCount.incrementAndGet();
+  }
+
+  @Override
+  public long getSourceModificationCount() {
+    return mSourceModificationCount.get();
   }
 
   private static String getFullyQualifiedName(@NonNull File javaFile) {
@@ -252,6 +253,8 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
   @Override
   public void index() {
+    // the files may have changed on disk even if none was added or removed
+    mSourceModificationCount.incrementAndGet();
     try {
       putJar(getBootstrapJarFile());
     } catch (IOException e) {
@@ -316,5 +319,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     mJavaFiles.clear();
     mLibraries.clear();
     mLibraryHashMap.clear();
+    mJarIndexes.clear();
+    mSourceModificationCount.incrementAndGet();
   }
 }
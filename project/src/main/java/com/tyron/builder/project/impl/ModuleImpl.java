@@ -264,22 +264,43 @@ public class ModuleImpl implements Module {
   private final Map<CacheKey<?, ?>, Cache<?, ?>> mCacheMap = new HashMap<>();
 
   @Override
-  public <K, V> Cache<K, V> getCache(CacheKey<K, V> key, Cache<K, V> defaultValue) {
+  public synchronized <K, V> Cache<K, V> getCache(CacheKey<K, V> key, Cache<K, V> defaultValue) {
     Object o = mCacheMap.get(key);
     if (o == null) {
-      put(key, defaultValue);
-      return defaultValue;
+      Cache<K, V> persisted = Cache.readFrom(getCacheFile(key));
+      Cache<K, V> cache = persisted != null ? persisted : defaultValue;
+      put(key, cache);
+      return cache;
     }
     //noinspection unchecked
     return (Cache<K, V>) o;
   }
 
-  public <K, V> void removeCache(CacheKey<K, V> key) {
+  public synchronized <K, V> void removeCache(CacheKey<K, V> key) {
     mCacheMap.remove(key);
+    FileUtils.deleteQuietly(getCacheFile(key));
   }
 
   @Override
-  public <K, V> void put(CacheKey<K, V> key, Cache<K, V> value) {
+  public synchronized void saveCaches() throws IOException {
+    for (Map.Entry<CacheKey<?, ?>, Cache<?, ?>> entry : mCacheMap.entrySet()) {
+      entry.getValue().writeTo(getCacheFile(entry.getKey()));
+    }
+  }
+
+  private File getCacheFile(CacheKey<?, ?> key) {
+    return new File(getBuildDirectory(), "caches/" + key.getName() + ".bin");
+  }
+
+  @Override
+  public synchronized <K, V> void put(CacheKey<K, V> key, Cache<K, V> value) {
+    for (CacheKey<?, ?> other : mCacheMap.keySet()) {
+      if (other != key && other.getName().equals(key.getName())) {
+        // both caches would be persisted to the same file
+        throw new IllegalArgumentException(
+            "Another cache is already registered with the name " + key.getName());
+      }
+    }
     mCacheMap.put(key, value);
   }
 
@@ -6,11 +6,13 @@ import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.impl.ModuleImpl;
+import com.tyron.builder.project.util.JarClassIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +29,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
 
   private final KeyFMap mDataMap = KeyFMap.EMPTY_MAP;
   private final Map<String, File> mJavaFiles = new HashMap<>();
+  private long mSourceModificationCount;
 
   private final FileManager mFileManager;
   private final File mRootDir;
@@ -53,6 +56,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
   @Override
   public void removeJavaFile(@NonNull String packageName) {
     mJavaFiles.remove(packageName);
+    mSourceModificationCount++;
   }
 
   @Override
@@ -65,6 +69,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
       className = packageName + "." + javaFile.getName().replace(".java", "");
     }
     mJavaFiles.put(className, javaFile);
+    mSourceModificationCount++;
   }
 
   @Override
@@ -114,6 +119,12 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
     return new PackageTrie();
   }
 
+  @NonNull
+  @Override
+  public Collection<JarClassIndex> getLibraryClassIndexes() {
+    return Collections.emptyList();
+  }
+
   @NonNull
   @Override
   public File getResourcesDir() {
@@ -156,6 +167,11 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
   @Override
   public void addInjectedClass(@NonNull File file) {}
 
+  @Override
+  public long getSourceModificationCount() {
+    return mSourceModificationCount;
+  }
+
   public void setBootstrapFile(File file) {
     if (!file.exists()) {
       throw new IllegalArgumentException("Bootstrap jar file does not exist");
@@ -184,6 +200,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
   @Override
   public void clear() {
     mJavaFiles.clear();
+    mSourceModificationCount++;
   }
 
   @Override
@@ -0,0 +1,422 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.tyron.common.util.Digests;
+import com.tyron.common.util.FileUtilsEx;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An index of the top level classes inside a jar file, stored on disk so opening a project does not
+ * scan the jars that have not changed since the last time.
+ *
+ * <p>Index files are named after the SHA-1 of the class names of the jar, so an artifact used by
+ * several projects is only indexed once when they share the same cache directory. Only the central
+ * directory of a jar is read to index it, its contents are never hashed. The class names are stored
+ * sorted, along with their order by simple name, and the index file is memory mapped so it can be
+ * queried directly without copying the names anywhere. Names are only decoded when requested.
+ */
+public class JarClassIndex {
+
+  private static final int MAGIC = 0x4a434958;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 12;
+
+  private static volatile File sCacheDirectory;
+
+  /**
+   * Sets the directory where the indexes are shared between all projects, if not set each module
+   * keeps its own indexes in its build directory.
+   */
+  public static void setCacheDirectory(@Nullable File directory) {
+    sCacheDirectory = directory;
+  }
+
+  @Nullable
+  public static File getCacheDirectory() {
+    return sCacheDirectory;
+  }
+
+  private final File mJar;
+  private final ByteBuffer mBuffer;
+  private final int mSize;
+  private final int mSimpleNamesOffset;
+  private final int mNamesOffset;
+
+  private JarClassIndex(File jar, ByteBuffer buffer) throws IOException {
+    mJar = jar;
+    mBuffer = buffer;
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Invalid class index for " + jar);
+    }
+    mSize = buffer.getInt(8);
+    mSimpleNamesOffset = HEADER_SIZE + (mSize + 1) * 4;
+    mNamesOffset = mSimpleNamesOffset + mSize * 4;
+    if (mSize < 0 || mNamesOffset > buffer.limit()) {
+      throw new IOException("Invalid class index for " + jar);
+    }
+  }
+
+  /**
+   * Returns the index of the given jar, reading it from the cache directory if the jar has been
+   * indexed before or scanning the jar and writing its index otherwise.
+   *
+   * @throws IOException if the jar cannot be read
+   */
+  @NonNull
+  public static JarClassIndex get(@NonNull File jar, @NonNull File cacheDirectory)
+      throws IOException {
+    if (!jar.isFile()) {
+      throw new IOException(jar + " does not exist");
+    }
+    File stampFile = new File(cacheDirectory, "stamps/" + sha1(jar.getAbsolutePath()) + ".stamp");
+    long length = jar.length();
+    long lastModified = jar.lastModified();
+    String hash = readStamp(stampFile, length, lastModified);
+    if (hash != null) {
+      try {
+        return map(jar, new File(cacheDirectory, hash + ".idx"));
+      } catch (IOException e) {
+        // the index is missing or corrupted, scan the jar again
+      }
+    }
+
+    List<String> classNames = scan(jar);
+    Collections.sort(classNames);
+    hash = hash(classNames);
+    File indexFile = new File(cacheDirectory, hash + ".idx");
+    JarClassIndex index = null;
+    if (indexFile.isFile()) {
+      try {
+        index = map(jar, indexFile);
+      } catch (IOException e) {
+        // the index is corrupted, write it again
+      }
+    }
+    if (index == null) {
+      write(indexFile, classNames);
+      index = map(jar, indexFile);
+    }
+    writeStamp(stampFile, length, lastModified, hash);
+    return index;
+  }
+
+  @NonNull
+  public File getJar() {
+    return mJar;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * @return the fully qualified name of the class at the given index, sorted by name
+   */
+  @NonNull
+  public String getClassName(int index) {
+    int start = mBuffer.getInt(HEADER_SIZE + index * 4);
+    int end = mBuffer.getInt(HEADER_SIZE + (index + 1) * 4);
+    byte[] bytes = new byte[end - start];
+    ByteBuffer buffer = mBuffer.duplicate();
+    buffer.position(mNamesOffset + start);
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public boolean contains(@NonNull String className) {
+    int index = lowerBound(className);
+    return index < mSize && getClassName(index).equals(className);
+  }
+
+  public void forEach(@NonNull Consumer<String> consumer) {
+    for (int i = 0; i < mSize; i++) {
+      consumer.accept(getClassName(i));
+    }
+  }
+
+  /**
+   * Visits the classes inside the given package and its sub packages, like {@link
+   * PackageTrie#visitClasses(String, PackageTrie.Visitor)}.
+   *
+   * @return false if the visitor stopped the visit
+   */
+  public boolean visitClasses(@NonNull String packageName, @NonNull PackageTrie.Visitor visitor) {
+    String prefix = packageName.isEmpty() ? "" : packageName + ".";
+    for (int i = lowerBound(prefix); i < mSize; i++) {
+      String className = getClassName(i);
+      if (!className.startsWith(prefix)) {
+        break;
+      }
+      if (!visitor.visit(className, simpleName(className))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Visits the classes whose simple name starts with the given prefix, ordered by their simple
+   * name, like {@link PackageTrie#visitClassesBySimpleName(String, boolean, PackageTrie.Visitor)}.
+   *
+   * @return false if the visitor stopped the visit
+   */
+  public boolean visitClassesBySimpleName(
+      @NonNull String prefix, boolean caseSensitive, @NonNull PackageTrie.Visitor visitor) {
+    for (int i = simpleNameLowerBound(prefix); i < mSize; i++) {
+      String className = getClassName(getSimpleNameOrder(i));
+      String simpleName = simpleName(className);
+      if (!PackageTrie.startsWith(simpleName, prefix, true)) {
+        break;
+      }
+      if (caseSensitive && !simpleName.startsWith(prefix)) {
+        continue;
+      }
+      if (!visitor.visit(className, simpleName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Visits the classes whose simple name matches the given pattern by camel humps, like {@link
+   * PackageTrie#visitClassesByCamelHump(String, PackageTrie.Visitor)}.
+   *
+   * @return false if the visitor stopped the visit
+   */
+  public boolean visitClassesByCamelHump(
+      @NonNull String pattern, @NonNull PackageTrie.Visitor visitor) {
+    if (pattern.isEmpty()) {
+      return true;
+    }
+    String first = pattern.substring(0, 1);
+    for (int i = simpleNameLowerBound(first); i < mSize; i++) {
+      String className = getClassName(getSimpleNameOrder(i));
+      String simpleName = simpleName(className);
+      if (!PackageTrie.startsWith(simpleName, first, true)) {
+        break;
+      }
+      if (PackageTrie.matchesCamelHump(simpleName, pattern)
+          && !visitor.visit(className, simpleName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the first segment of the names of the classes that are not in the default package,
+   *     skipping over the classes that share the same first segment instead of decoding all of them
+   */
+  @NonNull
+  public Set<String> getTopLevelNonLeafNodes() {
+    Set<String> nodes = new LinkedHashSet<>();
+    int i = 0;
+    while (i < mSize) {
+      String className = getClassName(i);
+      int dot = className.indexOf('.');
+      if (dot == -1) {
+        // a class in the default package is a leaf
+        i++;
+        continue;
+      }
+      String segment = className.substring(0, dot);
+      nodes.add(segment);
+      // '/' is the character after '.', so this is the first name past the segment's package
+      i = Math.max(i + 1, lowerBound(segment + "/"));
+    }
+    return nodes;
+  }
+
+  /**
+   * @return the index of the first class name that is not less than the given string
+   */
+  private int lowerBound(String string) {
+    int low = 0;
+    int high = mSize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getClassName(mid).compareTo(string) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the position in the simple name order of the first class whose simple name is not less
+   *     than the given prefix, ignoring case
+   */
+  private int simpleNameLowerBound(String prefix) {
+    int low = 0;
+    int high = mSize;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      String simpleName = simpleName(getClassName(getSimpleNameOrder(mid)));
+      if (PackageTrie.compareIgnoreCase(simpleName, prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int getSimpleNameOrder(int position) {
+    return mBuffer.getInt(mSimpleNamesOffset + position * 4);
+  }
+
+  private static String simpleName(String className) {
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
+
+  private static JarClassIndex map(File jar, File indexFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      return new JarClassIndex(jar, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * @return the fully qualified names of the top level classes inside the jar
+   */
+  private static List<String> scan(File file) throws IOException {
+    List<String> classNames = new ArrayList<>();
+    try (JarFile jar = new JarFile(file)) {
+      Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+
+        if (!entry.getName().endsWith(".class")) {
+          continue;
+        }
+
+        // We only want top level classes, if it contains $ then
+        // its an inner class, we ignore it
+        if (entry.getName().contains("$")) {
+          continue;
+        }
+
+        classNames.add(
+            entry
+                .getName()
+                .replace("/", ".")
+                .substring(0, entry.getName().length() - ".class".length()));
+      }
+    }
+    return classNames;
+  }
+
+  /**
+   * @param classNames the class names sorted by name
+   */
+  private static void write(File indexFile, List<String> classNames) throws IOException {
+    List<byte[]> encoded = new ArrayList<>(classNames.size());
+    for (String className : classNames) {
+      encoded.add(className.getBytes(StandardCharsets.UTF_8));
+    }
+    // same order as the simple names of a PackageTrie
+    Integer[] bySimpleName = new Integer[classNames.size()];
+    for (int i = 0; i < bySimpleName.length; i++) {
+      bySimpleName[i] = i;
+    }
+    Comparator<String> simpleNameOrder =
+        String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+    Arrays.sort(
+        bySimpleName,
+        (a, b) ->
+            simpleNameOrder.compare(simpleName(classNames.get(a)), simpleName(classNames.get(b))));
+
+    FileUtilsEx.writeAtomically(
+        indexFile,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          out.writeInt(encoded.size());
+          int offset = 0;
+          out.writeInt(offset);
+          for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            out.writeInt(offset);
+          }
+          for (int index : bySimpleName) {
+            out.writeInt(index);
+          }
+          for (byte[] bytes : encoded) {
+            out.write(bytes);
+          }
+        });
+  }
+
+  private static String hash(List<String> classNames) {
+    MessageDigest digest = Digests.newDigest(Digests.SHA1);
+    for (String className : classNames) {
+      digest.update(className.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) '\n');
+    }
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Scanning a jar takes a while, so the hash of its class names is stored along with the size and
+   * last modified time of the jar and the jar is only scanned again when either of them changes.
+   *
+   * @return the hash of the class names, null if the jar changed since the stamp was written
+   */
+  @Nullable
+  private static String readStamp(File stampFile, long length, long lastModified) {
+    if (!stampFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(stampFile.toPath())))) {
+      if (in.readInt() == VERSION && in.readLong() == length && in.readLong() == lastModified) {
+        return in.readUTF();
+      }
+    } catch (IOException e) {
+      // scan the jar again
+    }
+    return null;
+  }
+
+  private static void writeStamp(File stampFile, long length, long lastModified, String hash)
+      throws IOException {
+    FileUtilsEx.writeAtomically(
+        stampFile,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(VERSION);
+          out.writeLong(length);
+          out.writeLong(lastModified);
+          out.writeUTF(hash);
+        });
+  }
+
+  private static String sha1(String string) {
+    return Digests.digest(string, Digests.SHA1);
+  }
+}
@@ -1,11 +1,12 @@
 package com.tyron.builder.project.util;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -14,13 +15,64 @@ import java.util.Set;
  * <p>Example: The package java.lang.String and java.lang.Object will be stored as:
  *
  * <p>java | lang / \ String Object
+ *
+ * <p>Nodes are stored in parallel arrays instead of objects, and their children are linked through
+ * sibling indices instead of a map per node. Segments are interned into a single character pool so
+ * packages and class names that appear in several places are only stored once and can be compared
+ * by their id. A list of the classes sorted by their simple name is built lazily to answer simple
+ * name prefix and camel hump queries without walking the whole trie.
+ *
+ * <p>Removed nodes keep their slots until more than half of the slots belong to removed nodes, the
+ * live nodes and the segments they use are then copied to new arrays.
+ *
+ * <p>All the methods of this class are thread safe.
  */
 public class PackageTrie {
 
-  private final Node mRoot;
+  /**
+   * Receives the classes found by the queries of the trie. It is called while holding the lock of
+   * the trie, so it should be quick and must not wait for another thread that uses the trie.
+   */
+  public interface Visitor {
+
+    /**
+     * @param qualifiedName the fully qualified name of the class, this instance is reused between
+     *     calls so it must be copied if it needs to be kept
+     * @param simpleName the simple name of the class
+     * @return false to stop visiting
+     */
+    boolean visit(@NonNull CharSequence qualifiedName, @NonNull String simpleName);
+  }
+
+  private static final int ROOT = 0;
+  private static final int NONE = -1;
+  private static final int INITIAL_CAPACITY = 64;
+
+  // segments, the characters of segment i are mChars[mSegmentStarts[i]..mSegmentStarts[i + 1]]
+  private char[] mChars = new char[INITIAL_CAPACITY * 8];
+  private int[] mSegmentStarts = new int[INITIAL_CAPACITY + 1];
+  private int mSegmentCount;
+  // open addressing table of segment ids + 1 used to intern the segments, 0 means empty
+  private int[] mSegmentTable = new int[INITIAL_CAPACITY * 2];
+
+  // nodes
+  private int[] mNodeSegments = new int[INITIAL_CAPACITY];
+  private int[] mParents = new int[INITIAL_CAPACITY];
+  private int[] mFirstChildren = new int[INITIAL_CAPACITY];
+  private int[] mNextSiblings = new int[INITIAL_CAPACITY];
+  private boolean[] mLeaves = new boolean[INITIAL_CAPACITY];
+  private int mNodeCount;
+  private int mClassCount;
+  // the nodes that have been detached from the trie but still use a slot
+  private int mRemovedNodes;
+
+  /** The leaf nodes sorted by their simple name, null if it needs to be rebuilt */
+  private int[] mSortedLeaves;
+
+  private final SegmentSequence mSegmentSequence = new SegmentSequence();
 
   public PackageTrie() {
-    mRoot = new Node();
+    newNode(ROOT, NONE);
   }
 
   /**
@@ -28,14 +80,27 @@ public class PackageTrie {
    *
    * @param fqn The fully qualified name of a class, including its name
    */
-  public void add(@NonNull String fqn) {
-    String[] parts = getParts(fqn);
-    Node current = mRoot;
-    for (String part : parts) {
-      current = current.getOrCreateChild(part);
+  public synchronized void add(@NonNull String fqn) {
+    int current = ROOT;
+    int start = 0;
+    while (start <= fqn.length()) {
+      int end = fqn.indexOf('.', start);
+      if (end == -1) {
+        end = fqn.length();
+      }
+      int segment = findSegment(fqn, start, end);
+      if (segment == NONE) {
+        segment = addSegment(fqn, start, end);
+      }
+      current = getOrCreateChild(current, segment);
+      start = end + 1;
     }
     // this is the end node, so mark it as a leaf
-    current.isLeaf = true;
+    if (!mLeaves[current]) {
+      mLeaves[current] = true;
+      mClassCount++;
+      mSortedLeaves = null;
+    }
   }
 
   public void remove(@NonNull String fqn) {
@@ -54,129 +119,597 @@ public class PackageTrie {
    * @param fqn The package name
    * @param leafOnly Whether to delete the leaf only
    */
-  public void remove(@NonNull String fqn, boolean leafOnly) {
-    String[] parts = getParts(fqn);
-    Node current = mRoot;
-    for (int i = 0; i < parts.length; i++) {
-      String part = parts[i];
-      boolean isLeaf = i == parts.length - 1;
-
-      if (current == null) {
-        break;
+  public synchronized void remove(@NonNull String fqn, boolean leafOnly) {
+    int node = find(fqn);
+    if (node == NONE || node == ROOT) {
+      return;
+    }
+    if (leafOnly) {
+      if (mLeaves[node]) {
+        mLeaves[node] = false;
+        mClassCount--;
+        mSortedLeaves = null;
       }
-      if (current.getChildren() == null) {
-        current = null;
-      } else {
-        Node next = current.getChildren().get(part);
-        if (next != null && (isLeaf || !leafOnly)) {
-          current.getChildren().remove(next.getValue());
-        }
-        current = next;
+      // remove the packages that no longer contain any class
+      while (node != ROOT && !mLeaves[node] && mFirstChildren[node] == NONE) {
+        int parent = mParents[node];
+        unlink(node);
+        mRemovedNodes++;
+        node = parent;
       }
+    } else {
+      mRemovedNodes += clearLeaves(node);
+      unlink(node);
+    }
+    if (mRemovedNodes >= INITIAL_CAPACITY && mRemovedNodes * 2 > mNodeCount) {
+      compact();
     }
   }
 
+  /**
+   * @return whether the given fully qualified name has been added to this trie
+   */
+  public synchronized boolean contains(@NonNull String fqn) {
+    int node = find(fqn);
+    return node != NONE && mLeaves[node];
+  }
+
+  /**
+   * @return the number of classes in this trie
+   */
+  public synchronized int size() {
+    return mClassCount;
+  }
+
   public List<String> getMatchingPackages(String packageQuery) {
     List<String> result = new ArrayList<>();
-    StringBuilder currentPackage = new StringBuilder();
-    String[] parts = getParts(packageQuery);
-    Node current = mRoot;
-    for (String part : parts) {
-      if (current == null
-          || current.getChildren() == null
-          || !current.getChildren().containsKey(part)) {
-        return result;
+    visitClasses(
+        packageQuery,
+        (qualifiedName, simpleName) -> {
+          result.add(qualifiedName.toString());
+          return true;
+        });
+    return result;
+  }
+
+  /**
+   * Visits all the classes inside the given package and its sub packages without building an
+   * intermediate list.
+   */
+  public synchronized void visitClasses(@NonNull String packageQuery, @NonNull Visitor visitor) {
+    int node = find(packageQuery);
+    if (node == NONE) {
+      return;
+    }
+    StringBuilder name = new StringBuilder();
+    appendQualifiedName(name, node);
+    for (int child = mFirstChildren[node]; child != NONE; child = mNextSiblings[child]) {
+      if (!visitSubtree(name, child, visitor)) {
+        return;
       }
+    }
+  }
 
-      if (current.isLeaf) {
-        String fqn = currentPackage.length() > 0 ? currentPackage + "." + part : part;
-        result.add(fqn);
-      } else {
-        boolean insertDot = currentPackage.length() > 0;
-        if (insertDot) {
-          currentPackage.append('.');
-        }
-        currentPackage.append(part);
+  /**
+   * Visits the classes whose simple name starts with the given prefix, ordered by their simple
+   * name.
+   */
+  public synchronized void visitClassesBySimpleName(
+      @NonNull String prefix, boolean caseSensitive, @NonNull Visitor visitor) {
+    int[] sorted = getSortedLeaves();
+    StringBuilder name = new StringBuilder();
+    for (int i = lowerBound(sorted, prefix); i < sorted.length; i++) {
+      SegmentSequence simpleName = segment(mNodeSegments[sorted[i]]);
+      if (!startsWith(simpleName, prefix, true)) {
+        break;
       }
+      if (caseSensitive && !startsWith(simpleName, prefix, false)) {
+        continue;
+      }
+      if (!visitLeaf(name, sorted[i], visitor)) {
+        return;
+      }
+    }
+  }
 
-      current = current.getChildren().get(part);
+  /**
+   * Visits the classes whose simple name matches the given pattern by camel humps, e.g. {@code NPE}
+   * and {@code NuPoEx} both match {@code NullPointerException}. The first character of the pattern
+   * is matched case insensitively.
+   */
+  public synchronized void visitClassesByCamelHump(
+      @NonNull String pattern, @NonNull Visitor visitor) {
+    if (pattern.isEmpty()) {
+      return;
+    }
+    int[] sorted = getSortedLeaves();
+    StringBuilder name = new StringBuilder();
+    String first = pattern.substring(0, 1);
+    for (int i = lowerBound(sorted, first); i < sorted.length; i++) {
+      SegmentSequence simpleName = segment(mNodeSegments[sorted[i]]);
+      if (!startsWith(simpleName, first, true)) {
+        break;
+      }
+      if (!matchesCamelHump(simpleName, pattern)) {
+        continue;
+      }
+      if (!visitLeaf(name, sorted[i], visitor)) {
+        return;
+      }
     }
+  }
 
-    if (current.getChildren() != null) {
-      for (Node node : current.getChildren().values()) {
-        recurse(node, currentPackage.toString(), result);
+  /**
+   * Checks whether the pattern matches the name by camel humps. Every hump of the pattern, an
+   * uppercase letter followed by the characters before the next one, must be a prefix of a word of
+   * the name and the words must appear in the same order.
+   */
+  static boolean matchesCamelHump(@NonNull CharSequence name, @NonNull String pattern) {
+    if (pattern.isEmpty()) {
+      return true;
+    }
+    if (name.length() == 0
+        || Character.toLowerCase(name.charAt(0)) != Character.toLowerCase(pattern.charAt(0))) {
+      return false;
+    }
+    int patternIndex = 1;
+    int nameIndex = 1;
+    // the rest of the first hump must follow the first character
+    while (patternIndex < pattern.length()
+        && !Character.isUpperCase(pattern.charAt(patternIndex))) {
+      if (nameIndex >= name.length() || name.charAt(nameIndex) != pattern.charAt(patternIndex)) {
+        return false;
       }
+      patternIndex++;
+      nameIndex++;
     }
+    while (patternIndex < pattern.length()) {
+      int humpEnd = patternIndex + 1;
+      while (humpEnd < pattern.length() && !Character.isUpperCase(pattern.charAt(humpEnd))) {
+        humpEnd++;
+      }
+      int wordStart = nameIndex;
+      while (wordStart < name.length()
+          && !(Character.isUpperCase(name.charAt(wordStart))
+              && regionMatches(name, wordStart, pattern, patternIndex, humpEnd))) {
+        wordStart++;
+      }
+      if (wordStart >= name.length()) {
+        return false;
+      }
+      nameIndex = wordStart + humpEnd - patternIndex;
+      patternIndex = humpEnd;
+    }
+    return true;
+  }
 
-    return result;
+  private static boolean regionMatches(
+      CharSequence name, int offset, String pattern, int start, int end) {
+    if (offset + end - start > name.length()) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (name.charAt(offset + i - start) != pattern.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
-  public Set<String> getTopLevelNonLeafNodes() {
-    if (mRoot.getChildren() == null) {
+  public synchronized Set<String> getTopLevelNonLeafNodes() {
+    if (mFirstChildren[ROOT] == NONE) {
       return Collections.emptySet();
     }
+    Set<String> nodes = new LinkedHashSet<>();
+    for (int child = mFirstChildren[ROOT]; child != NONE; child = mNextSiblings[child]) {
+      // a class in the default package has no children
+      if (mFirstChildren[child] != NONE) {
+        nodes.add(segment(mNodeSegments[child]).toString());
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * @param name the qualified name of the parent of the node, owned by the current traversal
+   */
+  private boolean visitSubtree(StringBuilder name, int node, Visitor visitor) {
+    int length = name.length();
+    appendSegment(name, mNodeSegments[node]);
+    try {
+      if (mLeaves[node] && !visitor.visit(name, segment(mNodeSegments[node]).toString())) {
+        return false;
+      }
+      for (int child = mFirstChildren[node]; child != NONE; child = mNextSiblings[child]) {
+        if (!visitSubtree(name, child, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      name.setLength(length);
+    }
+  }
+
+  private boolean visitLeaf(StringBuilder name, int node, Visitor visitor) {
+    String simpleName = segment(mNodeSegments[node]).toString();
+    name.setLength(0);
+    appendQualifiedName(name, node);
+    return visitor.visit(name, simpleName);
+  }
+
+  private void appendQualifiedName(StringBuilder name, int node) {
+    if (node == ROOT) {
+      return;
+    }
+    appendQualifiedName(name, mParents[node]);
+    appendSegment(name, mNodeSegments[node]);
+  }
+
+  private void appendSegment(StringBuilder name, int segment) {
+    if (name.length() > 0) {
+      name.append('.');
+    }
+    int start = mSegmentStarts[segment];
+    name.append(mChars, start, mSegmentStarts[segment + 1] - start);
+  }
 
-    return mRoot.getChildren().keySet();
+  /**
+   * @return the node of the given name, or {@link #NONE} if it does not exist
+   */
+  private int find(String fqn) {
+    int current = ROOT;
+    if (fqn.isEmpty()) {
+      return current;
+    }
+    int start = 0;
+    while (start <= fqn.length()) {
+      int end = fqn.indexOf('.', start);
+      if (end == -1) {
+        end = fqn.length();
+      }
+      // segments that were never added cannot be in the trie
+      int segment = findSegment(fqn, start, end);
+      if (segment == NONE) {
+        return NONE;
+      }
+      current = findChild(current, segment);
+      if (current == NONE) {
+        return NONE;
+      }
+      start = end + 1;
+    }
+    return current;
   }
 
-  private void recurse(Node node, String currentPackage, List<String> result) {
-    if (node.isLeaf) {
-      String newResult =
-          currentPackage.length() > 0 ? currentPackage + "." + node.getValue() : node.getValue();
-      result.add(newResult);
+  private int findChild(int parent, int segment) {
+    for (int child = mFirstChildren[parent]; child != NONE; child = mNextSiblings[child]) {
+      if (mNodeSegments[child] == segment) {
+        return child;
+      }
+    }
+    return NONE;
+  }
+
+  private int getOrCreateChild(int parent, int segment) {
+    int child = findChild(parent, segment);
+    if (child != NONE) {
+      return child;
+    }
+    child = newNode(parent, segment);
+    mNextSiblings[child] = mFirstChildren[parent];
+    mFirstChildren[parent] = child;
+    return child;
+  }
+
+  private int newNode(int parent, int segment) {
+    if (mNodeCount == mNodeSegments.length) {
+      int capacity = mNodeSegments.length * 2;
+      mNodeSegments = Arrays.copyOf(mNodeSegments, capacity);
+      mParents = Arrays.copyOf(mParents, capacity);
+      mFirstChildren = Arrays.copyOf(mFirstChildren, capacity);
+      mNextSiblings = Arrays.copyOf(mNextSiblings, capacity);
+      mLeaves = Arrays.copyOf(mLeaves, capacity);
+    }
+    int node = mNodeCount++;
+    mNodeSegments[node] = segment;
+    mParents[node] = parent;
+    mFirstChildren[node] = NONE;
+    mNextSiblings[node] = NONE;
+    mLeaves[node] = false;
+    return node;
+  }
+
+  /** Detaches the node from its parent, the slots of detached nodes are reclaimed by compact */
+  private void unlink(int node) {
+    int parent = mParents[node];
+    if (mFirstChildren[parent] == node) {
+      mFirstChildren[parent] = mNextSiblings[node];
     } else {
-      currentPackage =
-          currentPackage.isEmpty() ? node.getValue() : currentPackage + "." + node.getValue();
+      for (int child = mFirstChildren[parent]; child != NONE; child = mNextSiblings[child]) {
+        if (mNextSiblings[child] == node) {
+          mNextSiblings[child] = mNextSiblings[node];
+          break;
+        }
+      }
     }
+    mNextSiblings[node] = NONE;
+  }
 
-    if (node.getChildren() == null) {
-      return;
+  /**
+   * @return the number of nodes in the subtree of the node
+   */
+  private int clearLeaves(int node) {
+    if (mLeaves[node]) {
+      mLeaves[node] = false;
+      mClassCount--;
+      mSortedLeaves = null;
     }
-    for (Node child : node.getChildren().values()) {
-      recurse(child, currentPackage, result);
+    int count = 1;
+    for (int child = mFirstChildren[node]; child != NONE; child = mNextSiblings[child]) {
+      count += clearLeaves(child);
     }
+    return count;
   }
 
-  private String[] getParts(String fqn) {
-    if (fqn.contains(".")) {
-      return fqn.split("\\.");
+  /**
+   * Copies the nodes that are still part of the trie and the segments they use to new arrays,
+   * keeping the order of the children of every node.
+   */
+  private void compact() {
+    char[] chars = mChars;
+    int[] segmentStarts = mSegmentStarts;
+    int[] nodeSegments = mNodeSegments;
+    int[] firstChildren = mFirstChildren;
+    int[] nextSiblings = mNextSiblings;
+    boolean[] leaves = mLeaves;
+    int[] segmentIds = new int[mSegmentCount];
+    Arrays.fill(segmentIds, NONE);
+
+    int live = mNodeCount - mRemovedNodes;
+    int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(live) * 2);
+    mChars = new char[capacity * 8];
+    mSegmentStarts = new int[capacity + 1];
+    mSegmentCount = 0;
+    mSegmentTable = new int[capacity * 2];
+    mNodeSegments = new int[capacity];
+    mParents = new int[capacity];
+    mFirstChildren = new int[capacity];
+    mNextSiblings = new int[capacity];
+    mLeaves = new boolean[capacity];
+    mNodeCount = 0;
+    mRemovedNodes = 0;
+    mSortedLeaves = null;
+    newNode(ROOT, NONE);
+
+    // the old nodes in the order they are copied, so the new id of queue[i] is i
+    int[] queue = new int[live];
+    int tail = 0;
+    queue[tail++] = ROOT;
+    for (int head = 0; head < tail; head++) {
+      int last = NONE;
+      for (int child = firstChildren[queue[head]]; child != NONE; child = nextSiblings[child]) {
+        int oldSegment = nodeSegments[child];
+        if (segmentIds[oldSegment] == NONE) {
+          int start = segmentStarts[oldSegment];
+          String segment = new String(chars, start, segmentStarts[oldSegment + 1] - start);
+          segmentIds[oldSegment] = addSegment(segment, 0, segment.length());
+        }
+        int node = newNode(head, segmentIds[oldSegment]);
+        mLeaves[node] = leaves[child];
+        if (last == NONE) {
+          mFirstChildren[head] = node;
+        } else {
+          mNextSiblings[last] = node;
+        }
+        last = node;
+        queue[tail++] = child;
+      }
     }
-    return new String[] {fqn};
   }
 
-  private static class Node {
+  @VisibleForTesting
+  synchronized int getNodeCount() {
+    return mNodeCount;
+  }
 
-    private Map<String, Node> mChildren;
+  private SegmentSequence segment(int segment) {
+    mSegmentSequence.mStart = mSegmentStarts[segment];
+    mSegmentSequence.mEnd = mSegmentStarts[segment + 1];
+    return mSegmentSequence;
+  }
 
-    private boolean isLeaf;
+  /**
+   * @return the id of the segment with the characters of the given range, or {@link #NONE} if it
+   *     has not been added
+   */
+  private int findSegment(String string, int start, int end) {
+    int mask = mSegmentTable.length - 1;
+    for (int slot = hash(string, start, end) & mask; ; slot = (slot + 1) & mask) {
+      int segment = mSegmentTable[slot] - 1;
+      if (segment == NONE) {
+        return NONE;
+      }
+      int segmentStart = mSegmentStarts[segment];
+      if (mSegmentStarts[segment + 1] - segmentStart == end - start
+          && regionMatches(mChars, segmentStart, string, start, end)) {
+        return segment;
+      }
+    }
+  }
 
-    private String mValue;
+  private int addSegment(String string, int start, int end) {
+    if (mSegmentCount + 2 > mSegmentStarts.length) {
+      mSegmentStarts = Arrays.copyOf(mSegmentStarts, mSegmentStarts.length * 2);
+    }
+    int charCount = mSegmentStarts[mSegmentCount];
+    if (charCount + end - start > mChars.length) {
+      mChars = Arrays.copyOf(mChars, Math.max(mChars.length * 2, charCount + end - start));
+    }
+    string.getChars(start, end, mChars, charCount);
+    int segment = mSegmentCount++;
+    mSegmentStarts[mSegmentCount] = charCount + end - start;
 
-    public Node() {}
+    // keep the table at most three quarters full
+    if (mSegmentCount * 4 > mSegmentTable.length * 3) {
+      mSegmentTable = new int[mSegmentTable.length * 2];
+      for (int i = 0; i < segment; i++) {
+        insertSegment(i);
+      }
+    }
+    insertSegment(segment);
+    return segment;
+  }
 
-    public Node(String value) {
-      mValue = value;
+  private void insertSegment(int segment) {
+    int mask = mSegmentTable.length - 1;
+    int slot = hash(segment(segment), 0, mSegmentSequence.length()) & mask;
+    while (mSegmentTable[slot] != 0) {
+      slot = (slot + 1) & mask;
     }
+    mSegmentTable[slot] = segment + 1;
+  }
+
+  private static int hash(CharSequence string, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + string.charAt(i);
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean regionMatches(
+      char[] chars, int offset, String string, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (chars[offset + i - start] != string.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int[] getSortedLeaves() {
+    if (mSortedLeaves == null) {
+      Integer[] leaves = new Integer[mClassCount];
+      int count = 0;
+      for (int node = 0; node < mNodeCount && count < leaves.length; node++) {
+        if (mLeaves[node]) {
+          leaves[count++] = node;
+        }
+      }
+      Arrays.sort(leaves, 0, count, (a, b) -> compareSegments(mNodeSegments[a], mNodeSegments[b]));
+      mSortedLeaves = new int[count];
+      for (int i = 0; i < count; i++) {
+        mSortedLeaves[i] = leaves[i];
+      }
+    }
+    return mSortedLeaves;
+  }
+
+  /** Orders the segments case insensitively, then case sensitively */
+  private int compareSegments(int a, int b) {
+    int aStart = mSegmentStarts[a];
+    int aLength = mSegmentStarts[a + 1] - aStart;
+    int bStart = mSegmentStarts[b];
+    int bLength = mSegmentStarts[b + 1] - bStart;
+    int sensitive = 0;
+    for (int i = 0; i < Math.min(aLength, bLength); i++) {
+      char c1 = mChars[aStart + i];
+      char c2 = mChars[bStart + i];
+      int insensitive = compareIgnoreCase(c1, c2);
+      if (insensitive != 0) {
+        return insensitive;
+      }
+      if (sensitive == 0) {
+        sensitive = c1 - c2;
+      }
+    }
+    return aLength != bLength ? aLength - bLength : sensitive;
+  }
+
+  /**
+   * @return the index of the first leaf whose simple name is not less than the prefix
+   */
+  private int lowerBound(int[] sorted, String prefix) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareIgnoreCase(segment(mNodeSegments[sorted[mid]]), prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  static int compareIgnoreCase(CharSequence a, String b) {
+    for (int i = 0; i < Math.min(a.length(), b.length()); i++) {
+      int result = compareIgnoreCase(a.charAt(i), b.charAt(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return a.length() - b.length();
+  }
+
+  /** Compares the characters the same way as {@link String#CASE_INSENSITIVE_ORDER} */
+  private static int compareIgnoreCase(char c1, char c2) {
+    if (c1 != c2) {
+      c1 = Character.toUpperCase(c1);
+      c2 = Character.toUpperCase(c2);
+      if (c1 != c2) {
+        c1 = Character.toLowerCase(c1);
+        c2 = Character.toLowerCase(c2);
+        if (c1 != c2) {
+          return c1 - c2;
+        }
+      }
+    }
+    return 0;
+  }
 
-    public Node getOrCreateChild(String part) {
-      if (mChildren == null) {
-        mChildren = new HashMap<>();
+  static boolean startsWith(CharSequence name, String prefix, boolean ignoreCase) {
+    if (name.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      char c1 = name.charAt(i);
+      char c2 = prefix.charAt(i);
+      if (ignoreCase ? compareIgnoreCase(c1, c2) != 0 : c1 != c2) {
+        return false;
       }
+    }
+    return true;
+  }
 
-      return mChildren.computeIfAbsent(part, Node::new);
+  /** A view of a segment inside the character pool, reused to avoid creating strings */
+  private class SegmentSequence implements CharSequence {
+
+    private int mStart;
+    private int mEnd;
+
+    @Override
+    public int length() {
+      return mEnd - mStart;
     }
 
-    public Map<String, Node> getChildren() {
-      return mChildren;
+    @Override
+    public char charAt(int index) {
+      return mChars[mStart + index];
     }
 
-    public String getValue() {
-      return mValue;
+    @NonNull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new String(mChars, mStart + start, end - start);
     }
 
+    @NonNull
     @Override
     public String toString() {
-      return "Node{" + "isLeaf=" + isLeaf + ", mValue='" + mValue + '\'' + '}';
+      return new String(mChars, mStart, mEnd - mStart);
     }
   }
 }
@@ -0,0 +1,79 @@
+package com.tyron.builder.project.impl;
+
+import com.tyron.builder.project.cache.CacheHolder.CacheKey;
+import com.tyron.common.util.Cache;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModuleImplCacheTest {
+
+  private static final CacheKey<String, String> FIRST = new CacheKey<>("firstCache");
+  private static final CacheKey<String, String> SECOND = new CacheKey<>("secondCache");
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private ModuleImpl createModule(File buildDirectory) {
+    return new ModuleImpl(mFolder.getRoot()) {
+      @Override
+      public File getBuildDirectory() {
+        return buildDirectory;
+      }
+    };
+  }
+
+  @Test
+  public void testCachesArePersistedSideBySide() throws IOException {
+    File buildDirectory = mFolder.newFolder("build");
+    Path source = mFolder.newFile("Main.java").toPath();
+    Files.write(source, "class Main {}".getBytes());
+
+    ModuleImpl module = createModule(buildDirectory);
+    module.getCache(FIRST, new Cache<>()).load(source, "key", "first");
+    module.getCache(SECOND, new Cache<>()).load(source, "key", "second");
+    module.saveCaches();
+
+    ModuleImpl restored = createModule(buildDirectory);
+    Cache<String, String> first = restored.getCache(FIRST, new Cache<>());
+    Cache<String, String> second = restored.getCache(SECOND, new Cache<>());
+    assert first.get(source, "key").equals("first");
+    assert second.get(source, "key").equals("second");
+  }
+
+  @Test
+  public void testOnlyPersistedEntriesIgnoreTouchedFiles() throws IOException {
+    File buildDirectory = mFolder.newFolder("build");
+    Path source = mFolder.newFile("Main.java").toPath();
+    Files.write(source, "class Main {}".getBytes());
+    File file = source.toFile();
+
+    ModuleImpl module = createModule(buildDirectory);
+    Cache<String, String> cache = module.getCache(FIRST, new Cache<>());
+    cache.load(source, "key", "value");
+    assert file.setLastModified(System.currentTimeMillis() + 2000);
+    // an entry kept in memory only compares the timestamps
+    assert cache.needs(source, "key");
+
+    assert file.setLastModified(System.currentTimeMillis() - 10000);
+    cache.load(source, "key", "value");
+    module.saveCaches();
+    assert file.setLastModified(System.currentTimeMillis() + 4000);
+
+    Cache<String, String> restored = createModule(buildDirectory).getCache(FIRST, new Cache<>());
+    assert !restored.needs(source, "key");
+    Files.write(source, "class Main { int changed; }".getBytes());
+    assert file.setLastModified(System.currentTimeMillis() + 6000);
+    assert restored.needs(source, "key");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKeysWithTheSameNameAreRejected() throws IOException {
+    ModuleImpl module = createModule(mFolder.newFolder("build"));
+    module.getCache(FIRST, new Cache<>());
+    module.getCache(new CacheKey<String, String>("firstCache"), new Cache<>());
+  }
+}
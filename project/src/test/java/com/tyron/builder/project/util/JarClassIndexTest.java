@@ -0,0 +1,150 @@
+package com.tyron.builder.project.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarClassIndexTest {
+
+  @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws IOException {
+    File jar = createJar("b/Second.class", "a/First.class", "a/First$Inner.class", "res.txt");
+    File cache = mFolder.newFolder("cache");
+
+    JarClassIndex index = JarClassIndex.get(jar, cache);
+    assert index.size() == 2;
+    assert index.getClassName(0).equals("a.First");
+    assert index.getClassName(1).equals("b.Second");
+    assert index.contains("b.Second");
+    assert !index.contains("a.First$Inner");
+
+    List<String> names = new ArrayList<>();
+    index.forEach(names::add);
+    assert names.size() == 2;
+  }
+
+  @Test
+  public void testQueries() throws IOException {
+    File jar =
+        createJar(
+            "java/util/ArrayList.class",
+            "java/util/List.class",
+            "java/util/concurrent/ConcurrentHashMap.class",
+            "java/lang/String.class",
+            "javax/lang/model/Element.class",
+            "android/app/Activity.class",
+            "Main.class");
+    JarClassIndex index = JarClassIndex.get(jar, mFolder.newFolder("cache"));
+
+    List<String> inPackage = new ArrayList<>();
+    index.visitClasses("java.util", collect(inPackage));
+    assert inPackage.equals(
+        Arrays.asList(
+            "java.util.ArrayList", "java.util.List", "java.util.concurrent.ConcurrentHashMap"));
+
+    List<String> bySimpleName = new ArrayList<>();
+    index.visitClassesBySimpleName("l", false, collect(bySimpleName));
+    assert bySimpleName.equals(Collections.singletonList("java.util.List"));
+
+    List<String> caseSensitive = new ArrayList<>();
+    index.visitClassesBySimpleName("l", true, collect(caseSensitive));
+    assert caseSensitive.isEmpty();
+
+    List<String> camelHump = new ArrayList<>();
+    index.visitClassesByCamelHump("CHM", collect(camelHump));
+    assert camelHump.equals(Collections.singletonList("java.util.concurrent.ConcurrentHashMap"));
+
+    assert index
+        .getTopLevelNonLeafNodes()
+        .equals(new HashSet<>(Arrays.asList("android", "java", "javax")));
+  }
+
+  @Test
+  public void testVisitorCanStop() throws IOException {
+    File jar = createJar("a/First.class", "a/Second.class");
+    JarClassIndex index = JarClassIndex.get(jar, mFolder.newFolder("cache"));
+
+    List<String> names = new ArrayList<>();
+    boolean finished =
+        index.visitClasses(
+            "a",
+            (qualifiedName, simpleName) -> {
+              names.add(qualifiedName.toString());
+              return false;
+            });
+    assert !finished;
+    assert names.size() == 1;
+  }
+
+  @Test
+  public void testIndexIsReused() throws IOException {
+    File jar = createJar("a/First.class");
+    File cache = mFolder.newFolder("cache");
+
+    JarClassIndex.get(jar, cache);
+    File[] indexes = cache.listFiles(f -> f.getName().endsWith(".idx"));
+    assert indexes != null && indexes.length == 1;
+    long lastModified = indexes[0].lastModified();
+
+    JarClassIndex index = JarClassIndex.get(jar, cache);
+    assert index.contains("a.First");
+    assert indexes[0].lastModified() == lastModified;
+  }
+
+  @Test
+  public void testSameContentsShareIndex() throws IOException {
+    File first = createJar("a/First.class");
+    File second = new File(mFolder.newFolder("copy"), first.getName());
+    Files.copy(first.toPath(), second.toPath());
+    File cache = mFolder.newFolder("cache");
+
+    JarClassIndex.get(first, cache);
+    JarClassIndex.get(second, cache);
+    File[] indexes = cache.listFiles(f -> f.getName().endsWith(".idx"));
+    assert indexes != null && indexes.length == 1;
+  }
+
+  @Test
+  public void testCorruptedIndexIsRebuilt() throws IOException {
+    File jar = createJar("a/First.class");
+    File cache = mFolder.newFolder("cache");
+
+    JarClassIndex.get(jar, cache);
+    File[] indexes = cache.listFiles(f -> f.getName().endsWith(".idx"));
+    assert indexes != null && indexes.length == 1;
+    Files.write(indexes[0].toPath(), new byte[] {1, 2, 3});
+
+    assert JarClassIndex.get(jar, cache).contains("a.First");
+  }
+
+  private static PackageTrie.Visitor collect(List<String> names) {
+    return (qualifiedName, simpleName) -> {
+      names.add(qualifiedName.toString());
+      return true;
+    };
+  }
+
+  private File createJar(String... entries) throws IOException {
+    File jar = mFolder.newFile("classes.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+      for (String entry : entries) {
+        out.putNextEntry(new JarEntry(entry));
+        out.write(new byte[] {0});
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
@@ -1,5 +1,7 @@
 package com.tyron.builder.project.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.junit.Test;
 
@@ -46,4 +48,149 @@ public class PackageTrieTest {
     List<String> packages = trie.getMatchingPackages("a");
     assert packages.size() == 1;
   }
+
+  @Test
+  public void testRemovePackage() {
+    PackageTrie trie = new PackageTrie();
+    trie.add("java.lang.String");
+    trie.add("java.util.List");
+    trie.add("android.view.View");
+    trie.add("Main");
+    trie.remove("java", false);
+
+    assert trie.size() == 2;
+    assert !trie.contains("java.lang.String");
+    assert trie.getMatchingPackages("java").isEmpty();
+    assert trie.getTopLevelNonLeafNodes().equals(Collections.singleton("android"));
+  }
+
+  @Test
+  public void testVisitorStops() {
+    PackageTrie trie = new PackageTrie();
+    trie.add("a.First");
+    trie.add("a.Second");
+    trie.add("a.Third");
+
+    List<String> visited = new ArrayList<>();
+    trie.visitClasses(
+        "a",
+        (qualifiedName, simpleName) -> {
+          visited.add(qualifiedName.toString());
+          return visited.size() < 2;
+        });
+    assert visited.size() == 2;
+  }
+
+  @Test
+  public void testNestedTraversalsKeepTheirNames() {
+    PackageTrie trie = new PackageTrie();
+    trie.add("a.First");
+    trie.add("b.c.Second");
+
+    List<String> outer = new ArrayList<>();
+    List<String> inner = new ArrayList<>();
+    trie.visitClasses(
+        "a",
+        (qualifiedName, simpleName) -> {
+          trie.visitClasses(
+              "b",
+              (innerName, innerSimpleName) -> {
+                inner.add(innerName.toString());
+                return true;
+              });
+          outer.add(qualifiedName.toString());
+          return true;
+        });
+    assert outer.equals(Collections.singletonList("a.First"));
+    assert inner.equals(Collections.singletonList("b.c.Second"));
+  }
+
+  @Test
+  public void testSimpleNamePrefix() {
+    PackageTrie trie = new PackageTrie();
+    trie.add("java.util.ArrayList");
+    trie.add("java.util.Arrays");
+    trie.add("android.widget.ArrayAdapter");
+    trie.add("java.util.List");
+    trie.add("com.example.arrays");
+
+    List<String> names = new ArrayList<>();
+    trie.visitClassesBySimpleName(
+        "Array",
+        true,
+        (qualifiedName, simpleName) -> {
+          names.add(qualifiedName.toString());
+          return true;
+        });
+    assert names.size() == 3;
+    assert names.contains("android.widget.ArrayAdapter");
+    assert names.contains("java.util.ArrayList");
+
+    names.clear();
+    trie.visitClassesBySimpleName(
+        "array",
+        false,
+        (qualifiedName, simpleName) -> {
+          names.add(qualifiedName.toString());
+          return true;
+        });
+    assert names.size() == 4;
+    assert names.contains("com.example.arrays");
+  }
+
+  @Test
+  public void testCamelHump() {
+    assert PackageTrie.matchesCamelHump("NullPointerException", "NPE");
+    assert PackageTrie.matchesCamelHump("NullPointerException", "NuPoEx");
+    assert PackageTrie.matchesCamelHump("NullPointerException", "nPE");
+    assert PackageTrie.matchesCamelHump("ArrayList", "ArrL");
+    assert !PackageTrie.matchesCamelHump("ArrayList", "AL2");
+    assert !PackageTrie.matchesCamelHump("NullPointerException", "NEP");
+
+    PackageTrie trie = new PackageTrie();
+    trie.add("java.lang.NullPointerException");
+    trie.add("java.lang.NumberFormatException");
+    List<String> names = new ArrayList<>();
+    trie.visitClassesByCamelHump(
+        "NPE",
+        (qualifiedName, simpleName) -> {
+          names.add(simpleName);
+          return true;
+        });
+    assert names.size() == 1;
+    assert names.get(0).equals("NullPointerException");
+  }
+
+  @Test
+  public void testRemoveReclaimsNodes() {
+    PackageTrie trie = new PackageTrie();
+    trie.add("java.util.ArrayList");
+    trie.add("java.util.List");
+    for (int i = 0; i < 1000; i++) {
+      trie.add("com.example.p" + i + ".Class" + i);
+    }
+    int nodeCount = trie.getNodeCount();
+    for (int i = 0; i < 1000; i += 2) {
+      trie.remove("com.example.p" + i + ".Class" + i);
+    }
+    trie.remove("com.example", false);
+    assert trie.getNodeCount() < nodeCount / 2;
+
+    assert trie.size() == 2;
+    assert trie.contains("java.util.ArrayList");
+    assert !trie.contains("com.example.p1.Class1");
+    assert trie.getTopLevelNonLeafNodes().equals(Collections.singleton("java"));
+    List<String> names = new ArrayList<>();
+    trie.visitClasses(
+        "java.util",
+        (qualifiedName, simpleName) -> {
+          names.add(qualifiedName.toString());
+          return true;
+        });
+    assert names.size() == 2;
+
+    trie.add("com.example.p1.Class1");
+    assert trie.contains("com.example.p1.Class1");
+    assert trie.size() == 3;
+  }
 }
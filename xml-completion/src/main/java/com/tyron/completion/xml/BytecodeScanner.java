@@ -1,31 +1,28 @@
 package com.tyron.completion.xml;
 
-import android.content.Context;
-import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
 import com.google.common.collect.ImmutableSet;
-import com.tyron.builder.BuildModule;
-import com.tyron.completion.xml.util.PartialClassParser;
+import com.tyron.completion.xml.util.ClassFileReader;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.Type;
 
 /**
- * Scans jar files and saves all the class files that extends {@link View} and has the appropriate
- * constructors to be inflated in XML.
+ * Scans jar files for the class files that extend {@link View}, only the names and super classes of
+ * the classes are read.
  */
 public class BytecodeScanner {
 
@@ -53,141 +50,71 @@ public class BytecodeScanner {
     sIgnoredPaths = builder.build();
   }
 
-  public static void loadJar(File jar) throws IOException {
+  /**
+   * Reads the name and super class of every class in the given jar. Only the headers of the class
+   * files are read, see {@link ClassFileReader}.
+   *
+   * @param bootstrap whether the jar is the android.jar, whose packages that cannot contain views
+   *     are skipped
+   * @return the super class name of each class keyed by the class name
+   */
+  public static Map<String, String> readClassHierarchy(File jar, boolean bootstrap)
+      throws IOException {
+    Map<String, String> hierarchy = new HashMap<>();
     try (JarFile jarFile = new JarFile(jar)) {
       iterateClasses(
           jarFile,
           element -> {
-            PartialClassParser classParser =
-                new PartialClassParser(jar.getAbsolutePath(), element.getName());
-            try {
-              Repository.addClass(classParser.parse());
-            } catch (IOException e) {
-              // ignored, keep parsing other classes
+            String name = element.getName();
+            if (bootstrap && isIgnored(name)) {
+              return;
             }
-          });
-    }
-  }
-
-  public static List<JavaClass> scan(File file) throws IOException {
-    List<JavaClass> viewClasses = new ArrayList<>();
-    try (JarFile jarFile = new JarFile(file)) {
-      iterateClasses(
-          jarFile,
-          element -> {
-            String fqn =
-                element
-                    .getName()
-                    .replace('/', '.')
-                    .substring(0, element.getName().length() - ".class".length());
-            try {
-              JavaClass javaClass = Repository.lookupClass(fqn);
-              if (isViewClass(javaClass)) {
-                viewClasses.add(javaClass);
-              }
-            } catch (ClassNotFoundException e) {
-              // should not happen, the class should already be loaded here.
+            try (InputStream inputStream =
+                new BufferedInputStream(jarFile.getInputStream(element))) {
+              ClassFileReader.ClassHeader header = ClassFileReader.readHeader(inputStream);
+              hierarchy.put(header.getClassName(), header.getSuperClassName());
+            } catch (IOException e) {
+              // ignored, keep reading other classes
             }
           });
     }
-    return viewClasses;
+    return hierarchy;
   }
 
-  public static boolean isViewGroup(JavaClass javaClass) {
-    JavaClass[] superClasses = getSuperClasses(javaClass);
-    return Arrays.stream(superClasses)
-        .anyMatch(it -> ViewGroup.class.getName().equals(it.getClassName()));
-  }
-
-  public static void scanBootstrapIfNeeded() {
-    if (!needScanBootstrap()) {
-      return;
-    }
-
-    File androidJar = BuildModule.getAndroidJar();
-    if (androidJar != null && androidJar.exists()) {
-      try (JarFile jarFile = new JarFile(androidJar)) {
-        iterateClasses(
-            jarFile,
-            element -> {
-              String name = element.getName();
-              String packagePath = name.substring(0, name.lastIndexOf('/'));
-              if (sIgnoredPaths.contains(packagePath)) {
-                return;
-              }
-              if (packagePath.startsWith("java/")) {
-                return;
-              }
-              PartialClassParser classParser =
-                  new PartialClassParser(androidJar.getAbsolutePath(), name);
-              try {
-                Repository.addClass(classParser.parse());
-              } catch (IOException e) {
-                // ignored, keep parsing other classes
-              }
-            });
-      } catch (IOException e) {
-        // ignored
-      }
+  private static boolean isIgnored(String name) {
+    int index = name.lastIndexOf('/');
+    if (index == -1) {
+      return false;
     }
+    String packagePath = name.substring(0, index);
+    return sIgnoredPaths.contains(packagePath) || packagePath.startsWith("java/");
   }
 
-  private static boolean needScanBootstrap() {
-    try {
-      Repository.getRepository().loadClass(View.class);
-      return false;
-    } catch (ClassNotFoundException e) {
-      return true;
-    }
+  public static boolean isViewGroup(List<String> superClasses) {
+    return superClasses.contains(ViewGroup.class.getName());
   }
 
-  private static boolean isViewClass(JavaClass javaClass) {
-    JavaClass[] superClasses = getSuperClasses(javaClass);
-    return Arrays.stream(superClasses)
-        .anyMatch(it -> View.class.getName().equals(it.getClassName()));
+  public static boolean isViewClass(List<String> superClasses) {
+    return superClasses.contains(View.class.getName());
   }
 
   /**
-   * Get the array of java classes even if the root class does not exist
+   * Get the super classes of a class even if the root class does not exist
    *
-   * @param javaClass The java class
-   * @return array of super classes
+   * @param className The fully qualified name of the class
+   * @param hierarchy The super class names keyed by class name, see {@link #readClassHierarchy}
+   * @return the names of the super classes that are known, starting from the direct super class
    */
-  public static JavaClass[] getSuperClasses(JavaClass javaClass) {
-    List<JavaClass> superClasses = new ArrayList<>();
-    JavaClass current = javaClass;
-    while (current != null && current.getSuperclassName() != null) {
-      JavaClass lookupClass;
-      try {
-        lookupClass = Repository.lookupClass(current.getSuperclassName());
-      } catch (ClassNotFoundException e) {
-        lookupClass = null;
-      }
-
-      if (lookupClass != null) {
-        superClasses.add(lookupClass);
-      }
-      current = lookupClass;
-    }
-    return superClasses.toArray(new JavaClass[0]);
-  }
-
-  private static boolean containsViewConstructors(Method[] methods) {
-    for (Method method : methods) {
-      if (!"<init>".equals(method.getName())) {
-        continue;
-      }
-
-      Type[] argumentTypes = method.getArgumentTypes();
-      if (argumentTypes.length == 2) {
-        if (Context.class.getName().equals(argumentTypes[0].toString())) {
-          if (AttributeSet.class.getName().equals(argumentTypes[1].toString())) {
-            return true;
-          }
-        }
-      }
+  public static List<String> getSuperClasses(String className, Map<String, String> hierarchy) {
+    List<String> superClasses = new ArrayList<>();
+    Set<String> visited = new HashSet<>();
+    visited.add(className);
+    String current = hierarchy.get(className);
+    while (current != null && visited.add(current)) {
+      superClasses.add(current);
+      current = hierarchy.get(current);
     }
-    return false;
+    return superClasses;
   }
 
   public static void iterateClasses(JarFile jarFile, Consumer<JarEntry> consumer) {
@@ -0,0 +1,351 @@
+package com.tyron.completion.xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tyron.common.util.FileUtilsEx;
+import com.tyron.completion.xml.model.ViewClass;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The view classes of the libraries of a module, stored on disk so they are available without
+ * reading the jars again when the module is opened.
+ *
+ * <p>The class hierarchy of each jar is stored in its own file named after the hash of the jar, it
+ * is only read from the jar when the jar changes. The view classes resolved from the hierarchies of
+ * all the jars are stored along with a hash of all the jars, so when none of the jars changed they
+ * are read back as is. The hash of a jar is only computed again when its size or last modified time
+ * changes.
+ */
+class ViewClassIndex {
+
+  private static final int MAGIC = 0x56434958;
+  private static final int VERSION = 1;
+
+  private static final String INDEX_FILE = "index.bin";
+  private static final String JARS_DIRECTORY = "jars";
+
+  /** The hierarchy of the android.jar is shared by the modules of this process */
+  private static String sBootstrapHash;
+
+  private static Map<String, String> sBootstrapHierarchy;
+
+  private static class Stamp {
+    final long length;
+    final long lastModified;
+    final String hash;
+
+    Stamp(long length, long lastModified, String hash) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+
+    boolean isUpToDate(File file) {
+      return file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+  private interface Output {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private final File mDirectory;
+
+  private final Map<String, Stamp> mStamps = new HashMap<>();
+  private String mKey;
+  private List<ViewClass> mViewClasses = Collections.emptyList();
+
+  ViewClassIndex(@NonNull File directory) {
+    mDirectory = directory;
+  }
+
+  /**
+   * Returns the view classes declared in the given jars. Views may extend classes of other jars or
+   * of the bootstrap jar, but only the ones declared in {@code jars} are returned.
+   *
+   * @param bootstrap the android.jar, may be null if it is not available
+   * @param jars the jars of the libraries
+   */
+  @NonNull
+  synchronized List<ViewClass> getViewClasses(@Nullable File bootstrap, @NonNull List<File> jars) {
+    if (mKey == null) {
+      readIndex();
+    }
+
+    Map<String, Stamp> stamps = new HashMap<>();
+    Hasher key = Hashing.murmur3_128().newHasher();
+    String bootstrapHash = null;
+    if (bootstrap != null && bootstrap.isFile()) {
+      bootstrapHash = hash(bootstrap, stamps);
+      key.putString(bootstrapHash, StandardCharsets.UTF_8);
+    }
+    List<File> existing = new ArrayList<>();
+    List<String> hashes = new ArrayList<>();
+    for (File jar : jars) {
+      if (!jar.isFile()) {
+        continue;
+      }
+      String hash = hash(jar, stamps);
+      existing.add(jar);
+      hashes.add(hash);
+      key.putString(hash, StandardCharsets.UTF_8);
+    }
+
+    String newKey = key.hash().toString();
+    if (newKey.equals(mKey)) {
+      boolean changed =
+          stamps.size() != mStamps.size()
+              || stamps.entrySet().stream()
+                  .anyMatch(it -> it.getValue() != mStamps.get(it.getKey()));
+      if (changed) {
+        mStamps.clear();
+        mStamps.putAll(stamps);
+        writeIndex();
+      }
+      return mViewClasses;
+    }
+
+    Map<String, String> hierarchy = new HashMap<>();
+    if (bootstrapHash != null) {
+      hierarchy.putAll(getBootstrapHierarchy(bootstrap, bootstrapHash));
+    }
+    List<Map<String, String>> jarHierarchies = new ArrayList<>();
+    for (int i = 0; i < existing.size(); i++) {
+      Map<String, String> jarHierarchy = readHierarchy(existing.get(i), hashes.get(i), false);
+      jarHierarchies.add(jarHierarchy);
+      hierarchy.putAll(jarHierarchy);
+    }
+
+    Map<String, ViewClass> viewClasses = new TreeMap<>();
+    for (Map<String, String> jarHierarchy : jarHierarchies) {
+      for (String className : jarHierarchy.keySet()) {
+        List<String> superClasses = BytecodeScanner.getSuperClasses(className, hierarchy);
+        if (BytecodeScanner.isViewClass(superClasses)) {
+          viewClasses.put(className, ViewClass.create(className, superClasses));
+        }
+      }
+    }
+
+    mKey = newKey;
+    mStamps.clear();
+    mStamps.putAll(stamps);
+    mViewClasses = Collections.unmodifiableList(new ArrayList<>(viewClasses.values()));
+    writeIndex();
+    deleteUnusedHierarchies(bootstrapHash, hashes);
+    return mViewClasses;
+  }
+
+  private String hash(File jar, Map<String, Stamp> stamps) {
+    String path = jar.getAbsolutePath();
+    Stamp stamp = mStamps.get(path);
+    if (stamp == null || !stamp.isUpToDate(jar)) {
+      String hash;
+      try {
+        hash = com.google.common.io.Files.asByteSource(jar).hash(Hashing.murmur3_128()).toString();
+      } catch (IOException e) {
+        // the jar will be read again next time
+        hash = path + ":" + jar.length() + ":" + jar.lastModified();
+      }
+      stamp = new Stamp(jar.length(), jar.lastModified(), hash);
+    }
+    stamps.put(path, stamp);
+    return stamp.hash;
+  }
+
+  private Map<String, String> getBootstrapHierarchy(File bootstrap, String hash) {
+    synchronized (ViewClassIndex.class) {
+      if (sBootstrapHierarchy == null || !hash.equals(sBootstrapHash)) {
+        sBootstrapHierarchy = Collections.unmodifiableMap(readHierarchy(bootstrap, hash, true));
+        sBootstrapHash = hash;
+      }
+      return sBootstrapHierarchy;
+    }
+  }
+
+  /** Reads the hierarchy of the jar from its file, or from the jar if it has not been stored yet */
+  private Map<String, String> readHierarchy(File jar, String hash, boolean bootstrap) {
+    File file = getHierarchyFile(hash, bootstrap);
+    if (file.isFile()) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+        if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+          int size = in.readInt();
+          Map<String, String> hierarchy = new HashMap<>(size);
+          for (int i = 0; i < size; i++) {
+            String className = in.readUTF();
+            hierarchy.put(className, readString(in));
+          }
+          return hierarchy;
+        }
+      } catch (IOException e) {
+        // read the jar again
+      }
+    }
+
+    Map<String, String> hierarchy;
+    try {
+      hierarchy = BytecodeScanner.readClassHierarchy(jar, bootstrap);
+    } catch (IOException e) {
+      return Collections.emptyMap();
+    }
+    try {
+      write(
+          file,
+          out -> {
+            out.writeInt(hierarchy.size());
+            for (Map.Entry<String, String> entry : hierarchy.entrySet()) {
+              out.writeUTF(entry.getKey());
+              writeString(out, entry.getValue());
+            }
+          });
+    } catch (IOException ignored) {
+      // the jar will be read again next time
+    }
+    return hierarchy;
+  }
+
+  private File getHierarchyFile(String hash, boolean bootstrap) {
+    return new File(new File(mDirectory, JARS_DIRECTORY), (bootstrap ? "bootstrap-" : "") + hash);
+  }
+
+  private void deleteUnusedHierarchies(@Nullable String bootstrapHash, List<String> hashes) {
+    Set<String> used = new HashSet<>();
+    if (bootstrapHash != null) {
+      used.add(getHierarchyFile(bootstrapHash, true).getName());
+    }
+    for (String hash : hashes) {
+      used.add(getHierarchyFile(hash, false).getName());
+    }
+    File[] files = new File(mDirectory, JARS_DIRECTORY).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (!used.contains(file.getName())) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+  }
+
+  private void readIndex() {
+    mKey = "";
+    File file = new File(mDirectory, INDEX_FILE);
+    if (!file.isFile()) {
+      return;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return;
+      }
+      Map<String, Stamp> stamps = new HashMap<>();
+      int stampCount = in.readInt();
+      for (int i = 0; i < stampCount; i++) {
+        String path = in.readUTF();
+        stamps.put(path, new Stamp(in.readLong(), in.readLong(), in.readUTF()));
+      }
+      String key = in.readUTF();
+      int viewCount = in.readInt();
+      List<ViewClass> viewClasses = new ArrayList<>(viewCount);
+      for (int i = 0; i < viewCount; i++) {
+        String className = in.readUTF();
+        List<String> superClasses = readStrings(in);
+        boolean viewGroup = in.readBoolean();
+        List<String> styleables = readStrings(in);
+        List<String> layoutParams = readStrings(in);
+        viewClasses.add(
+            new ViewClass(className, superClasses, viewGroup, styleables, layoutParams));
+      }
+      mStamps.putAll(stamps);
+      mKey = key;
+      mViewClasses = Collections.unmodifiableList(viewClasses);
+    } catch (IOException e) {
+      // the jars will be indexed again
+    }
+  }
+
+  private void writeIndex() {
+    try {
+      write(
+          new File(mDirectory, INDEX_FILE),
+          out -> {
+            out.writeInt(mStamps.size());
+            for (Map.Entry<String, Stamp> entry : mStamps.entrySet()) {
+              Stamp stamp = entry.getValue();
+              out.writeUTF(entry.getKey());
+              out.writeLong(stamp.length);
+              out.writeLong(stamp.lastModified);
+              out.writeUTF(stamp.hash);
+            }
+            out.writeUTF(mKey);
+            out.writeInt(mViewClasses.size());
+            for (ViewClass viewClass : mViewClasses) {
+              out.writeUTF(viewClass.getClassName());
+              writeStrings(out, viewClass.getSuperClasses());
+              out.writeBoolean(viewClass.isViewGroup());
+              writeStrings(out, viewClass.getStyleables());
+              writeStrings(out, viewClass.getLayoutParamsStyleables());
+            }
+          });
+    } catch (IOException ignored) {
+      // the jars will be indexed again next time
+    }
+  }
+
+  private static void write(File file, Output output) throws IOException {
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          output.write(out);
+        });
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    List<String> strings = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      strings.add(in.readUTF());
+    }
+    return strings;
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String string)
+      throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) {
+      out.writeUTF(string);
+    }
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
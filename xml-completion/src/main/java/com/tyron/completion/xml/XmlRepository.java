@@ -20,12 +20,14 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.ViewFlipper;
 import android.widget.ViewSwitcher;
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.xml.model.AttributeInfo;
 import com.tyron.completion.xml.model.DeclareStyleable;
 import com.tyron.completion.xml.model.Format;
+import com.tyron.completion.xml.model.ViewClass;
 import com.tyron.completion.xml.util.StyleUtils;
 import com.tyron.xml.completion.repository.ResourceRepository;
 import java.io.File;
@@ -33,13 +35,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
@@ -48,7 +49,7 @@ public class XmlRepository {
   private final Map<String, DeclareStyleable> mDeclareStyleables = new TreeMap<>();
   private final Map<String, DeclareStyleable> mManifestAttrs = new TreeMap<>();
   private final Map<String, AttributeInfo> mExtraAttributes = new TreeMap<>();
-  private final Map<String, JavaClass> mJavaViewClasses = new TreeMap<>();
+  private final Map<String, ViewClass> mViewClasses = new TreeMap<>();
 
   private boolean mInitialized = false;
   private ResourceRepository mRepository;
@@ -65,8 +66,8 @@ public class XmlRepository {
     return mDeclareStyleables;
   }
 
-  public Map<String, JavaClass> getJavaViewClasses() {
-    return mJavaViewClasses;
+  public Map<String, ViewClass> getViewClasses() {
+    return mViewClasses;
   }
 
   @Deprecated
@@ -78,42 +79,31 @@ public class XmlRepository {
     if (mInitialized) {
       return;
     }
-    BytecodeScanner.scanBootstrapIfNeeded();
-
     mRepository = new ResourceRepository(module);
     mRepository.initialize();
 
+    Set<File> jars = new LinkedHashSet<>();
     for (File library : module.getLibraries()) {
       File parent = library.getParentFile();
-      if (parent == null) {
-        continue;
-      }
-      File classesFile = new File(parent, "classes.jar");
-      if (classesFile.exists()) {
-        try {
-          BytecodeScanner.loadJar(classesFile);
-        } catch (IOException ignored) {
-
+      if (parent != null) {
+        File classesFile = new File(parent, "classes.jar");
+        if (classesFile.exists()) {
+          jars.add(classesFile);
         }
       }
+      jars.add(library);
     }
 
-    for (File library : module.getLibraries()) {
-      try {
-        List<JavaClass> scan = BytecodeScanner.scan(library);
-        for (JavaClass javaClass : scan) {
-          StyleUtils.putStyles(javaClass);
-          mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-        }
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+    ViewClassIndex index =
+        new ViewClassIndex(new File(module.getBuildDirectory(), "caches/view-classes"));
+    for (ViewClass viewClass :
+        index.getViewClasses(BuildModule.getAndroidJar(), new ArrayList<>(jars))) {
+      StyleUtils.putStyles(viewClass);
+      mViewClasses.put(viewClass.getClassName(), viewClass);
     }
 
     addFrameworkViews();
 
-    Repository.clearCache();
-
     mInitialized = true;
   }
 
@@ -141,15 +131,13 @@ public class XmlRepository {
   }
 
   private void addFrameworkView(Class<? extends View> viewClass) {
-    org.apache.bcel.util.Repository repository = Repository.getRepository();
-    try {
-      JavaClass javaClass = repository.loadClass(viewClass);
-      if (javaClass != null) {
-        mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-      }
-    } catch (ClassNotFoundException e) {
-      // ignored
+    List<String> superClasses = new ArrayList<>();
+    Class<?> current = viewClass.getSuperclass();
+    while (current != null) {
+      superClasses.add(current.getName());
+      current = current.getSuperclass();
     }
+    mViewClasses.put(viewClass.getName(), ViewClass.create(viewClass.getName(), superClasses));
   }
 
   private Map<String, DeclareStyleable> parse(Reader reader, String namespace)
@@ -1,14 +1,14 @@
 package com.tyron.completion.xml.insert;
 
 import com.tyron.completion.model.CompletionItem;
+import com.tyron.completion.xml.model.ViewClass;
 import com.tyron.editor.Editor;
-import org.apache.bcel.classfile.JavaClass;
 
 public class LayoutTagInsertHandler extends DefaultXmlInsertHandler {
 
-  private final JavaClass clazz;
+  private final ViewClass clazz;
 
-  public LayoutTagInsertHandler(JavaClass clazz, CompletionItem item) {
+  public LayoutTagInsertHandler(ViewClass clazz, CompletionItem item) {
     super(item);
     this.clazz = clazz;
   }
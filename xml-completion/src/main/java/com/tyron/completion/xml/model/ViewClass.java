@@ -0,0 +1,116 @@
+package com.tyron.completion.xml.model;
+
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.annotation.NonNull;
+import com.tyron.completion.xml.util.StyleUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that can be used as a tag in a layout file, along with the names of the styleables that
+ * declare its attributes.
+ */
+public class ViewClass {
+
+  private final String mClassName;
+  private final List<String> mSuperClasses;
+  private final boolean mViewGroup;
+  private final List<String> mStyleables;
+  private final List<String> mLayoutParamsStyleables;
+
+  public ViewClass(
+      @NonNull String className,
+      @NonNull List<String> superClasses,
+      boolean viewGroup,
+      @NonNull List<String> styleables,
+      @NonNull List<String> layoutParamsStyleables) {
+    mClassName = className;
+    mSuperClasses = Collections.unmodifiableList(superClasses);
+    mViewGroup = viewGroup;
+    mStyleables = Collections.unmodifiableList(styleables);
+    mLayoutParamsStyleables = Collections.unmodifiableList(layoutParamsStyleables);
+  }
+
+  /**
+   * Creates a view class from its super classes, the styleable names are derived from the simple
+   * names of the class and its super classes.
+   *
+   * @param superClasses the fully qualified names of the super classes, starting from the direct
+   *     super class
+   */
+  @NonNull
+  public static ViewClass create(@NonNull String className, @NonNull List<String> superClasses) {
+    List<String> styleables = new ArrayList<>();
+    styleables.add(StyleUtils.getSimpleName(className));
+    List<String> layoutParams = new ArrayList<>();
+    boolean viewGroup = false;
+    for (String superClass : superClasses) {
+      if (Object.class.getName().equals(superClass)) {
+        continue;
+      }
+      styleables.add(StyleUtils.getSimpleName(superClass));
+      if (ViewGroup.class.getName().equals(superClass)) {
+        viewGroup = true;
+      }
+      if (!View.class.getName().equals(superClass)) {
+        layoutParams.add(StyleUtils.getSimpleName(superClass) + "_Layout");
+      }
+    }
+    if (!viewGroup) {
+      layoutParams.clear();
+    }
+    return new ViewClass(className, superClasses, viewGroup, styleables, layoutParams);
+  }
+
+  @NonNull
+  public String getClassName() {
+    return mClassName;
+  }
+
+  @NonNull
+  public String getSimpleName() {
+    return StyleUtils.getSimpleName(mClassName);
+  }
+
+  @NonNull
+  public String getPackageName() {
+    int index = mClassName.lastIndexOf('.');
+    return index == -1 ? "" : mClassName.substring(0, index);
+  }
+
+  /**
+   * @return the fully qualified names of the super classes, starting from the direct super class
+   */
+  @NonNull
+  public List<String> getSuperClasses() {
+    return mSuperClasses;
+  }
+
+  public boolean isViewGroup() {
+    return mViewGroup;
+  }
+
+  /**
+   * @return the names of the styleables declaring the attributes of this view
+   */
+  @NonNull
+  public List<String> getStyleables() {
+    return mStyleables;
+  }
+
+  /**
+   * @return the names of the styleables declaring the layout params of the children of this view,
+   *     empty if it is not a view group
+   */
+  @NonNull
+  public List<String> getLayoutParamsStyleables() {
+    return mLayoutParamsStyleables;
+  }
+
+  @Override
+  public String toString() {
+    return mClassName;
+  }
+}
@@ -7,9 +7,9 @@ import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.model.DrawableKind;
 import com.tyron.completion.xml.XmlRepository;
 import com.tyron.completion.xml.insert.LayoutTagInsertHandler;
+import com.tyron.completion.xml.model.ViewClass;
 import java.util.HashMap;
 import java.util.Map;
-import org.apache.bcel.classfile.JavaClass;
 
 public class AndroidXmlTagUtils {
 
@@ -95,7 +95,7 @@ public class AndroidXmlTagUtils {
       @NonNull XmlRepository repository,
       @NonNull String prefix,
       @NonNull CompletionList.Builder builder) {
-    for (Map.Entry<String, JavaClass> entry : repository.getJavaViewClasses().entrySet()) {
+    for (Map.Entry<String, ViewClass> entry : repository.getViewClasses().entrySet()) {
       CompletionItem item = new CompletionItem();
       String commitPrefix = "<";
       if (prefix.startsWith("</")) {
@@ -0,0 +1,160 @@
+package com.tyron.completion.xml.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the name and super class of a class file without parsing the rest of it.
+ *
+ * <p>Only the constant pool and the few fields after it are read from the stream, the fields,
+ * methods and attributes of the class are never read so the stream can be closed right after.
+ */
+public final class ClassFileReader {
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELD_REF = 9;
+  private static final int CONSTANT_METHOD_REF = 10;
+  private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  public static class ClassHeader {
+    private final int mAccessFlags;
+    private final String mClassName;
+    private final String mSuperClassName;
+
+    ClassHeader(int accessFlags, String className, String superClassName) {
+      mAccessFlags = accessFlags;
+      mClassName = className;
+      mSuperClassName = superClassName;
+    }
+
+    public int getAccessFlags() {
+      return mAccessFlags;
+    }
+
+    /**
+     * @return the fully qualified name of the class, e.g. {@code android.widget.TextView}
+     */
+    @NonNull
+    public String getClassName() {
+      return mClassName;
+    }
+
+    /**
+     * @return the fully qualified name of the super class, null for {@code java.lang.Object}
+     */
+    @Nullable
+    public String getSuperClassName() {
+      return mSuperClassName;
+    }
+  }
+
+  private ClassFileReader() {}
+
+  /**
+   * Reads the header of the class file from the given stream, the stream is not closed.
+   *
+   * @throws IOException if the stream cannot be read or does not contain a class file
+   */
+  @NonNull
+  public static ClassHeader readHeader(@NonNull InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    // minor and major version
+    in.readUnsignedShort();
+    in.readUnsignedShort();
+
+    int count = in.readUnsignedShort();
+    String[] strings = new String[count];
+    int[] classes = new int[count];
+    for (int i = 1; i < count; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case CONSTANT_UTF8:
+          strings[i] = in.readUTF();
+          break;
+        case CONSTANT_CLASS:
+          classes[i] = in.readUnsignedShort();
+          break;
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+          skip(in, 2);
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          skip(in, 3);
+          break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELD_REF:
+        case CONSTANT_METHOD_REF:
+        case CONSTANT_INTERFACE_METHOD_REF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+          skip(in, 4);
+          break;
+        case CONSTANT_LONG:
+        case CONSTANT_DOUBLE:
+          skip(in, 8);
+          // these take two entries in the constant pool
+          i++;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    int accessFlags = in.readUnsignedShort();
+    String className = getClassName(strings, classes, in.readUnsignedShort());
+    if (className == null) {
+      throw new IOException("Invalid class name index");
+    }
+    String superClassName = getClassName(strings, classes, in.readUnsignedShort());
+    return new ClassHeader(accessFlags, className, superClassName);
+  }
+
+  @Nullable
+  private static String getClassName(String[] strings, int[] classes, int index) {
+    if (index <= 0 || index >= classes.length) {
+      return null;
+    }
+    int nameIndex = classes[index];
+    if (nameIndex <= 0 || nameIndex >= strings.length || strings[nameIndex] == null) {
+      return null;
+    }
+    return strings[nameIndex].replace('/', '.');
+  }
+
+  private static void skip(DataInputStream in, int bytes) throws IOException {
+    while (bytes > 0) {
+      int skipped = in.skipBytes(bytes);
+      if (skipped <= 0) {
+        // throws an EOFException at the end of the stream
+        in.readByte();
+        skipped = 1;
+      }
+      bytes -= skipped;
+    }
+  }
+}
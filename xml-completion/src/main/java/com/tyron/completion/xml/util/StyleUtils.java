@@ -27,16 +27,14 @@ import androidx.annotation.NonNull;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
-import com.tyron.completion.xml.BytecodeScanner;
 import com.tyron.completion.xml.model.DeclareStyleable;
-import java.util.Arrays;
+import com.tyron.completion.xml.model.ViewClass;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import org.apache.bcel.classfile.JavaClass;
 
 public class StyleUtils {
 
@@ -97,33 +95,21 @@ public class StyleUtils {
     return classes;
   }
 
-  public static void putStyles(JavaClass javaClass) {
-    JavaClass[] superClasses = BytecodeScanner.getSuperClasses(javaClass);
-    String viewSimpleName = getSimpleName(javaClass.getClassName());
-    for (JavaClass superClass : superClasses) {
-      if (Object.class.getName().equals(superClass.getClassName())) {
-        continue;
-      }
-      String simpleName = getSimpleName(superClass.getClassName());
-      sViewStyleMap.put(viewSimpleName, simpleName);
+  public static void putStyles(ViewClass viewClass) {
+    String viewSimpleName = viewClass.getSimpleName();
+    for (String styleable : viewClass.getStyleables()) {
+      sViewStyleMap.put(viewSimpleName, styleable);
     }
 
-    sViewStyleMap.put(viewSimpleName, viewSimpleName);
-
-    if (BytecodeScanner.isViewGroup(javaClass)) {
-      putLayoutParams(javaClass);
+    if (viewClass.isViewGroup()) {
+      putLayoutParams(viewClass);
     }
   }
 
-  public static void putLayoutParams(JavaClass javaClass) {
-    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-    JavaClass[] superClasses = BytecodeScanner.getSuperClasses(javaClass);
-    Arrays.stream(superClasses)
-        .map(JavaClass::getClassName)
-        .filter(it -> !Object.class.getName().equals(it))
-        .filter(it -> !View.class.getName().equals(it))
-        .forEach(it -> builder.add(getSimpleName(it) + "_Layout"));
-    sLayoutParamsMap.put(getSimpleName(javaClass.getClassName()) + "_Layout", builder.build());
+  public static void putLayoutParams(ViewClass viewClass) {
+    sLayoutParamsMap.put(
+        viewClass.getSimpleName() + "_Layout",
+        ImmutableSet.copyOf(viewClass.getLayoutParamsStyleables()));
   }
 
   public static void putLayoutParams(@NonNull Class<? extends ViewGroup> viewGroup) {
@@ -8,6 +8,7 @@ import com.tyron.xml.completion.repository.api.ResourceNamespace;
 import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -26,14 +27,27 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
       File resDir = parent.getParentFile();
       assert resDir != null;
       sInstance = new AndroidResourceRepository(resDir, ResourceNamespace.ANDROID);
+      sInstance.setSnapshotDirectory(new File(resDir.getParentFile(), "snapshots"));
     }
     return sInstance;
   }
 
+  private boolean mInitialized;
+
   public AndroidResourceRepository(File resDir, ResourceNamespace namespace) {
     super(resDir, namespace);
   }
 
+  /** The framework resources never change, they are only parsed once for all projects */
+  @Override
+  public synchronized void initialize() throws IOException {
+    if (mInitialized) {
+      return;
+    }
+    super.initialize();
+    mInitialized = true;
+  }
+
   @NotNull
   @Override
   public ResourceValue getValue(ResourceReference reference) {
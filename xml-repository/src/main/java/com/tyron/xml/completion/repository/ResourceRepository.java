@@ -27,6 +27,7 @@ public class ResourceRepository extends SimpleResourceRepository {
         ResourceNamespace.fromPackageName(module.getNameSpace()));
     mModule = module;
     mAndroidRepository = AndroidResourceRepository.getInstance();
+    setSnapshotDirectory(new File(module.getBuildDirectory(), "caches/resources"));
   }
 
   @VisibleForTesting
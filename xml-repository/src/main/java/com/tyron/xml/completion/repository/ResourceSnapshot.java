@@ -0,0 +1,142 @@
+package com.tyron.xml.completion.repository;
+
+import com.google.common.hash.Hashing;
+import com.tyron.common.util.FileUtilsEx;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The resource values parsed from the files of a res directory, stored on disk so files that have
+ * not changed since the last time the directory was parsed are not parsed again.
+ *
+ * <p>Each file is stored with the hash of its contents, along with its size and last modified time
+ * so unchanged files don't have to be read to know that. A snapshot is only valid for the namespace
+ * and library name it was created with since these are part of the parsed values.
+ */
+class ResourceSnapshot {
+
+  private static final int VERSION = 1;
+
+  static class Entry {
+    final long length;
+    final long lastModified;
+    final String hash;
+    final List<ResourceValue> values;
+
+    Entry(long length, long lastModified, String hash, List<ResourceValue> values) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.hash = hash;
+      this.values = values;
+    }
+
+    boolean isUpToDate(File file) {
+      return file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+  private final ResourceNamespace mNamespace;
+  private final String mLibraryName;
+  private final Map<String, Entry> mEntries = new HashMap<>();
+
+  ResourceSnapshot(@NotNull ResourceNamespace namespace, @Nullable String libraryName) {
+    mNamespace = namespace;
+    mLibraryName = libraryName;
+  }
+
+  /**
+   * Reads the snapshot from the given file, an empty snapshot is returned if the file does not
+   * exist, cannot be read or was created for another namespace or library.
+   */
+  @NotNull
+  static ResourceSnapshot read(
+      @Nullable File file, @NotNull ResourceNamespace namespace, @Nullable String libraryName) {
+    ResourceSnapshot snapshot = new ResourceSnapshot(namespace, libraryName);
+    if (file == null || !file.isFile()) {
+      return snapshot;
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != VERSION
+          || !namespace.equals(in.readObject())
+          || !Objects.equals(libraryName, in.readObject())) {
+        return snapshot;
+      }
+      Map<String, Entry> entries = new HashMap<>();
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String path = in.readUTF();
+        long length = in.readLong();
+        long lastModified = in.readLong();
+        String hash = in.readUTF();
+        @SuppressWarnings("unchecked")
+        List<ResourceValue> values = (List<ResourceValue>) in.readObject();
+        entries.put(path, new Entry(length, lastModified, hash, values));
+      }
+      snapshot.mEntries.putAll(entries);
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      // the resources will be parsed again
+    }
+    return snapshot;
+  }
+
+  @Nullable
+  Entry get(@NotNull File file) {
+    return mEntries.get(file.getAbsolutePath());
+  }
+
+  void put(@NotNull File file, @NotNull Entry entry) {
+    mEntries.put(file.getAbsolutePath(), entry);
+  }
+
+  int size() {
+    return mEntries.size();
+  }
+
+  void write(@NotNull File file) throws IOException {
+    FileUtilsEx.writeAtomically(
+        file,
+        stream -> {
+          ObjectOutputStream out = new ObjectOutputStream(stream);
+          out.writeInt(VERSION);
+          out.writeObject(mNamespace);
+          out.writeObject(mLibraryName);
+          out.writeInt(mEntries.size());
+          for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+            Entry value = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(value.length);
+            out.writeLong(value.lastModified);
+            out.writeUTF(value.hash);
+            out.writeObject(new ArrayList<>(value.values));
+          }
+          out.flush();
+        });
+  }
+
+  @NotNull
+  static String hash(byte[] contents) {
+    return Hashing.murmur3_128().hashBytes(contents).toString();
+  }
+
+  /**
+   * @return the name of the snapshot file of the given res directory
+   */
+  @NotNull
+  static String getFileName(@NotNull File resDir) {
+    return Hashing.murmur3_128().hashUnencodedChars(resDir.getAbsolutePath()) + ".bin";
+  }
+}
@@ -1,10 +1,12 @@
 package com.tyron.xml.completion.repository;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
 import com.tyron.builder.compiler.manifest.configuration.Configurable;
 import com.tyron.builder.compiler.manifest.configuration.FolderConfiguration;
 import com.tyron.builder.compiler.manifest.resources.ResourceFolderType;
@@ -21,7 +23,9 @@ import com.tyron.xml.completion.repository.parser.TemporaryParser;
 import com.tyron.xml.completion.repository.parser.ValuesXmlParser;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -29,6 +33,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 import org.apache.commons.io.FileUtils;
@@ -56,6 +65,8 @@ public class SimpleResourceRepository implements Repository {
     sParsers = parsers.build();
   }
 
+  private static volatile ExecutorService sExecutor;
+
   private final Logger logger = IdeLog.getCurrentLogger(this);
 
   private final File mResDir;
@@ -64,6 +75,7 @@ public class SimpleResourceRepository implements Repository {
   protected final Multimap<File, ResourceItem> mFileItems = ArrayListMultimap.create();
 
   private FolderConfiguration mConfiguration;
+  private File mSnapshotDirectory;
 
   public SimpleResourceRepository(File resDir, ResourceNamespace namespace) {
     mResDir = resDir;
@@ -77,7 +89,28 @@ public class SimpleResourceRepository implements Repository {
     parse(mResDir, mNamespace, null);
   }
 
+  /**
+   * Sets the directory where the parsed resources are stored, the files that have not changed since
+   * are not parsed again the next time the same res directory is parsed.
+   */
+  public void setSnapshotDirectory(@Nullable File directory) {
+    mSnapshotDirectory = directory;
+  }
+
   protected void parse(File resDir, ResourceNamespace namespace, String name) throws IOException {
+    File snapshotFile =
+        mSnapshotDirectory == null
+            ? null
+            : new File(mSnapshotDirectory, ResourceSnapshot.getFileName(resDir));
+    ResourceSnapshot snapshot = ResourceSnapshot.read(snapshotFile, namespace, name);
+    ResourceSnapshot updated = new ResourceSnapshot(namespace, name);
+    boolean changed = false;
+
+    // the files are parsed in parallel but added to the table in the same order as before
+    List<File> files = new ArrayList<>();
+    List<String> folderNames = new ArrayList<>();
+    List<Future<ResourceSnapshot.Entry>> entries = new ArrayList<>();
+
     Collection<File> dirs =
         FileUtils.listFilesAndDirs(resDir, FalseFileFilter.INSTANCE, TrueFileFilter.INSTANCE);
     for (File dir : dirs) {
@@ -90,14 +123,85 @@ public class SimpleResourceRepository implements Repository {
       Collection<File> xmlFiles =
           FileUtils.listFiles(dir, TrueFileFilter.INSTANCE, FalseFileFilter.INSTANCE);
       for (File xmlFile : xmlFiles) {
-        try {
-          String contents = FileUtils.readFileToString(xmlFile, StandardCharsets.UTF_8);
-          parseFile(parser, xmlFile, contents, dir.getName(), namespace, name);
-        } catch (IOException e) {
-          logger.warning("Unable to parse " + xmlFile.getName() + ": " + e.getMessage());
+        files.add(xmlFile);
+        folderNames.add(dir.getName());
+
+        ResourceSnapshot.Entry cached = snapshot.get(xmlFile);
+        if (cached != null && cached.isUpToDate(xmlFile)) {
+          entries.add(Futures.immediateFuture(cached));
+        } else {
+          changed = true;
+          entries.add(
+              getExecutor().submit(() -> parseEntry(parser, xmlFile, cached, namespace, name)));
         }
       }
     }
+    changed |= files.size() != snapshot.size();
+
+    for (int i = 0; i < files.size(); i++) {
+      File xmlFile = files.get(i);
+      ResourceSnapshot.Entry entry;
+      try {
+        entry = entries.get(i).get();
+      } catch (ExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        logger.warning("Unable to parse " + xmlFile.getName() + ": " + e.getCause().getMessage());
+        continue;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        entries.forEach(it -> it.cancel(true));
+        throw new InterruptedIOException("Interrupted while parsing " + resDir);
+      }
+      updated.put(xmlFile, entry);
+      addValues(xmlFile, folderNames.get(i), entry.values);
+    }
+
+    if (snapshotFile != null && changed) {
+      try {
+        updated.write(snapshotFile);
+      } catch (IOException e) {
+        logger.warning("Unable to save resources of " + resDir + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private static ResourceSnapshot.Entry parseEntry(
+      ResourceParser parser,
+      File xmlFile,
+      @Nullable ResourceSnapshot.Entry cached,
+      ResourceNamespace namespace,
+      String name)
+      throws IOException {
+    long length = xmlFile.length();
+    long lastModified = xmlFile.lastModified();
+    byte[] bytes = Files.readAllBytes(xmlFile.toPath());
+    String hash = ResourceSnapshot.hash(bytes);
+    if (cached != null && cached.hash.equals(hash)) {
+      // the file has been touched but its contents are the same
+      return new ResourceSnapshot.Entry(length, lastModified, hash, cached.values);
+    }
+    String contents = new String(bytes, StandardCharsets.UTF_8);
+    List<ResourceValue> values = parser.parse(xmlFile, contents, namespace, name);
+    return new ResourceSnapshot.Entry(length, lastModified, hash, values);
+  }
+
+  private static ExecutorService getExecutor() {
+    if (sExecutor == null) {
+      synchronized (SimpleResourceRepository.class) {
+        if (sExecutor == null) {
+          AtomicInteger count = new AtomicInteger();
+          sExecutor =
+              Executors.newFixedThreadPool(
+                  Runtime.getRuntime().availableProcessors(),
+                  r -> {
+                    Thread thread = new Thread(r, "ResourceParser #" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                  });
+        }
+      }
+    }
+    return sExecutor;
   }
 
   @Nullable
@@ -118,6 +222,11 @@ public class SimpleResourceRepository implements Repository {
       @Nullable String libraryName)
       throws IOException {
     List<ResourceValue> values = parser.parse(xmlFile, contents, namespace, libraryName);
+    addValues(xmlFile, folderName, values);
+  }
+
+  private void addValues(
+      @NotNull File xmlFile, @NotNull String folderName, @NotNull List<ResourceValue> values) {
     for (ResourceValue value : values) {
       ListMultimap<String, ResourceItem> tableValue =
           mTable.getOrPutEmpty(value.getNamespace(), value.getResourceType());
@@ -1,12 +1,13 @@
 package com.tyron.xml.completion.repository.api;
 
 import com.google.common.collect.ImmutableList;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import kotlin.Pair;
 import org.jetbrains.annotations.Nullable;
 
-public class LayoutInfo {
+public class LayoutInfo implements Serializable {
 
   private String mName;
 
@@ -2,6 +2,8 @@ package com.tyron.xml.completion.repository.api;
 
 import com.google.common.base.MoreObjects;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -136,6 +138,12 @@ public class ResourceValueImpl implements ResourceValue {
     this.mNamespaceResolver = resolver;
   }
 
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    // field initializers are not run for deserialized objects
+    mNamespaceResolver = ResourceNamespace.Resolver.EMPTY_RESOLVER;
+  }
+
   @Override
   public boolean equals(@Nullable Object o) {
     if (this == o) {